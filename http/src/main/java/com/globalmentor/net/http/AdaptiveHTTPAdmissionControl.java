@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import com.globalmentor.net.Host;
+
+import static com.globalmentor.java.Conditions.*;
+
+/**
+ * Admission control that adapts the number of exchanges allowed in progress with each host to how the host responds, using additive increase and
+ * multiplicative decrease (AIMD). Each host starts with an initial limit. While the host is using most of its limit and responds without distress, the limit
+ * grows by about one exchange for each limit's worth of exchanges. When the host indicates that it is overloaded—it refuses or times out connections, stops
+ * responding, responds with a server error such as <code>503 Service Unavailable</code>, or responds much more slowly than usual—the limit is reduced by the
+ * {@link #getBackoffRatio() backoff ratio}.
+ * <p>
+ * The usual latency of a host is tracked as an exponentially weighted moving average of the latency of its exchanges; an exchange counts as slow if its
+ * latency exceeds that average by the {@link #getLatencyTolerance() latency tolerance}. So that a burst of failures among exchanges already in progress does
+ * not collapse the limit, the limit of a host is reduced at most once for each limit's worth of exchanges.
+ * </p>
+ * <p>
+ * The limit learned for a host is kept even while no exchanges with the host are in progress.
+ * </p>
+ * <p>
+ * The limit never exceeds the {@link #getMaxConcurrency() maximum concurrency}, which should be no greater than the
+ * {@link HTTPConnectionPool#getMaxConnectionsPerHost() maximum number of connections per host} of the client's connection pool; otherwise the limit would keep
+ * growing while the exchanges admitted beyond the pool's capacity merely wait for connections. The default maximum is the pool's default, so that by default
+ * the limit starts at the capacity of the pool and backs off from it when the host is in distress. A higher maximum is only useful with a pool allowing more
+ * connections per host, or with hosts using {@link HTTPClient#isHTTP2() HTTP/2}.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ */
+public class AdaptiveHTTPAdmissionControl extends HTTPAdmissionControl {
+
+	/** The default initial maximum number of exchanges in progress with each host. */
+	public static final int DEFAULT_INITIAL_CONCURRENCY = DEFAULT_MAX_CONCURRENCY;
+
+	/** The default minimum to which the maximum number of exchanges in progress with a host may be reduced. */
+	public static final int DEFAULT_MIN_CONCURRENCY = 1;
+
+	/**
+	 * The default maximum to which the maximum number of exchanges in progress with a host may be raised: the
+	 * {@link HTTPConnectionPool#DEFAULT_MAX_CONNECTIONS_PER_HOST default maximum number of connections per host} of the connection pool, as exchanges admitted
+	 * beyond the connections the pool allows would only wait for a connection, out of reach of the admission control.
+	 */
+	public static final int DEFAULT_LIMIT_CONCURRENCY = HTTPConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+	/** The default ratio by which the limit of a host is multiplied when the host is overloaded. */
+	public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+
+	/** The default factor by which the latency of an exchange must exceed the usual latency of a host for the host to be considered overloaded. */
+	public static final double DEFAULT_LATENCY_TOLERANCE = 2.0;
+
+	/** The weight given to each new latency sample in the moving average latency of a host. */
+	private static final double LATENCY_SMOOTHING = 0.1;
+
+	/** The limit state of each host with which exchanges have taken place. */
+	private final ConcurrentMap<Host, HostLimit> hostLimits = new ConcurrentHashMap<Host, HostLimit>();
+
+	/** The initial maximum number of exchanges in progress with each host. */
+	private final int initialConcurrency;
+
+	/** @return The initial maximum number of exchanges in progress with each host. */
+	public int getInitialConcurrency() {
+		return initialConcurrency;
+	}
+
+	/** The minimum to which the maximum number of exchanges in progress with a host may be reduced. */
+	private final int minConcurrency;
+
+	/** @return The minimum to which the maximum number of exchanges in progress with a host may be reduced. */
+	public int getMinConcurrency() {
+		return minConcurrency;
+	}
+
+	/** The ratio by which the limit of a host is multiplied when the host is overloaded. */
+	private final double backoffRatio;
+
+	/** @return The ratio by which the limit of a host is multiplied when the host is overloaded. */
+	public double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	/** The factor by which the latency of an exchange must exceed the usual latency of a host for the host to be considered overloaded. */
+	private final double latencyTolerance;
+
+	/** @return The factor by which the latency of an exchange must exceed the usual latency of a host for the host to be considered overloaded. */
+	public double getLatencyTolerance() {
+		return latencyTolerance;
+	}
+
+	/** Default constructor using default limits and the {@link #DEFAULT_MAX_QUEUE_LENGTH default maximum queue length}. */
+	public AdaptiveHTTPAdmissionControl() {
+		this(DEFAULT_INITIAL_CONCURRENCY, DEFAULT_MIN_CONCURRENCY, DEFAULT_LIMIT_CONCURRENCY, DEFAULT_MAX_QUEUE_LENGTH);
+	}
+
+	/**
+	 * Limits constructor using the {@link #DEFAULT_BACKOFF_RATIO default backoff ratio} and {@link #DEFAULT_LATENCY_TOLERANCE default latency tolerance}.
+	 * @param initialConcurrency The initial maximum number of exchanges in progress with each host.
+	 * @param minConcurrency The minimum to which the maximum number of exchanges in progress with a host may be reduced.
+	 * @param maxConcurrency The maximum to which the maximum number of exchanges in progress with a host may be raised.
+	 * @param maxQueueLength The maximum number of exchanges waiting to be admitted for each host, or <code>0</code> if exchanges should never wait.
+	 * @throws IllegalArgumentException if the concurrency values are not positive or not in order, or the maximum queue length is negative.
+	 */
+	public AdaptiveHTTPAdmissionControl(final int initialConcurrency, final int minConcurrency, final int maxConcurrency, final int maxQueueLength) {
+		this(initialConcurrency, minConcurrency, maxConcurrency, maxQueueLength, DEFAULT_BACKOFF_RATIO, DEFAULT_LATENCY_TOLERANCE);
+	}
+
+	/**
+	 * Full constructor.
+	 * @param initialConcurrency The initial maximum number of exchanges in progress with each host.
+	 * @param minConcurrency The minimum to which the maximum number of exchanges in progress with a host may be reduced.
+	 * @param maxConcurrency The maximum to which the maximum number of exchanges in progress with a host may be raised.
+	 * @param maxQueueLength The maximum number of exchanges waiting to be admitted for each host, or <code>0</code> if exchanges should never wait.
+	 * @param backoffRatio The ratio by which the limit of a host is multiplied when the host is overloaded.
+	 * @param latencyTolerance The factor by which the latency of an exchange must exceed the usual latency of a host for the host to be considered overloaded.
+	 * @throws IllegalArgumentException if the concurrency values are not positive or not in order, the maximum queue length is negative, the backoff ratio is
+	 *           not greater than zero and less than one, or the latency tolerance is not greater than one.
+	 */
+	public AdaptiveHTTPAdmissionControl(final int initialConcurrency, final int minConcurrency, final int maxConcurrency, final int maxQueueLength,
+			final double backoffRatio, final double latencyTolerance) {
+		super(maxConcurrency, maxQueueLength);
+		this.minConcurrency = checkArgumentPositive(minConcurrency);
+		checkArgument(initialConcurrency >= minConcurrency && initialConcurrency <= maxConcurrency, "Initial concurrency %d must be between %d and %d.",
+				initialConcurrency, minConcurrency, maxConcurrency);
+		this.initialConcurrency = initialConcurrency;
+		checkArgument(backoffRatio > 0 && backoffRatio < 1, "Backoff ratio %s must be greater than zero and less than one.", backoffRatio);
+		this.backoffRatio = backoffRatio;
+		checkArgument(latencyTolerance > 1, "Latency tolerance %s must be greater than one.", latencyTolerance);
+		this.latencyTolerance = latencyTolerance;
+	}
+
+	/** {@inheritDoc} This version returns the limit currently learned for the host. */
+	@Override
+	protected int getMaxConcurrency(final Host host) {
+		final HostLimit hostLimit = hostLimits.get(host);
+		return hostLimit != null ? hostLimit.maxConcurrency : getInitialConcurrency();
+	}
+
+	/**
+	 * {@inheritDoc} This version reduces the limit of the host if the host is overloaded or the exchange was slow, and otherwise raises the limit if the host is
+	 * using most of it.
+	 */
+	@Override
+	protected void recordExchange(final Host host, final long latencyNanos, final boolean overloaded) {
+		final int activeCount = getActiveCount(host); //includes the exchange being recorded
+		final HostLimit hostLimit = hostLimits.computeIfAbsent(host, __ -> new HostLimit(getInitialConcurrency()));
+		hostLimit.lock.lock();
+		try {
+			boolean distressed = overloaded;
+			if(latencyNanos >= 0) {
+				final double averageLatencyNanos = hostLimit.averageLatencyNanos;
+				if(averageLatencyNanos > 0 && latencyNanos > averageLatencyNanos * getLatencyTolerance()) {
+					distressed = true;
+				}
+				hostLimit.averageLatencyNanos = averageLatencyNanos > 0 ? averageLatencyNanos + (latencyNanos - averageLatencyNanos) * LATENCY_SMOOTHING : latencyNanos;
+			}
+			++hostLimit.exchangesSinceDecrease;
+			double limit = hostLimit.limit;
+			if(distressed) {
+				if(hostLimit.exchangesSinceDecrease >= limit) { //reduce at most once per limit's worth of exchanges
+					limit = Math.max(limit * getBackoffRatio(), getMinConcurrency());
+					hostLimit.exchangesSinceDecrease = 0;
+				}
+			} else if(activeCount * 2 >= limit) { //only grow a limit that is being used
+				limit = Math.min(limit + 1 / limit, getMaxConcurrency());
+			}
+			hostLimit.limit = limit;
+			hostLimit.maxConcurrency = (int)limit;
+		} finally {
+			hostLimit.lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the limit currently learned for a host.
+	 * @param host The host.
+	 * @return The maximum number of exchanges currently allowed in progress with the host.
+	 */
+	public int getLimit(final Host host) {
+		return getMaxConcurrency(host);
+	}
+
+	/**
+	 * Returns the moving average latency observed for a host.
+	 * @param host The host.
+	 * @return The average number of nanoseconds from admission until the host began responding, or <code>0</code> if no latency has been observed.
+	 */
+	public long getAverageLatencyNanos(final Host host) {
+		final HostLimit hostLimit = hostLimits.get(host);
+		if(hostLimit == null) {
+			return 0;
+		}
+		hostLimit.lock.lock();
+		try {
+			return (long)hostLimit.averageLatencyNanos;
+		} finally {
+			hostLimit.lock.unlock();
+		}
+	}
+
+	/**
+	 * The learned limit of a single host.
+	 * @author Garret Wilson
+	 */
+	private static class HostLimit {
+
+		/** The lock guarding updates to the limit. */
+		final Lock lock = new ReentrantLock();
+
+		/** The fractional limit, allowing additive increase by fractions of an exchange; guarded by {@link #lock}. */
+		double limit;
+
+		/** The whole limit, published for admission without locking. */
+		volatile int maxConcurrency;
+
+		/** The moving average latency in nanoseconds, or <code>0</code> if none has been observed; guarded by {@link #lock}. */
+		double averageLatencyNanos = 0;
+
+		/** The number of exchanges recorded since the limit was last reduced; guarded by {@link #lock}. */
+		int exchangesSinceDecrease = Integer.MAX_VALUE / 2;
+
+		/**
+		 * Constructor.
+		 * @param limit The initial limit.
+		 */
+		HostLimit(final int limit) {
+			this.limit = limit;
+			this.maxConcurrency = limit;
+		}
+	}
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * Connects to the first reachable address of a host with several addresses, racing staggered connection attempts in the manner of "Happy Eyeballs" as
+ * described in <a href="https://tools.ietf.org/html/rfc8305">RFC 8305</a>.
+ * <p>
+ * The addresses are interleaved by family, so that an IPv6 attempt is followed by an IPv4 attempt and vice versa, beginning with the family of the first
+ * address. The first attempt is started immediately. Each following attempt is started once the previous attempt has failed, or once the
+ * {@link #CONNECTION_ATTEMPT_DELAY} has elapsed without a connection, whichever comes first; earlier attempts are not abandoned. The first connection made
+ * wins, and any other connections made are closed. Attempts are made on threads of the given executor, other than the attempt to a host with a single
+ * address, which is made directly.
+ * </p>
+ * @author Garret Wilson
+ */
+final class AddressRacer {
+
+	/** The number of milliseconds to wait for a connection attempt before starting the next one, as recommended by RFC 8305. */
+	static final long CONNECTION_ATTEMPT_DELAY = 250;
+
+	/** This class cannot be publicly instantiated. */
+	private AddressRacer() {
+	}
+
+	/**
+	 * A strategy for making a single blocking connection attempt.
+	 * @param <C> The type of connection made.
+	 * @author Garret Wilson
+	 */
+	@FunctionalInterface
+	interface Connector<C extends Closeable> {
+
+		/**
+		 * Connects to an address.
+		 * @param address The address to which to connect.
+		 * @param timeout The number of milliseconds to wait for the connection, or <code>0</code> to wait indefinitely.
+		 * @return The connection made.
+		 * @throws IOException if the connection could not be made.
+		 */
+		C connect(final InetSocketAddress address, final int timeout) throws IOException;
+	}
+
+	/**
+	 * Orders addresses so that address families alternate, beginning with the family of the first address. The relative order of the addresses of each family
+	 * is retained.
+	 * @param addresses The addresses to order.
+	 * @return The addresses, interleaved by family.
+	 */
+	static List<InetAddress> interleave(final List<InetAddress> addresses) {
+		if(addresses.size() <= 1) {
+			return addresses;
+		}
+		final boolean firstIPv6 = addresses.get(0) instanceof Inet6Address;
+		final Queue<InetAddress> preferred = new ArrayDeque<InetAddress>();
+		final Queue<InetAddress> other = new ArrayDeque<InetAddress>();
+		for(final InetAddress address : addresses) {
+			(address instanceof Inet6Address == firstIPv6 ? preferred : other).add(address);
+		}
+		final List<InetAddress> interleaved = new ArrayList<InetAddress>(addresses.size());
+		while(!preferred.isEmpty() || !other.isEmpty()) {
+			if(!preferred.isEmpty()) {
+				interleaved.add(preferred.remove());
+			}
+			if(!other.isEmpty()) {
+				interleaved.add(other.remove());
+			}
+		}
+		return interleaved;
+	}
+
+	/**
+	 * Connects to one of the given addresses.
+	 * @param <C> The type of connection made.
+	 * @param addresses The addresses of the host, in order of preference.
+	 * @param port The port to which to connect.
+	 * @param timeout The number of milliseconds to wait for a connection, or <code>0</code> to wait indefinitely.
+	 * @param executor The executor for making concurrent connection attempts.
+	 * @param connector The strategy for making each connection attempt.
+	 * @return The first connection made.
+	 * @throws IllegalArgumentException if no addresses are given.
+	 * @throws SocketTimeoutException if no connection could be made before the timeout.
+	 * @throws InterruptedIOException if the current thread was interrupted while waiting for a connection.
+	 * @throws IOException if no connection could be made; any failures of other attempts are added as suppressed exceptions.
+	 */
+	static <C extends Closeable> C connect(final List<InetAddress> addresses, final int port, final int timeout, final Executor executor,
+			final Connector<C> connector) throws IOException {
+		final int count = addresses.size();
+		if(count == 0) {
+			throw new IllegalArgumentException("No addresses to connect to.");
+		}
+		if(count == 1) {
+			return connector.connect(new InetSocketAddress(addresses.get(0), port), timeout);
+		}
+		requireNonNull(executor, "Executor cannot be null.");
+		final List<InetAddress> orderedAddresses = interleave(addresses);
+		final BlockingQueue<Object> results = new LinkedBlockingQueue<Object>(); //connections and exceptions
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		final long startNanos = System.nanoTime();
+		final long deadlineNanos = timeout > 0 ? startNanos + MILLISECONDS.toNanos(timeout) : 0;
+		IOException failure = null;
+		int startedCount = 0;
+		int failedCount = 0;
+		long nextAttemptNanos = startNanos;
+		try {
+			while(true) {
+				final long nowNanos = System.nanoTime();
+				if(startedCount < count && nowNanos - nextAttemptNanos >= 0) { //start the next attempt
+					final InetSocketAddress address = new InetSocketAddress(orderedAddresses.get(startedCount++), port);
+					final int attemptTimeout = deadlineNanos != 0 ? (int)Math.max(1, NANOSECONDS.toMillis(deadlineNanos - nowNanos)) : 0;
+					executor.execute(() -> {
+						Object result;
+						try {
+							result = connector.connect(address, attemptTimeout);
+						} catch(final IOException ioException) {
+							result = ioException;
+						}
+						results.add(result);
+						if(finished.get()) { //if the race was decided while we were connecting, don't leave the connection open
+							closeConnections(results);
+						}
+					});
+					nextAttemptNanos = nowNanos + MILLISECONDS.toNanos(CONNECTION_ATTEMPT_DELAY);
+					continue;
+				}
+				long waitNanos = startedCount < count ? nextAttemptNanos - nowNanos : Long.MAX_VALUE;
+				if(deadlineNanos != 0) {
+					if(deadlineNanos - nowNanos <= 0) {
+						throw new SocketTimeoutException("Connect timed out after " + timeout + " ms.");
+					}
+					waitNanos = Math.min(waitNanos, deadlineNanos - nowNanos);
+				}
+				final Object result = results.poll(waitNanos, NANOSECONDS);
+				if(result == null) { //time for another attempt, or the deadline has passed
+					continue;
+				}
+				if(result instanceof IOException) {
+					final IOException ioException = (IOException)result;
+					if(failure == null) {
+						failure = ioException;
+					} else {
+						failure.addSuppressed(ioException);
+					}
+					if(++failedCount == count) {
+						throw failure;
+					}
+					nextAttemptNanos = System.nanoTime(); //don't wait to try the next address
+					continue;
+				}
+				@SuppressWarnings("unchecked")
+				final C connection = (C)result;
+				return connection;
+			}
+		} catch(final InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while connecting.");
+		} finally {
+			finished.set(true);
+			closeConnections(results); //close any connections that lost the race
+		}
+	}
+
+	/**
+	 * Closes any connections among the results of connection attempts that lost the race, removing them.
+	 * @param results The results of connection attempts.
+	 */
+	private static void closeConnections(final Queue<Object> results) {
+		Object result;
+		while((result = results.poll()) != null) {
+			if(result instanceof Closeable) {
+				try {
+					((Closeable)result).close();
+				} catch(final IOException ioException) { //there's nothing more we can do with a connection we don't need
+				}
+			}
+		}
+	}
+
+}
@@ -22,6 +22,9 @@
  * An encapsulation of basic authenticate credentials of HTTP Basic Access Authentication, <a href="https://www.ietf.org/rfc/rfc2617.txt">RFC 2617</a>,
  * "HTTP Authentication: Basic and Digest Access Authentication", which obsoletes <a href="https://www.ietf.org/rfc/rfc2069.txt">RFC 2069</a>,
  * "An Extension to HTTP : Digest Access Authentication".
+ * <p>
+ * Basic credentials are immutable.
+ * </p>
  * @author Garret Wilson
  */
 public class BasicAuthenticateCredentials extends AbstractHTTPAuthentication implements AuthenticateCredentials {
@@ -35,11 +38,15 @@ public String getUsername() {
 	}
 
 	/** The password. */
-	private char[] password;
+	private final char[] password;
 
-	/** @return The password. */
+	/**
+	 * Returns the password. A copy is returned, so that the credentials may be shared, e.g. by an {@link HTTPAuthorizationCache}; the caller may clear the
+	 * returned array once it is no longer needed.
+	 * @return The password.
+	 */
 	public char[] getPassword() {
-		return password;
+		return password.clone();
 	}
 
 	/** @return The ID of the principal for which the credentials purport to provide authentication. */
@@ -47,6 +54,18 @@ public String getPrincipalID() {
 		return getUsername(); //return the username
 	}
 
+	/**
+	 * Constructs credentials received from a client, which do not indicate the realm.
+	 * @param username The username of the principal submitting the credentials
+	 * @param password The user password.
+	 * @throws NullPointerException if the username and/or password <code>null</code>.
+	 */
+	protected BasicAuthenticateCredentials(final String username, final char[] password) {
+		super(AuthenticationScheme.BASIC, null); //the realm is not sent with basic credentials
+		this.username = requireNonNull(username, "Username must be provided.");
+		this.password = requireNonNull(password, "Password must be provided.").clone();
+	}
+
 	/**
 	 * Full credential constructor.
 	 * @param username The username of the principal submitting the credentials
@@ -57,7 +76,7 @@ public String getPrincipalID() {
 	protected BasicAuthenticateCredentials(final String username, final String realm, final char[] password) {
 		super(AuthenticationScheme.BASIC, requireNonNull(realm, "Realm must be provided.")); //construct the parent class
 		this.username = requireNonNull(username, "Username must be provided.");
-		this.password = requireNonNull(password, "Password must be provided.");
+		this.password = requireNonNull(password, "Password must be provided.").clone();
 	}
 
 }
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import com.globalmentor.java.Bytes;
+
+import static java.util.Objects.*;
+
+/**
+ * An HTTP response the body of which has already been read in its entirety, such as a response to an asynchronous request.
+ * @author Garret Wilson
+ * @see HTTPClient#sendAsync(HTTPRequest, byte[])
+ */
+public class BufferedHTTPResponse extends DefaultHTTPResponse {
+
+	/** The body of the response. */
+	private byte[] body = Bytes.NO_BYTES;
+
+	/** @return The body of the response, which will be empty if the response had no body. */
+	public byte[] getBody() {
+		return body;
+	}
+
+	/**
+	 * Sets the body of the response.
+	 * @param body The body of the response.
+	 * @throws NullPointerException if the given body is <code>null</code>.
+	 */
+	public void setBody(final byte[] body) {
+		this.body = requireNonNull(body, "Body cannot be null.");
+	}
+
+	/**
+	 * Constructs a response with a version, status code, and reason phrase.
+	 * @param version The HTTP version being used.
+	 * @param statusCode The status code.
+	 * @param reasonPhrase The provided textual representation of the status code.
+	 */
+	public BufferedHTTPResponse(final HTTPVersion version, final int statusCode, final String reasonPhrase) {
+		super(version, statusCode, reasonPhrase);
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * A resolver that caches the addresses returned by another resolver for a limited time, so that connecting to a host does not wait for the name service each
+ * time.
+ * <p>
+ * The addresses of a host are returned in round-robin order: each resolution begins with the address following the first address of the previous resolution,
+ * so that new connections are spread across all the addresses of a host with several replicas, and a connection attempt that fails over to the next address
+ * tries them all.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ */
+public class CachingHostResolver implements HostResolver {
+
+	/** The default number of milliseconds to cache the addresses of a host. */
+	public static final long DEFAULT_TTL = 30 * 1000;
+
+	/** The number of cached hosts above which expired entries are removed when adding an entry. */
+	private static final int PURGE_THRESHOLD = 1024;
+
+	/** The resolver for looking up addresses not in the cache. */
+	private final HostResolver resolver;
+
+	/** The number of nanoseconds to cache the addresses of a host. */
+	private final long ttlNanos;
+
+	/** The cached addresses, keyed by host name. */
+	private final ConcurrentMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+
+	/**
+	 * Resolver constructor with the default time-to-live.
+	 * @param resolver The resolver for looking up addresses not in the cache.
+	 * @throws NullPointerException if the given resolver is <code>null</code>.
+	 */
+	public CachingHostResolver(final HostResolver resolver) {
+		this(resolver, DEFAULT_TTL);
+	}
+
+	/**
+	 * Resolver and time-to-live constructor.
+	 * @param resolver The resolver for looking up addresses not in the cache.
+	 * @param ttl The number of milliseconds to cache the addresses of a host.
+	 * @throws NullPointerException if the given resolver is <code>null</code>.
+	 * @throws IllegalArgumentException if the given time-to-live is negative.
+	 */
+	public CachingHostResolver(final HostResolver resolver, final long ttl) {
+		this.resolver = requireNonNull(resolver, "Resolver cannot be null.");
+		if(ttl < 0) {
+			throw new IllegalArgumentException("Time-to-live cannot be negative: " + ttl);
+		}
+		this.ttlNanos = MILLISECONDS.toNanos(ttl);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version returns the cached addresses if they have not expired, rotated so that successive resolutions begin with successive addresses.
+	 * </p>
+	 */
+	@Override
+	public List<InetAddress> resolve(final String hostName) throws UnknownHostException {
+		final long nowNanos = System.nanoTime();
+		Entry entry = cache.get(hostName);
+		if(entry == null || nowNanos - entry.expirationNanos >= 0) {
+			final List<InetAddress> addresses = new ArrayList<InetAddress>(resolver.resolve(hostName));
+			if(addresses.isEmpty()) {
+				throw new UnknownHostException(hostName);
+			}
+			if(cache.size() >= PURGE_THRESHOLD) {
+				cache.values().removeIf(cachedEntry -> nowNanos - cachedEntry.expirationNanos >= 0);
+			}
+			entry = new Entry(addresses, nowNanos + ttlNanos);
+			cache.put(hostName, entry);
+		}
+		final List<InetAddress> addresses = entry.addresses;
+		final int count = addresses.size();
+		if(count == 1) {
+			return addresses;
+		}
+		final int start = Math.floorMod(entry.nextIndex.getAndIncrement(), count);
+		final List<InetAddress> rotatedAddresses = new ArrayList<InetAddress>(count);
+		rotatedAddresses.addAll(addresses.subList(start, count));
+		rotatedAddresses.addAll(addresses.subList(0, start));
+		return rotatedAddresses;
+	}
+
+	/**
+	 * Removes any cached addresses of a host, so that the next resolution looks them up again.
+	 * @param hostName The name of the host.
+	 */
+	public void invalidate(final String hostName) {
+		cache.remove(hostName);
+	}
+
+	/** Removes all cached addresses. */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * The cached addresses of a host.
+	 * @author Garret Wilson
+	 */
+	private static class Entry {
+
+		/** The addresses of the host. */
+		final List<InetAddress> addresses;
+
+		/** The {@link System#nanoTime()} at which the addresses expire. */
+		final long expirationNanos;
+
+		/** The index of the address with which the next resolution begins. */
+		final AtomicInteger nextIndex = new AtomicInteger();
+
+		/**
+		 * Constructor.
+		 * @param addresses The addresses of the host, which must not be empty.
+		 * @param expirationNanos The {@link System#nanoTime()} at which the addresses expire.
+		 */
+		Entry(final List<InetAddress> addresses, final long expirationNanos) {
+			this.addresses = Collections.unmodifiableList(addresses);
+			this.expirationNanos = expirationNanos;
+		}
+	}
+
+}
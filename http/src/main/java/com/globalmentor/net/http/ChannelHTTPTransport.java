@@ -0,0 +1,672 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import com.globalmentor.net.Host;
+
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * An HTTP transport using a blocking {@link SocketChannel}, connected either to a TCP socket or to a Unix domain socket. Reads and writes go through direct
+ * byte buffers, which are kept for the life of the transport (and thus reused across all the exchanges of a pooled transport) and recycled for use by other
+ * transports once the transport is closed and no read or write is still using them.
+ * <p>
+ * The {@link #getInputStream()} and {@link #getOutputStream()} streams are buffered, as required by {@link HTTPTransport}. Callers wanting to avoid copying
+ * data through the streams may instead use {@link #getReadableChannel()} and {@link #getWritableChannel()}, which take into account any data already buffered,
+ * e.g. with {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}. Reading and writing must not be interleaved between the streams and the
+ * channels other than at the boundaries described by those methods.
+ * </p>
+ * <p>
+ * Once the transport is closed, its streams and channels may no longer be used, as its buffers may have been given to another transport. The transport may be
+ * closed from any thread, such as to unblock a read; a read or write in progress keeps the buffers until it returns, and the thread performing it recycles
+ * them.
+ * </p>
+ * <p>
+ * Because a blocking channel ignores {@link Socket#setSoTimeout(int)}, the {@link #setReadTimeout(int) read timeout} is enforced by a shared watchdog thread
+ * that closes the channel if a read blocks too long; the read then fails with a {@link SocketTimeoutException}, and the transport is no longer open. Each read
+ * merely records its deadline, which the watchdog checks every {@value #READ_WATCHDOG_INTERVAL} milliseconds, so a read may block up to that much longer
+ * than the timeout. Data already buffered is returned without a deadline.
+ * </p>
+ * @author Garret Wilson
+ */
+public class ChannelHTTPTransport extends HTTPTransport {
+
+	/** The size of the direct buffers used for reading and writing. */
+	public static final int BUFFER_SIZE = 16 * 1024;
+
+	/** The maximum number of direct buffers to keep for reuse once their transports are closed. */
+	private static final int MAX_RECYCLED_BUFFER_COUNT = 64;
+
+	/** Direct buffers available for reuse. Allocating direct buffers is expensive, and their memory is only released when they are garbage collected. */
+	private static final BlockingQueue<ByteBuffer> recycledBuffers = new ArrayBlockingQueue<ByteBuffer>(MAX_RECYCLED_BUFFER_COUNT);
+
+	/** @return A cleared direct buffer, either reused or newly allocated. */
+	private static ByteBuffer obtainBuffer() {
+		final ByteBuffer buffer = recycledBuffers.poll();
+		if(buffer != null) {
+			buffer.clear();
+			return buffer;
+		}
+		return ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	/**
+	 * Makes a direct buffer available for reuse. If enough buffers are already available, the buffer is left for garbage collection.
+	 * @param buffer The buffer no longer in use.
+	 */
+	private static void recycleBuffer(final ByteBuffer buffer) {
+		recycledBuffers.offer(buffer);
+	}
+
+	/** The number of milliseconds between checks by the watchdog for reads that have timed out. */
+	public static final long READ_WATCHDOG_INTERVAL = 50;
+
+	/** The read deadline indicating that no read is in progress. */
+	private static final long NO_READ_DEADLINE = Long.MIN_VALUE;
+
+	/** The read deadline indicating that a read timed out and the watchdog closed the channel. */
+	private static final long READ_TIMED_OUT = Long.MIN_VALUE + 1;
+
+	/** The shared daemon thread that closes channels whose reads have timed out. */
+	private static final ScheduledThreadPoolExecutor READ_WATCHDOG_EXECUTOR = new ScheduledThreadPoolExecutor(1, runnable -> {
+		final Thread thread = new Thread(runnable, ChannelHTTPTransport.class.getSimpleName() + " read watchdog");
+		thread.setDaemon(true); //don't keep the JVM running just to time out reads
+		return thread;
+	});
+
+	/** Whether the watchdog has been started. */
+	private static final AtomicBoolean readWatchdogStarted = new AtomicBoolean(false);
+
+	/** The open transports that have performed reads with a timeout, checked by the watchdog. */
+	private static final Set<ChannelHTTPTransport> timedTransports = ConcurrentHashMap.newKeySet();
+
+	/** Closes the channel of each transport whose read in progress has passed its deadline. */
+	private static void checkReadDeadlines() {
+		final long nowNanos = System.nanoTime();
+		for(final ChannelHTTPTransport transport : timedTransports) {
+			final long deadlineNanos = transport.readDeadlineNanos.get();
+			if(deadlineNanos != NO_READ_DEADLINE && deadlineNanos != READ_TIMED_OUT && nowNanos - deadlineNanos >= 0
+					&& transport.readDeadlineNanos.compareAndSet(deadlineNanos, READ_TIMED_OUT)) { //if the read has not returned in the meantime
+				try {
+					transport.channel.close(); //unblock the read; only the channel is closed, as the reading thread is still using the buffers
+				} catch(final IOException ioException) { //the read will fail regardless
+				}
+			}
+		}
+	}
+
+	/** The channel to the server. */
+	private final SocketChannel channel;
+
+	/**
+	 * Returns the underlying channel to the server. Data read into the input buffer but not yet consumed will not be available from the channel, and data
+	 * written to the output stream will not be sent until the output stream is flushed; most callers should use {@link #getReadableChannel()} and
+	 * {@link #getWritableChannel()} instead.
+	 * @return The channel to the server.
+	 */
+	public SocketChannel getChannel() {
+		return channel;
+	}
+
+	/** Whether the transport has been closed. */
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	/** The number of reads, writes and checks currently using the buffers. */
+	private final AtomicInteger bufferUserCount = new AtomicInteger(0);
+
+	/** Whether the buffers have been recycled. */
+	private final AtomicBoolean buffersRecycled = new AtomicBoolean(false);
+
+	/** @return Whether the buffers have been recycled, which happens once the transport is closed and no read or write is using them. */
+	boolean isBuffersRecycled() {
+		return buffersRecycled.get();
+	}
+
+	/** The buffer of data read from the channel, kept ready for reading (i.e. flipped). */
+	private final ByteBuffer readBuffer;
+
+	/** The buffer of data to be written to the channel, kept ready for writing to (i.e. not flipped). */
+	private final ByteBuffer writeBuffer;
+
+	/** The buffered input stream from the channel. */
+	private final InputStream inputStream = new ChannelInputStream();
+
+	@Override
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/** The buffered output stream to the channel. */
+	private final OutputStream outputStream = new ChannelOutputStream();
+
+	@Override
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	/** A channel for reading from the server, first returning any data already buffered by the input stream. */
+	private final ReadableByteChannel readableChannel = new BufferedReadableChannel();
+
+	/**
+	 * Returns a channel for reading from the server. The channel first returns any data already read into the buffer of the input stream, and then reads
+	 * directly from the underlying channel. Closing the returned channel closes the transport.
+	 * @return A channel for reading from the server.
+	 */
+	public ReadableByteChannel getReadableChannel() {
+		return readableChannel;
+	}
+
+	/** A channel for writing to the server, first sending any data already buffered by the output stream. */
+	private final WritableByteChannel writableChannel = new BufferedWritableChannel();
+
+	/**
+	 * Returns a channel for writing to the server. Any data written to the output stream but not yet flushed is sent before the first data written to the
+	 * channel, which then writes directly to the underlying channel. Closing the returned channel closes the transport.
+	 * @return A channel for writing to the server.
+	 */
+	public WritableByteChannel getWritableChannel() {
+		return writableChannel;
+	}
+
+	/**
+	 * Channel constructor.
+	 * @param host The host to which the transport is connected.
+	 * @param secure Whether the transport is secure.
+	 * @param channel The connected channel to the server, which must be in blocking mode.
+	 * @throws NullPointerException if the given host and/or channel is <code>null</code>.
+	 * @throws IllegalArgumentException if the given channel is not in blocking mode.
+	 */
+	public ChannelHTTPTransport(final Host host, final boolean secure, final SocketChannel channel) {
+		super(host, secure);
+		this.channel = requireNonNull(channel, "Channel cannot be null.");
+		if(!channel.isBlocking()) {
+			throw new IllegalArgumentException("Channel must be in blocking mode.");
+		}
+		readBuffer = obtainBuffer();
+		readBuffer.flip(); //there is nothing to read yet
+		writeBuffer = obtainBuffer();
+	}
+
+	@Override
+	public InetAddress getInetAddress() {
+		try {
+			final SocketAddress remoteAddress = channel.getRemoteAddress();
+			return remoteAddress instanceof InetSocketAddress ? ((InetSocketAddress)remoteAddress).getAddress() : null; //a Unix domain socket has no IP address
+		} catch(final IOException ioException) {
+			return null;
+		}
+	}
+
+	/** The lock held while the channel is temporarily in non-blocking mode, used instead of the {@link SelectableChannel#blockingLock()} monitor. */
+	private final Lock nonBlockingLock = new ReentrantLock();
+
+	/** Whether the transport has been aborted. */
+	private volatile boolean aborted = false;
+
+	@Override
+	public boolean isOpen() {
+		return !closed.get() && !aborted && readDeadlineNanos.get() != READ_TIMED_OUT && channel.isOpen() && channel.isConnected();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version performs a single non-blocking read from the channel. An idle channel should have nothing to read; if the server has closed the connection
+	 * the read will report the end of the stream, and if the server has sent something unsolicited (such as a timeout response) the channel is no longer at a
+	 * message boundary. Either way the channel cannot be reused.
+	 * </p>
+	 */
+	@Override
+	public boolean isStale() {
+		if(!isOpen()) {
+			return true;
+		}
+		try {
+			beginBufferUse();
+		} catch(final ClosedChannelException closedChannelException) {
+			return true;
+		}
+		try {
+			if(readBuffer.hasRemaining()) { //unread data means we're not at a message boundary
+				return true;
+			}
+			nonBlockingLock.lock();
+			try {
+				channel.configureBlocking(false);
+				try {
+					readBuffer.clear();
+					try {
+						return channel.read(readBuffer) != 0; //either the end of the stream or unexpected data
+					} finally {
+						readBuffer.flip();
+					}
+				} finally {
+					channel.configureBlocking(true);
+				}
+			} finally {
+				nonBlockingLock.unlock();
+			}
+		} catch(final IOException ioException) { //if we can't even check the channel, it's not worth using
+			return true;
+		} finally {
+			endBufferUse();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version briefly switches the channel to non-blocking mode and waits for it to become readable using a selector, as the watchdog enforcing the read
+	 * timeout would close the channel.
+	 * </p>
+	 */
+	@Override
+	public boolean awaitInput(final int timeout) throws IOException {
+		beginBufferUse();
+		try {
+			if(readBuffer.hasRemaining()) {
+				return true;
+			}
+			nonBlockingLock.lock(); //a monitor held while selecting would pin a virtual thread to its carrier
+			try {
+				channel.configureBlocking(false);
+				try {
+					try (final Selector selector = Selector.open()) {
+						channel.register(selector, SelectionKey.OP_READ);
+						return selector.select(timeout) > 0;
+					} //closing the selector deregisters the channel so that it can be made blocking again
+				} finally {
+					channel.configureBlocking(true);
+				}
+			} finally {
+				nonBlockingLock.unlock();
+			}
+		} finally {
+			endBufferUse();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version shuts down both directions of the channel, so that a blocked read returns the end of the stream and a blocked write fails, while the channel
+	 * and the buffers are left for the thread using the transport to close and recycle.
+	 * </p>
+	 */
+	@Override
+	public void abort() throws IOException {
+		aborted = true;
+		try {
+			channel.shutdownInput();
+		} finally {
+			channel.shutdownOutput();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version may be called from any thread. The buffers are recycled at once only if no read or write is using them; otherwise the thread performing the
+	 * read or write recycles them once it returns.
+	 * </p>
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed.compareAndSet(false, true)) {
+			timedTransports.remove(this);
+			try {
+				channel.close();
+			} finally {
+				if(bufferUserCount.get() == 0) { //if someone is still using the buffers, they will recycle them
+					recycleBuffers();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Begins using the buffers, ensuring the transport has not been closed. Every successful call must be matched by a call to {@link #endBufferUse()}, so that
+	 * the buffers are not recycled while in use.
+	 * @throws ClosedChannelException if the transport has been closed.
+	 */
+	private void beginBufferUse() throws ClosedChannelException {
+		bufferUserCount.incrementAndGet();
+		if(closed.get()) {
+			endBufferUse();
+			throw new ClosedChannelException();
+		}
+	}
+
+	/** Ends using the buffers. If the transport was closed while they were in use, the buffers are recycled once no one else is using them. */
+	private void endBufferUse() {
+		if(bufferUserCount.decrementAndGet() == 0 && closed.get()) {
+			recycleBuffers();
+		}
+	}
+
+	/** Recycles the buffers for use by other transports, unless they have already been recycled. */
+	private void recycleBuffers() {
+		if(buffersRecycled.compareAndSet(false, true)) {
+			recycleBuffer(readBuffer);
+			recycleBuffer(writeBuffer);
+		}
+	}
+
+	/**
+	 * The {@link System#nanoTime()} by which the read in progress must return, {@link #NO_READ_DEADLINE} if no read is in progress, or {@link #READ_TIMED_OUT}
+	 * if the watchdog closed the channel because a read timed out. The reading thread and the watchdog each change a deadline only by comparing and setting it,
+	 * so that exactly one of them determines the outcome of each read.
+	 */
+	private final AtomicLong readDeadlineNanos = new AtomicLong(NO_READ_DEADLINE);
+
+	/** Whether this transport has been registered with the watchdog; only accessed by the reading thread. */
+	private boolean timed = false;
+
+	/**
+	 * Reads more data from the channel into the read buffer, blocking until data is available. The read buffer must be empty.
+	 * @return The number of bytes read, or <code>-1</code> if the end of the stream was reached.
+	 * @throws SocketTimeoutException if the read timed out.
+	 * @throws IOException if there was an error reading from the channel.
+	 */
+	private int fill() throws IOException {
+		readBuffer.clear();
+		try {
+			return read(readBuffer);
+		} finally {
+			readBuffer.flip();
+		}
+	}
+
+	/**
+	 * Reads from the channel, blocking until data is available. If there is a read timeout, the channel is closed if the read blocks longer than the timeout. If
+	 * the watchdog closes the channel just as the read returns, the read is still considered to have timed out, as the transport can no longer be used.
+	 * @param destination The buffer into which to read.
+	 * @return The number of bytes read, or <code>-1</code> if the end of the stream was reached.
+	 * @throws SocketTimeoutException if the read timed out.
+	 * @throws IOException if there was an error reading from the channel.
+	 */
+	private int read(final ByteBuffer destination) throws IOException {
+		final int readTimeout = getReadTimeout();
+		if(readTimeout == 0) {
+			return channel.read(destination);
+		}
+		if(!timed) { //register with the watchdog once, rather than scheduling a timeout for each read
+			timed = true;
+			timedTransports.add(this);
+			if(closed.get()) { //don't leave a transport closed in the meantime registered
+				timedTransports.remove(this);
+			}
+			if(readWatchdogStarted.compareAndSet(false, true)) {
+				READ_WATCHDOG_EXECUTOR.scheduleWithFixedDelay(ChannelHTTPTransport::checkReadDeadlines, READ_WATCHDOG_INTERVAL, READ_WATCHDOG_INTERVAL,
+						MILLISECONDS);
+			}
+		}
+		final long deadlineNanos = System.nanoTime() + MILLISECONDS.toNanos(readTimeout);
+		if(!readDeadlineNanos.compareAndSet(NO_READ_DEADLINE, deadlineNanos)) { //an earlier read timed out, closing the channel
+			throw new SocketTimeoutException("An earlier read timed out; the transport is closed.");
+		}
+		final int count;
+		try {
+			count = channel.read(destination);
+		} catch(final IOException ioException) {
+			if(!readDeadlineNanos.compareAndSet(deadlineNanos, NO_READ_DEADLINE) && ioException instanceof ClosedChannelException) { //closed by the watchdog
+				final SocketTimeoutException socketTimeoutException = new SocketTimeoutException("Read timed out after " + readTimeout + " ms.");
+				socketTimeoutException.initCause(ioException);
+				throw socketTimeoutException;
+			}
+			throw ioException;
+		}
+		if(!readDeadlineNanos.compareAndSet(deadlineNanos, NO_READ_DEADLINE)) { //the watchdog closed the channel just as the read returned
+			throw new SocketTimeoutException("Read timed out after " + readTimeout + " ms.");
+		}
+		return count;
+	}
+
+	/**
+	 * Writes all the data in the write buffer to the channel, blocking until it has been written.
+	 * @throws IOException if there was an error writing to the channel.
+	 */
+	private void drain() throws IOException {
+		writeBuffer.flip();
+		try {
+			while(writeBuffer.hasRemaining()) {
+				channel.write(writeBuffer);
+			}
+		} finally {
+			writeBuffer.compact(); //keep anything that could not be written
+		}
+	}
+
+	/**
+	 * The input stream reading from the channel through the read buffer.
+	 * @author Garret Wilson
+	 */
+	private class ChannelInputStream extends InputStream {
+
+		@Override
+		public int read() throws IOException {
+			beginBufferUse();
+			try {
+				if(!readBuffer.hasRemaining() && fill() < 0) {
+					return -1;
+				}
+				return readBuffer.get() & 0xff;
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		@Override
+		public int read(final byte[] bytes, final int offset, final int length) throws IOException {
+			beginBufferUse();
+			try {
+				if(length == 0) {
+					return 0;
+				}
+				if(!readBuffer.hasRemaining() && fill() < 0) {
+					return -1;
+				}
+				final int count = Math.min(length, readBuffer.remaining());
+				readBuffer.get(bytes, offset, count);
+				return count;
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		@Override
+		public long skip(final long n) throws IOException {
+			beginBufferUse();
+			try {
+				if(n <= 0) {
+					return 0;
+				}
+				if(!readBuffer.hasRemaining() && fill() < 0) {
+					return 0;
+				}
+				final int count = (int)Math.min(n, readBuffer.remaining());
+				readBuffer.position(readBuffer.position() + count);
+				return count;
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		@Override
+		public int available() throws IOException {
+			beginBufferUse();
+			try {
+				return readBuffer.remaining();
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		/** {@inheritDoc} This version closes the transport. */
+		@Override
+		public void close() throws IOException {
+			ChannelHTTPTransport.this.close();
+		}
+	}
+
+	/**
+	 * The output stream writing to the channel through the write buffer.
+	 * @author Garret Wilson
+	 */
+	private class ChannelOutputStream extends OutputStream {
+
+		@Override
+		public void write(final int b) throws IOException {
+			beginBufferUse();
+			try {
+				if(!writeBuffer.hasRemaining()) {
+					drain();
+				}
+				writeBuffer.put((byte)b);
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		@Override
+		public void write(final byte[] bytes, int offset, int length) throws IOException {
+			beginBufferUse();
+			try {
+				if(length >= writeBuffer.capacity()) { //large writes gain nothing from buffering
+					drain();
+					final ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+					while(buffer.hasRemaining()) {
+						channel.write(buffer);
+					}
+					return;
+				}
+				while(length > 0) {
+					if(!writeBuffer.hasRemaining()) {
+						drain();
+					}
+					final int count = Math.min(length, writeBuffer.remaining());
+					writeBuffer.put(bytes, offset, count);
+					offset += count;
+					length -= count;
+				}
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			beginBufferUse();
+			try {
+				drain();
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		/** {@inheritDoc} This version flushes the stream and closes the transport. */
+		@Override
+		public void close() throws IOException {
+			try {
+				if(!closed.get()) {
+					flush();
+				}
+			} finally {
+				ChannelHTTPTransport.this.close();
+			}
+		}
+	}
+
+	/**
+	 * The readable channel that returns data from the read buffer before reading from the underlying channel.
+	 * @author Garret Wilson
+	 */
+	private class BufferedReadableChannel implements ReadableByteChannel {
+
+		@Override
+		public int read(final ByteBuffer destination) throws IOException {
+			beginBufferUse();
+			try {
+				if(readBuffer.hasRemaining()) { //give back what we've already read
+					final int count = Math.min(destination.remaining(), readBuffer.remaining());
+					final int limit = readBuffer.limit();
+					readBuffer.limit(readBuffer.position() + count);
+					try {
+						destination.put(readBuffer);
+					} finally {
+						readBuffer.limit(limit);
+					}
+					return count;
+				}
+				return ChannelHTTPTransport.this.read(destination);
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return ChannelHTTPTransport.this.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			ChannelHTTPTransport.this.close();
+		}
+	}
+
+	/**
+	 * The writable channel that writes data in the write buffer before writing to the underlying channel.
+	 * @author Garret Wilson
+	 */
+	private class BufferedWritableChannel implements WritableByteChannel {
+
+		@Override
+		public int write(final ByteBuffer source) throws IOException {
+			beginBufferUse();
+			try {
+				if(writeBuffer.position() > 0) { //send what was written earlier first
+					drain();
+				}
+				return channel.write(source);
+			} finally {
+				endBufferUse();
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return ChannelHTTPTransport.this.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			ChannelHTTPTransport.this.close();
+		}
+	}
+
+}
@@ -70,6 +70,22 @@ public void setRequestURI(final String requestURI) {
 		this.requestURI = requestURI; //save the request URI
 	}
 
+	/** The retry policy for this request, or <code>null</code> if the policy of the client should be used. */
+	private HTTPRetryPolicy retryPolicy = null;
+
+	/** @return The retry policy for this request, or <code>null</code> if the policy of the client should be used. */
+	public HTTPRetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Sets the retry policy for this request.
+	 * @param retryPolicy The retry policy for this request, or <code>null</code> if the policy of the client should be used.
+	 */
+	public void setRetryPolicy(final HTTPRetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
 	/**
 	 * Constructs a request with a method, address, and the default HTTP version, 1.1.
 	 * @param method The HTTP method.
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 1996-2008 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The algorithms of HTTP Digest Access Authentication, <a href="https://www.rfc-editor.org/rfc/rfc7616">RFC 7616</a>. Each algorithm has a session variant, in
+ * which H(A1) is calculated once per nonce and cnonce from the hash of the username, realm, and password.
+ * @author Garret Wilson
+ */
+public enum DigestAlgorithm {
+
+	/** MD5, the default algorithm of RFC 2617. */
+	MD5("MD5", "MD5", false),
+
+	/** MD5 with a session key. */
+	MD5_SESS("MD5-sess", "MD5", true),
+
+	/** SHA-256. */
+	SHA_256("SHA-256", "SHA-256", false),
+
+	/** SHA-256 with a session key. */
+	SHA_256_SESS("SHA-256-sess", "SHA-256", true),
+
+	/** SHA-512/256, i.e. SHA-512 truncated to 256 bits. */
+	SHA_512_256("SHA-512-256", "SHA-512/256", false),
+
+	/** SHA-512/256 with a session key. */
+	SHA_512_256_SESS("SHA-512-256-sess", "SHA-512/256", true);
+
+	/** The name of the algorithm in the HTTP <code>algorithm</code> parameter. */
+	private final String string;
+
+	/** The standard name of the message digest algorithm, as used by {@link java.security.MessageDigest#getInstance(String)}. */
+	private final String messageDigestAlgorithm;
+
+	/** @return The standard name of the message digest algorithm, as used by {@link java.security.MessageDigest#getInstance(String)}. */
+	public String getMessageDigestAlgorithm() {
+		return messageDigestAlgorithm;
+	}
+
+	/** Whether H(A1) is a session key calculated from the nonce and cnonce. */
+	private final boolean session;
+
+	/** @return Whether H(A1) is a session key calculated from the nonce and cnonce. */
+	public boolean isSession() {
+		return session;
+	}
+
+	/**
+	 * Constructor.
+	 * @param string The name of the algorithm in the HTTP <code>algorithm</code> parameter.
+	 * @param messageDigestAlgorithm The standard name of the message digest algorithm.
+	 * @param session Whether H(A1) is a session key calculated from the nonce and cnonce.
+	 */
+	private DigestAlgorithm(final String string, final String messageDigestAlgorithm, final boolean session) {
+		this.string = string;
+		this.messageDigestAlgorithm = messageDigestAlgorithm;
+		this.session = session;
+	}
+
+	/** @return The name of the algorithm in the HTTP <code>algorithm</code> parameter. */
+	public String toString() {
+		return string;
+	}
+
+	/**
+	 * Determines the algorithm with the given name in the HTTP <code>algorithm</code> parameter, ignoring case.
+	 * @param string The name of the algorithm.
+	 * @return The algorithm with the given name.
+	 * @throws NoSuchAlgorithmException if there is no digest algorithm with the given name.
+	 * @throws NullPointerException if the string is <code>null</code>.
+	 * @see #toString()
+	 */
+	public static DigestAlgorithm valueOfString(final String string) throws NoSuchAlgorithmException {
+		for(final DigestAlgorithm value : values()) {
+			if(string.equalsIgnoreCase(value.toString())) {
+				return value;
+			}
+		}
+		throw new NoSuchAlgorithmException("Digest algorithm " + string + " not supported.");
+	}
+}
@@ -18,25 +18,27 @@
 
 import java.security.*;
 
-import static com.globalmentor.java.Bytes.*;
-import static com.globalmentor.security.MessageDigests.*;
-
 import static java.util.Objects.*;
 
 /**
  * An encapsulation of a digest authenticate challenge of HTTP Digest Access Authentication, <a href="https://www.ietf.org/rfc/rfc2617.txt">RFC 2617</a>,
  * "HTTP Authentication: Basic and Digest Access Authentication", which obsoletes <a href="https://www.ietf.org/rfc/rfc2069.txt">RFC 2069</a>,
- * "An Extension to HTTP : Digest Access Authentication".
+ * "An Extension to HTTP : Digest Access Authentication", along with the additional algorithms of <a href="https://www.rfc-editor.org/rfc/rfc7616">RFC 7616</a>.
  * @author Garret Wilson
  */
 public class DigestAuthenticateChallenge extends AbstractAuthenticateChallenge {
 
-	/** The object used to create message digests. */
-	private final MessageDigest messageDigest;
+	/** The digest algorithm. */
+	private final DigestAlgorithm digestAlgorithm;
+
+	/** @return The digest algorithm. */
+	public DigestAlgorithm getDigestAlgorithm() {
+		return digestAlgorithm;
+	}
 
-	/** @return The object used to create message digests. */
-	protected MessageDigest getMessageDigest() {
-		return messageDigest;
+	/** @return The name of the digest algorithm as used in the HTTP <code>algorithm</code> parameter. */
+	public String getAlgorithm() {
+		return digestAlgorithm.toString();
 	}
 
 	/** The un-hashed server-specific data unique for each challenge. */
@@ -49,7 +51,11 @@ public String getNonce() {
 
 	/** @return The hashed nonce value. */
 	public String getNonceDigest() {
-		return toHexString(digest(getMessageDigest(), getNonce())); //calculate the nonce digest
+		try {
+			return DigestEngine.DEFAULT.digest(getDigestAlgorithm(), getNonce()); //calculate the nonce digest
+		} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
+			throw new AssertionError(noSuchAlgorithmException); //the algorithm was checked when the challenge was created
+		}
 	}
 
 	/** The opaque challenge data, or <code>null</code> for no opaque data. */
@@ -124,7 +130,7 @@ public DigestAuthenticateChallenge(final String realm, final String nonce, final
 	 * @throws NullPointerException if the realm or the nonce is <code>null</code>.
 	 */
 	public DigestAuthenticateChallenge(final String realm, final String nonce, final String opaque) throws NoSuchAlgorithmException {
-		this(realm, nonce, opaque, MD5.getName()); //construct the challenge with the MD5 algorithm
+		this(realm, nonce, opaque, DigestAlgorithm.MD5.toString()); //construct the challenge with the MD5 algorithm
 	}
 
 	/**
@@ -137,7 +143,7 @@ public DigestAuthenticateChallenge(final String realm, final String nonce, final
 	 * @throws NullPointerException if the realm or the nonce is <code>null</code>.
 	 */
 	public DigestAuthenticateChallenge(final String realm, final String nonce, final String opaque, final boolean stale) throws NoSuchAlgorithmException {
-		this(realm, nonce, opaque, stale, MD5.getName()); //construct the challenge with the MD5 algorithm
+		this(realm, nonce, opaque, stale, DigestAlgorithm.MD5.toString()); //construct the challenge with the MD5 algorithm
 	}
 
 	/**
@@ -145,9 +151,9 @@ public DigestAuthenticateChallenge(final String realm, final String nonce, final
 	 * @param realm The realm for which authentication is requested.
 	 * @param nonce The un-hashed server-specific data unique for each challenge.
 	 * @param opaque The opaque challenge data, or <code>null</code> for no opaque data.
-	 * @param algorithm The standard name of the digest algorithm.
+	 * @param algorithm The name of the digest algorithm as used in the HTTP <code>algorithm</code> parameter.
 	 * @throws NoSuchAlgorithmException if the given algorithm is not recognized.
-	 * @throws NullPointerException if the realm or the nonce is <code>null</code>.
+	 * @throws NullPointerException if the realm, the nonce, or the algorithm is <code>null</code>.
 	 */
 	public DigestAuthenticateChallenge(final String realm, final String nonce, final String opaque, final String algorithm) throws NoSuchAlgorithmException {
 		this(realm, nonce, opaque, false, algorithm); //construct a non-stale challenge
@@ -159,9 +165,9 @@ public DigestAuthenticateChallenge(final String realm, final String nonce, final
 	 * @param nonce The un-hashed server-specific data unique for each challenge.
 	 * @param opaque The opaque challenge data, or <code>null</code> for no opaque data.
 	 * @param stale Whether the previous request from the client was rejected because the nonce value was stale.
-	 * @param algorithm The standard name of the digest algorithm.
+	 * @param algorithm The name of the digest algorithm as used in the HTTP <code>algorithm</code> parameter.
 	 * @throws NoSuchAlgorithmException if the given algorithm is not recognized.
-	 * @throws NullPointerException if the realm or the nonce is <code>null</code>.
+	 * @throws NullPointerException if the realm, the nonce, or the algorithm is <code>null</code>.
 	 */
 	public DigestAuthenticateChallenge(final String realm, final String nonce, final String opaque, final boolean stale, final String algorithm)
 			throws NoSuchAlgorithmException {
@@ -169,7 +175,9 @@ public DigestAuthenticateChallenge(final String realm, final String nonce, final
 		this.nonce = requireNonNull(nonce, "Nonce must be provided");
 		this.opaque = opaque;
 		this.stale = stale;
-		messageDigest = MessageDigest.getInstance(algorithm); //construct the message digest
+		final DigestAlgorithm digestAlgorithm = DigestAlgorithm.valueOfString(requireNonNull(algorithm, "Algorithm must be provided."));
+		DigestEngine.DEFAULT.checkAlgorithm(digestAlgorithm); //make sure the algorithm is supported without creating a message digest for each challenge
+		this.digestAlgorithm = digestAlgorithm;
 	}
 
 }
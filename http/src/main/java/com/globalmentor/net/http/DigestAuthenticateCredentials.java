@@ -16,30 +16,36 @@
 
 package com.globalmentor.net.http;
 
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
-import static com.globalmentor.java.Bytes.*;
-import static com.globalmentor.java.Longs.*;
 import static com.globalmentor.net.http.DigestAuthentication.*;
-import static com.globalmentor.security.MessageDigests.*;
+import static java.nio.charset.StandardCharsets.*;
 
 import static java.util.Objects.*;
 
 /**
  * An encapsulation of digest authenticate credentials of HTTP Digest Access Authentication, <a href="https://www.ietf.org/rfc/rfc2617.txt">RFC 2617</a>,
  * "HTTP Authentication: Basic and Digest Access Authentication", which obsoletes <a href="https://www.ietf.org/rfc/rfc2069.txt">RFC 2069</a>,
- * "An Extension to HTTP : Digest Access Authentication".
+ * "An Extension to HTTP : Digest Access Authentication", along with the additional algorithms of <a href="https://www.rfc-editor.org/rfc/rfc7616">RFC 7616</a>.
+ * <p>
+ * Request digests are calculated and validated using the {@link DigestEngine#DEFAULT default digest engine}, which pools message digests and caches the hash
+ * of the username, realm, and password.
+ * </p>
  * @author Garret Wilson
  */
 public class DigestAuthenticateCredentials extends AbstractHTTPAuthentication implements AuthenticateCredentials {
 
-	/** The object used to create message digests. */
-	private final MessageDigest messageDigest;
+	/** The digest algorithm. */
+	private final DigestAlgorithm digestAlgorithm;
 
-	/** @return The object used to create message digests. */
-	protected MessageDigest getMessageDigest() {
-		return messageDigest;
+	/** @return The digest algorithm. */
+	public DigestAlgorithm getDigestAlgorithm() {
+		return digestAlgorithm;
+	}
+
+	/** @return The name of the digest algorithm as used in the HTTP <code>algorithm</code> parameter. */
+	public String getAlgorithm() {
+		return digestAlgorithm.toString();
 	}
 
 	/** The username. */
@@ -126,7 +132,9 @@ public String getNonceCountString() {
 	 * @return The nonce count string in the form <code><var>XXXXXXXX</var></code>.
 	 */
 	protected static String getNonceCountString(final long nonceCount) {
-		return toHexString(nonceCount, NONCE_COUNT_LENGTH); //return a string representation of the nonce count			
+		final byte[] hex = new byte[NONCE_COUNT_LENGTH];
+		DigestEngine.writeHex(nonceCount, hex, NONCE_COUNT_LENGTH); //use the same lowercase digits as the request digest
+		return new String(hex, US_ASCII);
 	}
 
 	/** @return The ID of the principal for which the credentials purport to provide authentication. */
@@ -135,7 +143,7 @@ public String getPrincipalID() {
 	}
 
 	/**
-	 * Constructs digest authentication credentials from request information. This implementation only supports the MD5 algorithm.
+	 * Constructs digest authentication credentials from request information.
 	 * @param username The username of the principal submitting the credentials
 	 * @param realm The realm for which authentication is requested.
 	 * @param nonce The hashed server-specific data unique for each challenge.
@@ -146,9 +154,10 @@ public String getPrincipalID() {
 	 * @param qop The quality of protection, or <code>null</code> if this data is not available or not applicable.
 	 * @param nonceCount The count of the number of requests (including the current request) that the client has sent with the nonce value in this request, or -1
 	 *          if not provided.
-	 * @param algorithm The standard name of the digest algorithm.
+	 * @param algorithm The name of the digest algorithm as used in the HTTP <code>algorithm</code> parameter.
 	 * @throws NoSuchAlgorithmException if the given algorithm is not recognized.
-	 * @throws IllegalArgumentException if a quality of protection is provided and either cnonce or nonce-count is not provided.
+	 * @throws IllegalArgumentException if a quality of protection is provided and either cnonce or nonce-count is not provided, or if a session variant of an
+	 *           algorithm is given without a cnonce.
 	 * @throws NullPointerException if the realm, nonoce, username, digest URI, or response is <code>null</code>.
 	 */
 	public DigestAuthenticateCredentials(final String username, final String realm, final String nonce, final String digestURI, final String response,
@@ -157,8 +166,7 @@ public DigestAuthenticateCredentials(final String username, final String realm,
 	}
 
 	/**
-	 * Constructs digest authentication credentials from user information. The correct response will be calculated. This implementation only supports the MD5
-	 * algorithm.
+	 * Constructs digest authentication credentials from user information. The correct response will be calculated.
 	 * @param method The case-sensitive HTTP method used for the corresponding request.
 	 * @param username The username of the principal submitting the credentials
 	 * @param realm The realm for which authentication is requested.
@@ -170,9 +178,10 @@ public DigestAuthenticateCredentials(final String username, final String realm,
 	 * @param qop The quality of protection, or <code>null</code> if this data is not available or not applicable.
 	 * @param nonceCount The count of the number of requests (including the current request) that the client has sent with the nonce value in this request, or -1
 	 *          if not provided.
-	 * @param algorithm The standard name of the digest algorithm.
+	 * @param algorithm The name of the digest algorithm as used in the HTTP <code>algorithm</code> parameter.
 	 * @throws NoSuchAlgorithmException if the given algorithm is not recognized.
-	 * @throws IllegalArgumentException if a quality of protection is provided and either cnonce or nonce-count is not provided.
+	 * @throws IllegalArgumentException if a quality of protection is provided and either cnonce or nonce-count is not provided, or if a session variant of an
+	 *           algorithm is given without a cnonce.
 	 * @throws NullPointerException if the method, realm, nonoce, username, or digest URI is <code>null</code>.
 	 */
 	public DigestAuthenticateCredentials(final String method, final String username, final String realm, final char[] password, final String nonce,
@@ -182,7 +191,7 @@ public DigestAuthenticateCredentials(final String method, final String username,
 	}
 
 	/**
-	 * Full credential constructor. This implementation only supports the MD5 algorithm.
+	 * Full credential constructor.
 	 * @param method The case-sensitive HTTP method used for the corresponding request, or <code>null</code> if a response is provided.
 	 * @param username The username of the principal submitting the credentials
 	 * @param realm The realm for which authentication is requested.
@@ -195,9 +204,10 @@ public DigestAuthenticateCredentials(final String method, final String username,
 	 * @param qop The quality of protection, or <code>null</code> if this data is not available or not applicable.
 	 * @param nonceCount The count of the number of requests (including the current request) that the client has sent with the nonce value in this request, or -1
 	 *          if not provided.
-	 * @param algorithm The standard name of the digest algorithm.
+	 * @param algorithm The name of the digest algorithm as used in the HTTP <code>algorithm</code> parameter.
 	 * @throws NoSuchAlgorithmException if the given algorithm is not recognized.
-	 * @throws IllegalArgumentException if a quality of protection is provided and either cnonce or nonce-count is not provided.
+	 * @throws IllegalArgumentException if a quality of protection is provided and either cnonce or nonce-count is not provided, or if a session variant of an
+	 *           algorithm is given without a cnonce.
 	 * @throws NullPointerException if the realm, nonoce, username, digest URI, or response is <code>null</code>, and cannot be calculated by the given
 	 *           information.
 	 */
@@ -217,8 +227,9 @@ protected DigestAuthenticateCredentials(final String method, final String userna
 		if(digestURI == null) { //if no digest URI was given
 			throw new NullPointerException("Digest URI must be provided.");
 		}
-		if(!MD5.getName().equals(algorithm)) { //currently, we only support MD5
-			throw new NoSuchAlgorithmException("Algorithm " + algorithm + " not supported.");
+		final DigestAlgorithm digestAlgorithm = DigestAlgorithm.valueOfString(requireNonNull(algorithm, "Algorithm must be provided."));
+		if(digestAlgorithm.isSession() && cnonce == null) { //the session key is calculated from the cnonce
+			throw new IllegalArgumentException("Algorithm " + digestAlgorithm + " requires a cnonce.");
 		}
 		this.username = username;
 		this.nonce = nonce;
@@ -227,7 +238,8 @@ protected DigestAuthenticateCredentials(final String method, final String userna
 		this.opaque = opaque;
 		this.qop = qop;
 		this.nonceCount = nonceCount;
-		messageDigest = MessageDigest.getInstance(algorithm); //construct the message digest
+		DigestEngine.DEFAULT.checkAlgorithm(digestAlgorithm); //make sure the algorithm is supported without creating a message digest for each credentials
+		this.digestAlgorithm = digestAlgorithm;
 		if(response != null) { //if a response was given
 			this.response = response; //use the given response
 		} else if(method != null && password != null) { //if we have a method and password
@@ -239,15 +251,24 @@ protected DigestAuthenticateCredentials(final String method, final String userna
 
 	/**
 	 * Determines if these credentials are valid for the given request method and user password. A request digest is generated from the provided information and
-	 * compared with the response of the credentials.
+	 * compared with the response of the credentials. Once the hash of the username, realm, and password has been cached for the password array, validation
+	 * allocates no memory.
 	 * @param method The case-sensitive HTTP method used for the corresponding request.
 	 * @param password The user password.
 	 * @return <code>true</code> if these credentials are valid for the given method and password.
 	 * @see #getResponse()
-	 * @see #getRequestDigest(String, char[])
+	 * @see DigestEngine#isValid(DigestAlgorithm, String, String, String, char[], String, String, long, String, QOP, String)
 	 */
 	public boolean isValid(final String method, final char[] password) {
-		return getRequestDigest(method, password).equals(getResponse()); //see if what we calculate matches what we already have
+		if(getQOP() == QOP.AUTH_INT) { //TODO complete for auth-int
+			return false;
+		}
+		try {
+			return DigestEngine.DEFAULT.isValid(getDigestAlgorithm(), method, getUsername(), getRealm(), password, getNonce(), getURI(), getNonceCount(), getCNonce(),
+					getQOP(), getResponse());
+		} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
+			throw new AssertionError(noSuchAlgorithmException); //the algorithm was checked when the credentials were created
+		}
 	}
 
 	/**
@@ -255,47 +276,14 @@ public boolean isValid(final String method, final char[] password) {
 	 * @param method The case-sensitive HTTP method used for the corresponding request.
 	 * @param password The user password.
 	 * @return The request digest calculated from the values of the credentials and the given method and password.
+	 * @throws IllegalArgumentException if the quality of protection is {@link QOP#AUTH_INT}, which is not supported.
 	 */
 	protected String getRequestDigest(final String method, final char[] password) {
-		final MessageDigest messageDigest = getMessageDigest(); //get the message digest
 		try {
-			assert MD5.getName().equals(getMessageDigest().getAlgorithm()) : "Only the MD5 algorithm is supported."; //TODO complete for MD5-sess
-			//H(A1)
-			messageDigest.reset(); //reset the message digest for calculating H(A1)
-			update(messageDigest, getUsername()); //username
-			update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-			update(messageDigest, getRealm()); //realm
-			update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-			update(messageDigest, password); //password
-			final String hashA1 = toHexString(messageDigest.digest()); //calculate H(A1)
-			final QOP qop = getQOP(); //get the quality of protection
-			assert qop != QOP.AUTH_INT : "Quality of Protection " + getQOP() + " not supported."; //TODO complete for auth-int
-			//H(A2)
-			messageDigest.reset(); //reset the message digest for calculating H(A2)
-			update(messageDigest, method); //method
-			update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-			update(messageDigest, getURI()); //digest-uri
-			final String hashA2 = toHexString(messageDigest.digest()); //calculate H(A2)
-			//request-digest
-			messageDigest.reset(); //reset the message digest for calculating request-digest
-			update(messageDigest, hashA1); //H(A1)
-			update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-			update(messageDigest, getNonce()); //nonce
-			if(qop == QOP.AUTH || qop == QOP.AUTH_INT) { //if we get a quality of protection we recognize
-				update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-				update(messageDigest, getNonceCountString()); //nc-value
-				update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-				update(messageDigest, getCNonce()); //cnonce-value
-				update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-				update(messageDigest, qop.toString()); //qop-value
-			} else if(qop != null) { //if an unrecognized quality of protection is present (this is not possible unless the QOP enum is enlarged)
-				throw new AssertionError("Unknown QOP.");
-			}
-			update(messageDigest, DIGEST_DELIMITER_CHARS); //:
-			update(messageDigest, hashA2); //H(A2)
-			return toHexString(messageDigest.digest()); //calculate request-digest			
-		} finally {
-			messageDigest.reset(); //always reset the message digest
+			return DigestEngine.DEFAULT.getResponse(getDigestAlgorithm(), method, getUsername(), getRealm(), password, getNonce(), getURI(), getNonceCount(), getCNonce(),
+					getQOP());
+		} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
+			throw new AssertionError(noSuchAlgorithmException); //the algorithm was checked when the credentials were created
 		}
 	}
 
@@ -0,0 +1,643 @@
+/*
+ * Copyright © 1996-2008 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.lang.ref.WeakReference;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static com.globalmentor.java.Conditions.*;
+import static com.globalmentor.net.http.DigestAuthentication.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.*;
+
+/**
+ * Computes and validates the request digests of HTTP Digest Access Authentication, <a href="https://www.ietf.org/rfc/rfc2617.txt">RFC 2617</a> and
+ * <a href="https://www.rfc-editor.org/rfc/rfc7616">RFC 7616</a>, without allocating memory in steady state.
+ * <p>
+ * Message digests are borrowed from a small shared pool rather than created for each computation, and strings are encoded and intermediate hashes are
+ * hex-encoded into reusable pooled buffers rather than into new strings. The hash of the username, realm, and password, H(A1), is cached for each
+ * username and realm so that it is not recalculated for every request; only the hash is kept, never the password. For the session variants of the
+ * algorithms, the session key calculated from that hash is likewise cached for each nonce and cnonce.
+ * </p>
+ * <p>
+ * A cached H(A1) is only used when the same password array from which it was calculated is presented again, which is the case for a server validating
+ * credentials against passwords it keeps in memory. The array is only referenced weakly, and never examined once the hash has been calculated. A caller
+ * changing a password by modifying its array in place must therefore {@link #forget(String, String) forget} the cached hash.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ */
+public class DigestEngine {
+
+	/**
+	 * The maximum number of idle workspaces kept for reuse; enough for the threads likely to be computing digests at the same time.
+	 * Initialized before {@link #DEFAULT}, which depends on it.
+	 */
+	private static final int MAX_POOLED_WORKSPACE_COUNT = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+	/** The shared digest engine used by default. */
+	public static final DigestEngine DEFAULT = new DigestEngine();
+
+	/** The default maximum number of hashes of username, realm, and password to cache, and separately of session keys to cache. */
+	public static final int DEFAULT_MAX_CACHED_HASH_COUNT = 1024;
+
+	/** The largest digest supported without allocation, in bytes; enough for SHA-512. */
+	private static final int MAX_DIGEST_LENGTH = 64;
+
+	/** The lowercase hexadecimal digits, as required by RFC 2617. */
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(US_ASCII);
+
+	/** The maximum number of hashes of username, realm, and password to cache, and separately of session keys to cache. */
+	private final int maxCachedHashCount;
+
+	/** @return The maximum number of hashes of username, realm, and password to cache, and separately of session keys to cache. */
+	public int getMaxCachedHashCount() {
+		return maxCachedHashCount;
+	}
+
+	/** The cached hex-encoded hashes of username, realm, and password, by algorithm, username, and realm. */
+	private final ConcurrentMap<HashKey, CachedHash> cachedPasswordHashes = new ConcurrentHashMap<HashKey, CachedHash>();
+
+	/**
+	 * The cached hex-encoded session keys, by algorithm, username, realm, nonce, and cnonce. Session keys are kept apart from the hashes of passwords, so that
+	 * the many short-lived session keys can't crowd out the hashes of passwords in use.
+	 */
+	private final ConcurrentMap<HashKey, CachedHash> cachedSessionKeys = new ConcurrentHashMap<HashKey, CachedHash>();
+
+	/**
+	 * The slots of idle workspaces of reusable message digests and buffers, each of which is <code>null</code> if empty. Unlike a queue, the slots can be
+	 * taken and filled without allocating.
+	 */
+	private final AtomicReferenceArray<Workspace> workspaces = new AtomicReferenceArray<Workspace>(MAX_POOLED_WORKSPACE_COUNT);
+
+	/** Default constructor, caching up to {@value #DEFAULT_MAX_CACHED_HASH_COUNT} hashes. */
+	public DigestEngine() {
+		this(DEFAULT_MAX_CACHED_HASH_COUNT);
+	}
+
+	/**
+	 * Maximum cached hash count constructor.
+	 * @param maxCachedHashCount The maximum number of hashes of username, realm, and password to cache, and separately of session keys to cache, or
+	 *          <code>0</code> if hashes should not be cached.
+	 * @throws IllegalArgumentException if the given count is negative.
+	 */
+	public DigestEngine(final int maxCachedHashCount) {
+		this.maxCachedHashCount = checkArgumentNotNegative(maxCachedHashCount);
+	}
+
+	/**
+	 * Ensures that a digest algorithm is supported, making a message digest for the algorithm available in the pool.
+	 * @param algorithm The digest algorithm.
+	 * @throws NoSuchAlgorithmException if the message digest of the given algorithm is not available.
+	 */
+	public void checkAlgorithm(final DigestAlgorithm algorithm) throws NoSuchAlgorithmException {
+		final Workspace workspace = acquireWorkspace();
+		try {
+			workspace.getMessageDigest(algorithm);
+		} finally {
+			releaseWorkspace(workspace);
+		}
+	}
+
+	/** @return An idle workspace from the pool, or a new workspace if none is idle. */
+	private Workspace acquireWorkspace() {
+		for(int i = 0; i < MAX_POOLED_WORKSPACE_COUNT; ++i) {
+			final Workspace workspace = workspaces.get(i);
+			if(workspace != null && workspaces.compareAndSet(i, workspace, null)) {
+				return workspace;
+			}
+		}
+		return new Workspace();
+	}
+
+	/**
+	 * Returns a workspace to the pool once it is no longer used. If the pool is full, the workspace is discarded.
+	 * @param workspace The workspace to return.
+	 */
+	private void releaseWorkspace(final Workspace workspace) {
+		for(int i = 0; i < MAX_POOLED_WORKSPACE_COUNT; ++i) {
+			if(workspaces.get(i) == null && workspaces.compareAndSet(i, null, workspace)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Calculates the hex-encoded digest of a value, such as a nonce.
+	 * @param algorithm The digest algorithm.
+	 * @param value The value to digest.
+	 * @return The lowercase hex-encoded digest of the value.
+	 * @throws NoSuchAlgorithmException if the message digest of the given algorithm is not available.
+	 */
+	public String digest(final DigestAlgorithm algorithm, final CharSequence value) throws NoSuchAlgorithmException {
+		final Workspace workspace = acquireWorkspace();
+		try {
+			final MessageDigest messageDigest = workspace.getMessageDigest(algorithm);
+			update(workspace, messageDigest, value);
+			final int length = digestHex(workspace, messageDigest, workspace.response);
+			return new String(workspace.response, 0, length, US_ASCII);
+		} finally {
+			releaseWorkspace(workspace);
+		}
+	}
+
+	/**
+	 * Calculates a request digest. The returned string is the only object allocated once the hash of the username, realm, and password is cached.
+	 * @param algorithm The digest algorithm.
+	 * @param method The case-sensitive HTTP method of the request.
+	 * @param username The username.
+	 * @param realm The realm for which authentication is requested.
+	 * @param password The user password.
+	 * @param nonce The nonce of the challenge.
+	 * @param digestURI The digest URI.
+	 * @param nonceCount The number of requests the client has sent with the nonce, including this one; ignored if there is no quality of protection.
+	 * @param cnonce The cnonce value, or <code>null</code> if there is no quality of protection and the algorithm is not a session variant.
+	 * @param qop The quality of protection, or <code>null</code> for none.
+	 * @return The lowercase hex-encoded request digest.
+	 * @throws NoSuchAlgorithmException if the message digest of the given algorithm is not available.
+	 * @throws IllegalArgumentException if the quality of protection is {@link QOP#AUTH_INT}, which is not supported, or if the algorithm is a session variant
+	 *           and there is no cnonce.
+	 */
+	public String getResponse(final DigestAlgorithm algorithm, final String method, final String username, final String realm, final char[] password,
+			final String nonce, final String digestURI, final long nonceCount, final String cnonce, final QOP qop) throws NoSuchAlgorithmException {
+		final Workspace workspace = acquireWorkspace();
+		try {
+			final int length = calculateResponse(workspace, algorithm, method, username, realm, password, nonce, digestURI, nonceCount, cnonce, qop);
+			return new String(workspace.response, 0, length, US_ASCII);
+		} finally {
+			releaseWorkspace(workspace);
+		}
+	}
+
+	/**
+	 * Determines whether a request digest is valid, comparing it in constant time with the request digest calculated from the given values. Nothing is
+	 * allocated once the hash of the username, realm, and password is cached.
+	 * @param algorithm The digest algorithm.
+	 * @param method The case-sensitive HTTP method of the request.
+	 * @param username The username.
+	 * @param realm The realm for which authentication is requested.
+	 * @param password The user password.
+	 * @param nonce The nonce of the challenge.
+	 * @param digestURI The digest URI.
+	 * @param nonceCount The number of requests the client has sent with the nonce, including this one; ignored if there is no quality of protection.
+	 * @param cnonce The cnonce value, or <code>null</code> if there is no quality of protection and the algorithm is not a session variant.
+	 * @param qop The quality of protection, or <code>null</code> for none.
+	 * @param response The request digest to validate.
+	 * @return <code>true</code> if the request digest matches the one calculated from the given values.
+	 * @throws NoSuchAlgorithmException if the message digest of the given algorithm is not available.
+	 * @throws IllegalArgumentException if the quality of protection is {@link QOP#AUTH_INT}, which is not supported, or if the algorithm is a session variant
+	 *           and there is no cnonce.
+	 */
+	public boolean isValid(final DigestAlgorithm algorithm, final String method, final String username, final String realm, final char[] password,
+			final String nonce, final String digestURI, final long nonceCount, final String cnonce, final QOP qop, final String response)
+			throws NoSuchAlgorithmException {
+		final Workspace workspace = acquireWorkspace();
+		try {
+			final int length = calculateResponse(workspace, algorithm, method, username, realm, password, nonce, digestURI, nonceCount, cnonce, qop);
+			if(response.length() != length) {
+				return false;
+			}
+			final byte[] expected = workspace.response;
+			int difference = 0;
+			for(int i = 0; i < length; ++i) { //don't stop at the first difference, so as not to reveal how much of the response was correct
+				difference |= response.charAt(i) ^ expected[i];
+			}
+			return difference == 0;
+		} finally {
+			releaseWorkspace(workspace);
+		}
+	}
+
+	/**
+	 * Removes any cached hashes of the password of a user in a realm, for all algorithms and including session keys, e.g. because the password has changed.
+	 * @param username The username.
+	 * @param realm The realm.
+	 */
+	public void forget(final String username, final String realm) {
+		cachedPasswordHashes.keySet().removeIf(key -> key.username.equals(username) && key.realm.equals(realm));
+		cachedSessionKeys.keySet().removeIf(key -> key.username.equals(username) && key.realm.equals(realm));
+	}
+
+	/**
+	 * Calculates a request digest into the response buffer of a workspace.
+	 * @param workspace The workspace in use.
+	 * @param algorithm The digest algorithm.
+	 * @param method The case-sensitive HTTP method of the request.
+	 * @param username The username.
+	 * @param realm The realm for which authentication is requested.
+	 * @param password The user password.
+	 * @param nonce The nonce of the challenge.
+	 * @param digestURI The digest URI.
+	 * @param nonceCount The number of requests the client has sent with the nonce, including this one.
+	 * @param cnonce The cnonce value, or <code>null</code> if there is no quality of protection and the algorithm is not a session variant.
+	 * @param qop The quality of protection, or <code>null</code> for none.
+	 * @return The number of hex digits of the request digest in the response buffer.
+	 * @throws NoSuchAlgorithmException if the message digest of the given algorithm is not available.
+	 * @throws IllegalArgumentException if the quality of protection is {@link QOP#AUTH_INT}, which is not supported, or if the algorithm is a session variant
+	 *           and there is no cnonce.
+	 */
+	private int calculateResponse(final Workspace workspace, final DigestAlgorithm algorithm, final String method, final String username, final String realm,
+			final char[] password, final String nonce, final String digestURI, final long nonceCount, final String cnonce, final QOP qop)
+			throws NoSuchAlgorithmException {
+		checkArgument(qop != QOP.AUTH_INT, "Quality of protection %s not supported.", qop);
+		final MessageDigest messageDigest = workspace.getMessageDigest(algorithm);
+		final byte[] hashA1 = getHashA1(workspace, messageDigest, algorithm, username, realm, password, nonce, cnonce);
+		//H(A2)
+		update(workspace, messageDigest, method);
+		messageDigest.update((byte)DIGEST_DELIMITER);
+		update(workspace, messageDigest, digestURI);
+		final int hashA2Length = digestHex(workspace, messageDigest, workspace.hashA2);
+		//request-digest
+		messageDigest.update(hashA1);
+		messageDigest.update((byte)DIGEST_DELIMITER);
+		update(workspace, messageDigest, nonce);
+		if(qop != null) {
+			messageDigest.update((byte)DIGEST_DELIMITER);
+			writeHex(nonceCount, workspace.nonceCount, NONCE_COUNT_LENGTH);
+			messageDigest.update(workspace.nonceCount);
+			messageDigest.update((byte)DIGEST_DELIMITER);
+			update(workspace, messageDigest, cnonce);
+			messageDigest.update((byte)DIGEST_DELIMITER);
+			update(workspace, messageDigest, qop.toString());
+		}
+		messageDigest.update((byte)DIGEST_DELIMITER);
+		messageDigest.update(workspace.hashA2, 0, hashA2Length);
+		return digestHex(workspace, messageDigest, workspace.response);
+	}
+
+	/**
+	 * Returns the hex-encoded H(A1) of RFC 2617. This is the hash of the username, realm, and password or, for a session variant of the algorithm, the session
+	 * key calculated from that hash, the nonce, and the cnonce. Cached hashes are used if they were calculated from the same password array.
+	 * @param workspace The workspace in use.
+	 * @param messageDigest The message digest for the algorithm, which will be left reset.
+	 * @param algorithm The digest algorithm.
+	 * @param username The username.
+	 * @param realm The realm for which authentication is requested.
+	 * @param password The user password.
+	 * @param nonce The nonce of the challenge.
+	 * @param cnonce The cnonce value, or <code>null</code> if there is no quality of protection.
+	 * @return The hex-encoded H(A1), which must not be modified.
+	 * @throws IllegalArgumentException if the algorithm is a session variant and there is no cnonce.
+	 */
+	private byte[] getHashA1(final Workspace workspace, final MessageDigest messageDigest, final DigestAlgorithm algorithm, final String username,
+			final String realm, final char[] password, final String nonce, final String cnonce) {
+		if(!algorithm.isSession()) {
+			return getPasswordHash(workspace, messageDigest, algorithm, username, realm, password);
+		}
+		checkArgument(cnonce != null, "Digest algorithm %s requires a cnonce.", algorithm);
+		final HashKey lookupKey = workspace.lookupKey.set(algorithm, username, realm, nonce, cnonce); //look up the session key without creating a key
+		final CachedHash cachedHash = cachedSessionKeys.get(lookupKey);
+		if(cachedHash != null && cachedHash.isFor(password)) { //the password isn't hashed again for the rest of the session
+			return cachedHash.getHashHex();
+		}
+		messageDigest.update(getPasswordHash(workspace, messageDigest, algorithm, username, realm, password));
+		messageDigest.update((byte)DIGEST_DELIMITER);
+		update(workspace, messageDigest, nonce);
+		messageDigest.update((byte)DIGEST_DELIMITER);
+		update(workspace, messageDigest, cnonce);
+		final int length = digestHex(workspace, messageDigest, workspace.hashA1);
+		return cacheHash(cachedSessionKeys, new HashKey().set(algorithm, username, realm, nonce, cnonce), cachedHash, Arrays.copyOf(workspace.hashA1, length),
+				password);
+	}
+
+	/**
+	 * Returns the hex-encoded hash of the username, realm, and password, using the cached hash if it was calculated from the same password array.
+	 * @param workspace The workspace in use.
+	 * @param messageDigest The message digest for the algorithm, which will be left reset.
+	 * @param algorithm The digest algorithm.
+	 * @param username The username.
+	 * @param realm The realm for which authentication is requested.
+	 * @param password The user password.
+	 * @return The hex-encoded hash, which must not be modified.
+	 */
+	private byte[] getPasswordHash(final Workspace workspace, final MessageDigest messageDigest, final DigestAlgorithm algorithm, final String username,
+			final String realm, final char[] password) {
+		final HashKey lookupKey = workspace.lookupKey.set(algorithm, username, realm, null, null); //look up the hash without creating a key
+		final CachedHash cachedHash = cachedPasswordHashes.get(lookupKey);
+		if(cachedHash != null && cachedHash.isFor(password)) {
+			return cachedHash.getHashHex();
+		}
+		update(workspace, messageDigest, username);
+		messageDigest.update((byte)DIGEST_DELIMITER);
+		update(workspace, messageDigest, realm);
+		messageDigest.update((byte)DIGEST_DELIMITER);
+		update(workspace, messageDigest, password);
+		final int length = digestHex(workspace, messageDigest, workspace.hashA1);
+		return cacheHash(cachedPasswordHashes, new HashKey().set(algorithm, username, realm, null, null), cachedHash, Arrays.copyOf(workspace.hashA1, length),
+				password);
+	}
+
+	/**
+	 * Caches a newly calculated hash if caching is enabled. If the cache is full, hashes of passwords no longer in use are removed; if there are none, a single
+	 * hash is removed to make room.
+	 * @param cache The cache in which to store the hash.
+	 * @param key The key of the hash, which will not be modified afterwards.
+	 * @param cachedHash The hash previously cached with the key, or <code>null</code> if there was none.
+	 * @param hashHex The hex-encoded hash.
+	 * @param password The password array from which the hash was calculated.
+	 * @return The given hex-encoded hash.
+	 */
+	private byte[] cacheHash(final ConcurrentMap<HashKey, CachedHash> cache, final HashKey key, final CachedHash cachedHash, final byte[] hashHex,
+			final char[] password) {
+		if(maxCachedHashCount > 0) {
+			if(cachedHash == null && cache.size() >= maxCachedHashCount) {
+				if(!cache.values().removeIf(CachedHash::isCleared)) { //if every password is still in use, evict one hash, which will be recalculated as needed
+					final Iterator<HashKey> keyIterator = cache.keySet().iterator();
+					if(keyIterator.hasNext()) {
+						keyIterator.next();
+						keyIterator.remove();
+					}
+				}
+			}
+			cache.put(key, new CachedHash(hashHex, password));
+		}
+		return hashHex;
+	}
+
+	/**
+	 * Finishes a digest, hex-encoding it into a buffer. The message digest is left reset.
+	 * @param workspace The workspace in use.
+	 * @param messageDigest The message digest to finish.
+	 * @param hex The buffer to receive the hex digits, which must have room for twice the {@value #MAX_DIGEST_LENGTH} bytes.
+	 * @return The number of hex digits written.
+	 * @throws IllegalStateException if the digest is longer than {@value #MAX_DIGEST_LENGTH} bytes.
+	 */
+	private static int digestHex(final Workspace workspace, final MessageDigest messageDigest, final byte[] hex) {
+		final byte[] digest = workspace.digest;
+		final int length;
+		try {
+			length = messageDigest.digest(digest, 0, digest.length);
+		} catch(final DigestException digestException) {
+			throw new IllegalStateException("Digest of algorithm " + messageDigest.getAlgorithm() + " too long.", digestException);
+		}
+		for(int i = 0; i < length; ++i) {
+			hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0x0f];
+			hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0f];
+		}
+		return length * 2;
+	}
+
+	/**
+	 * Writes the lowercase hex representation of a value, padded with zeros on the left.
+	 * @param value The value to write.
+	 * @param hex The buffer to receive the hex digits.
+	 * @param length The number of hex digits to write.
+	 */
+	static void writeHex(long value, final byte[] hex, final int length) {
+		for(int i = length - 1; i >= 0; --i) {
+			hex[i] = HEX_DIGITS[(int)(value & 0x0f)];
+			value >>>= 4;
+		}
+	}
+
+	/**
+	 * Updates a message digest with the UTF-8 encoding of a sequence of characters, encoding through the buffer of a workspace.
+	 * @param workspace The workspace in use.
+	 * @param messageDigest The message digest to update.
+	 * @param characters The characters to digest.
+	 */
+	private static void update(final Workspace workspace, final MessageDigest messageDigest, final CharSequence characters) {
+		final byte[] buffer = workspace.encodeBuffer;
+		final int length = characters.length();
+		int count = 0;
+		for(int i = 0; i < length; ++i) {
+			if(count > buffer.length - 4) { //make sure there is room for the longest UTF-8 sequence
+				messageDigest.update(buffer, 0, count);
+				count = 0;
+			}
+			final char c = characters.charAt(i);
+			if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(characters.charAt(i + 1))) {
+				count = encode(Character.toCodePoint(c, characters.charAt(++i)), buffer, count);
+			} else {
+				count = encode(c, buffer, count);
+			}
+		}
+		messageDigest.update(buffer, 0, count);
+	}
+
+	/**
+	 * Updates a message digest with the UTF-8 encoding of characters, encoding through the buffer of a workspace, which is cleared afterwards.
+	 * @param workspace The workspace in use.
+	 * @param messageDigest The message digest to update.
+	 * @param characters The characters to digest, such as a password.
+	 */
+	private static void update(final Workspace workspace, final MessageDigest messageDigest, final char[] characters) {
+		final byte[] buffer = workspace.encodeBuffer;
+		final int length = characters.length;
+		int count = 0;
+		for(int i = 0; i < length; ++i) {
+			if(count > buffer.length - 4) { //make sure there is room for the longest UTF-8 sequence
+				messageDigest.update(buffer, 0, count);
+				count = 0;
+			}
+			final char c = characters[i];
+			if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(characters[i + 1])) {
+				count = encode(Character.toCodePoint(c, characters[++i]), buffer, count);
+			} else {
+				count = encode(c, buffer, count);
+			}
+		}
+		messageDigest.update(buffer, 0, count);
+		Arrays.fill(buffer, (byte)0); //don't leave the password lying around
+	}
+
+	/**
+	 * Encodes a code point in UTF-8. An unpaired surrogate is encoded as <code>?</code>, as by {@link String#getBytes(java.nio.charset.Charset)}.
+	 * @param codePoint The code point to encode.
+	 * @param buffer The buffer to receive the encoded bytes, which must have room for four bytes.
+	 * @param offset The offset in the buffer at which to write.
+	 * @return The offset after the encoded bytes.
+	 */
+	private static int encode(final int codePoint, final byte[] buffer, int offset) {
+		if(codePoint < 0x80) {
+			buffer[offset++] = (byte)codePoint;
+		} else if(codePoint < 0x800) {
+			buffer[offset++] = (byte)(0xc0 | (codePoint >> 6));
+			buffer[offset++] = (byte)(0x80 | (codePoint & 0x3f));
+		} else if(Character.isSurrogate((char)codePoint) && codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			buffer[offset++] = '?';
+		} else if(codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+			buffer[offset++] = (byte)(0xe0 | (codePoint >> 12));
+			buffer[offset++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+			buffer[offset++] = (byte)(0x80 | (codePoint & 0x3f));
+		} else {
+			buffer[offset++] = (byte)(0xf0 | (codePoint >> 18));
+			buffer[offset++] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+			buffer[offset++] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+			buffer[offset++] = (byte)(0x80 | (codePoint & 0x3f));
+		}
+		return offset;
+	}
+
+	/**
+	 * Reusable message digests and buffers, used by one thread at a time.
+	 * @author Garret Wilson
+	 */
+	private static final class Workspace {
+
+		/** The message digests, by digest algorithm. */
+		private final Map<DigestAlgorithm, MessageDigest> messageDigests = new EnumMap<DigestAlgorithm, MessageDigest>(DigestAlgorithm.class);
+
+		/** The buffer through which characters are encoded before being digested. */
+		final byte[] encodeBuffer = new byte[256];
+
+		/** The buffer receiving each finished digest. */
+		final byte[] digest = new byte[MAX_DIGEST_LENGTH];
+
+		/** The buffer receiving the hex-encoded H(A1) before it is cached. */
+		final byte[] hashA1 = new byte[MAX_DIGEST_LENGTH * 2];
+
+		/** The buffer receiving the hex-encoded H(A2). */
+		final byte[] hashA2 = new byte[MAX_DIGEST_LENGTH * 2];
+
+		/** The buffer receiving the hex-encoded request digest. */
+		final byte[] response = new byte[MAX_DIGEST_LENGTH * 2];
+
+		/** The buffer receiving the hex-encoded nonce count. */
+		final byte[] nonceCount = new byte[NONCE_COUNT_LENGTH];
+
+		/** The key for looking up cached hashes. */
+		final HashKey lookupKey = new HashKey();
+
+		/**
+		 * Returns the message digest of this workspace for an algorithm, creating it if needed.
+		 * @param algorithm The digest algorithm.
+		 * @return The reset message digest for the algorithm.
+		 * @throws NoSuchAlgorithmException if the message digest of the given algorithm is not available.
+		 */
+		MessageDigest getMessageDigest(final DigestAlgorithm algorithm) throws NoSuchAlgorithmException {
+			MessageDigest messageDigest = messageDigests.get(requireNonNull(algorithm, "Algorithm cannot be null."));
+			if(messageDigest == null) {
+				messageDigest = MessageDigest.getInstance(algorithm.getMessageDigestAlgorithm());
+				messageDigests.put(algorithm, messageDigest);
+			} else {
+				messageDigest.reset(); //in case an earlier computation failed midway
+			}
+			return messageDigest;
+		}
+	}
+
+	/**
+	 * The key of a cached hash. The key is mutable so that each workspace can look up hashes using a single instance; keys in the cache are never modified.
+	 * @author Garret Wilson
+	 */
+	private static final class HashKey {
+
+		/** The digest algorithm. */
+		private DigestAlgorithm algorithm;
+
+		/** The username. */
+		private String username;
+
+		/** The realm. */
+		private String realm;
+
+		/** The nonce of a session key, or <code>null</code> for the hash of username, realm, and password. */
+		private String nonce;
+
+		/** The cnonce of a session key, or <code>null</code> for the hash of username, realm, and password. */
+		private String cnonce;
+
+		/** The hash code of the key. */
+		private int hashCode;
+
+		/**
+		 * Sets the values of the key.
+		 * @param algorithm The digest algorithm.
+		 * @param username The username.
+		 * @param realm The realm.
+		 * @param nonce The nonce of a session key, or <code>null</code> for the hash of username, realm, and password.
+		 * @param cnonce The cnonce of a session key, or <code>null</code> for the hash of username, realm, and password.
+		 * @return This key.
+		 */
+		HashKey set(final DigestAlgorithm algorithm, final String username, final String realm, final String nonce, final String cnonce) {
+			this.algorithm = algorithm;
+			this.username = username;
+			this.realm = realm;
+			this.nonce = nonce;
+			this.cnonce = cnonce;
+			hashCode = (((algorithm.hashCode() * 31 + username.hashCode()) * 31 + realm.hashCode()) * 31 + Objects.hashCode(nonce)) * 31 + Objects.hashCode(cnonce);
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object object) {
+			if(this == object) {
+				return true;
+			}
+			if(!(object instanceof HashKey)) {
+				return false;
+			}
+			final HashKey key = (HashKey)object;
+			return hashCode == key.hashCode && algorithm == key.algorithm && username.equals(key.username) && realm.equals(key.realm)
+					&& Objects.equals(nonce, key.nonce) && Objects.equals(cnonce, key.cnonce);
+		}
+	}
+
+	/**
+	 * A hex-encoded hash of username, realm, and password, along with a weak reference to the password array from which it was calculated.
+	 * @author Garret Wilson
+	 */
+	private static final class CachedHash {
+
+		/** The hex-encoded hash. */
+		private final byte[] hashHex;
+
+		/** @return The hex-encoded hash, which must not be modified. */
+		byte[] getHashHex() {
+			return hashHex;
+		}
+
+		/** The password array from which the hash was calculated. */
+		private final WeakReference<char[]> password;
+
+		/**
+		 * Determines whether the hash was calculated from the given password array. The contents of the array are not compared.
+		 * @param password The password array.
+		 * @return <code>true</code> if the hash was calculated from the very same array.
+		 */
+		boolean isFor(final char[] password) {
+			return this.password.get() == password;
+		}
+
+		/** @return <code>true</code> if the password array from which the hash was calculated is no longer in use, so that the hash will never be used again. */
+		boolean isCleared() {
+			return password.get() == null;
+		}
+
+		/**
+		 * Constructor.
+		 * @param hashHex The hex-encoded hash.
+		 * @param password The password array from which the hash was calculated.
+		 */
+		CachedHash(final byte[] hashHex, final char[] password) {
+			this.hashHex = hashHex;
+			this.password = new WeakReference<char[]>(password);
+		}
+	}
+
+}
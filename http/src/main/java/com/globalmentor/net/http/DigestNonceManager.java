@@ -0,0 +1,315 @@
+/*
+ * Copyright © 1996-2008 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.security.*;
+import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.LongSupplier;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * Issues the nonces of digest authenticate challenges for a server, and checks the nonces and nonce counts of the credentials it receives.
+ * <p>
+ * Each issued nonce is kept with the highest nonce count the client has used with it, along with which of the preceding {@value #NONCE_COUNT_WINDOW} counts
+ * have been used, so that a client sending several requests at once may have them arrive out of order, but no count is accepted twice. A request repeating a
+ * nonce count is {@link Status#REPLAYED replayed}. A nonce that was not issued by this manager or that has expired is {@link Status#STALE stale}, and as the
+ * credentials are otherwise valid the client should be sent a new challenge {@link #createChallenge(String, boolean) indicating staleness}, so that it may
+ * retry with the new nonce without asking the user for a password again.
+ * </p>
+ * <p>
+ * Nonces are kept in buckets, one for each interval of the nonce lifetime, so that expiring nonces doesn't require examining each one: when a new interval
+ * begins, the bucket of the oldest interval is replaced, and all its nonces expire at once. A nonce therefore lives for at most the nonce lifetime, and at
+ * least the lifetime less one interval.
+ * </p>
+ * <p>
+ * Checking a nonce acquires no locks, and updating its nonce count is a single atomic operation, so that many threads may check credentials concurrently.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ * @see DigestAuthenticateChallenge
+ * @see DigestAuthenticateCredentials
+ */
+public class DigestNonceManager {
+
+	/** The default number of milliseconds for which an issued nonce may be used. */
+	public static final long DEFAULT_NONCE_LIFETIME = 5 * 60 * 1000;
+
+	/** The default number of intervals into which the nonce lifetime is divided for expiring nonces. */
+	public static final int DEFAULT_BUCKET_COUNT = 4;
+
+	/** The number of nonce counts preceding the highest nonce count of a nonce that may still be used once. */
+	public static final int NONCE_COUNT_WINDOW = 31;
+
+	/** The number of random bytes in each nonce. */
+	private static final int NONCE_RANDOM_LENGTH = 16;
+
+	/**
+	 * The initial state of a nonce: no nonce count has been used, and a nonce count of zero is never allowed.
+	 * @see #useNonceCount(long, long)
+	 */
+	private static final long INITIAL_NONCE_STATE = 1;
+
+	/** The result of checking the nonce of credentials. */
+	public enum Status {
+
+		/** The nonce is current and its nonce count has not been used before. */
+		ACCEPTED,
+
+		/** The nonce was not issued by this manager, or has expired. */
+		STALE,
+
+		/** The nonce count has already been used with the nonce, or is too far below the highest nonce count used. */
+		REPLAYED
+	}
+
+	/** The digest algorithm of the challenges. */
+	private final DigestAlgorithm algorithm;
+
+	/** @return The digest algorithm of the challenges. */
+	public DigestAlgorithm getAlgorithm() {
+		return algorithm;
+	}
+
+	/** The number of nanoseconds in each interval of the nonce lifetime. */
+	private final long bucketNanos;
+
+	/** The buckets of nonces, indexed by interval number modulo the number of buckets. */
+	private final AtomicReferenceArray<Bucket> buckets;
+
+	/** The source of the current {@link System#nanoTime()}, which may be replaced for testing. */
+	private final LongSupplier nanoTimeSource;
+
+	/** The source of nonce randomness. */
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * Default constructor, issuing {@link DigestAlgorithm#MD5} challenges with nonces living for {@value #DEFAULT_NONCE_LIFETIME} milliseconds.
+	 * @throws NoSuchAlgorithmException if the default algorithm is not supported.
+	 */
+	public DigestNonceManager() throws NoSuchAlgorithmException {
+		this(DigestAlgorithm.MD5, DEFAULT_NONCE_LIFETIME);
+	}
+
+	/**
+	 * Algorithm and nonce lifetime constructor, using {@value #DEFAULT_BUCKET_COUNT} buckets.
+	 * @param algorithm The digest algorithm of the challenges.
+	 * @param nonceLifetime The number of milliseconds for which an issued nonce may be used.
+	 * @throws NullPointerException if the given algorithm is <code>null</code>.
+	 * @throws IllegalArgumentException if the given nonce lifetime is not positive.
+	 * @throws NoSuchAlgorithmException if the given algorithm is not supported.
+	 */
+	public DigestNonceManager(final DigestAlgorithm algorithm, final long nonceLifetime) throws NoSuchAlgorithmException {
+		this(algorithm, nonceLifetime, DEFAULT_BUCKET_COUNT);
+	}
+
+	/**
+	 * Full constructor.
+	 * @param algorithm The digest algorithm of the challenges.
+	 * @param nonceLifetime The number of milliseconds for which an issued nonce may be used.
+	 * @param bucketCount The number of intervals into which the nonce lifetime is divided for expiring nonces.
+	 * @throws NullPointerException if the given algorithm is <code>null</code>.
+	 * @throws IllegalArgumentException if the given nonce lifetime or bucket count is not positive.
+	 * @throws NoSuchAlgorithmException if the given algorithm is not supported.
+	 */
+	public DigestNonceManager(final DigestAlgorithm algorithm, final long nonceLifetime, final int bucketCount) throws NoSuchAlgorithmException {
+		this(algorithm, nonceLifetime, bucketCount, System::nanoTime);
+	}
+
+	/**
+	 * Full constructor with time source.
+	 * @param algorithm The digest algorithm of the challenges.
+	 * @param nonceLifetime The number of milliseconds for which an issued nonce may be used.
+	 * @param bucketCount The number of intervals into which the nonce lifetime is divided for expiring nonces.
+	 * @param nanoTimeSource The source of the current {@link System#nanoTime()}.
+	 * @throws NullPointerException if the given algorithm and/or time source is <code>null</code>.
+	 * @throws IllegalArgumentException if the given nonce lifetime or bucket count is not positive.
+	 * @throws NoSuchAlgorithmException if the given algorithm is not supported.
+	 */
+	DigestNonceManager(final DigestAlgorithm algorithm, final long nonceLifetime, final int bucketCount, final LongSupplier nanoTimeSource)
+			throws NoSuchAlgorithmException {
+		this.algorithm = requireNonNull(algorithm, "Algorithm cannot be null.");
+		checkArgumentPositive(nonceLifetime);
+		checkArgumentPositive(bucketCount);
+		DigestEngine.DEFAULT.checkAlgorithm(algorithm);
+		this.bucketNanos = Math.max(MILLISECONDS.toNanos(nonceLifetime) / bucketCount, 1);
+		this.buckets = new AtomicReferenceArray<Bucket>(bucketCount);
+		this.nanoTimeSource = requireNonNull(nanoTimeSource, "Time source cannot be null.");
+	}
+
+	/**
+	 * Issues a new nonce and creates a challenge with it.
+	 * @param realm The realm for which authentication is requested.
+	 * @return A new challenge with a nonce that has not been used.
+	 * @throws NullPointerException if the given realm is <code>null</code>.
+	 */
+	public DigestAuthenticateChallenge createChallenge(final String realm) {
+		return createChallenge(realm, false);
+	}
+
+	/**
+	 * Issues a new nonce and creates a challenge with it.
+	 * @param realm The realm for which authentication is requested.
+	 * @param stale Whether the credentials of the previous request were valid except that their nonce was {@link Status#STALE stale}.
+	 * @return A new challenge with a nonce that has not been used.
+	 * @throws NullPointerException if the given realm is <code>null</code>.
+	 */
+	public DigestAuthenticateChallenge createChallenge(final String realm, final boolean stale) {
+		final byte[] nonceBytes = new byte[NONCE_RANDOM_LENGTH];
+		random.nextBytes(nonceBytes);
+		final DigestAuthenticateChallenge challenge;
+		try {
+			challenge = new DigestAuthenticateChallenge(realm, Base64.getEncoder().encodeToString(nonceBytes), null, stale, algorithm.toString());
+		} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
+			throw new AssertionError(noSuchAlgorithmException); //the algorithm was checked when the manager was created
+		}
+		getCurrentBucket().nonces.put(challenge.getNonceDigest(), new AtomicLong(INITIAL_NONCE_STATE)); //the client will return the nonce as sent
+		return challenge;
+	}
+
+	/**
+	 * Checks the nonce of credentials, recording the use of its nonce count. Credentials without a nonce count, which are only possible without a quality of
+	 * protection, cannot be checked for replay and are accepted as long as the nonce is current.
+	 * <p>
+	 * The nonce should only be checked after the request digest of the credentials has been {@link DigestAuthenticateCredentials#isValid(String, char[])
+	 * validated}; otherwise anyone could use up the nonce counts of a client.
+	 * </p>
+	 * @param credentials The credentials presented by a client.
+	 * @return The status of the nonce of the credentials.
+	 */
+	public Status checkNonce(final DigestAuthenticateCredentials credentials) {
+		final AtomicLong nonceState = findNonceState(credentials.getNonce());
+		if(nonceState == null) {
+			return Status.STALE;
+		}
+		final long nonceCount = credentials.getNonceCount();
+		if(nonceCount < 0) {
+			return Status.ACCEPTED;
+		}
+		long state;
+		long newState;
+		do {
+			state = nonceState.get();
+			newState = useNonceCount(state, nonceCount);
+			if(newState == state) {
+				return Status.REPLAYED;
+			}
+		} while(!nonceState.compareAndSet(state, newState));
+		return Status.ACCEPTED;
+	}
+
+	/**
+	 * Removes all issued nonces, so that all credentials will be {@link Status#STALE stale}.
+	 */
+	public void clear() {
+		for(int i = buckets.length() - 1; i >= 0; --i) {
+			buckets.set(i, null);
+		}
+	}
+
+	/**
+	 * Returns the bucket for nonces issued in the current interval, replacing the bucket of the expired interval that used the same slot.
+	 * @return The bucket of the current interval.
+	 */
+	private Bucket getCurrentBucket() {
+		final long interval = Math.floorDiv(nanoTimeSource.getAsLong(), bucketNanos);
+		final int index = (int)Math.floorMod(interval, (long)buckets.length());
+		while(true) {
+			final Bucket bucket = buckets.get(index);
+			if(bucket != null && bucket.interval >= interval) { //another thread may have started a newer interval in the meantime
+				return bucket;
+			}
+			final Bucket newBucket = new Bucket(interval);
+			if(buckets.compareAndSet(index, bucket, newBucket)) {
+				return newBucket;
+			}
+		}
+	}
+
+	/**
+	 * Finds the state of a current nonce.
+	 * @param nonce The nonce as sent to the client.
+	 * @return The packed nonce count state of the nonce, or <code>null</code> if the nonce was not issued or has expired.
+	 */
+	private AtomicLong findNonceState(final String nonce) {
+		final long interval = Math.floorDiv(nanoTimeSource.getAsLong(), bucketNanos);
+		final int bucketCount = buckets.length();
+		for(int i = 0; i < bucketCount; ++i) { //check the newest buckets first, as recently issued nonces are the most used
+			final Bucket bucket = buckets.get((int)Math.floorMod(interval - i, (long)bucketCount));
+			if(bucket != null && interval - bucket.interval < bucketCount) { //ignore buckets that have expired but have not yet been replaced
+				final AtomicLong nonceState = bucket.nonces.get(nonce);
+				if(nonceState != null) {
+					return nonceState;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Records the use of a nonce count in the packed state of a nonce. The high 32 bits of the state hold the highest nonce count used. Each bit <var>n</var> of
+	 * the low 32 bits is set if the nonce count <var>n</var> less than the highest has been used.
+	 * @param state The packed nonce count state.
+	 * @param nonceCount The nonce count being used.
+	 * @return The new packed state, or the given state if the nonce count has already been used or is too old to be tracked.
+	 */
+	static long useNonceCount(final long state, final long nonceCount) {
+		final long highestNonceCount = state >>> 32;
+		final long window = state & 0xffffffffL;
+		if(nonceCount > highestNonceCount) {
+			if(nonceCount > 0xffffffffL) { //nonce counts are eight hex digits
+				return state;
+			}
+			final long shift = nonceCount - highestNonceCount;
+			final long newWindow = shift > NONCE_COUNT_WINDOW ? 1 : ((window << shift) | 1) & 0xffffffffL;
+			return (nonceCount << 32) | newWindow;
+		}
+		final long offset = highestNonceCount - nonceCount;
+		if(offset > NONCE_COUNT_WINDOW || (window & (1L << offset)) != 0) {
+			return state;
+		}
+		return state | (1L << offset);
+	}
+
+	/**
+	 * The nonces issued during an interval of the nonce lifetime.
+	 * @author Garret Wilson
+	 */
+	private static final class Bucket {
+
+		/** The number of the interval: the {@link System#nanoTime()} divided by the interval length. */
+		final long interval;
+
+		/** The packed nonce count states of the nonces, keyed by nonce as sent to the client. */
+		final ConcurrentMap<String, AtomicLong> nonces = new ConcurrentHashMap<String, AtomicLong>();
+
+		/**
+		 * Constructor.
+		 * @param interval The number of the interval.
+		 */
+		Bucket(final long interval) {
+			this.interval = interval;
+		}
+	}
+
+}
@@ -0,0 +1,621 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.util.*;
+
+import com.globalmentor.model.NameValuePair;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.nio.charset.StandardCharsets.*;
+
+/**
+ * Header compression for HTTP/2 as defined by <a href="https://tools.ietf.org/html/rfc7541">RFC 7541</a>, "HPACK: Header Compression for HTTP/2". Header
+ * names and values are converted to and from octets using ISO-8859-1, so that any octets are preserved.
+ * @author Garret Wilson
+ * @see Encoder
+ * @see Decoder
+ */
+final class HPACK {
+
+	private HPACK() {
+	}
+
+	/** The number of octets of overhead counted for each dynamic table entry in addition to the lengths of the name and value. */
+	static final int ENTRY_OVERHEAD = 32;
+
+	/** The default maximum size of the dynamic table, in octets. */
+	static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+
+	/** The entries of the static table, indexed from 1; each entry is a name and value. */
+	private static final String[][] STATIC_TABLE = { //
+			{":authority", ""}, {":method", "GET"}, {":method", "POST"}, {":path", "/"}, {":path", "/index.html"}, {":scheme", "http"}, {":scheme", "https"},
+			{":status", "200"}, {":status", "204"}, {":status", "206"}, {":status", "304"}, {":status", "400"}, {":status", "404"}, {":status", "500"},
+			{"accept-charset", ""}, {"accept-encoding", "gzip, deflate"}, {"accept-language", ""}, {"accept-ranges", ""}, {"accept", ""},
+			{"access-control-allow-origin", ""}, {"age", ""}, {"allow", ""}, {"authorization", ""}, {"cache-control", ""}, {"content-disposition", ""},
+			{"content-encoding", ""}, {"content-language", ""}, {"content-length", ""}, {"content-location", ""}, {"content-range", ""}, {"content-type", ""},
+			{"cookie", ""}, {"date", ""}, {"etag", ""}, {"expect", ""}, {"expires", ""}, {"from", ""}, {"host", ""}, {"if-match", ""},
+			{"if-modified-since", ""}, {"if-none-match", ""}, {"if-range", ""}, {"if-unmodified-since", ""}, {"last-modified", ""}, {"link", ""},
+			{"location", ""}, {"max-forwards", ""}, {"proxy-authenticate", ""}, {"proxy-authorization", ""}, {"range", ""}, {"referer", ""}, {"refresh", ""},
+			{"retry-after", ""}, {"server", ""}, {"set-cookie", ""}, {"strict-transport-security", ""}, {"transfer-encoding", ""}, {"user-agent", ""},
+			{"vary", ""}, {"via", ""}, {"www-authenticate", ""}};
+
+	/** The Huffman codes of each octet, followed by the end-of-string code, right-aligned. */
+	private static final int[] HUFFMAN_CODES = {
+			0x1ff8, 0x7fffd8, 0xfffffe2, 0xfffffe3, 0xfffffe4, 0xfffffe5, 0xfffffe6, 0xfffffe7,
+			0xfffffe8, 0xffffea, 0x3ffffffc, 0xfffffe9, 0xfffffea, 0x3ffffffd, 0xfffffeb, 0xfffffec,
+			0xfffffed, 0xfffffee, 0xfffffef, 0xffffff0, 0xffffff1, 0xffffff2, 0x3ffffffe, 0xffffff3,
+			0xffffff4, 0xffffff5, 0xffffff6, 0xffffff7, 0xffffff8, 0xffffff9, 0xffffffa, 0xffffffb,
+			0x14, 0x3f8, 0x3f9, 0xffa, 0x1ff9, 0x15, 0xf8, 0x7fa,
+			0x3fa, 0x3fb, 0xf9, 0x7fb, 0xfa, 0x16, 0x17, 0x18,
+			0x0, 0x1, 0x2, 0x19, 0x1a, 0x1b, 0x1c, 0x1d,
+			0x1e, 0x1f, 0x5c, 0xfb, 0x7ffc, 0x20, 0xffb, 0x3fc,
+			0x1ffa, 0x21, 0x5d, 0x5e, 0x5f, 0x60, 0x61, 0x62,
+			0x63, 0x64, 0x65, 0x66, 0x67, 0x68, 0x69, 0x6a,
+			0x6b, 0x6c, 0x6d, 0x6e, 0x6f, 0x70, 0x71, 0x72,
+			0xfc, 0x73, 0xfd, 0x1ffb, 0x7fff0, 0x1ffc, 0x3ffc, 0x22,
+			0x7ffd, 0x3, 0x23, 0x4, 0x24, 0x5, 0x25, 0x26,
+			0x27, 0x6, 0x74, 0x75, 0x28, 0x29, 0x2a, 0x7,
+			0x2b, 0x76, 0x2c, 0x8, 0x9, 0x2d, 0x77, 0x78,
+			0x79, 0x7a, 0x7b, 0x7ffe, 0x7fc, 0x3ffd, 0x1ffd, 0xffffffc,
+			0xfffe6, 0x3fffd2, 0xfffe7, 0xfffe8, 0x3fffd3, 0x3fffd4, 0x3fffd5, 0x7fffd9,
+			0x3fffd6, 0x7fffda, 0x7fffdb, 0x7fffdc, 0x7fffdd, 0x7fffde, 0xffffeb, 0x7fffdf,
+			0xffffec, 0xffffed, 0x3fffd7, 0x7fffe0, 0xffffee, 0x7fffe1, 0x7fffe2, 0x7fffe3,
+			0x7fffe4, 0x1fffdc, 0x3fffd8, 0x7fffe5, 0x3fffd9, 0x7fffe6, 0x7fffe7, 0xffffef,
+			0x3fffda, 0x1fffdd, 0xfffe9, 0x3fffdb, 0x3fffdc, 0x7fffe8, 0x7fffe9, 0x1fffde,
+			0x7fffea, 0x3fffdd, 0x3fffde, 0xfffff0, 0x1fffdf, 0x3fffdf, 0x7fffeb, 0x7fffec,
+			0x1fffe0, 0x1fffe1, 0x3fffe0, 0x1fffe2, 0x7fffed, 0x3fffe1, 0x7fffee, 0x7fffef,
+			0xfffea, 0x3fffe2, 0x3fffe3, 0x3fffe4, 0x7ffff0, 0x3fffe5, 0x3fffe6, 0x7ffff1,
+			0x3ffffe0, 0x3ffffe1, 0xfffeb, 0x7fff1, 0x3fffe7, 0x7ffff2, 0x3fffe8, 0x1ffffec,
+			0x3ffffe2, 0x3ffffe3, 0x3ffffe4, 0x7ffffde, 0x7ffffdf, 0x3ffffe5, 0xfffff1, 0x1ffffed,
+			0x7fff2, 0x1fffe3, 0x3ffffe6, 0x7ffffe0, 0x7ffffe1, 0x3ffffe7, 0x7ffffe2, 0xfffff2,
+			0x1fffe4, 0x1fffe5, 0x3ffffe8, 0x3ffffe9, 0xffffffd, 0x7ffffe3, 0x7ffffe4, 0x7ffffe5,
+			0xfffec, 0xfffff3, 0xfffed, 0x1fffe6, 0x3fffe9, 0x1fffe7, 0x1fffe8, 0x7ffff3,
+			0x3fffea, 0x3fffeb, 0x1ffffee, 0x1ffffef, 0xfffff4, 0xfffff5, 0x3ffffea, 0x7ffff4,
+			0x3ffffeb, 0x7ffffe6, 0x3ffffec, 0x3ffffed, 0x7ffffe7, 0x7ffffe8, 0x7ffffe9, 0x7ffffea,
+			0x7ffffeb, 0xffffffe, 0x7ffffec, 0x7ffffed, 0x7ffffee, 0x7ffffef, 0x7fffff0, 0x3ffffee,
+			0x3fffffff};
+
+	/** The length in bits of the Huffman code of each octet, followed by that of the end-of-string code. */
+	private static final byte[] HUFFMAN_CODE_LENGTHS = {
+			13, 23, 28, 28, 28, 28, 28, 28, 28, 24, 30, 28, 28, 30, 28, 28,
+			28, 28, 28, 28, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 28,
+			6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8, 11, 8, 6, 6, 6,
+			5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+			13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+			7, 7, 7, 7, 7, 7, 7, 7, 8, 7, 8, 13, 19, 13, 14, 6,
+			15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7, 7, 6, 6, 6, 5,
+			6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+			20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23,
+			24, 24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24,
+			22, 21, 20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23,
+			21, 21, 22, 21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23,
+			26, 26, 20, 19, 22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25,
+			19, 21, 26, 27, 27, 26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27,
+			20, 24, 20, 21, 22, 21, 21, 23, 22, 22, 25, 25, 24, 24, 26, 23,
+			26, 27, 26, 26, 27, 27, 27, 27, 27, 28, 27, 27, 27, 27, 27, 26,
+			30};
+
+	/** The symbol representing the end of a Huffman-encoded string. */
+	private static final int HUFFMAN_EOS = 256;
+
+	/**
+	 * The Huffman decoding tree. For each node, the entries at <code>2 * node</code> and <code>2 * node + 1</code> are the children for the bits 0 and 1; a
+	 * negative child is a leaf holding the ones' complement of the symbol, and zero indicates no child.
+	 */
+	private static final int[] HUFFMAN_TREE;
+
+	static {
+		final int[] tree = new int[2 * 2 * (HUFFMAN_EOS + 1)]; //a binary tree with 257 leaves has 256 interior nodes
+		int nodeCount = 1; //the root
+		for(int symbol = 0; symbol <= HUFFMAN_EOS; ++symbol) {
+			final int code = HUFFMAN_CODES[symbol];
+			final int length = HUFFMAN_CODE_LENGTHS[symbol];
+			int node = 0;
+			for(int bitIndex = length - 1; bitIndex > 0; --bitIndex) {
+				final int branch = 2 * node + ((code >>> bitIndex) & 1);
+				if(tree[branch] == 0) {
+					tree[branch] = nodeCount++;
+				}
+				node = tree[branch];
+			}
+			tree[2 * node + (code & 1)] = ~symbol;
+		}
+		HUFFMAN_TREE = tree;
+	}
+
+	/**
+	 * Writes an integer with an N-bit prefix.
+	 * @param outputStream The stream to which to write the integer.
+	 * @param flags The bits preceding the prefix in the first octet.
+	 * @param prefixBits The number of bits of the prefix, from 1 to 8.
+	 * @param value The non-negative value to write.
+	 */
+	static void writeInteger(final ByteArrayOutputStream outputStream, final int flags, final int prefixBits, int value) {
+		final int maxPrefix = (1 << prefixBits) - 1;
+		if(value < maxPrefix) {
+			outputStream.write(flags | value);
+			return;
+		}
+		outputStream.write(flags | maxPrefix);
+		value -= maxPrefix;
+		while(value >= 0x80) {
+			outputStream.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		outputStream.write(value);
+	}
+
+	/**
+	 * Writes a string literal, Huffman-encoded if that would be shorter.
+	 * @param outputStream The stream to which to write the string.
+	 * @param string The string to write.
+	 */
+	static void writeString(final ByteArrayOutputStream outputStream, final String string) {
+		final byte[] bytes = string.getBytes(ISO_8859_1);
+		long huffmanBitLength = 0;
+		for(final byte b : bytes) {
+			huffmanBitLength += HUFFMAN_CODE_LENGTHS[b & 0xff];
+		}
+		final int huffmanLength = (int)((huffmanBitLength + 7) / 8);
+		if(huffmanLength >= bytes.length) {
+			writeInteger(outputStream, 0x00, 7, bytes.length);
+			outputStream.write(bytes, 0, bytes.length);
+			return;
+		}
+		writeInteger(outputStream, 0x80, 7, huffmanLength);
+		long bits = 0; //pending bits, right-aligned
+		int bitCount = 0;
+		for(final byte b : bytes) {
+			final int symbol = b & 0xff;
+			bits = (bits << HUFFMAN_CODE_LENGTHS[symbol]) | HUFFMAN_CODES[symbol];
+			bitCount += HUFFMAN_CODE_LENGTHS[symbol];
+			while(bitCount >= 8) {
+				bitCount -= 8;
+				outputStream.write((int)(bits >>> bitCount));
+			}
+		}
+		if(bitCount > 0) { //pad with the most significant bits of the end-of-string code, which are all ones
+			outputStream.write((int)((bits << (8 - bitCount)) | (0xff >>> bitCount)));
+		}
+	}
+
+	/**
+	 * Decodes a Huffman-encoded string.
+	 * @param bytes The bytes containing the encoded string.
+	 * @param offset The offset of the encoded string.
+	 * @param length The number of bytes of the encoded string.
+	 * @return The decoded octets.
+	 * @throws HTTP2Exception if the encoding is invalid.
+	 */
+	static byte[] decodeHuffman(final byte[] bytes, final int offset, final int length) throws HTTP2Exception {
+		final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(length * 8 / 5 + 1); //the shortest code is five bits
+		int node = 0;
+		int paddingBitCount = 0; //the number of bits read since the last symbol, all of which must be ones to be valid padding
+		for(int i = offset, end = offset + length; i < end; ++i) {
+			final int b = bytes[i];
+			for(int bitIndex = 7; bitIndex >= 0; --bitIndex) {
+				final int bit = (b >>> bitIndex) & 1;
+				final int child = HUFFMAN_TREE[2 * node + bit];
+				if(child < 0) {
+					final int symbol = ~child;
+					if(symbol == HUFFMAN_EOS) {
+						throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Huffman-encoded string contains end-of-string symbol.");
+					}
+					outputStream.write(symbol);
+					node = 0;
+					paddingBitCount = 0;
+				} else if(child == 0) {
+					throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Invalid Huffman code.");
+				} else {
+					node = child;
+					if(bit == 0) {
+						paddingBitCount = Integer.MIN_VALUE; //padding may only consist of ones
+					} else {
+						++paddingBitCount;
+					}
+				}
+			}
+		}
+		if(node != 0 && (paddingBitCount < 0 || paddingBitCount > 7)) {
+			throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Invalid Huffman string padding.");
+		}
+		return outputStream.toByteArray();
+	}
+
+	/** @return The number of octets a header occupies in a dynamic table. */
+	private static int getEntrySize(final String name, final String value) {
+		return name.getBytes(ISO_8859_1).length + value.getBytes(ISO_8859_1).length + ENTRY_OVERHEAD;
+	}
+
+	/**
+	 * A dynamic table of recently used headers. Entry indexes begin after the last static table index; the most recently added entry has the lowest index.
+	 * @author Garret Wilson
+	 */
+	private static class DynamicTable {
+
+		/** The names of the entries, most recent last. */
+		private final List<String> names = new ArrayList<String>();
+
+		/** The values of the entries, most recent last. */
+		private final List<String> values = new ArrayList<String>();
+
+		/** The sizes of the entries, most recent last. */
+		private final List<Integer> sizes = new ArrayList<Integer>();
+
+		/** The current size of the table in octets. */
+		private int size = 0;
+
+		/** The maximum size of the table in octets. */
+		private int maxSize;
+
+		/** @return The maximum size of the table in octets. */
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		/**
+		 * Sets the maximum size of the table, evicting entries as needed.
+		 * @param maxSize The new maximum size in octets.
+		 */
+		public void setMaxSize(final int maxSize) {
+			this.maxSize = maxSize;
+			evict(0);
+		}
+
+		/**
+		 * Maximum size constructor.
+		 * @param maxSize The maximum size of the table in octets.
+		 */
+		public DynamicTable(final int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		/** @return The number of entries in the table. */
+		public int getLength() {
+			return names.size();
+		}
+
+		/**
+		 * @param index The zero-based index of the entry, with the most recent entry at zero.
+		 * @return The name of the entry.
+		 */
+		public String getName(final int index) {
+			return names.get(names.size() - 1 - index);
+		}
+
+		/**
+		 * @param index The zero-based index of the entry, with the most recent entry at zero.
+		 * @return The value of the entry.
+		 */
+		public String getValue(final int index) {
+			return values.get(values.size() - 1 - index);
+		}
+
+		/**
+		 * Adds an entry, evicting older entries as needed. An entry larger than the table empties the table and is not added.
+		 * @param name The name of the header.
+		 * @param value The value of the header.
+		 * @param entrySize The size of the entry in octets.
+		 */
+		public void add(final String name, final String value, final int entrySize) {
+			evict(entrySize);
+			if(entrySize <= maxSize) {
+				names.add(name);
+				values.add(value);
+				sizes.add(entrySize);
+				size += entrySize;
+			}
+		}
+
+		/**
+		 * Evicts the oldest entries until there is room for an entry of the given size.
+		 * @param entrySize The size of the entry to make room for.
+		 */
+		private void evict(final int entrySize) {
+			while(!names.isEmpty() && size + entrySize > maxSize) {
+				names.remove(0);
+				values.remove(0);
+				size -= sizes.remove(0);
+			}
+		}
+	}
+
+	/**
+	 * Encodes header lists into header blocks. Because the encoder's dynamic table must stay in step with that of the peer's decoder, header blocks must be sent
+	 * in the order in which they are encoded.
+	 * <p>
+	 * This class is not thread safe.
+	 * </p>
+	 * @author Garret Wilson
+	 */
+	static class Encoder {
+
+		/** The names of headers that should never be added to a dynamic table by any intermediary, as they carry credentials. */
+		private static final Set<String> SENSITIVE_HEADER_NAMES = new HashSet<String>(Arrays.asList("authorization", "proxy-authorization", "cookie"));
+
+		/** The names of headers with values unlikely to be repeated, which are not added to the dynamic table. */
+		private static final Set<String> UNINDEXED_HEADER_NAMES = new HashSet<String>(Arrays.asList(":path", "content-length", "if-none-match", "if-match"));
+
+		/** The dynamic table. */
+		private final DynamicTable dynamicTable = new DynamicTable(DEFAULT_HEADER_TABLE_SIZE);
+
+		/** The maximum table size the decoder allows, or <code>-1</code> if the table size has not changed since the last header block. */
+		private int pendingMaxSize = -1;
+
+		/**
+		 * Sets the maximum dynamic table size allowed by the peer's decoder, as indicated by its <code>SETTINGS_HEADER_TABLE_SIZE</code> setting. The encoder
+		 * uses no more than {@value HPACK#DEFAULT_HEADER_TABLE_SIZE} octets regardless. The change is signaled at the beginning of the next header block.
+		 * @param maxSize The maximum table size in octets.
+		 */
+		public void setMaxTableSize(final int maxSize) {
+			final int newMaxSize = Math.min(checkArgumentNotNegative(maxSize), DEFAULT_HEADER_TABLE_SIZE);
+			if(newMaxSize != dynamicTable.getMaxSize()) {
+				dynamicTable.setMaxSize(newMaxSize);
+				pendingMaxSize = pendingMaxSize < 0 ? newMaxSize : Math.min(pendingMaxSize, newMaxSize);
+			}
+		}
+
+		/**
+		 * Encodes a header list.
+		 * @param headers The headers to encode, with lowercase names.
+		 * @return The header block.
+		 */
+		public byte[] encode(final Iterable<NameValuePair<String, String>> headers) {
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			if(pendingMaxSize >= 0) { //signal table size changes
+				if(pendingMaxSize != dynamicTable.getMaxSize()) { //if the size was reduced and then increased again, signal the minimum first
+					writeInteger(outputStream, 0x20, 5, pendingMaxSize);
+				}
+				writeInteger(outputStream, 0x20, 5, dynamicTable.getMaxSize());
+				pendingMaxSize = -1;
+			}
+			for(final NameValuePair<String, String> header : headers) {
+				encode(outputStream, header.getName(), header.getValue());
+			}
+			return outputStream.toByteArray();
+		}
+
+		/**
+		 * Encodes a single header field.
+		 * @param outputStream The stream to which to write the header field.
+		 * @param name The lowercase name of the header.
+		 * @param value The value of the header.
+		 */
+		private void encode(final ByteArrayOutputStream outputStream, final String name, final String value) {
+			int nameIndex = 0;
+			for(int i = 0; i < STATIC_TABLE.length; ++i) {
+				if(STATIC_TABLE[i][0].equals(name)) {
+					if(STATIC_TABLE[i][1].equals(value)) {
+						writeInteger(outputStream, 0x80, 7, i + 1); //indexed header field
+						return;
+					}
+					if(nameIndex == 0) {
+						nameIndex = i + 1;
+					}
+				}
+			}
+			final boolean sensitive = SENSITIVE_HEADER_NAMES.contains(name);
+			for(int i = 0, length = dynamicTable.getLength(); i < length; ++i) {
+				if(dynamicTable.getName(i).equals(name)) {
+					if(!sensitive && dynamicTable.getValue(i).equals(value)) {
+						writeInteger(outputStream, 0x80, 7, STATIC_TABLE.length + 1 + i); //indexed header field
+						return;
+					}
+					if(nameIndex == 0) {
+						nameIndex = STATIC_TABLE.length + 1 + i;
+					}
+				}
+			}
+			if(sensitive) {
+				writeInteger(outputStream, 0x10, 4, nameIndex); //literal header field never indexed
+			} else if(UNINDEXED_HEADER_NAMES.contains(name)) {
+				writeInteger(outputStream, 0x00, 4, nameIndex); //literal header field without indexing
+			} else {
+				writeInteger(outputStream, 0x40, 6, nameIndex); //literal header field with incremental indexing
+				dynamicTable.add(name, value, getEntrySize(name, value));
+			}
+			if(nameIndex == 0) {
+				writeString(outputStream, name);
+			}
+			writeString(outputStream, value);
+		}
+	}
+
+	/**
+	 * Decodes header blocks into header lists. Header blocks must be decoded in the order in which they are received, even those for streams that are no longer
+	 * of interest, so that the dynamic table stays in step with that of the peer's encoder.
+	 * <p>
+	 * This class is not thread safe.
+	 * </p>
+	 * @author Garret Wilson
+	 */
+	static class Decoder {
+
+		/** The dynamic table. */
+		private final DynamicTable dynamicTable;
+
+		/** The maximum table size the encoder may use, as advertised in the local <code>SETTINGS_HEADER_TABLE_SIZE</code> setting. */
+		private final int maxTableSize;
+
+		/** The maximum total size of a decoded header list, to protect against decompression bombs. */
+		private final int maxHeaderListSize;
+
+		/**
+		 * Constructor.
+		 * @param maxTableSize The maximum table size the encoder may use.
+		 * @param maxHeaderListSize The maximum total size of a decoded header list, counted as for a dynamic table.
+		 */
+		public Decoder(final int maxTableSize, final int maxHeaderListSize) {
+			this.maxTableSize = checkArgumentNotNegative(maxTableSize);
+			this.maxHeaderListSize = checkArgumentPositive(maxHeaderListSize);
+			dynamicTable = new DynamicTable(maxTableSize);
+		}
+
+		/** The header block being decoded. */
+		private byte[] block;
+
+		/** The current position in the header block. */
+		private int position;
+
+		/** The end of the header block. */
+		private int end;
+
+		/**
+		 * Decodes a header block.
+		 * @param block The bytes containing the header block.
+		 * @param offset The offset of the header block.
+		 * @param length The length of the header block.
+		 * @return The decoded headers, in order.
+		 * @throws HTTP2Exception if the header block is invalid.
+		 */
+		public List<NameValuePair<String, String>> decode(final byte[] block, final int offset, final int length) throws HTTP2Exception {
+			this.block = block;
+			this.position = offset;
+			this.end = offset + length;
+			try {
+				final List<NameValuePair<String, String>> headers = new ArrayList<NameValuePair<String, String>>();
+				int headerListSize = 0;
+				boolean headerSeen = false;
+				while(position < end) {
+					final int b = block[position] & 0xff;
+					final String name;
+					final String value;
+					if((b & 0x80) != 0) { //indexed header field
+						final int index = readInteger(7);
+						name = getName(index);
+						value = getValue(index);
+					} else if((b & 0xe0) == 0x20) { //dynamic table size update
+						if(headerSeen) {
+							throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Dynamic table size update after header field.");
+						}
+						final int newMaxSize = readInteger(5);
+						if(newMaxSize > maxTableSize) {
+							throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Dynamic table size update " + newMaxSize + " exceeds maximum " + maxTableSize + ".");
+						}
+						dynamicTable.setMaxSize(newMaxSize);
+						continue;
+					} else { //literal header field
+						final boolean indexing = (b & 0x40) != 0;
+						final int nameIndex = readInteger(indexing ? 6 : 4);
+						final byte[] nameBytes = nameIndex == 0 ? readStringBytes() : null;
+						name = nameBytes != null ? new String(nameBytes, ISO_8859_1) : getName(nameIndex);
+						final byte[] valueBytes = readStringBytes();
+						value = new String(valueBytes, ISO_8859_1);
+						if(indexing) {
+							final int nameLength = nameBytes != null ? nameBytes.length : name.getBytes(ISO_8859_1).length;
+							dynamicTable.add(name, value, nameLength + valueBytes.length + ENTRY_OVERHEAD);
+						}
+					}
+					headerSeen = true;
+					headerListSize += name.length() + value.length() + ENTRY_OVERHEAD;
+					if(headerListSize > maxHeaderListSize) {
+						throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Header list exceeds maximum size " + maxHeaderListSize + ".");
+					}
+					headers.add(new NameValuePair<String, String>(name, value));
+				}
+				return headers;
+			} finally {
+				this.block = null;
+			}
+		}
+
+		/**
+		 * @param index The one-based index in the combined static and dynamic tables.
+		 * @return The name of the entry.
+		 * @throws HTTP2Exception if the index is invalid.
+		 */
+		private String getName(final int index) throws HTTP2Exception {
+			if(index >= 1 && index <= STATIC_TABLE.length) {
+				return STATIC_TABLE[index - 1][0];
+			}
+			final int dynamicIndex = index - STATIC_TABLE.length - 1;
+			if(index <= 0 || dynamicIndex >= dynamicTable.getLength()) {
+				throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Invalid header table index " + index + ".");
+			}
+			return dynamicTable.getName(dynamicIndex);
+		}
+
+		/**
+		 * @param index The one-based index in the combined static and dynamic tables.
+		 * @return The value of the entry.
+		 * @throws HTTP2Exception if the index is invalid.
+		 */
+		private String getValue(final int index) throws HTTP2Exception {
+			if(index >= 1 && index <= STATIC_TABLE.length) {
+				return STATIC_TABLE[index - 1][1];
+			}
+			final int dynamicIndex = index - STATIC_TABLE.length - 1;
+			if(index <= 0 || dynamicIndex >= dynamicTable.getLength()) {
+				throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Invalid header table index " + index + ".");
+			}
+			return dynamicTable.getValue(dynamicIndex);
+		}
+
+		/**
+		 * Reads an integer with an N-bit prefix.
+		 * @param prefixBits The number of bits of the prefix.
+		 * @return The integer read.
+		 * @throws HTTP2Exception if the integer is truncated or too large.
+		 */
+		private int readInteger(final int prefixBits) throws HTTP2Exception {
+			final int maxPrefix = (1 << prefixBits) - 1;
+			int value = block[position++] & maxPrefix;
+			if(value < maxPrefix) {
+				return value;
+			}
+			int shift = 0;
+			int b;
+			do {
+				if(position >= end) {
+					throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Truncated integer in header block.");
+				}
+				b = block[position++] & 0xff;
+				if(shift > 21) { //more than 28 bits
+					throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Integer in header block too large.");
+				}
+				value += (b & 0x7f) << shift;
+				shift += 7;
+			} while((b & 0x80) != 0);
+			return value;
+		}
+
+		/**
+		 * Reads the octets of a string literal, decoding Huffman encoding if needed.
+		 * @return The octets of the string.
+		 * @throws HTTP2Exception if the string is invalid.
+		 */
+		private byte[] readStringBytes() throws HTTP2Exception {
+			if(position >= end) {
+				throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Truncated header block.");
+			}
+			final boolean huffman = (block[position] & 0x80) != 0;
+			final int length = readInteger(7);
+			if(length > end - position) {
+				throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Truncated string in header block.");
+			}
+			final byte[] bytes = huffman ? decodeHuffman(block, position, length) : Arrays.copyOfRange(block, position, position + length);
+			position += length;
+			if(bytes.length > maxHeaderListSize) {
+				throw new HTTP2Exception(HTTP2.COMPRESSION_ERROR, "Header string exceeds maximum size " + maxHeaderListSize + ".");
+			}
+			return bytes;
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+
+/**
+ * Constants of HTTP/2 as defined by <a href="https://tools.ietf.org/html/rfc7540">RFC 7540</a>, "Hypertext Transfer Protocol Version 2 (HTTP/2)".
+ * @author Garret Wilson
+ */
+final class HTTP2 {
+
+	private HTTP2() {
+	}
+
+	/** The ALPN protocol identifier of HTTP/2 over TLS. */
+	public static final String H2_PROTOCOL = "h2";
+
+	/** The ALPN protocol identifier of HTTP/1.1. */
+	public static final String HTTP_1_1_PROTOCOL = "http/1.1";
+
+	/** The connection preface sent by a client before any frames. */
+	public static final byte[] CLIENT_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(US_ASCII);
+
+	/** The length of a frame header in octets. */
+	public static final int FRAME_HEADER_LENGTH = 9;
+
+	//frame types
+	public static final int DATA = 0x0;
+	public static final int HEADERS = 0x1;
+	public static final int PRIORITY = 0x2;
+	public static final int RST_STREAM = 0x3;
+	public static final int SETTINGS = 0x4;
+	public static final int PUSH_PROMISE = 0x5;
+	public static final int PING = 0x6;
+	public static final int GOAWAY = 0x7;
+	public static final int WINDOW_UPDATE = 0x8;
+	public static final int CONTINUATION = 0x9;
+
+	//frame flags
+	public static final int FLAG_END_STREAM = 0x1;
+	public static final int FLAG_ACK = 0x1;
+	public static final int FLAG_END_HEADERS = 0x4;
+	public static final int FLAG_PADDED = 0x8;
+	public static final int FLAG_PRIORITY = 0x20;
+
+	//settings
+	public static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+	public static final int SETTINGS_ENABLE_PUSH = 0x2;
+	public static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+	public static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+	public static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+	public static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+	//error codes
+	public static final int NO_ERROR = 0x0;
+	public static final int PROTOCOL_ERROR = 0x1;
+	public static final int INTERNAL_ERROR = 0x2;
+	public static final int FLOW_CONTROL_ERROR = 0x3;
+	public static final int SETTINGS_TIMEOUT = 0x4;
+	public static final int STREAM_CLOSED = 0x5;
+	public static final int FRAME_SIZE_ERROR = 0x6;
+	public static final int REFUSED_STREAM = 0x7;
+	public static final int CANCEL = 0x8;
+	public static final int COMPRESSION_ERROR = 0x9;
+	public static final int CONNECT_ERROR = 0xa;
+	public static final int ENHANCE_YOUR_CALM = 0xb;
+	public static final int INADEQUATE_SECURITY = 0xc;
+	public static final int HTTP_1_1_REQUIRED = 0xd;
+
+	/** The initial flow-control window size of connections and streams. */
+	public static final int DEFAULT_INITIAL_WINDOW_SIZE = 65_535;
+
+	/** The maximum flow-control window size. */
+	public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+	/** The initial and minimum maximum frame payload size. */
+	public static final int DEFAULT_MAX_FRAME_SIZE = 16_384;
+
+	/** The largest maximum frame payload size that may be advertised. */
+	public static final int MAX_MAX_FRAME_SIZE = 16_777_215;
+
+	/** The largest stream identifier. */
+	public static final int MAX_STREAM_ID = Integer.MAX_VALUE;
+
+}
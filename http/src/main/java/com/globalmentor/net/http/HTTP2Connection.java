@@ -0,0 +1,1273 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import com.globalmentor.model.NameValuePair;
+import com.globalmentor.net.Host;
+
+import io.clogr.Clogged;
+
+import static com.globalmentor.net.http.HTTP2.*;
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * An HTTP/2 connection to a server, over which many request/response exchanges take place concurrently on separate streams, as defined by
+ * <a href="https://tools.ietf.org/html/rfc7540">RFC 7540</a>, "Hypertext Transfer Protocol Version 2 (HTTP/2)".
+ * <p>
+ * Frames are read by a daemon thread and dispatched to their streams. Stream data is flow-controlled in both directions: senders wait for the server to open
+ * the connection and stream windows, and windows are reopened for the server as the application consumes the data it has received. Frames that the reader
+ * thread must send, such as acknowledgements, are queued rather than written directly, so that the reader never blocks behind an application thread writing
+ * to a congested socket.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTP2StreamTransport
+ */
+class HTTP2Connection implements Closeable, Clogged {
+
+	/** The flow-control window of each stream for receiving data, advertised to the server. */
+	static final int STREAM_RECEIVE_WINDOW = 1 << 20;
+
+	/** The flow-control window of the connection for receiving data. */
+	static final int CONNECTION_RECEIVE_WINDOW = 16 << 20;
+
+	/** The maximum size of a decoded header list, advertised to the server. */
+	static final int MAX_HEADER_LIST_SIZE = 256 * 1024;
+
+	/** The host to which the connection is connected. */
+	private final Host host;
+
+	/** @return The host to which the connection is connected. */
+	public Host getHost() {
+		return host;
+	}
+
+	/** Whether the connection is secure. */
+	private final boolean secure;
+
+	/** @return Whether the connection is secure. */
+	public boolean isSecure() {
+		return secure;
+	}
+
+	/** The underlying socket. */
+	private final Socket socket;
+
+	/** @return The IP address to which the connection is connected. */
+	public InetAddress getInetAddress() {
+		return socket.getInetAddress();
+	}
+
+	/** The input stream of the socket, used only by the reader thread. */
+	private final DataInputStream inputStream;
+
+	/** The buffered output stream of the socket, guarded by {@link #writeLock}. */
+	private final OutputStream outputStream;
+
+	/** The lock guarding the state of the connection and its streams. */
+	private final Lock lock = new ReentrantLock();
+
+	/** Signaled when a stream may become available, or the connection fails or is shutting down. */
+	private final Condition streamAvailable = lock.newCondition();
+
+	/** Signaled when a send window opens, or the connection fails. */
+	private final Condition sendWindowAvailable = lock.newCondition();
+
+	/** The lock ordering frames on the wire and guarding the header encoder. Never acquired while holding {@link #lock}. */
+	private final Lock writeLock = new ReentrantLock();
+
+	/** Frames queued by the reader thread, to be written by whichever thread next holds the write lock. */
+	private final Queue<byte[]> controlFrames = new ConcurrentLinkedQueue<byte[]>();
+
+	/** The header table size most recently requested by the server but not yet applied to the encoder, or <code>-1</code> if there is no change. */
+	private volatile int pendingHeaderTableSize = -1;
+
+	/** The header encoder, guarded by {@link #writeLock}. */
+	private final HPACK.Encoder encoder = new HPACK.Encoder();
+
+	/** The header decoder, used only by the reader thread. */
+	private final HPACK.Decoder decoder = new HPACK.Decoder(HPACK.DEFAULT_HEADER_TABLE_SIZE, MAX_HEADER_LIST_SIZE);
+
+	/** The identifier of the next stream to be opened, guarded by {@link #writeLock} as streams must be opened in order. */
+	private int nextStreamId = 1;
+
+	/** The open streams by identifier. */
+	private final Map<Integer, Stream> streams = new HashMap<Integer, Stream>();
+
+	/** The number of streams reserved or open. */
+	private int activeStreamCount = 0;
+
+	/** Whether the server's initial settings have been received; until then the server's limits are unknown. */
+	private boolean peerSettingsReceived = false;
+
+	/** The maximum number of concurrent streams allowed by the server. */
+	private int peerMaxConcurrentStreams = Integer.MAX_VALUE;
+
+	/** The initial send window of new streams, as indicated by the server. */
+	private int peerInitialWindowSize = DEFAULT_INITIAL_WINDOW_SIZE;
+
+	/** The maximum frame payload the server will accept. */
+	private volatile int peerMaxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+
+	/** The connection send window. */
+	private long sendWindow = DEFAULT_INITIAL_WINDOW_SIZE;
+
+	/** The connection receive window remaining to the server. */
+	private long receiveWindow = CONNECTION_RECEIVE_WINDOW;
+
+	/** The number of connection-level bytes consumed but not yet returned to the server in a window update. */
+	private int receiveUnacknowledged = 0;
+
+	/** Whether the connection accepts no new streams, either because the server sent <code>GOAWAY</code> or because the connection is being closed. */
+	private boolean goingAway = false;
+
+	/** The error that ended the connection, or <code>null</code> if the connection has not failed or been closed. */
+	private IOException failure = null;
+
+	/** Completed once the connection no longer accepts new streams. */
+	private final CompletableFuture<Void> shutdown = new CompletableFuture<Void>();
+
+	/**
+	 * Returns a future completed once the connection no longer accepts new streams, either because the server sent <code>GOAWAY</code> or because the connection
+	 * failed or was closed. Streams already in progress may still complete.
+	 * @return A future indicating that the connection is shutting down.
+	 */
+	public CompletionStage<Void> getShutdown() {
+		return shutdown;
+	}
+
+	/**
+	 * Host, secure, and socket constructor. The connection preface and settings are sent, and the reader thread is started. Requests may be sent immediately.
+	 * @param host The host to which the connection is connected.
+	 * @param secure Whether the connection is secure.
+	 * @param socket The connected socket; for secure connections, one for which <code>h2</code> was negotiated.
+	 * @throws NullPointerException if the given host and/or socket is <code>null</code>.
+	 * @throws IOException if there is an error starting the connection.
+	 */
+	public HTTP2Connection(final Host host, final boolean secure, final Socket socket) throws IOException {
+		this.host = requireNonNull(host, "Host cannot be null.");
+		this.secure = secure;
+		this.socket = requireNonNull(socket, "Socket cannot be null.");
+		socket.setTcpNoDelay(true); //frames are written whole; don't delay them waiting for acknowledgements
+		inputStream = new DataInputStream(new BufferedInputStream(socket.getInputStream(), FRAME_HEADER_LENGTH + DEFAULT_MAX_FRAME_SIZE));
+		outputStream = new BufferedOutputStream(socket.getOutputStream(), FRAME_HEADER_LENGTH + DEFAULT_MAX_FRAME_SIZE);
+		final ByteArrayOutputStream settings = new ByteArrayOutputStream();
+		writeSetting(settings, SETTINGS_ENABLE_PUSH, 0);
+		writeSetting(settings, SETTINGS_INITIAL_WINDOW_SIZE, STREAM_RECEIVE_WINDOW);
+		writeSetting(settings, SETTINGS_MAX_HEADER_LIST_SIZE, MAX_HEADER_LIST_SIZE);
+		outputStream.write(CLIENT_PREFACE);
+		writeFrame(SETTINGS, 0, 0, settings.toByteArray());
+		writeFrame(WINDOW_UPDATE, 0, 0, toBytes(CONNECTION_RECEIVE_WINDOW - DEFAULT_INITIAL_WINDOW_SIZE));
+		outputStream.flush();
+		final Thread readerThread = new Thread(this::readFrames, "HTTP/2 " + host);
+		readerThread.setDaemon(true); //don't keep the JVM running just for an idle connection
+		readerThread.start();
+	}
+
+	/** @return <code>true</code> if new streams may be opened on this connection. */
+	public boolean isAcceptingStreams() {
+		lock.lock();
+		try {
+			return failure == null && !goingAway;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** @return <code>true</code> if the connection has not failed or been closed. */
+	public boolean isOpen() {
+		lock.lock();
+		try {
+			return failure == null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Reserves a new stream, waiting if the server's limit of concurrent streams has been reached. As the server may limit concurrent streams using its initial
+	 * settings, no stream is reserved until the server's settings have been received. The stream is opened when its headers are sent.
+	 * @return A new stream.
+	 * @throws HTTP2Exception if the connection is no longer accepting streams; such an exception indicates that the stream was refused.
+	 * @throws IOException if the connection has failed or the current thread is interrupted while waiting.
+	 */
+	public Stream newStream() throws IOException {
+		lock.lock();
+		try {
+			while(failure == null && !goingAway && (!peerSettingsReceived || activeStreamCount >= peerMaxConcurrentStreams)) {
+				streamAvailable.await();
+			}
+			checkAcceptingStreams();
+			++activeStreamCount;
+			return new Stream();
+		} catch(final InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for an HTTP/2 stream.");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ensures that the connection is accepting new streams. Must be called while holding {@link #lock}.
+	 * @throws IOException if the connection has failed, or an {@link HTTP2Exception} indicating a refused stream if the connection is shutting down.
+	 */
+	private void checkAcceptingStreams() throws IOException {
+		if(failure != null) {
+			throw new IOException("HTTP/2 connection to " + host + " failed.", failure);
+		}
+		if(goingAway) {
+			throw new HTTP2Exception(REFUSED_STREAM, "HTTP/2 connection to " + host + " is shutting down.", true);
+		}
+	}
+
+	/**
+	 * Closes the connection, failing any outstanding streams. The server is notified with a <code>GOAWAY</code> frame if possible.
+	 */
+	@Override
+	public void close() {
+		fail(new IOException("HTTP/2 connection to " + host + " closed."), NO_ERROR);
+	}
+
+	/**
+	 * Ends the connection because of an error, failing all streams. If an error code is given, a <code>GOAWAY</code> frame is sent before the socket is closed.
+	 * If the connection has already failed, no action occurs.
+	 * @param ioException The cause of the failure.
+	 * @param errorCode The error code to send to the server, or <code>-1</code> if the server should not be notified.
+	 */
+	private void fail(final IOException ioException, final int errorCode) {
+		final List<Stream> failedStreams;
+		lock.lock();
+		try {
+			if(failure != null) {
+				return;
+			}
+			failure = ioException;
+			goingAway = true;
+			failedStreams = new ArrayList<Stream>(streams.values());
+			streams.clear();
+			streamAvailable.signalAll();
+			sendWindowAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		shutdown.complete(null);
+		for(final Stream stream : failedStreams) {
+			stream.fail(ioException);
+		}
+		if(errorCode >= 0) {
+			final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+			writeInt(payload, 0); //we process no server-initiated streams
+			writeInt(payload, errorCode);
+			controlFrames.add(toFrame(GOAWAY, 0, 0, payload.toByteArray()));
+			try {
+				if(writeLock.tryLock()) { //don't block behind a congested socket just to say goodbye
+					try {
+						writeControlFrames();
+						outputStream.flush();
+					} finally {
+						writeLock.unlock();
+					}
+				}
+			} catch(final IOException writeIOException) {
+				getLogger().debug("Unable to send GOAWAY to {}.", host, writeIOException);
+			}
+		}
+		try {
+			socket.close();
+		} catch(final IOException closeIOException) {
+			getLogger().debug("Error closing HTTP/2 connection to {}.", host, closeIOException);
+		}
+	}
+
+	/** Reads and dispatches frames until the connection ends. Called on the reader thread. */
+	private void readFrames() {
+		try {
+			final byte[] header = new byte[FRAME_HEADER_LENGTH];
+			while(true) {
+				try {
+					inputStream.readFully(header);
+				} catch(final EOFException eofException) {
+					fail(new EOFException("HTTP/2 connection to " + host + " closed by server."), -1);
+					return;
+				}
+				final int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+				final int type = header[3] & 0xff;
+				final int flags = header[4] & 0xff;
+				final int streamId = readInt(header, 5) & MAX_STREAM_ID;
+				if(length > DEFAULT_MAX_FRAME_SIZE) { //we never advertise a larger frame size
+					throw new HTTP2Exception(FRAME_SIZE_ERROR, "Frame of " + length + " bytes exceeds maximum frame size.");
+				}
+				final byte[] payload = new byte[length];
+				inputStream.readFully(payload);
+				switch(type) {
+					case DATA:
+						onData(streamId, flags, payload);
+						break;
+					case HEADERS:
+						onHeaders(streamId, flags, payload);
+						break;
+					case PRIORITY:
+						break;
+					case RST_STREAM:
+						onRstStream(streamId, payload);
+						break;
+					case SETTINGS:
+						onSettings(streamId, flags, payload);
+						break;
+					case PUSH_PROMISE: //we disabled server push
+						throw new HTTP2Exception(PROTOCOL_ERROR, "Unexpected PUSH_PROMISE frame.");
+					case PING:
+						onPing(streamId, flags, payload);
+						break;
+					case GOAWAY:
+						onGoAway(streamId, payload);
+						break;
+					case WINDOW_UPDATE:
+						onWindowUpdate(streamId, payload);
+						break;
+					case CONTINUATION:
+						throw new HTTP2Exception(PROTOCOL_ERROR, "Unexpected CONTINUATION frame.");
+					default: //unknown frame types must be ignored
+						break;
+				}
+				flushControlFrames();
+			}
+		} catch(final HTTP2Exception http2Exception) {
+			getLogger().debug("HTTP/2 protocol error on connection to {}.", host, http2Exception);
+			fail(http2Exception, http2Exception.getErrorCode());
+		} catch(final IOException ioException) {
+			fail(ioException, -1);
+		} catch(final RuntimeException runtimeException) {
+			fail(new IOException(runtimeException), INTERNAL_ERROR);
+			throw runtimeException;
+		}
+	}
+
+	/**
+	 * Handles a <code>DATA</code> frame.
+	 * @param streamId The stream identifier.
+	 * @param flags The frame flags.
+	 * @param payload The frame payload.
+	 * @throws HTTP2Exception if there is a connection error.
+	 */
+	private void onData(final int streamId, final int flags, final byte[] payload) throws HTTP2Exception {
+		if(streamId == 0) {
+			throw new HTTP2Exception(PROTOCOL_ERROR, "DATA frame on stream 0.");
+		}
+		final int dataOffset = getPaddedDataOffset(flags, payload);
+		final int dataLength = getPaddedDataLength(flags, payload);
+		final Stream stream;
+		lock.lock();
+		try {
+			receiveWindow -= payload.length; //the entire frame, including padding, counts against flow control
+			if(receiveWindow < 0) {
+				throw new HTTP2Exception(FLOW_CONTROL_ERROR, "Server exceeded connection flow-control window.");
+			}
+			stream = streams.get(streamId);
+			if(stream == null) { //data for a stream we've abandoned is consumed immediately
+				consume(payload.length);
+				return;
+			}
+			consume(payload.length - dataLength); //padding is consumed immediately
+		} finally {
+			lock.unlock();
+		}
+		stream.onData(payload, dataOffset, dataLength, (flags & FLAG_END_STREAM) != 0);
+	}
+
+	/**
+	 * Handles a <code>HEADERS</code> frame along with any <code>CONTINUATION</code> frames.
+	 * @param streamId The stream identifier.
+	 * @param flags The frame flags.
+	 * @param payload The frame payload.
+	 * @throws IOException if there is an error reading continuation frames, or an {@link HTTP2Exception} if there is a connection error.
+	 */
+	private void onHeaders(final int streamId, final int flags, final byte[] payload) throws IOException {
+		if(streamId == 0) {
+			throw new HTTP2Exception(PROTOCOL_ERROR, "HEADERS frame on stream 0.");
+		}
+		int offset = getPaddedDataOffset(flags, payload);
+		int length = getPaddedDataLength(flags, payload);
+		if((flags & FLAG_PRIORITY) != 0) { //skip the stream dependency and weight
+			offset += 5;
+			length -= 5;
+			if(length < 0) {
+				throw new HTTP2Exception(FRAME_SIZE_ERROR, "HEADERS frame too short for priority.");
+			}
+		}
+		final ByteArrayOutputStream block = new ByteArrayOutputStream(length);
+		block.write(payload, offset, length);
+		if((flags & FLAG_END_HEADERS) == 0) { //read continuation frames, which must follow immediately
+			final byte[] header = new byte[FRAME_HEADER_LENGTH];
+			int continuationFlags;
+			do {
+				inputStream.readFully(header);
+				final int continuationLength = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+				if((header[3] & 0xff) != CONTINUATION || (readInt(header, 5) & MAX_STREAM_ID) != streamId) {
+					throw new HTTP2Exception(PROTOCOL_ERROR, "Expected CONTINUATION frame for stream " + streamId + ".");
+				}
+				if(continuationLength > DEFAULT_MAX_FRAME_SIZE || block.size() + continuationLength > MAX_HEADER_LIST_SIZE) {
+					throw new HTTP2Exception(FRAME_SIZE_ERROR, "Header block too large.");
+				}
+				continuationFlags = header[4] & 0xff;
+				final byte[] continuation = new byte[continuationLength];
+				inputStream.readFully(continuation);
+				block.write(continuation, 0, continuationLength);
+			} while((continuationFlags & FLAG_END_HEADERS) == 0);
+		}
+		final byte[] blockBytes = block.toByteArray();
+		final List<NameValuePair<String, String>> headers = decoder.decode(blockBytes, 0, blockBytes.length); //always decode to keep the dynamic table in step
+		final Stream stream;
+		lock.lock();
+		try {
+			stream = streams.get(streamId);
+		} finally {
+			lock.unlock();
+		}
+		if(stream != null) {
+			stream.onHeaders(headers, (flags & FLAG_END_STREAM) != 0);
+		}
+	}
+
+	/**
+	 * Handles a <code>RST_STREAM</code> frame.
+	 * @param streamId The stream identifier.
+	 * @param payload The frame payload.
+	 * @throws HTTP2Exception if there is a connection error.
+	 */
+	private void onRstStream(final int streamId, final byte[] payload) throws HTTP2Exception {
+		if(streamId == 0) {
+			throw new HTTP2Exception(PROTOCOL_ERROR, "RST_STREAM frame on stream 0.");
+		}
+		if(payload.length != 4) {
+			throw new HTTP2Exception(FRAME_SIZE_ERROR, "RST_STREAM frame must have 4 bytes.");
+		}
+		final int errorCode = readInt(payload, 0);
+		final Stream stream;
+		lock.lock();
+		try {
+			stream = streams.get(streamId);
+		} finally {
+			lock.unlock();
+		}
+		if(stream != null) {
+			stream.fail(new HTTP2Exception(errorCode, "Stream " + streamId + " reset by " + host + " with error code " + errorCode + ".",
+					errorCode == REFUSED_STREAM));
+		}
+	}
+
+	/**
+	 * Handles a <code>SETTINGS</code> frame, acknowledging it.
+	 * @param streamId The stream identifier.
+	 * @param flags The frame flags.
+	 * @param payload The frame payload.
+	 * @throws HTTP2Exception if there is a connection error.
+	 */
+	private void onSettings(final int streamId, final int flags, final byte[] payload) throws HTTP2Exception {
+		if(streamId != 0) {
+			throw new HTTP2Exception(PROTOCOL_ERROR, "SETTINGS frame on stream " + streamId + ".");
+		}
+		if((flags & FLAG_ACK) != 0) {
+			if(payload.length != 0) {
+				throw new HTTP2Exception(FRAME_SIZE_ERROR, "SETTINGS acknowledgement must be empty.");
+			}
+			return;
+		}
+		if(payload.length % 6 != 0) {
+			throw new HTTP2Exception(FRAME_SIZE_ERROR, "SETTINGS frame length must be a multiple of 6.");
+		}
+		lock.lock();
+		try {
+			for(int offset = 0; offset < payload.length; offset += 6) {
+				final int identifier = ((payload[offset] & 0xff) << 8) | (payload[offset + 1] & 0xff);
+				final int value = readInt(payload, offset + 2);
+				switch(identifier) {
+					case SETTINGS_HEADER_TABLE_SIZE:
+						pendingHeaderTableSize = value < 0 ? Integer.MAX_VALUE : value; //applied to the encoder before the acknowledgement is written
+						break;
+					case SETTINGS_MAX_CONCURRENT_STREAMS:
+						peerMaxConcurrentStreams = value < 0 ? Integer.MAX_VALUE : value;
+						streamAvailable.signalAll();
+						break;
+					case SETTINGS_INITIAL_WINDOW_SIZE:
+						if(value < 0) {
+							throw new HTTP2Exception(FLOW_CONTROL_ERROR, "Initial window size " + (value & 0xffffffffL) + " too large.");
+						}
+						final int delta = value - peerInitialWindowSize;
+						peerInitialWindowSize = value;
+						for(final Stream stream : streams.values()) {
+							stream.sendWindow += delta;
+							if(stream.sendWindow > MAX_WINDOW_SIZE) {
+								throw new HTTP2Exception(FLOW_CONTROL_ERROR, "Stream window too large.");
+							}
+						}
+						sendWindowAvailable.signalAll();
+						break;
+					case SETTINGS_MAX_FRAME_SIZE:
+						if(value < DEFAULT_MAX_FRAME_SIZE || value > MAX_MAX_FRAME_SIZE) {
+							throw new HTTP2Exception(PROTOCOL_ERROR, "Invalid maximum frame size " + value + ".");
+						}
+						peerMaxFrameSize = value;
+						break;
+					default: //ignore SETTINGS_ENABLE_PUSH, which a server may not send, as well as unknown settings
+						break;
+				}
+			}
+			peerSettingsReceived = true;
+			streamAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+		controlFrames.add(toFrame(SETTINGS, FLAG_ACK, 0, new byte[0]));
+	}
+
+	/**
+	 * Handles a <code>PING</code> frame, answering it if it is not an acknowledgement.
+	 * @param streamId The stream identifier.
+	 * @param flags The frame flags.
+	 * @param payload The frame payload.
+	 * @throws HTTP2Exception if there is a connection error.
+	 */
+	private void onPing(final int streamId, final int flags, final byte[] payload) throws HTTP2Exception {
+		if(streamId != 0) {
+			throw new HTTP2Exception(PROTOCOL_ERROR, "PING frame on stream " + streamId + ".");
+		}
+		if(payload.length != 8) {
+			throw new HTTP2Exception(FRAME_SIZE_ERROR, "PING frame must have 8 bytes.");
+		}
+		if((flags & FLAG_ACK) == 0) {
+			controlFrames.add(toFrame(PING, FLAG_ACK, 0, payload));
+		}
+	}
+
+	/**
+	 * Handles a <code>GOAWAY</code> frame. Streams the server did not accept are failed as refused, so that their requests may be retried on another
+	 * connection; streams already accepted may complete.
+	 * @param streamId The stream identifier.
+	 * @param payload The frame payload.
+	 * @throws HTTP2Exception if there is a connection error.
+	 */
+	private void onGoAway(final int streamId, final byte[] payload) throws HTTP2Exception {
+		if(streamId != 0) {
+			throw new HTTP2Exception(PROTOCOL_ERROR, "GOAWAY frame on stream " + streamId + ".");
+		}
+		if(payload.length < 8) {
+			throw new HTTP2Exception(FRAME_SIZE_ERROR, "GOAWAY frame must have at least 8 bytes.");
+		}
+		final int lastStreamId = readInt(payload, 0) & MAX_STREAM_ID;
+		final int errorCode = readInt(payload, 4);
+		final List<Stream> refusedStreams = new ArrayList<Stream>();
+		final boolean idle;
+		lock.lock();
+		try {
+			goingAway = true;
+			for(final Stream stream : streams.values()) {
+				if(stream.id > lastStreamId) {
+					refusedStreams.add(stream);
+				}
+			}
+			streamAvailable.signalAll();
+			idle = streams.size() == refusedStreams.size();
+		} finally {
+			lock.unlock();
+		}
+		shutdown.complete(null);
+		for(final Stream stream : refusedStreams) {
+			stream.fail(new HTTP2Exception(REFUSED_STREAM, "Stream " + stream.id + " not processed by " + host + " before shutdown.", true));
+		}
+		getLogger().debug("HTTP/2 connection to {} shutting down with error code {}.", host, errorCode);
+		if(idle) {
+			close();
+		}
+	}
+
+	/**
+	 * Handles a <code>WINDOW_UPDATE</code> frame.
+	 * @param streamId The stream identifier.
+	 * @param payload The frame payload.
+	 * @throws HTTP2Exception if there is a connection error.
+	 */
+	private void onWindowUpdate(final int streamId, final byte[] payload) throws HTTP2Exception {
+		if(payload.length != 4) {
+			throw new HTTP2Exception(FRAME_SIZE_ERROR, "WINDOW_UPDATE frame must have 4 bytes.");
+		}
+		final int increment = readInt(payload, 0) & MAX_WINDOW_SIZE;
+		final Stream stream;
+		lock.lock();
+		try {
+			if(streamId == 0) {
+				if(increment == 0) {
+					throw new HTTP2Exception(PROTOCOL_ERROR, "Zero connection window increment.");
+				}
+				sendWindow += increment;
+				if(sendWindow > MAX_WINDOW_SIZE) {
+					throw new HTTP2Exception(FLOW_CONTROL_ERROR, "Connection window too large.");
+				}
+				sendWindowAvailable.signalAll();
+				return;
+			}
+			stream = streams.get(streamId);
+			if(stream == null) {
+				return;
+			}
+			if(increment != 0) {
+				stream.sendWindow += increment;
+				if(stream.sendWindow <= MAX_WINDOW_SIZE) {
+					sendWindowAvailable.signalAll();
+					return;
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+		stream.reset(increment == 0 ? PROTOCOL_ERROR : FLOW_CONTROL_ERROR,
+				new HTTP2Exception(FLOW_CONTROL_ERROR, "Invalid window update for stream " + streamId + "."));
+	}
+
+	/**
+	 * Records that bytes received on the connection have been consumed, queueing a connection window update once half the window has been consumed. Must be
+	 * called while holding {@link #lock}.
+	 * @param length The number of bytes consumed.
+	 */
+	private void consume(final int length) {
+		receiveUnacknowledged += length;
+		if(receiveUnacknowledged >= CONNECTION_RECEIVE_WINDOW / 2) {
+			controlFrames.add(toFrame(WINDOW_UPDATE, 0, 0, toBytes(receiveUnacknowledged)));
+			receiveWindow += receiveUnacknowledged;
+			receiveUnacknowledged = 0;
+		}
+	}
+
+	/**
+	 * Writes any queued control frames, if the write lock is available. If another thread holds the write lock, it will write the control frames before
+	 * releasing the lock.
+	 * @throws IOException if there is an error writing the frames.
+	 */
+	private void flushControlFrames() throws IOException {
+		while((!controlFrames.isEmpty() || pendingHeaderTableSize >= 0) && writeLock.tryLock()) {
+			try {
+				writeControlFrames();
+				outputStream.flush();
+			} finally {
+				writeLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Applies any pending header table size to the encoder and writes any queued control frames. Must be called while holding {@link #writeLock}.
+	 * @throws IOException if there is an error writing the frames.
+	 */
+	private void writeControlFrames() throws IOException {
+		final int headerTableSize = pendingHeaderTableSize;
+		if(headerTableSize >= 0) {
+			pendingHeaderTableSize = -1;
+			encoder.setMaxTableSize(headerTableSize);
+		}
+		byte[] frame;
+		while((frame = controlFrames.poll()) != null) {
+			outputStream.write(frame);
+		}
+	}
+
+	/**
+	 * Acquires the write lock, writing any queued control frames first.
+	 * @throws IOException if there is an error writing the control frames.
+	 */
+	private void beginWrite() throws IOException {
+		writeLock.lock();
+		try {
+			writeControlFrames();
+		} catch(final IOException ioException) {
+			writeLock.unlock();
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Flushes written frames, including any queued control frames, and releases the write lock.
+	 * @throws IOException if there is an error writing the frames.
+	 */
+	private void endWrite() throws IOException {
+		try {
+			writeControlFrames();
+			outputStream.flush();
+		} finally {
+			writeLock.unlock();
+		}
+		flushControlFrames(); //in case the reader queued frames after we wrote them
+	}
+
+	/**
+	 * Writes a frame. Must be called while holding {@link #writeLock}.
+	 * @param type The frame type.
+	 * @param flags The frame flags.
+	 * @param streamId The stream identifier.
+	 * @param payload The frame payload.
+	 * @throws IOException if there is an error writing the frame.
+	 */
+	private void writeFrame(final int type, final int flags, final int streamId, final byte[] payload) throws IOException {
+		writeFrame(type, flags, streamId, payload, 0, payload.length);
+	}
+
+	/**
+	 * Writes a frame. Must be called while holding {@link #writeLock}.
+	 * @param type The frame type.
+	 * @param flags The frame flags.
+	 * @param streamId The stream identifier.
+	 * @param payload The bytes containing the frame payload.
+	 * @param offset The offset of the payload.
+	 * @param length The length of the payload.
+	 * @throws IOException if there is an error writing the frame.
+	 */
+	private void writeFrame(final int type, final int flags, final int streamId, final byte[] payload, final int offset, final int length) throws IOException {
+		outputStream.write(toFrameHeader(type, flags, streamId, length));
+		outputStream.write(payload, offset, length);
+	}
+
+	/**
+	 * Creates a frame header.
+	 * @param type The frame type.
+	 * @param flags The frame flags.
+	 * @param streamId The stream identifier.
+	 * @param length The length of the payload.
+	 * @return The bytes of the frame header.
+	 */
+	private static byte[] toFrameHeader(final int type, final int flags, final int streamId, final int length) {
+		return new byte[] {(byte)(length >>> 16), (byte)(length >>> 8), (byte)length, (byte)type, (byte)flags, (byte)(streamId >>> 24), (byte)(streamId >>> 16),
+				(byte)(streamId >>> 8), (byte)streamId};
+	}
+
+	/**
+	 * Creates a complete frame.
+	 * @param type The frame type.
+	 * @param flags The frame flags.
+	 * @param streamId The stream identifier.
+	 * @param payload The frame payload.
+	 * @return The bytes of the frame.
+	 */
+	private static byte[] toFrame(final int type, final int flags, final int streamId, final byte[] payload) {
+		final byte[] frame = Arrays.copyOf(toFrameHeader(type, flags, streamId, payload.length), FRAME_HEADER_LENGTH + payload.length);
+		System.arraycopy(payload, 0, frame, FRAME_HEADER_LENGTH, payload.length);
+		return frame;
+	}
+
+	/**
+	 * @param value The value to convert.
+	 * @return The four bytes of the value in network byte order.
+	 */
+	private static byte[] toBytes(final int value) {
+		return new byte[] {(byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value};
+	}
+
+	/**
+	 * Writes a four-byte integer in network byte order.
+	 * @param outputStream The stream to which to write.
+	 * @param value The value to write.
+	 */
+	private static void writeInt(final ByteArrayOutputStream outputStream, final int value) {
+		outputStream.write(toBytes(value), 0, 4);
+	}
+
+	/**
+	 * Writes a setting.
+	 * @param outputStream The stream to which to write.
+	 * @param identifier The setting identifier.
+	 * @param value The setting value.
+	 */
+	private static void writeSetting(final ByteArrayOutputStream outputStream, final int identifier, final int value) {
+		outputStream.write(identifier >>> 8);
+		outputStream.write(identifier);
+		writeInt(outputStream, value);
+	}
+
+	/**
+	 * Reads a four-byte integer in network byte order.
+	 * @param bytes The bytes containing the integer.
+	 * @param offset The offset of the integer.
+	 * @return The integer read.
+	 */
+	private static int readInt(final byte[] bytes, final int offset) {
+		return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+	}
+
+	/**
+	 * @param flags The frame flags.
+	 * @param payload The frame payload.
+	 * @return The offset of the data after any pad length field.
+	 */
+	private static int getPaddedDataOffset(final int flags, final byte[] payload) {
+		return (flags & FLAG_PADDED) != 0 ? 1 : 0;
+	}
+
+	/**
+	 * @param flags The frame flags.
+	 * @param payload The frame payload.
+	 * @return The length of the data excluding any padding.
+	 * @throws HTTP2Exception if the padding is longer than the payload.
+	 */
+	private static int getPaddedDataLength(final int flags, final byte[] payload) throws HTTP2Exception {
+		if((flags & FLAG_PADDED) == 0) {
+			return payload.length;
+		}
+		if(payload.length == 0) {
+			throw new HTTP2Exception(FRAME_SIZE_ERROR, "Padded frame missing pad length.");
+		}
+		final int length = payload.length - 1 - (payload[0] & 0xff);
+		if(length < 0) {
+			throw new HTTP2Exception(PROTOCOL_ERROR, "Padding exceeds frame payload.");
+		}
+		return length;
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + host + (secure ? ", secure" : "") + ")";
+	}
+
+	/**
+	 * A single request/response exchange on the connection. A stream is used by a single thread sending the request and reading the response, while the reader
+	 * thread delivers what the server sends.
+	 * @author Garret Wilson
+	 */
+	class Stream {
+
+		/** The stream identifier, or zero if the stream has not yet been opened. */
+		private int id = 0;
+
+		/** @return The stream identifier, or zero if the stream has not yet been opened. */
+		public int getId() {
+			lock.lock();
+			try {
+				return id;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** The send window, guarded by the connection lock. */
+		private long sendWindow = 0;
+
+		/** The receive window remaining to the server, guarded by the connection lock. */
+		private long receiveWindow = STREAM_RECEIVE_WINDOW;
+
+		/** The number of bytes consumed but not yet returned to the server in a window update, guarded by the connection lock. */
+		private int receiveUnacknowledged = 0;
+
+		/** The header lists and data received but not yet consumed, in order, guarded by the connection lock. */
+		private final Deque<Object> received = new ArrayDeque<Object>();
+
+		/** Signaled when something is received or the stream fails. */
+		private final Condition receivedAvailable = lock.newCondition();
+
+		/** Whether the request has been completely sent. */
+		private boolean localClosed = false;
+
+		/** Whether the response has been completely received. */
+		private boolean remoteClosed = false;
+
+		/** Whether the stream's slot has been returned to the connection. */
+		private boolean released = false;
+
+		/** The error that ended the stream, or <code>null</code> if the stream has not failed. */
+		private IOException streamFailure = null;
+
+		/** @return <code>true</code> if the stream ended with an error, such as being reset or the connection failing. */
+		public boolean isFailed() {
+			lock.lock();
+			try {
+				return streamFailure != null;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** @return <code>true</code> if the request has been completely sent and the response has been completely received, or the stream failed. */
+		public boolean isComplete() {
+			lock.lock();
+			try {
+				return released;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Opens the stream by sending request headers.
+		 * @param headers The request headers, including pseudo-headers, with lowercase names.
+		 * @param endStream Whether the request has no body.
+		 * @throws IllegalStateException if the stream has already been opened.
+		 * @throws IOException if there is an error sending the headers.
+		 */
+		public void open(final List<NameValuePair<String, String>> headers, final boolean endStream) throws IOException {
+			beginWrite();
+			try {
+				lock.lock();
+				try {
+					if(id != 0) {
+						throw new IllegalStateException("Stream " + id + " already opened.");
+					}
+					checkStreamFailure();
+					checkAcceptingStreams();
+					if(nextStreamId > MAX_STREAM_ID || nextStreamId < 0) { //we've run out of stream identifiers
+						goingAway = true;
+						checkAcceptingStreams();
+					}
+					id = nextStreamId;
+					nextStreamId += 2;
+					sendWindow = peerInitialWindowSize;
+					localClosed = endStream;
+					streams.put(id, this);
+				} finally {
+					lock.unlock();
+				}
+				try {
+					writeHeaders(headers, endStream);
+				} catch(final IOException ioException) {
+					HTTP2Connection.this.fail(ioException, -1);
+					throw ioException;
+				}
+			} finally {
+				endWrite();
+			}
+		}
+
+		/**
+		 * Sends trailing headers, ending the request.
+		 * @param headers The trailer headers, with lowercase names.
+		 * @throws IOException if there is an error sending the trailers.
+		 */
+		public void sendTrailers(final List<NameValuePair<String, String>> headers) throws IOException {
+			beginWrite();
+			try {
+				lock.lock();
+				try {
+					checkStreamFailure();
+					localClosed = true;
+				} finally {
+					lock.unlock();
+				}
+				writeHeaders(headers, true);
+			} finally {
+				endWrite();
+			}
+			releaseIfComplete();
+		}
+
+		/**
+		 * Writes a header block in a <code>HEADERS</code> frame followed by as many <code>CONTINUATION</code> frames as needed. Must be called while holding
+		 * {@link HTTP2Connection#writeLock}.
+		 * @param headers The headers to write.
+		 * @param endStream Whether the headers end the request.
+		 * @throws IOException if there is an error writing the frames.
+		 */
+		private void writeHeaders(final List<NameValuePair<String, String>> headers, final boolean endStream) throws IOException {
+			final byte[] block = encoder.encode(headers);
+			final int maxFrameSize = peerMaxFrameSize;
+			int offset = 0;
+			do {
+				final int length = Math.min(block.length - offset, maxFrameSize);
+				final boolean endHeaders = offset + length == block.length;
+				final int type = offset == 0 ? HEADERS : CONTINUATION;
+				final int flags = (endHeaders ? FLAG_END_HEADERS : 0) | (type == HEADERS && endStream ? FLAG_END_STREAM : 0);
+				writeFrame(type, flags, id, block, offset, length);
+				offset += length;
+			} while(offset < block.length);
+		}
+
+		/**
+		 * Sends request data, waiting for flow-control windows to open as needed.
+		 * @param bytes The bytes containing the data.
+		 * @param offset The offset of the data.
+		 * @param length The length of the data.
+		 * @param endStream Whether the data ends the request.
+		 * @throws IOException if there is an error sending the data or the stream fails.
+		 */
+		public void sendData(final byte[] bytes, int offset, int length, final boolean endStream) throws IOException {
+			do {
+				final int frameLength;
+				lock.lock();
+				try {
+					while(length > 0 && streamFailure == null && failure == null && (sendWindow <= 0 || HTTP2Connection.this.sendWindow <= 0)) {
+						sendWindowAvailable.await();
+					}
+					checkStreamFailure();
+					frameLength = length == 0 ? 0 : (int)Math.min(Math.min(length, peerMaxFrameSize), Math.min(sendWindow, HTTP2Connection.this.sendWindow));
+					sendWindow -= frameLength;
+					HTTP2Connection.this.sendWindow -= frameLength;
+					if(endStream && frameLength == length) {
+						localClosed = true;
+					}
+				} catch(final InterruptedException interruptedException) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while waiting for HTTP/2 flow control.");
+				} finally {
+					lock.unlock();
+				}
+				beginWrite();
+				try {
+					writeFrame(DATA, endStream && frameLength == length ? FLAG_END_STREAM : 0, id, bytes, offset, frameLength);
+				} catch(final IOException ioException) {
+					HTTP2Connection.this.fail(ioException, -1);
+					throw ioException;
+				} finally {
+					endWrite();
+				}
+				offset += frameLength;
+				length -= frameLength;
+			} while(length > 0);
+			releaseIfComplete();
+		}
+
+		/**
+		 * Retrieves the next header list or data received on the stream, waiting if needed. Consuming data reopens the flow-control windows for the server.
+		 * @param timeout The number of milliseconds to wait for the server, or <code>0</code> to wait indefinitely.
+		 * @return The next header list as a {@link List} of {@link NameValuePair}, or the next data as a <code>byte[]</code>, or <code>null</code> if the
+		 *         response has been completely received.
+		 * @throws SocketTimeoutException if nothing was received before the timeout.
+		 * @throws IOException if the stream failed or the current thread is interrupted while waiting.
+		 */
+		public Object receive(final int timeout) throws IOException {
+			final Object next;
+			final List<byte[]> windowUpdates = new ArrayList<byte[]>(2);
+			lock.lock();
+			try {
+				long remainingNanos = MILLISECONDS.toNanos(timeout);
+				while(received.isEmpty() && !remoteClosed && streamFailure == null) {
+					if(timeout == 0) {
+						receivedAvailable.await();
+					} else {
+						if(remainingNanos <= 0) {
+							throw new SocketTimeoutException("No response on HTTP/2 stream " + id + " after " + timeout + " ms.");
+						}
+						remainingNanos = receivedAvailable.awaitNanos(remainingNanos);
+					}
+				}
+				next = received.poll();
+				if(next == null) {
+					checkStreamFailure();
+					return null; //the response is complete
+				}
+				if(next instanceof byte[]) { //reopen the windows for data the application has consumed
+					final int length = ((byte[])next).length;
+					consume(length);
+					receiveUnacknowledged += length;
+					if(receiveUnacknowledged >= STREAM_RECEIVE_WINDOW / 2 && !remoteClosed) {
+						windowUpdates.add(toFrame(WINDOW_UPDATE, 0, id, toBytes(receiveUnacknowledged)));
+						receiveWindow += receiveUnacknowledged;
+						receiveUnacknowledged = 0;
+					}
+				}
+			} catch(final InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for HTTP/2 response.");
+			} finally {
+				lock.unlock();
+			}
+			controlFrames.addAll(windowUpdates);
+			flushControlFrames();
+			return next;
+		}
+
+		/**
+		 * Abandons the stream. If the exchange is not complete, the server is told to cancel the stream.
+		 */
+		public void cancel() {
+			final boolean complete;
+			final boolean opened;
+			lock.lock();
+			try {
+				Object next;
+				while((next = received.poll()) != null) { //return unread data to the connection window
+					if(next instanceof byte[]) {
+						consume(((byte[])next).length);
+					}
+				}
+				complete = released;
+				opened = id != 0 && streamFailure == null;
+			} finally {
+				lock.unlock();
+			}
+			if(complete) {
+				try {
+					flushControlFrames();
+				} catch(final IOException ioException) {
+					HTTP2Connection.this.fail(ioException, -1);
+				}
+			} else if(opened) {
+				reset(CANCEL, new IOException("Stream " + id + " cancelled."));
+			} else {
+				fail(new IOException("Stream cancelled."));
+			}
+		}
+
+		/**
+		 * Resets the stream, notifying the server and failing the stream.
+		 * @param errorCode The error code to send to the server.
+		 * @param ioException The cause of the reset.
+		 */
+		private void reset(final int errorCode, final IOException ioException) {
+			controlFrames.add(toFrame(RST_STREAM, 0, id, toBytes(errorCode)));
+			fail(ioException);
+			try {
+				flushControlFrames();
+			} catch(final IOException writeIOException) {
+				HTTP2Connection.this.fail(writeIOException, -1);
+			}
+		}
+
+		/**
+		 * Ensures the stream has not failed. Must be called while holding the connection lock.
+		 * @throws IOException if the stream has failed.
+		 */
+		private void checkStreamFailure() throws IOException {
+			if(streamFailure != null) {
+				if(streamFailure instanceof HTTP2Exception) { //preserve the error code and whether the request may be retried
+					final HTTP2Exception http2Exception = (HTTP2Exception)streamFailure;
+					throw (HTTP2Exception)new HTTP2Exception(http2Exception.getErrorCode(), http2Exception.getMessage(), http2Exception.isRefused())
+							.initCause(streamFailure);
+				}
+				throw new IOException(streamFailure.getMessage(), streamFailure);
+			}
+		}
+
+		/**
+		 * Fails the stream and releases its slot.
+		 * @param ioException The cause of the failure.
+		 */
+		void fail(final IOException ioException) {
+			lock.lock();
+			try {
+				if(streamFailure == null && !(localClosed && remoteClosed)) {
+					streamFailure = ioException;
+				}
+				receivedAvailable.signalAll();
+				sendWindowAvailable.signalAll();
+				release();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Delivers data received from the server. Called on the reader thread.
+		 * @param payload The frame payload.
+		 * @param offset The offset of the data.
+		 * @param length The length of the data.
+		 * @param endStream Whether the data ends the response.
+		 */
+		private void onData(final byte[] payload, final int offset, final int length, final boolean endStream) {
+			lock.lock();
+			try {
+				receiveWindow -= payload.length;
+				if(receiveWindow < 0) {
+					consume(length); //the connection window still counts the data we're discarding
+				} else if(remoteClosed || streamFailure != null) {
+					consume(length);
+					return;
+				} else {
+					if(length > 0) {
+						received.add(Arrays.copyOfRange(payload, offset, offset + length));
+					}
+					if(endStream) {
+						remoteClosed = true;
+					}
+					receivedAvailable.signalAll();
+					releaseIfCompleteLocked();
+					return;
+				}
+			} finally {
+				lock.unlock();
+			}
+			reset(FLOW_CONTROL_ERROR, new HTTP2Exception(FLOW_CONTROL_ERROR, "Server exceeded flow-control window of stream " + id + "."));
+		}
+
+		/**
+		 * Delivers headers received from the server. Called on the reader thread.
+		 * @param headers The decoded headers.
+		 * @param endStream Whether the headers end the response.
+		 */
+		private void onHeaders(final List<NameValuePair<String, String>> headers, final boolean endStream) {
+			lock.lock();
+			try {
+				if(remoteClosed || streamFailure != null) {
+					return;
+				}
+				received.add(headers);
+				if(endStream) {
+					remoteClosed = true;
+				}
+				receivedAvailable.signalAll();
+				releaseIfCompleteLocked();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Releases the stream's slot if both the request and response are complete. */
+		private void releaseIfComplete() {
+			lock.lock();
+			try {
+				releaseIfCompleteLocked();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/** Releases the stream's slot if both the request and response are complete. Must be called while holding the connection lock. */
+		private void releaseIfCompleteLocked() {
+			if(localClosed && remoteClosed) {
+				release();
+			}
+		}
+
+		/**
+		 * Removes the stream from the connection and makes its slot available to another stream. If the connection is shutting down and this was the last stream,
+		 * the connection is closed. Must be called while holding the connection lock.
+		 */
+		private void release() {
+			if(released) {
+				return;
+			}
+			released = true;
+			if(id != 0) {
+				streams.remove(id);
+			}
+			--activeStreamCount;
+			streamAvailable.signal();
+			if(goingAway && failure == null && activeStreamCount == 0) { //close a connection that is shutting down once it is idle
+				close();
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Stream " + id + " of " + HTTP2Connection.this;
+		}
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */package com.globalmentor.net.http;
+
+import java.io.IOException;
+
+/**
+ * Indicates an HTTP/2 connection or stream error, as defined by <a href="https://tools.ietf.org/html/rfc7540">RFC 7540</a>, "Hypertext Transfer Protocol
+ * Version 2 (HTTP/2)".
+ * @author Garret Wilson
+ */
+public class HTTP2Exception extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The HTTP/2 error code. */
+	private final int errorCode;
+
+	/** @return The HTTP/2 error code, such as <code>0x1</code> for <code>PROTOCOL_ERROR</code>. */
+	public int getErrorCode() {
+		return errorCode;
+	}
+
+	/** Whether the request was not processed by the server and can safely be retried on another connection. */
+	private final boolean refused;
+
+	/**
+	 * Indicates whether the server did not process the request, because the stream was refused or was not accepted before the connection was shut down. Such
+	 * a request may be safely retried on another connection, even if it is not idempotent.
+	 * @return <code>true</code> if the request was not processed by the server.
+	 */
+	public boolean isRefused() {
+		return refused;
+	}
+
+	/**
+	 * Error code and message constructor.
+	 * @param errorCode The HTTP/2 error code.
+	 * @param message The error message, or <code>null</code> if there is no message.
+	 */
+	public HTTP2Exception(final int errorCode, final String message) {
+		this(errorCode, message, false);
+	}
+
+	/**
+	 * Error code, message, and refused constructor.
+	 * @param errorCode The HTTP/2 error code.
+	 * @param message The error message, or <code>null</code> if there is no message.
+	 * @param refused Whether the request was not processed by the server.
+	 */
+	public HTTP2Exception(final int errorCode, final String message, final boolean refused) {
+		super(message);
+		this.errorCode = errorCode;
+		this.refused = refused;
+	}
+
+}
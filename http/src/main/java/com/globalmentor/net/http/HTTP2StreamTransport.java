@@ -0,0 +1,545 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.globalmentor.java.Bytes;
+import com.globalmentor.model.NameValuePair;
+
+import static com.globalmentor.net.HTTP.*;
+import static com.globalmentor.net.http.HTTP2.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.*;
+
+/**
+ * A transport carrying a single request/response exchange over a stream of an {@link HTTP2Connection}.
+ * <p>
+ * The transport presents the exchange in HTTP/1.1 message syntax, so that the request writing and response parsing of {@link HTTPClientTCPConnection} work
+ * unchanged. The request line and headers written to the output stream are translated into an HTTP/2 header list, and the request body, whether delimited by
+ * its content length or by chunked transfer coding, is sent in <code>DATA</code> frames. The response is presented with an <code>HTTP/2.0</code> status
+ * line; a response body without a content length is presented using chunked transfer coding, with any trailers.
+ * </p>
+ * <p>
+ * Each transport carries only one exchange; the underlying connection is shared instead. Closing the transport before the exchange is
+ * complete cancels the stream.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTP2Connection
+ */
+class HTTP2StreamTransport extends HTTPTransport {
+
+	/** The names of HTTP/1.1 connection-specific headers, which may not appear in HTTP/2 messages. */
+	private static final Set<String> CONNECTION_SPECIFIC_HEADER_NAMES = new HashSet<String>(
+			Arrays.asList("connection", "keep-alive", "proxy-connection", "transfer-encoding", "upgrade", "host"));
+
+	/** The bytes ending the header section of an HTTP/1.1 message. */
+	private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+	/** The connection over which the stream is sent. */
+	private final HTTP2Connection connection;
+
+	/** The stream of the exchange. */
+	private final HTTP2Connection.Stream stream;
+
+	/** The method of the request, or <code>null</code> if the request headers have not been written. */
+	private volatile String requestMethod = null;
+
+	/** The input stream presenting the response. */
+	private final ResponseInputStream inputStream = new ResponseInputStream();
+
+	/** The output stream translating the request. */
+	private final RequestOutputStream outputStream = new RequestOutputStream();
+
+	/** Whether the transport has been closed. */
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+
+	/**
+	 * Connection constructor. A stream is reserved on the connection, waiting if the server's limit of concurrent streams has been reached.
+	 * @param connection The connection over which to send the exchange.
+	 * @throws NullPointerException if the given connection is <code>null</code>.
+	 * @throws HTTP2Exception if the connection is no longer accepting streams.
+	 * @throws IOException if there is an error reserving a stream.
+	 */
+	public HTTP2StreamTransport(final HTTP2Connection connection) throws IOException {
+		super(requireNonNull(connection, "Connection cannot be null.").getHost(), connection.isSecure());
+		this.connection = connection;
+		this.stream = connection.newStream();
+	}
+
+	@Override
+	public InetAddress getInetAddress() {
+		return connection.getInetAddress();
+	}
+
+	@Override
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	@Override
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	/**
+	 * {@inheritDoc} Once the request has been sent, this implementation reflects the state of the stream rather than that of the connection, so that a response
+	 * already received may be read even after the server closes the connection.
+	 */
+	@Override
+	public boolean isOpen() {
+		if(closed.get()) {
+			return false;
+		}
+		return stream.getId() != 0 ? !stream.isFailed() : connection.isAcceptingStreams();
+	}
+
+	/** {@inheritDoc} This implementation returns <code>false</code> once a request has been written, as each stream carries a single exchange. */
+	@Override
+	public boolean isReusable() {
+		return requestMethod == null;
+	}
+
+	/** {@inheritDoc} If the exchange is not complete, the stream is cancelled. The underlying connection remains open. */
+	@Override
+	public void close() {
+		if(closed.compareAndSet(false, true)) { //only cancel the stream once, even if aborted from another thread
+			stream.cancel();
+		}
+	}
+
+	/**
+	 * Converts HTTP/1.1 headers to HTTP/2 headers by lowercasing their names and removing connection-specific headers.
+	 * @param headers The HTTP/1.1 headers.
+	 * @param http2Headers The list to which to add the HTTP/2 headers.
+	 */
+	private static void addHTTP2Headers(final Iterable<NameValuePair<String, String>> headers, final List<NameValuePair<String, String>> http2Headers) {
+		for(final NameValuePair<String, String> header : headers) {
+			final String name = header.getName().toLowerCase(Locale.ROOT);
+			if(CONNECTION_SPECIFIC_HEADER_NAMES.contains(name)) {
+				continue;
+			}
+			if(name.equals("te") && !header.getValue().trim().equalsIgnoreCase("trailers")) { //only "trailers" is allowed for TE
+				continue;
+			}
+			http2Headers.add(new NameValuePair<String, String>(name, header.getValue()));
+		}
+	}
+
+	/**
+	 * Finds the value of a header.
+	 * @param headers The headers to search.
+	 * @param name The name of the header to find.
+	 * @return The value of the first header with the given name, compared without regard to case, or <code>null</code> if there is no such header.
+	 */
+	private static String getHeaderValue(final Iterable<NameValuePair<String, String>> headers, final String name) {
+		for(final NameValuePair<String, String> header : headers) {
+			if(header.getName().equalsIgnoreCase(name)) {
+				return header.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * An output stream parsing an HTTP/1.1 request and sending it on the stream. Data is buffered and sent in frames when the buffer fills, when the stream is
+	 * flushed, and when the request ends.
+	 * @author Garret Wilson
+	 */
+	private class RequestOutputStream extends OutputStream {
+
+		/** The request line and headers collected so far, or <code>null</code> once they have been sent. */
+		private ByteArrayOutputStream head = new ByteArrayOutputStream();
+
+		/** The number of bytes of the header terminator matched so far. */
+		private int headerEndMatchCount = 0;
+
+		/** Whether the request body is delimited using chunked transfer coding. */
+		private boolean chunked = false;
+
+		/** The number of body bytes remaining of a request with a content length. */
+		private long remaining = 0;
+
+		/** Whether the request has been completely sent. */
+		private boolean ended = false;
+
+		/** The state of chunked decoding: <code>0</code> for the chunk size line, <code>1</code> for chunk data, <code>2</code> for the CRLF after chunk data. */
+		private int chunkState = 0;
+
+		/** The number of bytes remaining in the current chunk. */
+		private long chunkRemaining = 0;
+
+		/** The chunk size or trailer line being collected. */
+		private final StringBuilder line = new StringBuilder();
+
+		/** The trailers being collected, or <code>null</code> if the last chunk has not been reached. */
+		private ByteArrayOutputStream trailers = null;
+
+		/** The buffered body data not yet sent. */
+		private final byte[] buffer = new byte[DEFAULT_MAX_FRAME_SIZE];
+
+		/** The number of bytes in the buffer. */
+		private int count = 0;
+
+		@Override
+		public void write(final int b) throws IOException {
+			write(new byte[] {(byte)b}, 0, 1);
+		}
+
+		@Override
+		public void write(final byte[] bytes, int offset, int length) throws IOException {
+			while(length > 0) {
+				if(ended) {
+					throw new IOException("Request body exceeds its declared length.");
+				}
+				if(head != null) { //collect the header section
+					final byte b = bytes[offset++];
+					--length;
+					head.write(b);
+					headerEndMatchCount = b == HEADER_END[headerEndMatchCount] ? headerEndMatchCount + 1 : (b == HEADER_END[0] ? 1 : 0);
+					if(headerEndMatchCount == HEADER_END.length) {
+						sendHead();
+					}
+				} else if(!chunked) {
+					final int dataLength = (int)Math.min(length, remaining);
+					writeData(bytes, offset, dataLength);
+					offset += dataLength;
+					length -= dataLength;
+					remaining -= dataLength;
+					if(remaining == 0) {
+						endRequest(null);
+					}
+				} else if(chunkState == 1) {
+					final int dataLength = (int)Math.min(length, chunkRemaining);
+					writeData(bytes, offset, dataLength);
+					offset += dataLength;
+					length -= dataLength;
+					chunkRemaining -= dataLength;
+					if(chunkRemaining == 0) {
+						chunkState = 2;
+					}
+				} else { //collect a line of chunked framing
+					final char c = (char)(bytes[offset++] & 0xff);
+					--length;
+					if(c != LF) {
+						if(c != CR) {
+							line.append(c);
+						}
+						continue;
+					}
+					if(trailers != null) { //the last chunk has been reached; collect trailers until an empty line
+						if(line.length() == 0) {
+							trailers.write(CR);
+							trailers.write(LF);
+							endRequest(HTTPParser.parseHeaders(new ByteArrayInputStream(trailers.toByteArray())));
+						} else {
+							trailers.write(line.toString().getBytes(ISO_8859_1), 0, line.length());
+							trailers.write(CR);
+							trailers.write(LF);
+						}
+					} else if(chunkState == 0) {
+						final int extensionIndex = line.indexOf(";");
+						final String chunkSize = (extensionIndex >= 0 ? line.substring(0, extensionIndex) : line.toString()).trim();
+						try {
+							chunkRemaining = Long.parseLong(chunkSize, 16);
+						} catch(final NumberFormatException numberFormatException) {
+							throw new IOException("Invalid chunk size " + chunkSize + ".", numberFormatException);
+						}
+						if(chunkRemaining == 0) {
+							trailers = new ByteArrayOutputStream();
+						} else {
+							chunkState = 1;
+						}
+					} else { //the end of chunk data
+						chunkState = 0;
+					}
+					line.setLength(0);
+				}
+			}
+		}
+
+		/**
+		 * Parses the collected request line and headers and sends them in a <code>HEADERS</code> frame.
+		 * @throws IOException if the request is invalid or there is an error sending the headers.
+		 */
+		private void sendHead() throws IOException {
+			final InputStream headInputStream = new ByteArrayInputStream(head.toByteArray());
+			head = null;
+			final String[] requestLine = HTTPParser.parseHeaderLine(headInputStream).split(" ");
+			if(requestLine.length != 3) {
+				throw new IOException("Invalid request line.");
+			}
+			final Iterable<NameValuePair<String, String>> headers = HTTPParser.parseHeaders(headInputStream);
+			final String method = requestLine[0];
+			final String authority = getHeaderValue(headers, HOST_HEADER);
+			final List<NameValuePair<String, String>> http2Headers = new ArrayList<NameValuePair<String, String>>();
+			http2Headers.add(new NameValuePair<String, String>(":method", method));
+			http2Headers.add(new NameValuePair<String, String>(":scheme", isSecure() ? HTTPS_URI_SCHEME : HTTP_URI_SCHEME));
+			http2Headers.add(new NameValuePair<String, String>(":authority", authority != null ? authority : getHost().toString()));
+			http2Headers.add(new NameValuePair<String, String>(":path", requestLine[1]));
+			addHTTP2Headers(headers, http2Headers);
+			final String transferEncoding = getHeaderValue(headers, TRANSFER_ENCODING_HEADER);
+			final String contentLength = getHeaderValue(headers, CONTENT_LENGTH_HEADER);
+			if(transferEncoding != null && transferEncoding.trim().equalsIgnoreCase(CHUNKED_TRANSFER_CODING)) {
+				chunked = true;
+			} else if(contentLength != null) {
+				try {
+					remaining = Long.parseLong(contentLength.trim());
+				} catch(final NumberFormatException numberFormatException) {
+					throw new IOException("Invalid content length " + contentLength + ".", numberFormatException);
+				}
+			}
+			requestMethod = method;
+			ended = !chunked && remaining == 0;
+			stream.open(http2Headers, ended);
+		}
+
+		/**
+		 * Buffers request body data, sending the buffer whenever it fills.
+		 * @param bytes The bytes containing the data.
+		 * @param offset The offset of the data.
+		 * @param length The length of the data.
+		 * @throws IOException if there is an error sending the data.
+		 */
+		private void writeData(final byte[] bytes, int offset, int length) throws IOException {
+			while(length > 0) {
+				final int bufferLength = Math.min(length, buffer.length - count);
+				System.arraycopy(bytes, offset, buffer, count, bufferLength);
+				count += bufferLength;
+				offset += bufferLength;
+				length -= bufferLength;
+				if(count == buffer.length) {
+					stream.sendData(buffer, 0, count, false);
+					count = 0;
+				}
+			}
+		}
+
+		/**
+		 * Sends any buffered data and ends the request.
+		 * @param trailers The trailers to send, or <code>null</code> if there are no trailers.
+		 * @throws IOException if there is an error sending the data.
+		 */
+		private void endRequest(final Iterable<NameValuePair<String, String>> trailers) throws IOException {
+			ended = true;
+			final List<NameValuePair<String, String>> http2Trailers = new ArrayList<NameValuePair<String, String>>();
+			if(trailers != null) {
+				addHTTP2Headers(trailers, http2Trailers);
+			}
+			if(http2Trailers.isEmpty()) {
+				stream.sendData(buffer, 0, count, true);
+			} else {
+				if(count > 0) {
+					stream.sendData(buffer, 0, count, false);
+				}
+				stream.sendTrailers(http2Trailers);
+			}
+			count = 0;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if(count > 0) {
+				stream.sendData(buffer, 0, count, false);
+				count = 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+
+	/**
+	 * An input stream presenting the response received on the stream as an HTTP/1.1 message.
+	 * @author Garret Wilson
+	 */
+	private class ResponseInputStream extends InputStream {
+
+		/** The bytes being read. */
+		private byte[] bytes = Bytes.NO_BYTES;
+
+		/** The position of the next byte to read. */
+		private int position = 0;
+
+		/** Whether the response head has been read. */
+		private boolean headRead = false;
+
+		/** Whether the response has no body, e.g. a response to a <code>HEAD</code> request. */
+		private boolean bodiless = false;
+
+		/** Whether the response body is presented using chunked transfer coding. */
+		private boolean chunked = false;
+
+		/** The response trailers, or <code>null</code> if there are no trailers. */
+		private List<NameValuePair<String, String>> trailers = null;
+
+		/** Whether the response has been read in its entirety. */
+		private boolean ended = false;
+
+		/**
+		 * Ensures that bytes are available to read, retrieving more of the response if needed.
+		 * @return <code>true</code> if bytes are available, or <code>false</code> if the end of the response has been reached.
+		 * @throws IOException if there is an error receiving the response.
+		 */
+		private boolean fill() throws IOException {
+			while(position >= bytes.length) {
+				if(ended) {
+					return false;
+				}
+				bytes = next();
+				position = 0;
+			}
+			return true;
+		}
+
+		/**
+		 * Retrieves the next part of the response.
+		 * @return The next bytes of the response, which may be empty.
+		 * @throws IOException if there is an error receiving the response.
+		 */
+		private byte[] next() throws IOException {
+			if(!headRead) {
+				return readHead();
+			}
+			if(bodiless) {
+				ended = true;
+				return Bytes.NO_BYTES;
+			}
+			final Object received = stream.receive(getReadTimeout());
+			if(received == null) {
+				ended = true;
+				return chunked ? formatLastChunk() : Bytes.NO_BYTES;
+			}
+			if(received instanceof byte[]) {
+				final byte[] data = (byte[])received;
+				if(!chunked || data.length == 0) {
+					return data;
+				}
+				final byte[] chunkSize = (Integer.toHexString(data.length) + "\r\n").getBytes(US_ASCII);
+				final byte[] chunk = Arrays.copyOf(chunkSize, chunkSize.length + data.length + 2);
+				System.arraycopy(data, 0, chunk, chunkSize.length, data.length);
+				chunk[chunk.length - 2] = CR;
+				chunk[chunk.length - 1] = LF;
+				return chunk;
+			}
+			@SuppressWarnings("unchecked")
+			final List<NameValuePair<String, String>> headers = (List<NameValuePair<String, String>>)received;
+			trailers = headers;
+			return Bytes.NO_BYTES;
+		}
+
+		/**
+		 * Waits for the final response headers and formats them as an HTTP/1.1 status line and headers. Interim (1xx) responses are skipped.
+		 * @return The bytes of the status line and headers.
+		 * @throws IOException if there is an error receiving the headers or the response is invalid.
+		 */
+		private byte[] readHead() throws IOException {
+			if(requestMethod == null) {
+				throw new IOException("No request has been sent.");
+			}
+			while(true) {
+				final Object received = stream.receive(getReadTimeout());
+				if(received == null) {
+					throw new EOFException("Stream ended without a response.");
+				}
+				if(!(received instanceof List)) {
+					throw new HTTP2Exception(PROTOCOL_ERROR, "Data received before response headers.");
+				}
+				@SuppressWarnings("unchecked")
+				final List<NameValuePair<String, String>> headers = (List<NameValuePair<String, String>>)received;
+				final String status = getHeaderValue(headers, ":status");
+				final int statusCode;
+				try {
+					statusCode = status != null ? Integer.parseInt(status) : -1;
+				} catch(final NumberFormatException numberFormatException) {
+					throw new HTTP2Exception(PROTOCOL_ERROR, "Invalid status " + status + ".");
+				}
+				if(statusCode < 100 || statusCode > 999) {
+					throw new HTTP2Exception(PROTOCOL_ERROR, "Missing or invalid response status.");
+				}
+				if(statusCode < 200) { //skip interim responses
+					continue;
+				}
+				headRead = true;
+				bodiless = "HEAD".equals(requestMethod) || statusCode == SC_NO_CONTENT || statusCode == SC_NOT_MODIFIED;
+				chunked = !bodiless && getHeaderValue(headers, CONTENT_LENGTH_HEADER) == null;
+				final StringBuilder headBuilder = new StringBuilder("HTTP/2.0 ").append(statusCode).append(' ').append(CRLF); //HTTP/2 has no reason phrase
+				appendHeaders(headBuilder, headers);
+				if(chunked) {
+					headBuilder.append(TRANSFER_ENCODING_HEADER).append(": ").append(CHUNKED_TRANSFER_CODING).append(CRLF);
+				}
+				headBuilder.append(CRLF);
+				return headBuilder.toString().getBytes(ISO_8859_1);
+			}
+		}
+
+		/**
+		 * @return The bytes of the last chunk, followed by any trailers and the final CRLF.
+		 */
+		private byte[] formatLastChunk() {
+			final StringBuilder lastChunkBuilder = new StringBuilder("0").append(CRLF);
+			if(trailers != null) {
+				appendHeaders(lastChunkBuilder, trailers);
+			}
+			lastChunkBuilder.append(CRLF);
+			return lastChunkBuilder.toString().getBytes(ISO_8859_1);
+		}
+
+		/**
+		 * Appends header lines for all headers except pseudo-headers.
+		 * @param stringBuilder The string builder to which to append the headers.
+		 * @param headers The headers to append.
+		 */
+		private void appendHeaders(final StringBuilder stringBuilder, final List<NameValuePair<String, String>> headers) {
+			for(final NameValuePair<String, String> header : headers) {
+				if(!header.getName().startsWith(":")) {
+					stringBuilder.append(header.getName()).append(": ").append(header.getValue()).append(CRLF);
+				}
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fill() ? bytes[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+			if(length == 0) {
+				return 0;
+			}
+			if(!fill()) {
+				return -1;
+			}
+			final int readLength = Math.min(length, bytes.length - position);
+			System.arraycopy(bytes, position, buffer, offset, readLength);
+			position += readLength;
+			return readLength;
+		}
+
+		@Override
+		public int available() {
+			return bytes.length - position;
+		}
+	}
+
+}
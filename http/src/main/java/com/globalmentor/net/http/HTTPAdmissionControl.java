@@ -0,0 +1,413 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+import com.globalmentor.net.Host;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.Objects.*;
+
+/**
+ * Limits the number of request/response exchanges in progress with each host. An exchange must be admitted before it begins; once the limit for a host has
+ * been reached, further exchanges wait in a first-in, first-out queue until an exchange with the host ends. If the queue for a host is full, an exchange is
+ * rejected immediately with an {@link HTTPAdmissionException}, so that overload is reported to the caller at once rather than as connection refusals and
+ * timeouts from the host.
+ * <p>
+ * The number of exchanges admitted, queued and rejected, and the time spent waiting in the queue, are recorded for all hosts.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPClient#setAdmissionControl(HTTPAdmissionControl)
+ * @see AdaptiveHTTPAdmissionControl
+ */
+public class HTTPAdmissionControl {
+
+	/** The default maximum number of exchanges in progress with each host. */
+	public static final int DEFAULT_MAX_CONCURRENCY = HTTPConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+	/** The default maximum number of exchanges waiting to be admitted for each host. */
+	public static final int DEFAULT_MAX_QUEUE_LENGTH = 64;
+
+	/** The lock guarding the admission state. */
+	private final Lock lock = new ReentrantLock();
+
+	/** The admission state of each host with exchanges in progress or waiting; guarded by {@link #lock}. */
+	private final Map<Host, HostState> hostStates = new HashMap<Host, HostState>();
+
+	/** The maximum number of exchanges in progress with each host. */
+	private final int maxConcurrency;
+
+	/** @return The maximum number of exchanges in progress with each host. */
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/** The maximum number of exchanges waiting to be admitted for each host. */
+	private final int maxQueueLength;
+
+	/** @return The maximum number of exchanges waiting to be admitted for each host; <code>0</code> indicates that exchanges never wait. */
+	public int getMaxQueueLength() {
+		return maxQueueLength;
+	}
+
+	/** The number of exchanges admitted. */
+	private final LongAdder admittedCount = new LongAdder();
+
+	/** @return The number of exchanges admitted, whether at once or after waiting. */
+	public long getAdmittedCount() {
+		return admittedCount.sum();
+	}
+
+	/** The number of exchanges that waited in a queue before being admitted. */
+	private final LongAdder queuedCount = new LongAdder();
+
+	/** @return The number of exchanges that waited in a queue before being admitted. */
+	public long getQueuedCount() {
+		return queuedCount.sum();
+	}
+
+	/** The number of exchanges rejected because the queue was full. */
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/** @return The number of exchanges rejected because the queue was full. */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/** The total number of nanoseconds admitted exchanges spent waiting in a queue. */
+	private final LongAdder totalQueueNanos = new LongAdder();
+
+	/** @return The total number of nanoseconds admitted exchanges spent waiting in a queue. */
+	public long getTotalQueueNanos() {
+		return totalQueueNanos.sum();
+	}
+
+	/** The longest number of nanoseconds an admitted exchange spent waiting in a queue. */
+	private final AtomicLong maxQueueNanos = new AtomicLong();
+
+	/** @return The longest number of nanoseconds an admitted exchange spent waiting in a queue. */
+	public long getMaxQueueNanos() {
+		return maxQueueNanos.get();
+	}
+
+	/** Default constructor with the {@link #DEFAULT_MAX_CONCURRENCY default maximum concurrency} and {@link #DEFAULT_MAX_QUEUE_LENGTH queue length}. */
+	public HTTPAdmissionControl() {
+		this(DEFAULT_MAX_CONCURRENCY, DEFAULT_MAX_QUEUE_LENGTH);
+	}
+
+	/**
+	 * Limits constructor.
+	 * @param maxConcurrency The maximum number of exchanges in progress with each host.
+	 * @param maxQueueLength The maximum number of exchanges waiting to be admitted for each host, or <code>0</code> if exchanges should never wait.
+	 * @throws IllegalArgumentException if the maximum concurrency is not positive or the maximum queue length is negative.
+	 */
+	public HTTPAdmissionControl(final int maxConcurrency, final int maxQueueLength) {
+		this.maxConcurrency = checkArgumentPositive(maxConcurrency);
+		this.maxQueueLength = checkArgumentNotNegative(maxQueueLength);
+	}
+
+	/**
+	 * Determines the maximum number of exchanges in progress with a host. This version returns the {@link #getMaxConcurrency() maximum concurrency} for all
+	 * hosts.
+	 * @param host The host.
+	 * @return The maximum number of exchanges in progress with the host.
+	 */
+	protected int getMaxConcurrency(final Host host) {
+		return getMaxConcurrency();
+	}
+
+	/**
+	 * Returns the number of exchanges in progress with a host.
+	 * @param host The host.
+	 * @return The number of exchanges admitted for the host that have not yet been released.
+	 */
+	public int getActiveCount(final Host host) {
+		lock.lock();
+		try {
+			final HostState hostState = hostStates.get(host);
+			return hostState != null ? hostState.activeCount : 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns the number of exchanges waiting to be admitted for a host.
+	 * @param host The host.
+	 * @return The number of exchanges in the queue for the host.
+	 */
+	public int getQueueLength(final Host host) {
+		lock.lock();
+		try {
+			final HostState hostState = hostStates.get(host);
+			return hostState != null ? hostState.waiters.size() : 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Admits an exchange with a host, waiting in the queue for the host if the host already has the maximum number of exchanges in progress. Each admitted
+	 * exchange must be followed by a call to {@link #release(Host)} when the exchange ends.
+	 * @param host The host with which to exchange.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 * @throws HTTPAdmissionException if the queue for the host is full.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting in the queue, in which case the exchange was not admitted.
+	 */
+	public void acquire(final Host host) throws IOException {
+		final CompletableFuture<Void> admission = acquireAsync(host);
+		try {
+			admission.get();
+		} catch(final InterruptedException interruptedException) {
+			Thread.currentThread().interrupt(); //preserve the interrupted status
+			if(!cancel(host, admission)) { //if we were admitted in the meantime, give up our admission
+				release(host);
+			}
+			throw new InterruptedIOException("Interrupted while waiting for admission to " + host + ".");
+		} catch(final ExecutionException executionException) {
+			final Throwable cause = executionException.getCause();
+			throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+		}
+	}
+
+	/**
+	 * Admits an exchange with a host without blocking. If the host already has the maximum number of exchanges in progress, the returned future is completed
+	 * in turn when an earlier exchange with the host is {@link #release(Host) released}, on the thread releasing it. Each admitted exchange must be followed by a
+	 * call to {@link #release(Host)} when the exchange ends.
+	 * @param host The host with which to exchange.
+	 * @return A future completed when the exchange is admitted, or completed exceptionally with an {@link HTTPAdmissionException} if the queue for the host is
+	 *         full.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	public CompletableFuture<Void> acquireAsync(final Host host) {
+		requireNonNull(host, "Host cannot be null.");
+		final CompletableFuture<Void> admission = new CompletableFuture<Void>();
+		lock.lock();
+		try {
+			HostState hostState = hostStates.get(host);
+			if(hostState == null) {
+				hostState = new HostState();
+				hostStates.put(host, hostState);
+			}
+			if(hostState.waiters.isEmpty() && hostState.activeCount < getMaxConcurrency(host)) { //admit at once, unless others are already waiting
+				++hostState.activeCount;
+				admittedCount.increment();
+				admission.complete(null);
+			} else if(hostState.waiters.size() < getMaxQueueLength()) {
+				hostState.waiters.addLast(new Waiter(host, admission));
+			} else {
+				rejectedCount.increment();
+				if(hostState.isUnused()) {
+					hostStates.remove(host);
+				}
+				admission.completeExceptionally(new HTTPAdmissionException("Too many exchanges waiting for " + host + "; " + hostState.waiters.size() + " queued."));
+			}
+		} finally {
+			lock.unlock();
+		}
+		return admission;
+	}
+
+	/**
+	 * Removes an exchange from the queue for a host before it is admitted.
+	 * @param host The host with which the exchange was to take place.
+	 * @param admission The future admission of the exchange.
+	 * @return <code>true</code> if the exchange was waiting and has been removed, or <code>false</code> if it had already been admitted.
+	 */
+	protected boolean cancel(final Host host, final CompletableFuture<Void> admission) {
+		lock.lock();
+		try {
+			final HostState hostState = hostStates.get(host);
+			if(hostState == null) {
+				return false;
+			}
+			for(final Iterator<Waiter> waiterIterator = hostState.waiters.iterator(); waiterIterator.hasNext();) {
+				if(waiterIterator.next().admission == admission) {
+					waiterIterator.remove();
+					if(hostState.isUnused()) {
+						hostStates.remove(host);
+					}
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ends an admitted exchange with a host. If exchanges are waiting for the host, the first in the queue is admitted in its place.
+	 * @param host The host with which the exchange took place.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	public void release(final Host host) {
+		requireNonNull(host, "Host cannot be null.");
+		final List<Waiter> admittedWaiters = new ArrayList<Waiter>(1);
+		lock.lock();
+		try {
+			final HostState hostState = hostStates.get(host);
+			if(hostState == null || hostState.activeCount == 0) { //not an exchange we admitted
+				return;
+			}
+			--hostState.activeCount;
+			admitWaiters(host, hostState, admittedWaiters);
+			if(hostState.isUnused()) {
+				hostStates.remove(host);
+			}
+		} finally {
+			lock.unlock();
+		}
+		complete(admittedWaiters);
+	}
+
+	/**
+	 * Ends an admitted exchange with a host, first recording how the exchange went. If exchanges are waiting for the host, as many are admitted in its place
+	 * as the maximum number of exchanges in progress with the host now allows.
+	 * @param host The host with which the exchange took place.
+	 * @param latencyNanos The number of nanoseconds from admission until the host began responding, or <code>-1</code> if the host did not respond.
+	 * @param overloaded Whether the host indicated that it was overloaded, for example by failing to accept a connection or by responding with a server error.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 * @see #recordExchange(Host, long, boolean)
+	 */
+	public void release(final Host host, final long latencyNanos, final boolean overloaded) {
+		recordExchange(host, latencyNanos, overloaded);
+		release(host);
+	}
+
+	/**
+	 * Records how an exchange with a host went, before the exchange is released. This version does nothing; subclasses may adjust the
+	 * {@link #getMaxConcurrency(Host) maximum concurrency} for the host.
+	 * @param host The host with which the exchange took place.
+	 * @param latencyNanos The number of nanoseconds from admission until the host began responding, or <code>-1</code> if the host did not respond.
+	 * @param overloaded Whether the host indicated that it was overloaded.
+	 */
+	protected void recordExchange(final Host host, final long latencyNanos, final boolean overloaded) {
+	}
+
+	/**
+	 * Admits exchanges waiting for a host as long as the host has fewer than the maximum number of exchanges in progress, for example after the limit for the
+	 * host has been raised.
+	 * @param host The host for which to admit waiting exchanges.
+	 */
+	protected void admitWaiting(final Host host) {
+		final List<Waiter> admittedWaiters = new ArrayList<Waiter>();
+		lock.lock();
+		try {
+			final HostState hostState = hostStates.get(host);
+			if(hostState != null) {
+				admitWaiters(host, hostState, admittedWaiters);
+			}
+		} finally {
+			lock.unlock();
+		}
+		complete(admittedWaiters);
+	}
+
+	/**
+	 * Removes waiters from the head of the queue for a host as long as the host has fewer than the maximum number of exchanges in progress, counting them as
+	 * admitted. The lock must be held.
+	 * @param host The host.
+	 * @param hostState The admission state of the host.
+	 * @param admittedWaiters The list to which to add the admitted waiters, which must be completed after the lock is released.
+	 */
+	private void admitWaiters(final Host host, final HostState hostState, final List<Waiter> admittedWaiters) {
+		final long nowNanos = System.nanoTime();
+		while(!hostState.waiters.isEmpty() && hostState.activeCount < getMaxConcurrency(host)) {
+			final Waiter waiter = hostState.waiters.removeFirst();
+			++hostState.activeCount;
+			admittedCount.increment();
+			queuedCount.increment();
+			final long queueNanos = nowNanos - waiter.enqueuedNanos;
+			totalQueueNanos.add(queueNanos);
+			maxQueueNanos.accumulateAndGet(queueNanos, Math::max);
+			admittedWaiters.add(waiter);
+		}
+	}
+
+	/**
+	 * Completes the admission of waiters outside the lock, so that callers continuing on this thread do not hold up other admissions. If a waiter's admission
+	 * was already completed, e.g. by being cancelled, its admission is given up.
+	 * @param admittedWaiters The waiters that have been admitted.
+	 */
+	private void complete(final List<Waiter> admittedWaiters) {
+		for(final Waiter waiter : admittedWaiters) {
+			if(!waiter.admission.complete(null)) {
+				release(waiter.host);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(maxConcurrency=" + maxConcurrency + ", maxQueueLength=" + maxQueueLength + ", admitted=" + getAdmittedCount()
+				+ ", queued=" + getQueuedCount() + ", rejected=" + getRejectedCount() + ")";
+	}
+
+	/**
+	 * The admission state for a single host. All access must be guarded by the lock.
+	 * @author Garret Wilson
+	 */
+	private static class HostState {
+
+		/** The exchanges waiting to be admitted, in the order they arrived. */
+		final Deque<Waiter> waiters = new ArrayDeque<Waiter>();
+
+		/** The number of exchanges admitted and not yet released. */
+		int activeCount = 0;
+
+		/** @return <code>true</code> if no exchanges are in progress or waiting, so that the state need not be kept. */
+		boolean isUnused() {
+			return activeCount == 0 && waiters.isEmpty();
+		}
+	}
+
+	/**
+	 * An exchange waiting to be admitted.
+	 * @author Garret Wilson
+	 */
+	private static class Waiter {
+
+		/** The host with which the exchange is to take place. */
+		final Host host;
+
+		/** The future admission of the exchange. */
+		final CompletableFuture<Void> admission;
+
+		/** The {@link System#nanoTime()} at which the exchange started waiting. */
+		final long enqueuedNanos = System.nanoTime();
+
+		/**
+		 * Constructor.
+		 * @param host The host with which the exchange is to take place.
+		 * @param admission The future admission of the exchange.
+		 */
+		Waiter(final Host host, final CompletableFuture<Void> admission) {
+			this.host = host;
+			this.admission = admission;
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.IOException;
+
+/**
+ * Indicates that an exchange with a host was rejected by the client without being sent, because too many exchanges with the host were already in progress
+ * or waiting. Such an exchange is never retried automatically.
+ * @author Garret Wilson
+ * @see HTTPAdmissionControl
+ */
+public class HTTPAdmissionException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Message constructor.
+	 * @param message The error message, or <code>null</code> if there is no message.
+	 */
+	public HTTPAdmissionException(final String message) {
+		super(message);
+	}
+
+}
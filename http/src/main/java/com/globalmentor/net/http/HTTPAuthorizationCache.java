@@ -0,0 +1,126 @@
+/*
+ * Copyright © 1996-2008 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+
+import com.globalmentor.text.SyntaxException;
+
+import static com.globalmentor.java.Conditions.*;
+import static com.globalmentor.net.http.HTTPParser.*;
+
+/**
+ * A cache of credentials parsed from <code>Authorization</code> header values, so that a server need not parse the same header for every request from a
+ * client.
+ * <p>
+ * Only credentials that a client may send unchanged with many requests are cached, such as basic credentials. Digest credentials with a nonce count are
+ * unique to each request, and are always parsed without being cached, so that they do not displace credentials that will be used again. A repeated digest
+ * header is parsed again as well, and it is left to the server to detect its replayed nonce count, e.g. using a {@link DigestNonceManager}.
+ * </p>
+ * <p>
+ * The same credentials instance is returned for each use of a cached header; the credentials are immutable, as {@link BasicAuthenticateCredentials} returns
+ * a copy of its password. When the cache is full the header cached longest ago is evicted, and its credentials are parsed again if needed.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPParser#parseAuthorizationHeader(CharSequence)
+ */
+public class HTTPAuthorizationCache {
+
+	/** The shared authorization cache. */
+	public static final HTTPAuthorizationCache DEFAULT = new HTTPAuthorizationCache();
+
+	/** The default maximum number of header values to cache. */
+	public static final int DEFAULT_MAX_SIZE = 1024;
+
+	/** The maximum number of header values to cache. */
+	private final int maxSize;
+
+	/** @return The maximum number of header values to cache. */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/** The parsed credentials, keyed by header value. */
+	private final ConcurrentMap<String, AuthenticateCredentials> cache = new ConcurrentHashMap<String, AuthenticateCredentials>();
+
+	/** The cached header values, in the order they were cached. */
+	private final Queue<String> cachedHeaders = new ConcurrentLinkedQueue<String>();
+
+	/** Default constructor, caching up to {@value #DEFAULT_MAX_SIZE} header values. */
+	public HTTPAuthorizationCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Maximum size constructor.
+	 * @param maxSize The maximum number of header values to cache, or <code>0</code> if nothing should be cached.
+	 * @throws IllegalArgumentException if the given maximum size is negative.
+	 */
+	public HTTPAuthorizationCache(final int maxSize) {
+		this.maxSize = checkArgumentNotNegative(maxSize);
+	}
+
+	/**
+	 * Returns the credentials of an <code>Authorization</code> header value, parsing the header only if it is not cached.
+	 * @param header The header value.
+	 * @return The credentials from the authorization header.
+	 * @throws SyntaxException if the given header was not syntactically correct.
+	 * @throws IllegalArgumentException if the authorization information is not supported.
+	 * @see HTTPParser#parseAuthorizationHeader(CharSequence)
+	 */
+	public AuthenticateCredentials getCredentials(final CharSequence header) throws SyntaxException, IllegalArgumentException {
+		final String key = header.toString();
+		AuthenticateCredentials credentials = cache.get(key);
+		if(credentials == null) {
+			credentials = parseAuthorizationHeader(key);
+			if(credentials != null && maxSize > 0 && isCacheable(credentials) && cache.putIfAbsent(key, credentials) == null) {
+				cachedHeaders.add(key);
+				while(cache.size() > maxSize) { //make room by evicting the oldest header; frequently used headers will soon be cached again
+					final String evictedHeader = cachedHeaders.poll();
+					if(evictedHeader == null) {
+						break;
+					}
+					cache.remove(evictedHeader);
+				}
+			}
+		}
+		return credentials;
+	}
+
+	/**
+	 * Determines whether parsed credentials may be cached. Credentials may be cached if a client may send the same header for other requests.
+	 * <p>
+	 * This version caches all credentials except digest credentials with a nonce count, as the nonce count makes each such header unique.
+	 * </p>
+	 * @param credentials The parsed credentials.
+	 * @return <code>true</code> if the credentials may be cached.
+	 */
+	protected boolean isCacheable(final AuthenticateCredentials credentials) {
+		return !(credentials instanceof DigestAuthenticateCredentials) || ((DigestAuthenticateCredentials)credentials).getNonceCount() < 0;
+	}
+
+	/** Removes all cached credentials. */
+	public void clear() {
+		cache.clear();
+		cachedHeaders.clear();
+	}
+
+}
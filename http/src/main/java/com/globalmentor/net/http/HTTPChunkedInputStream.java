@@ -200,12 +200,12 @@ public int available() throws IOException {
 
 	/** {@inheritDoc} This implementation does nothing. */
 	@Override
-	public synchronized void mark(int readlimit) {
+	public void mark(int readlimit) {
 	}
 
 	/** {@inheritDoc} This method throws an {@link IOException}, as mark/reset is not supported. */
 	@Override
-	public synchronized void reset() throws IOException {
+	public void reset() throws IOException {
 		throw new IOException("Mark/reset not supported.");
 	}
 
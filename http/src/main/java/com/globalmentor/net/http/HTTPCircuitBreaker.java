@@ -0,0 +1,318 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.globalmentor.net.http;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.*;
+import java.util.function.LongSupplier;
+
+import com.globalmentor.net.Host;
+
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * Stops exchanges with a host that keeps failing, so that callers fail at once rather than each waiting through connection attempts and retry delays.
+ * <p>
+ * The circuit for each host starts {@link State#CLOSED closed}, letting all exchanges through. Each connection attempt the host refuses or does not answer,
+ * and each exchange in which the host responds with a server error or stops responding, counts as a failure; any other response resets the count. After
+ * {@link #getFailureThreshold() a number of} consecutive failures the circuit {@link State#OPEN opens}, and exchanges with the host are rejected with an
+ * {@link HTTPCircuitOpenException} without being attempted. The {@link #getProbePolicy() probe policy} determines when the circuit becomes
+ * {@link State#HALF_OPEN half open} to let probe exchanges through, and how many of them must succeed for the circuit to close again.
+ * </p>
+ * <p>
+ * The number of times circuits have tripped and the number of exchanges rejected are recorded for all hosts.
+ * </p>
+ * <p>
+ * This class is thread safe. Each host has its own circuit state, so that failures of one host don't slow exchanges with others, and exchanges with a host
+ * whose circuit is closed are allowed without locking.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPClient#setCircuitBreaker(HTTPCircuitBreaker)
+ * @see HTTPProbePolicy
+ */
+public class HTTPCircuitBreaker {
+
+	/** The state of the circuit for a host. */
+	public enum State {
+		/** Exchanges are let through. */
+		CLOSED,
+		/** Exchanges are rejected without being attempted. */
+		OPEN,
+		/** A limited number of probe exchanges are let through to find out whether the host has recovered. */
+		HALF_OPEN
+	}
+
+	/** The default number of consecutive failures that opens the circuit for a host. */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/** The circuit of each host that has failed since its circuit was last closed. */
+	private final ConcurrentMap<Host, Circuit> circuits = new ConcurrentHashMap<Host, Circuit>();
+
+	/** The source of the current {@link System#nanoTime()}, which may be replaced for testing. */
+	private final LongSupplier nanoTimeSource;
+
+	/** The number of consecutive failures that opens the circuit for a host. */
+	private final int failureThreshold;
+
+	/** @return The number of consecutive failures that opens the circuit for a host. */
+	public int getFailureThreshold() {
+		return failureThreshold;
+	}
+
+	/** The policy for probing a host once its circuit has opened. */
+	private final HTTPProbePolicy probePolicy;
+
+	/** @return The policy for probing a host once its circuit has opened. */
+	public HTTPProbePolicy getProbePolicy() {
+		return probePolicy;
+	}
+
+	/** The number of times a circuit has opened. */
+	private final LongAdder trippedCount = new LongAdder();
+
+	/** @return The number of times a circuit has opened, including reopening after a failed probe. */
+	public long getTrippedCount() {
+		return trippedCount.sum();
+	}
+
+	/** The number of exchanges rejected because a circuit was open. */
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/** @return The number of exchanges rejected because a circuit was open or all probes were in progress. */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/** Default constructor with the {@link #DEFAULT_FAILURE_THRESHOLD default failure threshold} and {@link HTTPProbePolicy#DEFAULT default probe policy}. */
+	public HTTPCircuitBreaker() {
+		this(DEFAULT_FAILURE_THRESHOLD, HTTPProbePolicy.DEFAULT);
+	}
+
+	/**
+	 * Failure threshold and probe policy constructor.
+	 * @param failureThreshold The number of consecutive failures that opens the circuit for a host.
+	 * @param probePolicy The policy for probing a host once its circuit has opened.
+	 * @throws NullPointerException if the given probe policy is <code>null</code>.
+	 * @throws IllegalArgumentException if the failure threshold is less than one.
+	 */
+	public HTTPCircuitBreaker(final int failureThreshold, final HTTPProbePolicy probePolicy) {
+		this(failureThreshold, probePolicy, System::nanoTime);
+	}
+
+	/**
+	 * Failure threshold, probe policy, and time source constructor.
+	 * @param failureThreshold The number of consecutive failures that opens the circuit for a host.
+	 * @param probePolicy The policy for probing a host once its circuit has opened.
+	 * @param nanoTimeSource The source of the current {@link System#nanoTime()}.
+	 * @throws NullPointerException if the given probe policy and/or time source is <code>null</code>.
+	 * @throws IllegalArgumentException if the failure threshold is less than one.
+	 */
+	HTTPCircuitBreaker(final int failureThreshold, final HTTPProbePolicy probePolicy, final LongSupplier nanoTimeSource) {
+		if(failureThreshold < 1) {
+			throw new IllegalArgumentException("Failure threshold must be at least one: " + failureThreshold);
+		}
+		this.failureThreshold = failureThreshold;
+		this.probePolicy = requireNonNull(probePolicy, "Probe policy cannot be null.");
+		this.nanoTimeSource = requireNonNull(nanoTimeSource, "Time source cannot be null.");
+	}
+
+	/**
+	 * Returns the state of the circuit for a host. An open circuit whose open duration has passed is reported as open until the next exchange is attempted.
+	 * @param host The host.
+	 * @return The state of the circuit for the host.
+	 */
+	public State getState(final Host host) {
+		final Circuit circuit = circuits.get(host);
+		return circuit != null ? circuit.state : State.CLOSED;
+	}
+
+	/**
+	 * Allows an exchange with a host to be attempted. If the circuit for the host is open but its open duration has passed, the circuit becomes half open and
+	 * the exchange is let through as a probe. Each allowed exchange must be followed by a call to {@link #recordSuccess(Host)},
+	 * {@link #recordFailure(Host)} or {@link #release(Host)}.
+	 * @param host The host with which to exchange.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 * @throws HTTPCircuitOpenException if the circuit for the host is open, or if it is half open and the maximum number of probes are already in progress.
+	 */
+	public void acquire(final Host host) throws HTTPCircuitOpenException {
+		requireNonNull(host, "Host cannot be null.");
+		final Circuit circuit = circuits.get(host);
+		if(circuit == null || circuit.state == State.CLOSED) { //the usual case needs no locking
+			return;
+		}
+		circuit.lock.lock();
+		try {
+			if(circuit.state == State.CLOSED) { //the circuit closed in the meantime, or was removed on closing
+				return;
+			}
+			if(circuit.state == State.OPEN) {
+				final long remainingNanos = circuit.openUntilNanos - nanoTimeSource.getAsLong();
+				if(remainingNanos > 0) {
+					rejectedCount.increment();
+					throw new HTTPCircuitOpenException(host, Math.max(NANOSECONDS.toMillis(remainingNanos), 1));
+				}
+				circuit.state = State.HALF_OPEN;
+				circuit.probeCount = 0;
+				circuit.successCount = 0;
+			}
+			if(circuit.probeCount >= getProbePolicy().getMaxProbes()) {
+				rejectedCount.increment();
+				throw new HTTPCircuitOpenException(host, 0);
+			}
+			++circuit.probeCount;
+		} finally {
+			circuit.lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that an exchange with a host succeeded. This resets the count of consecutive failures; if the circuit is half open, this counts as a successful
+	 * probe, closing the circuit once enough probes have succeeded.
+	 * @param host The host with which the exchange took place.
+	 */
+	public void recordSuccess(final Host host) {
+		final Circuit circuit = circuits.get(host);
+		if(circuit == null) {
+			return;
+		}
+		circuit.lock.lock();
+		try {
+			if(circuit.removed) {
+				return;
+			}
+			if(circuit.state == State.CLOSED) {
+				remove(host, circuit); //the failures are no longer consecutive
+			} else if(circuit.state == State.HALF_OPEN) {
+				circuit.releaseProbe();
+				if(++circuit.successCount >= getProbePolicy().getRequiredSuccesses()) {
+					remove(host, circuit); //the host has recovered
+				}
+			} //an exchange started before the circuit opened says nothing about whether the host has recovered
+		} finally {
+			circuit.lock.unlock();
+		}
+	}
+
+	/**
+	 * Records that an exchange or a connection attempt with a host failed. If the circuit is closed and the failure threshold is reached, or if the circuit is
+	 * half open, the circuit opens.
+	 * @param host The host with which the exchange took place.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	public void recordFailure(final Host host) {
+		requireNonNull(host, "Host cannot be null.");
+		Circuit circuit;
+		while(true) {
+			circuit = circuits.computeIfAbsent(host, __ -> new Circuit());
+			circuit.lock.lock();
+			if(!circuit.removed) {
+				break;
+			}
+			circuit.lock.unlock(); //the circuit closed before it could be locked; try again with a new one
+		}
+		try {
+			if(circuit.state == State.HALF_OPEN || (circuit.state == State.CLOSED && ++circuit.failureCount >= getFailureThreshold())) {
+				circuit.state = State.OPEN;
+				++circuit.tripCount;
+				circuit.openUntilNanos = nanoTimeSource.getAsLong() + MILLISECONDS.toNanos(getProbePolicy().getOpenDuration(circuit.tripCount));
+				circuit.failureCount = 0;
+				circuit.probeCount = 0;
+				circuit.successCount = 0;
+				trippedCount.increment();
+			}
+		} finally {
+			circuit.lock.unlock();
+		}
+	}
+
+	/**
+	 * Ends an allowed exchange with a host without recording whether it succeeded, for example because it was not attempted after all or ended without the host
+	 * responding. If the circuit is half open, another probe may take its place.
+	 * @param host The host with which the exchange was to take place.
+	 */
+	public void release(final Host host) {
+		final Circuit circuit = circuits.get(host);
+		if(circuit == null || circuit.state != State.HALF_OPEN) {
+			return;
+		}
+		circuit.lock.lock();
+		try {
+			if(circuit.state == State.HALF_OPEN) {
+				circuit.releaseProbe();
+			}
+		} finally {
+			circuit.lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the circuit for a host by removing it. The circuit must be locked by the current thread.
+	 * @param host The host.
+	 * @param circuit The circuit of the host.
+	 */
+	private void remove(final Host host, final Circuit circuit) {
+		circuit.state = State.CLOSED;
+		circuit.removed = true; //any thread that finds this circuit before it is removed will know not to use it
+		circuits.remove(host, circuit);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(failureThreshold=" + failureThreshold + ", " + probePolicy + ", tripped=" + getTrippedCount() + ", rejected="
+				+ getRejectedCount() + ")";
+	}
+
+	/**
+	 * The circuit state for a single host. All access must be guarded by the lock of the circuit, except that the state may be read without locking.
+	 * @author Garret Wilson
+	 */
+	private static class Circuit {
+
+		/** The lock guarding the circuit state. */
+		final Lock lock = new ReentrantLock();
+
+		/** The state of the circuit; a circuit that has been removed is closed. */
+		volatile State state = State.CLOSED;
+
+		/** Whether the circuit has been closed and removed, so that a new circuit must be used for the host. */
+		boolean removed = false;
+
+		/** The number of consecutive failures while the circuit is closed. */
+		int failureCount = 0;
+
+		/** The number of times the circuit has opened without closing. */
+		int tripCount = 0;
+
+		/** The {@link System#nanoTime()} until which an open circuit rejects exchanges. */
+		long openUntilNanos;
+
+		/** The number of probes in progress while the circuit is half open. */
+		int probeCount = 0;
+
+		/** The number of successful probes while the circuit is half open. */
+		int successCount = 0;
+
+		/** Ends a probe in progress, if any. */
+		void releaseProbe() {
+			if(probeCount > 0) {
+				--probeCount;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.globalmentor.net.http;
+
+import java.io.IOException;
+
+import com.globalmentor.net.Host;
+
+import static java.util.Objects.*;
+
+/**
+ * Indicates that an exchange with a host was not attempted because the {@link HTTPCircuitBreaker circuit} for the host is open, the host having failed
+ * repeatedly. Such an exchange is never retried automatically.
+ * @author Garret Wilson
+ * @see HTTPCircuitBreaker
+ */
+public class HTTPCircuitOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/** The host with which the exchange was not attempted. */
+	private final Host host;
+
+	/** @return The host with which the exchange was not attempted. */
+	public Host getHost() {
+		return host;
+	}
+
+	/** The number of milliseconds until the host may be probed, or <code>0</code> if not known. */
+	private final long retryAfter;
+
+	/** @return The number of milliseconds until the host may be probed, or <code>0</code> if not known, e.g. because probes are already in progress. */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+
+	/**
+	 * Host and retry constructor.
+	 * @param host The host with which the exchange was not attempted.
+	 * @param retryAfter The number of milliseconds until the host may be probed, or <code>0</code> if not known.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	public HTTPCircuitOpenException(final Host host, final long retryAfter) {
+		super("Circuit open for " + requireNonNull(host, "Host cannot be null.") + (retryAfter > 0 ? "; retry after " + retryAfter + " ms." : "."));
+		this.host = host;
+		this.retryAfter = retryAfter;
+	}
+
+}
@@ -16,22 +16,1005 @@
 
 package com.globalmentor.net.http;
 
-import java.net.PasswordAuthentication;
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.*;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.*;
+import java.security.*;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.Base64;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.Function;
 
+import javax.net.ssl.*;
+
+import com.globalmentor.io.function.*;
+import com.globalmentor.java.Bytes;
+import com.globalmentor.model.NameValuePair;
 import com.globalmentor.net.*;
+import com.globalmentor.text.SyntaxException;
 import com.globalmentor.util.*;
 
+import io.clogr.Clogged;
+
+import static com.globalmentor.java.Arrays.*;
+import static com.globalmentor.java.Conditions.*;
+import static com.globalmentor.net.HTTP.*;
+import static com.globalmentor.net.http.HTTPFormatter.*;
+import static com.globalmentor.net.http.HTTPParser.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.*;
+
 /**
  * Represents the identify of a group of related HTTP connections. Keeps a cache of authentication information for visited domains and realms.
  * @author Garret Wilson
  */
-public class HTTPClient extends AbstractClient {
+public class HTTPClient extends AbstractClient implements Closeable, Clogged {
+
+	/** The retry policy used for connections and for requests that don't specify their own policy. */
+	private volatile HTTPRetryPolicy retryPolicy = HTTPRetryPolicy.DEFAULT;
+
+	/** @return The retry policy used for connections and for requests that don't specify their own policy. */
+	public HTTPRetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Sets the retry policy. The connect timeout and connection retries of the client's policy apply to all connections; the read timeout and request replays
+	 * may be overridden by a request using {@link HTTPRequest#setRetryPolicy(HTTPRetryPolicy)}. Retries are spread out using a jittered exponential backoff,
+	 * and limited overall by the {@link #getRetryBudget() retry budget}.
+	 * @param retryPolicy The retry policy used for connections and for requests that don't specify their own policy.
+	 * @throws NullPointerException if the given retry policy is <code>null</code>.
+	 */
+	public void setRetryPolicy(final HTTPRetryPolicy retryPolicy) {
+		this.retryPolicy = requireNonNull(retryPolicy, "Retry policy cannot be null.");
+	}
+
+	/** The budget limiting the retries of all connections and requests of this client. */
+	private volatile HTTPRetryBudget retryBudget = new HTTPRetryBudget();
+
+	/** @return The budget limiting the retries of all connections and requests of this client. */
+	public HTTPRetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+
+	/**
+	 * Sets the budget limiting the retries of all connections and requests of this client. A budget may be shared among clients.
+	 * @param retryBudget The retry budget.
+	 * @throws NullPointerException if the given retry budget is <code>null</code>.
+	 */
+	public void setRetryBudget(final HTTPRetryBudget retryBudget) {
+		this.retryBudget = requireNonNull(retryBudget, "Retry budget cannot be null.");
+	}
+
+	/** The admission control limiting the exchanges in progress with each host, or <code>null</code> if exchanges are not limited. */
+	private volatile HTTPAdmissionControl admissionControl = null;
+
+	/** @return The admission control limiting the exchanges in progress with each host, or <code>null</code> if exchanges are not limited. */
+	public HTTPAdmissionControl getAdmissionControl() {
+		return admissionControl;
+	}
+
+	/**
+	 * Sets the admission control limiting the exchanges in progress with each host. Each exchange of a connection must be admitted before a transport is leased
+	 * for it, and is released when the transport is returned. Exchanges already in progress remain subject to the admission control that admitted them.
+	 * @param admissionControl The admission control, or <code>null</code> if exchanges should not be limited.
+	 * @see AdaptiveHTTPAdmissionControl
+	 */
+	public void setAdmissionControl(final HTTPAdmissionControl admissionControl) {
+		this.admissionControl = admissionControl;
+	}
+
+	/** The circuit breaker stopping exchanges with hosts that keep failing, or <code>null</code> if exchanges are always attempted. */
+	private volatile HTTPCircuitBreaker circuitBreaker = null;
+
+	/** @return The circuit breaker stopping exchanges with hosts that keep failing, or <code>null</code> if exchanges are always attempted. */
+	public HTTPCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Sets the circuit breaker stopping exchanges with hosts that keep failing. Each exchange of a connection must be allowed by the circuit breaker before it is
+	 * admitted, and each failed connection attempt and each exchange outcome is recorded by the circuit breaker, so that callers fail at once instead of waiting
+	 * through connection retries to a host that keeps refusing connections or responding with server errors.
+	 * @param circuitBreaker The circuit breaker, or <code>null</code> if exchanges should always be attempted.
+	 */
+	public void setCircuitBreaker(final HTTPCircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/** The policy for hedging idempotent reads, or <code>null</code> if reads are not hedged. */
+	private volatile HTTPHedgingPolicy hedgingPolicy = null;
+
+	/** @return The policy for hedging idempotent reads, or <code>null</code> if reads are not hedged. */
+	public HTTPHedgingPolicy getHedgingPolicy() {
+		return hedgingPolicy;
+	}
+
+	/**
+	 * Sets the policy for hedging idempotent reads. As the policy keeps the latencies observed by this client, it should not be shared with other clients.
+	 * @param hedgingPolicy The hedging policy, or <code>null</code> if reads should not be hedged.
+	 * @see #hedge(Host, PasswordAuthentication, boolean, IOFunction)
+	 */
+	public void setHedgingPolicy(final HTTPHedgingPolicy hedgingPolicy) {
+		this.hedgingPolicy = hedgingPolicy;
+	}
+
+	/** The default number of bytes above which a request body is only sent once the server has accepted the request header. */
+	public static final long DEFAULT_EXPECT_CONTINUE_THRESHOLD = 1024 * 1024;
+
+	/** The default number of milliseconds to wait for the server to accept a request header before sending the body anyway. */
+	public static final int DEFAULT_EXPECT_CONTINUE_TIMEOUT = 1000;
+
+	/** The number of bytes above which a request body is only sent once the server has accepted the request header, or <code>-1</code> if never. */
+	private volatile long expectContinueThreshold = DEFAULT_EXPECT_CONTINUE_THRESHOLD;
+
+	/** @return The number of bytes above which a request body is only sent once the server has accepted the request header, or <code>-1</code> if never. */
+	public long getExpectContinueThreshold() {
+		return expectContinueThreshold;
+	}
+
+	/**
+	 * Sets the number of bytes above which a request body is only sent once the server has accepted the request header. Such a request is sent with an
+	 * <code>Expect: 100-continue</code> header, so that a server rejecting the request, e.g. with <code>401 Unauthorized</code> or
+	 * <code>413 Content Too Large</code>, can do so before the body is transferred.
+	 * @param expectContinueThreshold The body size threshold in bytes, or <code>-1</code> if bodies should always be sent immediately.
+	 * @throws IllegalArgumentException if the given threshold is less than <code>-1</code>.
+	 * @see HTTPClientTCPConnection#writeRequest(HTTPRequest, byte[])
+	 */
+	public void setExpectContinueThreshold(final long expectContinueThreshold) {
+		checkArgument(expectContinueThreshold >= -1, "Invalid expect continue threshold: %d.", expectContinueThreshold);
+		this.expectContinueThreshold = expectContinueThreshold;
+	}
+
+	/** The number of milliseconds to wait for the server to accept a request header before sending the body anyway. */
+	private volatile int expectContinueTimeout = DEFAULT_EXPECT_CONTINUE_TIMEOUT;
+
+	/** @return The number of milliseconds to wait for the server to accept a request header before sending the body anyway. */
+	public int getExpectContinueTimeout() {
+		return expectContinueTimeout;
+	}
 
 	/**
-	 * The map of connections we have available for certain hosts. A connection will be released if memory requires and it is not being used.
+	 * Sets the number of milliseconds to wait for the server to accept a request header before sending the body anyway. Servers and proxies that don't support
+	 * <code>Expect: 100-continue</code> will never send an interim response, so this should be short.
+	 * @param expectContinueTimeout The timeout in milliseconds.
+	 * @throws IllegalArgumentException if the given timeout is not positive.
 	 */
-	//TODO create a daemon thread that will release old, unused connections
-	//TODO del if not needed	private final ReadWriteLockMap<Host, HTTPClientTCPConnection> hostConnectionMap=new DecoratorReadWriteLockMap<Host, HTTPClientTCPConnection>(new PurgeOnWriteSoftValueHashMap<Host, HTTPClientTCPConnection>());
+	public void setExpectContinueTimeout(final int expectContinueTimeout) {
+		this.expectContinueTimeout = checkArgumentPositive(expectContinueTimeout);
+	}
+
+	/** The hosts that have refused a request sent with <code>Expect: 100-continue</code>, and to which request bodies are therefore sent immediately. */
+	private final Set<Host> expectContinueRefusedHosts = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Determines whether a host has refused a request sent with <code>Expect: 100-continue</code> by responding with <code>417 Expectation Failed</code>, so
+	 * that request bodies should be sent to the host immediately by every connection of this client.
+	 * @param host The host.
+	 * @return <code>true</code> if the host has refused the expectation.
+	 * @see HTTPClientTCPConnection#isExpectContinue(HTTPRequest, long)
+	 */
+	public boolean isExpectContinueRefused(final Host host) {
+		return expectContinueRefusedHosts.contains(host);
+	}
+
+	/**
+	 * Records that a host has refused a request sent with <code>Expect: 100-continue</code>, so that no connection of this client sends the header to the host
+	 * again.
+	 * @param host The host that refused the expectation.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	void recordExpectContinueRefused(final Host host) {
+		expectContinueRefusedHosts.add(requireNonNull(host, "Host cannot be null."));
+	}
+
+	/** The number of milliseconds an idle secure transport must have been unused before it is checked by reading from it when reused. */
+	private volatile int staleCheckInactivity = SocketHTTPTransport.DEFAULT_STALE_CHECK_INACTIVITY;
+
+	/** @return The number of milliseconds an idle secure transport must have been unused before it is checked by reading from it when reused. */
+	public int getStaleCheckInactivity() {
+		return staleCheckInactivity;
+	}
+
+	/**
+	 * Sets the number of milliseconds an idle secure transport must have been unused before it is checked by reading from it when reused. Unsecure transports
+	 * are checked without blocking each time they are reused. The setting applies to transports opened afterwards.
+	 * @param staleCheckInactivity The inactivity threshold in milliseconds, or <code>0</code> if secure transports should be checked each time.
+	 * @throws IllegalArgumentException if the given threshold is negative.
+	 * @see SocketHTTPTransport#setStaleCheckInactivity(int)
+	 */
+	public void setStaleCheckInactivity(final int staleCheckInactivity) {
+		this.staleCheckInactivity = checkArgumentNotNegative(staleCheckInactivity);
+	}
+
+	/** The authentication challenge last answered successfully for each protection space, along with its scheme. */
+	private final ConcurrentMap<ProtectionSpace, CachedChallenge> challenges = new ConcurrentHashMap<ProtectionSpace, CachedChallenge>();
+
+	/** The protection space of the challenge last answered successfully for each host, by root URI. */
+	private final ConcurrentMap<URI, ProtectionSpace> hostProtectionSpaces = new ConcurrentHashMap<URI, ProtectionSpace>();
+
+	/**
+	 * Returns the authentication challenge last answered successfully for a host, in whichever realm it was answered. Connections use the challenge to authorize
+	 * later requests to the host preemptively, including requests on new connections, avoiding a round trip to be refused with <code>401 Unauthorized</code>.
+	 * @param rootURI The root URI of the host.
+	 * @return The challenge last answered successfully for the host, or <code>null</code> if none is cached.
+	 * @see #getChallenge(URI, String)
+	 */
+	public AuthenticateChallenge getChallenge(final URI rootURI) {
+		final ProtectionSpace protectionSpace = hostProtectionSpaces.get(rootURI);
+		return protectionSpace != null ? getChallenge(protectionSpace.getRootURI(), protectionSpace.getRealm()) : null;
+	}
+
+	/**
+	 * Returns the authentication challenge last answered successfully for a realm of a host.
+	 * @param rootURI The root URI of the host.
+	 * @param realm The authentication realm, or <code>null</code> if the realm is not known.
+	 * @return The challenge last answered successfully for the realm of the host, or <code>null</code> if none is cached.
+	 */
+	public AuthenticateChallenge getChallenge(final URI rootURI, final String realm) {
+		final CachedChallenge cachedChallenge = challenges.get(new ProtectionSpace(rootURI, realm));
+		return cachedChallenge != null ? cachedChallenge.getChallenge() : null;
+	}
+
+	/**
+	 * Caches the authentication challenge answered successfully for a realm of a host, replacing any challenge previously cached for the realm. Challenges of
+	 * other realms of the host are unaffected, so that answering one realm does not restart the nonce count of another.
+	 * @param rootURI The root URI of the host.
+	 * @param challenge The challenge answered successfully.
+	 * @param nonceCount The number of times the nonce of a digest challenge has already been used.
+	 * @param cnonce The client nonce with which a digest challenge was answered, or <code>null</code> if the challenge is not a digest challenge.
+	 * @throws NullPointerException if the given root URI and/or challenge is <code>null</code>.
+	 */
+	public void putChallenge(final URI rootURI, final AuthenticateChallenge challenge, final long nonceCount, final String cnonce) {
+		final ProtectionSpace protectionSpace = new ProtectionSpace(rootURI, challenge.getRealm());
+		challenges.put(protectionSpace, new CachedChallenge(challenge, nonceCount, cnonce));
+		hostProtectionSpaces.put(rootURI, protectionSpace);
+	}
+
+	/**
+	 * Removes any authentication challenge cached for a realm of a host, e.g. because answering it no longer authorizes requests.
+	 * @param rootURI The root URI of the host.
+	 * @param realm The authentication realm, or <code>null</code> if the realm is not known.
+	 */
+	public void removeChallenge(final URI rootURI, final String realm) {
+		final ProtectionSpace protectionSpace = new ProtectionSpace(rootURI, realm);
+		challenges.remove(protectionSpace);
+		hostProtectionSpaces.remove(rootURI, protectionSpace);
+	}
+
+	/**
+	 * Returns the cached challenge for the realm of a challenge for a host.
+	 * @param rootURI The root URI of the host.
+	 * @param challenge The challenge the realm of which to look up.
+	 * @return The challenge cached for the realm of the given challenge, or <code>null</code> if none is cached.
+	 */
+	private CachedChallenge getCachedChallenge(final URI rootURI, final AuthenticateChallenge challenge) {
+		return challenges.get(new ProtectionSpace(rootURI, challenge.getRealm()));
+	}
+
+	/**
+	 * A protection space, identified by the root URI of a host along with an authentication realm of the host.
+	 * @author Garret Wilson
+	 */
+	private static final class ProtectionSpace {
+
+		/** The root URI of the host. */
+		private final URI rootURI;
+
+		/** @return The root URI of the host. */
+		public URI getRootURI() {
+			return rootURI;
+		}
+
+		/** The authentication realm, or <code>null</code> if the realm is not known. */
+		private final String realm;
+
+		/** @return The authentication realm, or <code>null</code> if the realm is not known. */
+		public String getRealm() {
+			return realm;
+		}
+
+		/**
+		 * Constructor.
+		 * @param rootURI The root URI of the host.
+		 * @param realm The authentication realm, or <code>null</code> if the realm is not known.
+		 * @throws NullPointerException if the given root URI is <code>null</code>.
+		 */
+		public ProtectionSpace(final URI rootURI, final String realm) {
+			this.rootURI = requireNonNull(rootURI, "Root URI cannot be null.");
+			this.realm = realm;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(rootURI, realm);
+		}
+
+		@Override
+		public boolean equals(final Object object) {
+			if(object == this) {
+				return true;
+			}
+			if(!(object instanceof ProtectionSpace)) {
+				return false;
+			}
+			final ProtectionSpace protectionSpace = (ProtectionSpace)object;
+			return rootURI.equals(protectionSpace.getRootURI()) && Objects.equals(realm, protectionSpace.getRealm());
+		}
+	}
+
+	/** The number of random bytes in a client nonce. */
+	private static final int CNONCE_RANDOM_LENGTH = 16;
+
+	/** The source of random client nonces. */
+	private final SecureRandom cnonceRandom = new SecureRandom();
+
+	/**
+	 * Creates a client nonce for answering a digest challenge. The client nonce protects against chosen plaintext attacks by a server, and enters into the
+	 * session key of a <code>-sess</code> algorithm, so it must not be predictable. This version returns random bytes encoded in Base64.
+	 * @return A new random client nonce.
+	 */
+	protected String createCNonce() {
+		final byte[] cnonceBytes = new byte[CNONCE_RANDOM_LENGTH];
+		cnonceRandom.nextBytes(cnonceBytes);
+		return Base64.getEncoder().encodeToString(cnonceBytes);
+	}
+
+	/**
+	 * Determines the client nonce with which to answer a challenge for a host. If the challenge is a digest challenge with the same nonce as the challenge
+	 * cached for its realm of the host, the client nonce used when the cached challenge was answered is used again, so that the session key of a
+	 * <code>-sess</code> algorithm is unchanged; otherwise a {@link #createCNonce() new client nonce} is created for the challenge.
+	 * @param rootURI The root URI of the host.
+	 * @param challenge The challenge being answered.
+	 * @return The client nonce for answering the challenge.
+	 */
+	String getCNonce(final URI rootURI, final AuthenticateChallenge challenge) {
+		final CachedChallenge cachedChallenge = getCachedChallenge(rootURI, challenge);
+		return cachedChallenge != null && cachedChallenge.hasNonce(challenge) && cachedChallenge.getCNonce() != null ? cachedChallenge.getCNonce() : createCNonce();
+	}
+
+	/**
+	 * Counts another use of the nonce of a challenge for a host. If the challenge is a digest challenge with the same nonce as the challenge cached for its
+	 * realm of the host, the nonce count continues from that of the cached challenge, so that the server does not reject the request as a replay; a server issuing
+	 * the same nonce again, as many do when rejecting a request lacking credentials, thus does not restart the count.
+	 * @param rootURI The root URI of the host.
+	 * @param challenge The challenge being answered.
+	 * @return The number of times the nonce of the challenge has been used, including this time; <code>1</code> if the nonce has not been used before.
+	 */
+	long incrementNonceCount(final URI rootURI, final AuthenticateChallenge challenge) {
+		final CachedChallenge cachedChallenge = getCachedChallenge(rootURI, challenge);
+		return cachedChallenge != null && cachedChallenge.hasNonce(challenge) ? cachedChallenge.incrementNonceCount() : 1;
+	}
+
+	/**
+	 * An authentication challenge cached for a protection space, along with the number of times its nonce has been used.
+	 * @author Garret Wilson
+	 */
+	private static final class CachedChallenge {
+
+		/** The challenge answered successfully. */
+		private final AuthenticateChallenge challenge;
+
+		/** @return The challenge answered successfully. */
+		public AuthenticateChallenge getChallenge() {
+			return challenge;
+		}
+
+		/** The number of times the nonce of a digest challenge has been used. */
+		private final AtomicLong nonceCount;
+
+		/** The client nonce with which a digest challenge was answered, or <code>null</code> if none is known. */
+		private final String cnonce;
+
+		/** @return The client nonce with which a digest challenge was answered, or <code>null</code> if none is known. */
+		public String getCNonce() {
+			return cnonce;
+		}
+
+		/** @return The number of times the nonce of the challenge has been used, including this time. */
+		public long incrementNonceCount() {
+			return nonceCount.incrementAndGet();
+		}
+
+		/**
+		 * Determines whether another challenge shares the nonce of this challenge.
+		 * @param challenge The challenge to compare.
+		 * @return <code>true</code> if the given challenge is this challenge, or both are digest challenges with the same realm and nonce.
+		 */
+		public boolean hasNonce(final AuthenticateChallenge challenge) {
+			if(challenge == this.challenge) {
+				return true;
+			}
+			if(!(challenge instanceof DigestAuthenticateChallenge) || !(this.challenge instanceof DigestAuthenticateChallenge)) {
+				return false;
+			}
+			return Objects.equals(challenge.getRealm(), this.challenge.getRealm())
+					&& ((DigestAuthenticateChallenge)challenge).getNonce().equals(((DigestAuthenticateChallenge)this.challenge).getNonce());
+		}
+
+		/**
+		 * Constructor.
+		 * @param challenge The challenge answered successfully.
+		 * @param nonceCount The number of times the nonce of a digest challenge has already been used.
+		 * @param cnonce The client nonce with which a digest challenge was answered, or <code>null</code> if none is known.
+		 * @throws NullPointerException if the given challenge is <code>null</code>.
+		 */
+		public CachedChallenge(final AuthenticateChallenge challenge, final long nonceCount, final String cnonce) {
+			this.challenge = requireNonNull(challenge, "Challenge cannot be null.");
+			this.nonceCount = new AtomicLong(nonceCount);
+			this.cnonce = cnonce;
+		}
+	}
+
+	/**
+	 * The pool of transports shared by connections of this client. Each {@link HTTPClientTCPConnection} leases a transport from the pool for the duration of a
+	 * request/response exchange, so that many connections (and the resources using them) to the same host share a small number of TCP connections.
+	 */
+	private final HTTPConnectionPool connectionPool = new HTTPConnectionPool(key -> openTransport(key.getHost(), key.isSecure()));
+
+	/** @return The pool of transports shared by connections of this client. */
+	public HTTPConnectionPool getConnectionPool() {
+		return connectionPool;
+	}
+
+	/** The lazily-created default executor, shared by all clients. */
+	private static ExecutorService defaultExecutor = null;
+
+	/** @return The default executor for asynchronous work, a cached pool of daemon threads shared by all clients. */
+	private static synchronized Executor getDefaultExecutor() {
+		if(defaultExecutor == null) {
+			defaultExecutor = Executors.newCachedThreadPool(runnable -> {
+				final Thread thread = new Thread(runnable, HTTPClient.class.getSimpleName() + " worker");
+				thread.setDaemon(true); //don't keep the JVM running just for idle workers
+				return thread;
+			});
+		}
+		return defaultExecutor;
+	}
+
+	/** The executor for asynchronous work, or <code>null</code> if the default executor should be used. */
+	private volatile Executor executor = null;
+
+	/** @return The executor used for completing asynchronous requests and for performing blocking work such as connecting on their behalf. */
+	public Executor getExecutor() {
+		final Executor executor = this.executor;
+		return executor != null ? executor : getDefaultExecutor();
+	}
+
+	/**
+	 * Sets the executor used for asynchronous requests. This method should be called before any asynchronous request is sent.
+	 * @param executor The executor to use, or <code>null</code> if a default cached pool of daemon threads should be used.
+	 */
+	public void setExecutor(final Executor executor) {
+		this.executor = executor;
+	}
+
+	/** The number of platform threads used for bulk operations if virtual threads are not supported. */
+	public static final int BULK_PLATFORM_THREAD_COUNT = 64;
+
+	/** The name of the factory method for an executor service that starts a virtual thread for each task, available in Java 21 and later. */
+	private static final String NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR_METHOD_NAME = "newVirtualThreadPerTaskExecutor";
+
+	/**
+	 * Creates an executor service for running bulk resource operations. If the platform supports virtual threads, the executor service starts a new virtual
+	 * thread for each operation; otherwise a pool of {@value #BULK_PLATFORM_THREAD_COUNT} daemon platform threads is used.
+	 * @return A new executor service for bulk operations, which the caller is responsible for shutting down.
+	 * @see #invokeAll(Collection, IOFunction)
+	 */
+	protected ExecutorService newBulkExecutorService() {
+		try {
+			return (ExecutorService)Executors.class.getMethod(NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR_METHOD_NAME).invoke(null);
+		} catch(final ReflectiveOperationException reflectiveOperationException) { //virtual threads aren't supported on this platform
+			return Executors.newFixedThreadPool(BULK_PLATFORM_THREAD_COUNT, runnable -> {
+				final Thread thread = new Thread(runnable, HTTPClient.class.getSimpleName() + " bulk worker");
+				thread.setDaemon(true); //don't keep the JVM running just for idle workers
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Runs an operation on each of the resources with the given URIs, using an executor service created by {@link #newBulkExecutorService()}, and waits for all
+	 * the operations to finish. Each resource is accessed through this client, so that the operations share its pooled connections; operations on the same host
+	 * wait for a pooled connection rather than opening an unlimited number of connections. The blocking I/O paths of the client hold no monitors while waiting
+	 * on the network, so the operations scale on virtual threads.
+	 * @param <R> The type of result of the operation.
+	 * @param resourceURIs The URIs of the resources on which to perform the operation.
+	 * @param operation The operation to perform on each resource, such as <code>HTTPResource::exists</code>.
+	 * @return The completed futures holding the result of each operation, in the order of the given URIs. The future of an operation that failed will throw an
+	 *         {@link ExecutionException} holding the cause of the failure.
+	 * @throws NullPointerException if the given resource URIs and/or operation is <code>null</code>.
+	 * @throws InterruptedException if interrupted while waiting, in which case unfinished operations are cancelled.
+	 */
+	public <R> List<Future<R>> invokeAll(final Collection<URI> resourceURIs, final IOFunction<? super HTTPResource, ? extends R> operation)
+			throws InterruptedException {
+		final ExecutorService executorService = newBulkExecutorService();
+		try {
+			return invokeAll(resourceURIs, operation, executorService);
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * Runs an operation on each of the resources with the given URIs using the given executor service, and waits for all the operations to finish.
+	 * @param <R> The type of result of the operation.
+	 * @param resourceURIs The URIs of the resources on which to perform the operation.
+	 * @param operation The operation to perform on each resource, such as <code>HTTPResource::exists</code>.
+	 * @param executorService The executor service with which to run the operations.
+	 * @return The completed futures holding the result of each operation, in the order of the given URIs. The future of an operation that failed will throw an
+	 *         {@link ExecutionException} holding the cause of the failure.
+	 * @throws NullPointerException if the given resource URIs, operation, and/or executor service is <code>null</code>.
+	 * @throws InterruptedException if interrupted while waiting, in which case unfinished operations are cancelled.
+	 * @see ExecutorService#invokeAll(Collection)
+	 */
+	public <R> List<Future<R>> invokeAll(final Collection<URI> resourceURIs, final IOFunction<? super HTTPResource, ? extends R> operation,
+			final ExecutorService executorService) throws InterruptedException {
+		requireNonNull(operation, "Operation cannot be null.");
+		final List<Callable<R>> tasks = new ArrayList<Callable<R>>(resourceURIs.size());
+		for(final URI resourceURI : resourceURIs) {
+			tasks.add(() -> operation.apply(new HTTPResource(resourceURI, this)));
+		}
+		return executorService.invokeAll(tasks);
+	}
+
+	/**
+	 * Performs an idempotent read from a host on a new connection, hedging it according to the {@link #getHedgingPolicy() hedging policy}. If the read has not
+	 * completed once the delay determined by the policy has passed, and the policy's budget allows, the read is performed again on a second connection. The
+	 * result of whichever read completes first is used, and the other connection is {@link HTTPClientTCPConnection#cancel() cancelled}; a losing result that is
+	 * {@link Closeable} is closed. A read that fails with an {@link HTTPException} has received a complete response and so also wins; a read that fails
+	 * otherwise leaves the other read to finish. If there is no hedging policy, the read is simply performed on the current thread.
+	 * <p>
+	 * A read completes when the given function returns. A read returning a stream to the response body thus wins once it receives the response head, even if
+	 * the other read would have received the complete response sooner; the body is then read from the winning connection alone.
+	 * </p>
+	 * <p>
+	 * The read may be performed on a thread of the client's {@link #getExecutor() executor}, and more than once at the same time; it must therefore create its
+	 * own request for each connection rather than sharing one.
+	 * </p>
+	 * @param <T> The type of result of the read.
+	 * @param host The host from which to read.
+	 * @param passwordAuthentication The connection-specific password authentication, or <code>null</code> if there should be no connection-specific password
+	 *          authentication.
+	 * @param secure Whether the connections should be secure.
+	 * @param read The read to perform using a connection, which must be idempotent, such as sending a <code>GET</code> request and reading the response.
+	 * @return The result of the read that completed first.
+	 * @throws NullPointerException if the given host and/or read is <code>null</code>.
+	 * @throws IOException if there was an error performing the read.
+	 * @see HTTPHedgingPolicy
+	 */
+	public <T> T hedge(final Host host, final PasswordAuthentication passwordAuthentication, final boolean secure,
+			final IOFunction<? super HTTPClientTCPConnection, ? extends T> read) throws IOException {
+		requireNonNull(host, "Host cannot be null.");
+		requireNonNull(read, "Read cannot be null.");
+		final HTTPHedgingPolicy hedgingPolicy = getHedgingPolicy();
+		if(hedgingPolicy == null) {
+			return read.apply(createConnection(host, passwordAuthentication, secure));
+		}
+		hedgingPolicy.recordRequest();
+		final long startNanos = System.nanoTime();
+		final long delayNanos = hedgingPolicy.getDelayNanos(host);
+		if(delayNanos < 0) { //we don't know enough about the host to hedge; just learn its latency
+			boolean responded = false;
+			try {
+				final T result = read.apply(createConnection(host, passwordAuthentication, secure));
+				responded = true;
+				return result;
+			} catch(final HTTPException httpException) {
+				responded = true;
+				throw httpException;
+			} finally {
+				if(responded) {
+					hedgingPolicy.recordLatency(host, System.nanoTime() - startNanos);
+				}
+			}
+		}
+		final CompletableFuture<T> winner = new CompletableFuture<T>();
+		final AtomicReference<HTTPClientTCPConnection> winningConnection = new AtomicReference<HTTPClientTCPConnection>();
+		final AtomicInteger pendingCount = new AtomicInteger();
+		final List<HTTPClientTCPConnection> connections = new CopyOnWriteArrayList<HTTPClientTCPConnection>();
+		final HTTPClientTCPConnection primaryConnection = createConnection(host, passwordAuthentication, secure);
+		startHedgedRead(primaryConnection, read, winner, winningConnection, pendingCount, connections);
+		try {
+			try {
+				return winner.get(delayNanos, TimeUnit.NANOSECONDS);
+			} catch(final TimeoutException timeoutException) {
+				if(!winner.isDone() && hedgingPolicy.tryAcquireHedge()) {
+					getLogger().debug("Hedging read from {} after {} ms.", host, TimeUnit.NANOSECONDS.toMillis(delayNanos));
+					startHedgedRead(createConnection(host, passwordAuthentication, secure), read, winner, winningConnection, pendingCount, connections);
+				}
+				return winner.get();
+			}
+		} catch(final InterruptedException interruptedException) {
+			Thread.currentThread().interrupt(); //preserve the interrupted status
+			winner.cancel(false); //any read that completes later will be discarded
+			throw new InterruptedIOException("Interrupted while reading from " + host + ".");
+		} catch(final ExecutionException executionException) {
+			final Throwable cause = executionException.getCause();
+			if(cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw (RuntimeException)cause;
+		} finally {
+			final HTTPClientTCPConnection winnerConnection = winningConnection.get();
+			if(winnerConnection != null) {
+				hedgingPolicy.recordLatency(host, System.nanoTime() - startNanos);
+				if(winnerConnection != primaryConnection) {
+					hedgingPolicy.recordHedgeWon();
+				}
+			}
+			for(final HTTPClientTCPConnection connection : connections) {
+				if(connection != winnerConnection || winner.isCancelled()) {
+					connection.cancel();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts one of the reads of a {@link #hedge(Host, PasswordAuthentication, boolean, IOFunction) hedged read} using the {@link #getExecutor() executor}.
+	 * @param <T> The type of result of the read.
+	 * @param connection The connection on which to perform the read.
+	 * @param read The read to perform.
+	 * @param winner The future result of the first read to complete.
+	 * @param winningConnection The reference to the connection of the first read to complete.
+	 * @param pendingCount The number of reads still in progress.
+	 * @param connections The connections of all the reads.
+	 */
+	private <T> void startHedgedRead(final HTTPClientTCPConnection connection, final IOFunction<? super HTTPClientTCPConnection, ? extends T> read,
+			final CompletableFuture<T> winner, final AtomicReference<HTTPClientTCPConnection> winningConnection, final AtomicInteger pendingCount,
+			final List<HTTPClientTCPConnection> connections) {
+		connections.add(connection);
+		pendingCount.incrementAndGet();
+		getExecutor().execute(() -> {
+			Throwable failure = null;
+			try {
+				final T result = read.apply(connection);
+				if(!(winningConnection.compareAndSet(null, connection) && winner.complete(result)) && result instanceof Closeable) { //discard our result if another read won
+					try {
+						((Closeable)result).close();
+					} catch(final IOException ioException) {
+						getLogger().debug("Error discarding hedged read from {}.", connection.getHost(), ioException);
+					}
+				}
+			} catch(final HTTPException httpException) { //an error response is still a response
+				if(winningConnection.compareAndSet(null, connection)) {
+					winner.completeExceptionally(httpException);
+				}
+			} catch(final Throwable throwable) {
+				failure = throwable;
+			}
+			if(pendingCount.decrementAndGet() == 0 && failure != null) { //if no other read can still succeed, report our failure
+				winner.completeExceptionally(failure);
+			}
+		});
+	}
+
+	/**
+	 * Opens connections to a host ahead of time and leaves them idle in the {@link #getConnectionPool() connection pool}, so that a later burst of requests does
+	 * not wait for TCP connections, TLS handshakes and authentication challenges. This is a convenience method for {@link #prewarm(URI, int)} that
+	 * authenticates using the root URI of the host.
+	 * @param host The host to which to connect.
+	 * @param secure Whether the connections should be secure.
+	 * @param count The number of connections to have ready.
+	 * @return The result of pre-warming, including how long each phase took.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 * @throws IllegalArgumentException if the given count is not positive.
+	 * @throws IOException if there was an error connecting to or authenticating with the host.
+	 */
+	public HTTPPrewarmResult prewarm(final Host host, final boolean secure, final int count) throws IOException {
+		final URI rootURI;
+		try {
+			rootURI = new URI(secure ? HTTPS_URI_SCHEME : HTTP_URI_SCHEME, null, host.getName(), host.getPort(), URIs.ROOT_PATH, null, null);
+		} catch(final URISyntaxException uriSyntaxException) {
+			throw new IllegalArgumentException("Invalid host " + host + ".", uriSyntaxException);
+		}
+		return prewarm(rootURI, count);
+	}
+
+	/**
+	 * Opens connections to the host of a resource ahead of time and leaves them idle in the {@link #getConnectionPool() connection pool}, so that a later burst
+	 * of requests does not wait for TCP connections, TLS handshakes and authentication challenges. The connections are pooled without connection-specific
+	 * credentials; this is a convenience method for {@link #prewarm(URI, PasswordAuthentication, int)}.
+	 * @param uri The URI of a resource on the host, against which to authenticate.
+	 * @param count The number of connections to have ready.
+	 * @return The result of pre-warming, including how long each phase took.
+	 * @throws NullPointerException if the given URI is <code>null</code>.
+	 * @throws IllegalArgumentException if the given count is not positive.
+	 * @throws IOException if there was an error connecting to or authenticating with the host. Connections successfully opened are kept in the pool.
+	 */
+	public HTTPPrewarmResult prewarm(final URI uri, final int count) throws IOException {
+		return prewarm(uri, null, count);
+	}
+
+	/**
+	 * Opens connections to the host of a resource ahead of time and leaves them idle in the {@link #getConnectionPool() connection pool}, so that a later burst
+	 * of requests does not wait for TCP connections, TLS handshakes and authentication challenges.
+	 * <p>
+	 * The connections are leased in parallel using the {@link #getExecutor() executor}, subject to any {@link #getCircuitBreaker() circuit breaker} and
+	 * {@link #getAdmissionControl() admission control} just as for an exchange; idle connections already in the pool count toward the number requested. No
+	 * more connections are opened than the pool, or the admission control, allows for a single host. Once the connections are open, a
+	 * {@value HTTP#HEAD_METHOD} request is made to the resource over one of them, answering any authentication challenge of the host so that the credentials
+	 * are cached by the client for later requests. Errors in the response other than a failure to authenticate are ignored.
+	 * </p>
+	 * <p>
+	 * Pooled connections are only reused by requests with equal connection-specific credentials, so the given password authentication must match that of the
+	 * later requests, such as those of an {@link HTTPResource} created with the same password authentication.
+	 * </p>
+	 * <p>
+	 * If {@link #isHTTP2() HTTP/2} is enabled and the host supports it, all exchanges share a single connection regardless of credentials, so only that
+	 * connection is opened; its connect time then includes the TLS handshake.
+	 * </p>
+	 * @param uri The URI of a resource on the host, against which to authenticate.
+	 * @param passwordAuthentication The connection-specific password authentication of the later requests, or <code>null</code> if there are no
+	 *          connection-specific credentials.
+	 * @param count The number of connections to have ready.
+	 * @return The result of pre-warming, including how long each phase took.
+	 * @throws NullPointerException if the given URI is <code>null</code>.
+	 * @throws IllegalArgumentException if the given count is not positive.
+	 * @throws HTTPCircuitOpenException if the circuit breaker is not allowing exchanges with the host.
+	 * @throws IOException if there was an error connecting to or authenticating with the host. Connections successfully opened are kept in the pool.
+	 */
+	public HTTPPrewarmResult prewarm(final URI uri, final PasswordAuthentication passwordAuthentication, final int count) throws IOException {
+		checkArgumentPositive(count);
+		final long startNanos = System.nanoTime();
+		final Host host = URIs.getHost(uri);
+		final boolean secure = HTTPS_URI_SCHEME.equals(uri.getScheme());
+		int connectionCount = 0;
+		int openedCount = 0;
+		long connectNanos = 0;
+		long handshakeNanos = 0;
+		final HTTP2Connection http2Connection;
+		if(isHTTP2()) {
+			final HTTPCircuitBreaker circuitBreaker = getCircuitBreaker();
+			if(circuitBreaker != null) {
+				circuitBreaker.acquire(host);
+			}
+			try {
+				final CompletableFuture<HTTP2Connection> existingFuture = http2Connections.get(new HTTPConnectionPool.Key(host, secure, null));
+				http2Connection = getHTTP2Connection(host, secure);
+				if(http2Connection != null) { //the host multiplexes all exchanges over one connection
+					connectionCount = 1;
+					if(existingFuture == null || existingFuture.isCompletedExceptionally() || existingFuture.getNow(null) != http2Connection) { //not reused
+						openedCount = 1;
+						connectNanos = System.nanoTime() - startNanos;
+					}
+				}
+			} finally {
+				if(circuitBreaker != null) {
+					circuitBreaker.release(host); //any connection failures have already been recorded
+				}
+			}
+		} else {
+			http2Connection = null;
+		}
+		if(http2Connection == null) {
+			final HTTPConnectionPool.Key key = new HTTPConnectionPool.Key(host, secure, passwordAuthentication);
+			//we hold all the leases at once, so we can't wait for one to be released
+			int leaseCount = Math.min(count, getConnectionPool().getMaxConnectionsPerHost());
+			final HTTPAdmissionControl admissionControl = getAdmissionControl();
+			if(admissionControl != null) {
+				leaseCount = Math.min(leaseCount, admissionControl.getMaxConcurrency(host));
+			}
+			final List<CompletableFuture<HTTPTransport>> leases = new ArrayList<CompletableFuture<HTTPTransport>>(leaseCount);
+			for(int i = 0; i < leaseCount; ++i) {
+				leases.add(leaseTransportAsync(key));
+			}
+			IOException ioException = null;
+			for(final CompletableFuture<HTTPTransport> lease : leases) {
+				final HTTPTransport transport;
+				try {
+					transport = lease.join(); //wait for all the leases even if some fail, so that we release all the transports
+				} catch(final CompletionException completionException) {
+					final Throwable cause = completionException.getCause();
+					final IOException leaseIOException = cause instanceof IOException ? (IOException)cause : new IOException(cause);
+					if(ioException == null) {
+						ioException = leaseIOException;
+					} else {
+						ioException.addSuppressed(leaseIOException);
+					}
+					continue;
+				}
+				++connectionCount;
+				if(transport.isNewlyOpened()) {
+					++openedCount;
+					connectNanos = Math.max(connectNanos, transport.getConnectNanos());
+					handshakeNanos = Math.max(handshakeNanos, transport.getHandshakeNanos());
+				}
+				releaseTransport(transport);
+			}
+			if(ioException != null) {
+				throw ioException;
+			}
+		}
+		final long authenticationStartNanos = System.nanoTime();
+		final HTTPClientTCPConnection connection = createConnection(host, passwordAuthentication, secure);
+		final HTTPRequest request = new DefaultHTTPRequest(HEAD_METHOD, uri);
+		final HTTPResponse response = connection.sendRequest(request, Bytes.NO_BYTES); //answer any challenge, caching the credentials
+		connection.readResponseBody(request, response);
+		final long endNanos = System.nanoTime();
+		final HTTPPrewarmResult result = new HTTPPrewarmResult(host, secure, connectionCount, openedCount, connectNanos, handshakeNanos,
+				endNanos - authenticationStartNanos, endNanos - startNanos);
+		getLogger().debug("Pre-warmed {}.", result);
+		return result;
+	}
+
+	/** The event loop for asynchronous exchanges, or <code>null</code> if the event loop has not yet been created. */
+	private volatile HTTPEventLoop eventLoop = null;
+
+	/** The lock guarding the creation of the event loop and the closing of the client. */
+	private final Lock closeLock = new ReentrantLock();
+
+	/** Whether the client has been closed; guarded by {@link #closeLock}. */
+	private boolean closed = false;
+
+	/**
+	 * Returns the event loop for asynchronous exchanges, creating and starting it if needed.
+	 * @return The event loop for asynchronous exchanges.
+	 * @throws IOException if the event loop could not be created, or if the client has been closed.
+	 */
+	HTTPEventLoop getEventLoop() throws IOException {
+		HTTPEventLoop eventLoop = this.eventLoop;
+		if(eventLoop == null) {
+			closeLock.lock();
+			try {
+				if(closed) {
+					throw new IOException("HTTP client is closed.");
+				}
+				eventLoop = this.eventLoop;
+				if(eventLoop == null) {
+					eventLoop = new HTTPEventLoop(getClass().getSimpleName() + " event loop", getExecutor());
+					this.eventLoop = eventLoop;
+				}
+			} finally {
+				closeLock.unlock();
+			}
+		}
+		return eventLoop;
+	}
+
+	/**
+	 * Closes the client. The event loop thread, if started, is stopped, failing any asynchronous exchanges in progress. Idle pooled transports and HTTP/2
+	 * connections are closed, and transports still leased are closed as they are returned. No further exchanges may take place using the client. The
+	 * {@link #getInstance() default instance} is shared and should not be closed. If the client is already closed, no action occurs.
+	 */
+	@Override
+	public void close() {
+		final HTTPEventLoop eventLoop;
+		closeLock.lock();
+		try {
+			if(closed) {
+				return;
+			}
+			closed = true;
+			eventLoop = this.eventLoop;
+		} finally {
+			closeLock.unlock();
+		}
+		if(eventLoop != null) {
+			eventLoop.close();
+		}
+		connectionPool.close();
+		for(final CompletableFuture<HTTP2Connection> future : http2Connections.values()) {
+			if(future.isDone() && !future.isCompletedExceptionally()) {
+				final HTTP2Connection http2Connection = future.join();
+				if(http2Connection != null) {
+					http2Connection.close();
+				}
+			}
+		}
+		http2Connections.clear();
+		http2UnsupportedNanos.clear();
+	}
+
+	/** The endpoint identification algorithm used to verify that the server certificate matches the host name. */
+	private static final String HTTPS_ENDPOINT_IDENTIFICATION_ALGORITHM = "HTTPS";
+
+	/** The lazily-created SSL socket factory that trusts all certificates, used in insecure mode. */
+	private static SSLSocketFactory insecureSSLSocketFactory = null;
+
+	/** The socket factory for creating secure transports, or <code>null</code> if the default socket factory has not yet been determined. */
+	private volatile SSLSocketFactory sslSocketFactory = null;
+
+	/**
+	 * Returns the socket factory for creating secure transports. Unless a socket factory has been specified, the factory of the platform's default
+	 * {@link SSLContext} is used, or in {@link #isInsecure() insecure mode} a factory that trusts all certificates. Because the same factory is used for all
+	 * connections for the life of the client, TLS sessions are cached and resumed for later connections to the same host, avoiding the cost of a full handshake.
+	 * @return The socket factory for creating secure transports.
+	 * @throws IOException if the default socket factory could not be created.
+	 */
+	public SSLSocketFactory getSSLSocketFactory() throws IOException {
+		final SSLSocketFactory sslSocketFactory = this.sslSocketFactory;
+		if(sslSocketFactory != null) {
+			return sslSocketFactory;
+		}
+		if(isInsecure()) {
+			return getInsecureSSLSocketFactory();
+		}
+		try {
+			return SSLContext.getDefault().getSocketFactory();
+		} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
+			throw new IOException("Unable to create default SSL context.", noSuchAlgorithmException);
+		}
+	}
+
+	/**
+	 * Sets the socket factory for creating secure transports. TLS sessions are only resumed by transports created by the same factory, so the factory should be
+	 * long-lived. Idle transports already in the pool are not affected.
+	 * @param sslSocketFactory The socket factory for creating secure transports, or <code>null</code> if the default socket factory should be used.
+	 */
+	public void setSSLSocketFactory(final SSLSocketFactory sslSocketFactory) {
+		this.sslSocketFactory = sslSocketFactory;
+	}
+
+	/**
+	 * Sets the SSL context for creating secure transports, e.g. one initialized with a custom trust store or client certificates. This is a convenience method
+	 * for {@link #setSSLSocketFactory(SSLSocketFactory)}.
+	 * @param sslContext The SSL context for creating secure transports.
+	 * @throws NullPointerException if the given SSL context is <code>null</code>.
+	 */
+	public void setSSLContext(final SSLContext sslContext) {
+		setSSLSocketFactory(sslContext.getSocketFactory());
+	}
+
+	/** Whether server certificates and host names are not verified. */
+	private volatile boolean insecure = false;
+
+	/** @return Whether server certificates and host names are not verified. */
+	public boolean isInsecure() {
+		return insecure;
+	}
+
+	/**
+	 * Sets whether server certificates and host names are not verified. Insecure mode leaves connections open to man-in-the-middle attacks and should only be
+	 * used for testing. Unless a socket factory has been specified, insecure mode uses a socket factory that trusts all certificates.
+	 * @param insecure <code>true</code> if server certificates and host names should not be verified.
+	 * @see #setSSLSocketFactory(SSLSocketFactory)
+	 */
+	public void setInsecure(final boolean insecure) {
+		this.insecure = insecure;
+	}
+
+	/**
+	 * Returns a shared socket factory that trusts all certificates.
+	 * @return A socket factory that does not verify server certificates.
+	 * @throws IOException if the socket factory could not be created.
+	 */
+	protected static synchronized SSLSocketFactory getInsecureSSLSocketFactory() throws IOException {
+		if(insecureSSLSocketFactory == null) {
+			final TrustManager[] trustAllCerts = new TrustManager[] {new X509TrustManager() {
+
+				@Override
+				public X509Certificate[] getAcceptedIssuers() {
+					return new X509Certificate[0];
+				}
+
+				@Override
+				public void checkClientTrusted(final X509Certificate[] certs, final String authType) {
+				}
+
+				@Override
+				public void checkServerTrusted(final X509Certificate[] certs, final String authType) {
+				}
+			}};
+			try {
+				final SSLContext sslContext = SSLContext.getInstance("TLS");
+				sslContext.init(null, trustAllCerts, null);
+				insecureSSLSocketFactory = sslContext.getSocketFactory();
+			} catch(final GeneralSecurityException generalSecurityException) {
+				throw new IOException("Unable to create insecure SSL context.", generalSecurityException);
+			}
+		}
+		return insecureSSLSocketFactory;
+	}
 
 	/** The default instance of the HTTP client. */
 	private static HTTPClient instance = null;
@@ -94,7 +1077,8 @@ public final HTTPClientTCPConnection createConnection(final Host host, final boo
 	}
 
 	/**
-	 * Creates a connection to a host that is optionally secure, using connection-specific password authentication.
+	 * Creates a connection to a host that is optionally secure, using connection-specific password authentication. Creating a connection is inexpensive; the
+	 * connection leases a pooled transport from this client for each request/response exchange.
 	 * @param host The host to which to connect.
 	 * @param passwordAuthentication The connection-specific password authentication, or <code>null</code> if there should be no connection-specific password
 	 *          authentication.
@@ -105,4 +1089,877 @@ public HTTPClientTCPConnection createConnection(final Host host, final PasswordA
 		return new HTTPClientTCPConnection(this, host, passwordAuthentication, secure); //return a new connection to the given host
 	}
 
+	/**
+	 * Sends a fixed-length request asynchronously, reading the entire body of the response. If the server requires authorization the request is retried with
+	 * appropriate credentials, as with {@link HTTPClientTCPConnection#sendRequest(HTTPRequest, byte[])}; if no credentials are available the future completes
+	 * exceptionally with an {@link HTTPUnauthorizedException}. Otherwise the returned future does not complete exceptionally for an error status; callers may
+	 * check the status using {@link HTTPResponse#checkStatus()}.
+	 * <p>
+	 * Cleartext HTTP/1.1 exchanges are driven by a single event loop thread per client using non-blocking I/O, so that many requests may be outstanding without
+	 * a thread waiting on each; secure and HTTP/2 exchanges are performed using blocking I/O on the client's {@link #getExecutor() executor}. Futures are
+	 * completed, and blocking work such as connecting and asking for credentials is performed, using the executor. The event loop thread runs until the client
+	 * is {@link #close() closed}.
+	 * </p>
+	 * @param request The request to send.
+	 * @param body The body of the request.
+	 * @return The future response, which includes the response body.
+	 * @throws NullPointerException if the given request and/or body is <code>null</code>.
+	 * @see HTTPClientTCPConnection#sendRequestAsync(HTTPRequest, byte[])
+	 */
+	public CompletableFuture<BufferedHTTPResponse> sendAsync(final HTTPRequest request, final byte[] body) {
+		requireNonNull(body, "Body cannot be null.");
+		final URI uri = requireNonNull(request, "Request cannot be null.").getURI();
+		final boolean secure = HTTPS_URI_SCHEME.equals(uri.getScheme()); //see if this connection should be secure
+		return createConnection(URIs.getHost(uri), secure).sendRequestAsync(request, body);
+	}
+
+	/**
+	 * Leases a transport for a request/response exchange. If {@link #isHTTP2() HTTP/2} is enabled and the host supports it, the transport carries the exchange
+	 * on a new stream of the shared HTTP/2 connection to the host; otherwise a transport is leased from the {@link #getConnectionPool() connection pool}. The
+	 * transport must be returned using {@link #releaseTransport(HTTPTransport)}. If there is a {@link #getCircuitBreaker() circuit breaker}, the exchange must
+	 * first be allowed by it; if there is an {@link #getAdmissionControl() admission control}, the exchange is then admitted, waiting if needed.
+	 * @param key The key identifying the transport to lease.
+	 * @return An open transport.
+	 * @throws HTTPCircuitOpenException if the exchange was stopped by the circuit breaker.
+	 * @throws HTTPAdmissionException if the exchange was rejected by the admission control.
+	 * @throws IOException if there was an error connecting to the host.
+	 */
+	HTTPTransport leaseTransport(final HTTPConnectionPool.Key key) throws IOException {
+		final Host host = key.getHost();
+		final HTTPCircuitBreaker circuitBreaker = getCircuitBreaker();
+		if(circuitBreaker != null) {
+			circuitBreaker.acquire(host);
+		}
+		final HTTPAdmissionControl admissionControl = getAdmissionControl();
+		final HTTPTransport transport;
+		try {
+			if(admissionControl != null) {
+				admissionControl.acquire(host);
+			}
+			try {
+				transport = leaseAdmittedTransport(key);
+			} catch(final IOException | RuntimeException exception) {
+				if(admissionControl != null) {
+					admissionControl.release(host, -1, isOverload(exception));
+				}
+				throw exception;
+			}
+		} catch(final IOException | RuntimeException exception) {
+			if(circuitBreaker != null) {
+				circuitBreaker.release(host); //any connection failures have already been recorded
+			}
+			throw exception;
+		}
+		transport.startExchange(admissionControl, circuitBreaker);
+		return transport;
+	}
+
+	/**
+	 * Determines whether a failure to connect indicates that the host is overloaded, e.g. the host refused the connection or did not accept it in time.
+	 * @param throwable The failure.
+	 * @return <code>true</code> if the failure should count against the host for {@link #getAdmissionControl() admission control}.
+	 */
+	protected boolean isOverload(final Throwable throwable) {
+		return throwable instanceof ConnectException || throwable instanceof SocketTimeoutException || throwable instanceof HTTPCircuitOpenException;
+	}
+
+	/**
+	 * Leases a transport for an exchange that has already been admitted.
+	 * @param key The key identifying the transport to lease.
+	 * @return An open transport.
+	 * @throws IOException if there was an error connecting to the host.
+	 * @see #leaseTransport(HTTPConnectionPool.Key)
+	 */
+	private HTTPTransport leaseAdmittedTransport(final HTTPConnectionPool.Key key) throws IOException {
+		if(isHTTP2()) {
+			while(true) {
+				final HTTP2Connection http2Connection = getHTTP2Connection(key.getHost(), key.isSecure());
+				if(http2Connection == null) { //the host doesn't support HTTP/2
+					break;
+				}
+				try {
+					return new HTTP2StreamTransport(http2Connection);
+				} catch(final HTTP2Exception http2Exception) {
+					if(!http2Exception.isRefused()) {
+						throw http2Exception;
+					}
+					getLogger().debug("HTTP/2 connection to {} is shutting down; opening another.", key.getHost());
+				}
+			}
+		}
+		return getConnectionPool().lease(key);
+	}
+
+	/**
+	 * Leases a transport from the {@link #getConnectionPool() connection pool} for an asynchronous exchange without blocking. If there is a
+	 * {@link #getCircuitBreaker() circuit breaker}, the exchange must first be allowed by it; if there is an {@link #getAdmissionControl() admission control},
+	 * the exchange is then admitted. The transport must be returned using {@link #releaseTransport(HTTPTransport)}.
+	 * @param key The key identifying the transport to lease.
+	 * @return A future open transport, completed exceptionally with an {@link HTTPCircuitOpenException} if the exchange was stopped by the circuit breaker, or
+	 *         with an {@link HTTPAdmissionException} if the exchange was rejected by the admission control.
+	 * @see HTTPConnectionPool#leaseAsync(HTTPConnectionPool.Key, Executor)
+	 */
+	CompletableFuture<HTTPTransport> leaseTransportAsync(final HTTPConnectionPool.Key key) {
+		final Host host = key.getHost();
+		final HTTPCircuitBreaker circuitBreaker = getCircuitBreaker();
+		if(circuitBreaker != null) {
+			try {
+				circuitBreaker.acquire(host);
+			} catch(final HTTPCircuitOpenException circuitOpenException) {
+				final CompletableFuture<HTTPTransport> future = new CompletableFuture<HTTPTransport>();
+				future.completeExceptionally(circuitOpenException);
+				return future;
+			}
+		}
+		final HTTPAdmissionControl admissionControl = getAdmissionControl();
+		final CompletableFuture<HTTPTransport> lease;
+		if(admissionControl != null) {
+			lease = admissionControl.acquireAsync(host).thenCompose(admitted -> getConnectionPool().leaseAsync(key, getExecutor()).whenComplete((transport, throwable) -> {
+				if(transport == null) {
+					admissionControl.release(host, -1, isOverload(throwable instanceof CompletionException ? throwable.getCause() : throwable));
+				}
+			}));
+		} else {
+			lease = getConnectionPool().leaseAsync(key, getExecutor());
+		}
+		return lease.whenComplete((transport, throwable) -> {
+			if(transport != null) {
+				transport.startExchange(admissionControl, circuitBreaker);
+			} else if(circuitBreaker != null) {
+				circuitBreaker.release(host); //any connection failures have already been recorded
+			}
+		});
+	}
+
+	/**
+	 * Returns a transport leased using {@link #leaseTransport(HTTPConnectionPool.Key)} or {@link #leaseTransportAsync(HTTPConnectionPool.Key)} after an
+	 * exchange, ending the admission of the exchange if any and recording its outcome with any circuit breaker. An HTTP/2 stream transport is closed, cancelling
+	 * the stream if the exchange is not complete; any other transport is released to the connection pool.
+	 * @param transport The transport to return.
+	 */
+	void releaseTransport(final HTTPTransport transport) {
+		final Host host = transport.getHost();
+		final HTTPAdmissionControl admissionControl = transport.getAdmissionControl();
+		final HTTPCircuitBreaker circuitBreaker = transport.getCircuitBreaker();
+		final long latencyNanos = transport.getResponseLatencyNanos();
+		final boolean overloaded = transport.isOverloaded();
+		transport.finishExchange(); //the transport may be leased again for another exchange
+		if(circuitBreaker != null) {
+			if(overloaded) {
+				circuitBreaker.recordFailure(host);
+			} else if(latencyNanos >= 0) {
+				circuitBreaker.recordSuccess(host);
+			} else { //the exchange ended before the host responded
+				circuitBreaker.release(host);
+			}
+		}
+		if(admissionControl != null) {
+			admissionControl.release(host, latencyNanos, overloaded);
+		}
+		if(transport instanceof HTTP2StreamTransport) {
+			((HTTP2StreamTransport)transport).close();
+		} else {
+			getConnectionPool().release(transport);
+		}
+	}
+
+	/** Whether exchanges use HTTP/2 with hosts that support it. */
+	private volatile boolean http2 = false;
+
+	/** @return Whether exchanges use HTTP/2 with hosts that support it. */
+	public boolean isHTTP2() {
+		return http2;
+	}
+
+	/**
+	 * Sets whether exchanges use HTTP/2 with hosts that support it. Exchanges with each host are then multiplexed as concurrent streams over a single connection
+	 * rather than being spread across pooled connections. For secure connections HTTP/2 is negotiated during the TLS handshake using ALPN, falling back to
+	 * HTTP/1.1 for hosts that do not support HTTP/2 or if the platform does not support ALPN. Unsecure connections use HTTP/2 with prior knowledge, so HTTP/2
+	 * should only be enabled for unsecure hosts known to support it. Headers are compressed using HPACK, and server push is disabled.
+	 * @param http2 <code>true</code> if HTTP/2 should be used.
+	 */
+	public void setHTTP2(final boolean http2) {
+		this.http2 = http2;
+	}
+
+	/** The number of milliseconds for which a host found not to support HTTP/2 is not asked again. */
+	private static final long HTTP2_UNSUPPORTED_TIMEOUT = 10 * 60 * 1000;
+
+	/**
+	 * The HTTP/2 connections by host and security, with no credentials. Connections are removed once they no longer accept new streams. A connection completing
+	 * as <code>null</code> indicates that the host does not support HTTP/2; such a connection is removed at once, and recorded in
+	 * {@link #http2UnsupportedNanos}.
+	 */
+	private final ConcurrentMap<HTTPConnectionPool.Key, CompletableFuture<HTTP2Connection>> http2Connections = new ConcurrentHashMap<HTTPConnectionPool.Key, CompletableFuture<HTTP2Connection>>();
+
+	/** The {@link System#nanoTime()} at which each host was found not to support HTTP/2, by host and security, with no credentials. */
+	private final ConcurrentMap<HTTPConnectionPool.Key, Long> http2UnsupportedNanos = new ConcurrentHashMap<HTTPConnectionPool.Key, Long>();
+
+	/**
+	 * Returns the shared HTTP/2 connection to a host, opening one if there is no connection accepting new streams. Only one connection is opened to a host at a
+	 * time; other threads needing a connection to the same host wait for it. A host found not to support HTTP/2 is not asked again for some time.
+	 * @param host The host to which to connect.
+	 * @param secure Whether the connection should be secure.
+	 * @return The HTTP/2 connection to the host, or <code>null</code> if the host does not support HTTP/2.
+	 * @throws IOException if there was an error connecting to the host.
+	 */
+	private HTTP2Connection getHTTP2Connection(final Host host, final boolean secure) throws IOException {
+		final HTTPConnectionPool.Key key = new HTTPConnectionPool.Key(host, secure, null);
+		while(true) {
+			final Long unsupportedNanos = http2UnsupportedNanos.get(key);
+			if(unsupportedNanos != null) {
+				if(System.nanoTime() - unsupportedNanos < TimeUnit.MILLISECONDS.toNanos(HTTP2_UNSUPPORTED_TIMEOUT)) {
+					return null;
+				}
+				http2UnsupportedNanos.remove(key, unsupportedNanos); //ask the host again
+			}
+			CompletableFuture<HTTP2Connection> future = http2Connections.get(key);
+			if(future == null) {
+				final CompletableFuture<HTTP2Connection> newFuture = new CompletableFuture<HTTP2Connection>();
+				future = http2Connections.putIfAbsent(key, newFuture);
+				if(future == null) { //we're responsible for connecting
+					future = newFuture;
+					final HTTP2Connection http2Connection;
+					try {
+						http2Connection = connectRetrying(host, () -> openHTTP2Connection(host, secure));
+					} catch(final IOException | RuntimeException exception) {
+						http2Connections.remove(key, newFuture); //let the next caller try again
+						newFuture.completeExceptionally(exception);
+						throw exception;
+					}
+					if(http2Connection != null) {
+						http2Connection.getShutdown().thenRun(() -> http2Connections.remove(key, newFuture)); //forget the connection once it is done
+					} else {
+						http2UnsupportedNanos.put(key, System.nanoTime());
+						http2Connections.remove(key, newFuture);
+					}
+					newFuture.complete(http2Connection);
+				}
+			}
+			final HTTP2Connection http2Connection;
+			try {
+				http2Connection = future.get();
+			} catch(final InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for HTTP/2 connection to " + host + ".");
+			} catch(final ExecutionException executionException) {
+				final Throwable cause = executionException.getCause();
+				throw cause instanceof IOException ? (IOException)cause : new IOException(cause);
+			}
+			if(http2Connection == null || http2Connection.isAcceptingStreams()) {
+				return http2Connection;
+			}
+			http2Connections.remove(key, future); //retire the connection; streams still in progress may complete
+		}
+	}
+
+	/** The method for setting ALPN application protocols, available in Java 9 and in Java 8 update 252 and later; or <code>null</code> if not available. */
+	private static final Method SSL_PARAMETERS_SET_APPLICATION_PROTOCOLS_METHOD;
+
+	/** The method for retrieving the negotiated ALPN application protocol, or <code>null</code> if not available. */
+	private static final Method SSL_SOCKET_GET_APPLICATION_PROTOCOL_METHOD;
+
+	static {
+		Method setApplicationProtocolsMethod = null;
+		Method getApplicationProtocolMethod = null;
+		try {
+			setApplicationProtocolsMethod = SSLParameters.class.getMethod("setApplicationProtocols", String[].class);
+			getApplicationProtocolMethod = SSLSocket.class.getMethod("getApplicationProtocol");
+		} catch(final NoSuchMethodException noSuchMethodException) { //ALPN isn't supported on this platform
+		}
+		SSL_PARAMETERS_SET_APPLICATION_PROTOCOLS_METHOD = setApplicationProtocolsMethod;
+		SSL_SOCKET_GET_APPLICATION_PROTOCOL_METHOD = getApplicationProtocolMethod;
+	}
+
+	/**
+	 * Opens a new HTTP/2 connection to a host. A secure connection offers HTTP/2 and HTTP/1.1 using ALPN; if the host does not select HTTP/2, or if the platform
+	 * does not support ALPN, no connection is made.
+	 * @param host The host to which to connect.
+	 * @param secure Whether the connection should be secure.
+	 * @return A new HTTP/2 connection to the host, or <code>null</code> if HTTP/2 could not be negotiated with the host.
+	 * @throws IOException If there is an error connecting to the host.
+	 */
+	HTTP2Connection openHTTP2Connection(final Host host, final boolean secure) throws IOException {
+		final Socket socket;
+		if(secure) {
+			if(SSL_PARAMETERS_SET_APPLICATION_PROTOCOLS_METHOD == null) {
+				return null;
+			}
+			final SSLSocket sslSocket = openSSLSocket(host, HTTP2.H2_PROTOCOL, HTTP2.HTTP_1_1_PROTOCOL);
+			final String applicationProtocol;
+			try {
+				applicationProtocol = (String)SSL_SOCKET_GET_APPLICATION_PROTOCOL_METHOD.invoke(sslSocket);
+			} catch(final ReflectiveOperationException reflectiveOperationException) {
+				sslSocket.close();
+				throw new IOException(reflectiveOperationException);
+			}
+			if(!HTTP2.H2_PROTOCOL.equals(applicationProtocol)) {
+				getLogger().debug("Host {} did not negotiate HTTP/2; using HTTP/1.1.", host);
+				sslSocket.close();
+				return null;
+			}
+			socket = sslSocket;
+		} else {
+			if(getUnixDomainSocket(host) != null) { //HTTP/2 needs a full-duplex socket; use HTTP/1.1 over the Unix domain socket channel
+				return null;
+			}
+			if(getProxy() != null) { //cleartext requests are forwarded by the proxy using HTTP/1.1
+				return null;
+			}
+			socket = connectSocket(host, DEFAULT_PORT);
+		}
+		try {
+			return new HTTP2Connection(host, secure, socket);
+		} catch(final IOException ioException) {
+			socket.close();
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Opens a new transport to a host. This method is called by the connection pool when no idle transport is available. If the host refuses the connection
+	 * or does not answer within the connect timeout, the connection is retried as allowed by the {@link #getRetryPolicy() retry policy} and the
+	 * {@link #getRetryBudget() retry budget}. If the host is mapped to a {@link #getUnixDomainSocket(Host) Unix domain socket}, an unsecure transport connects
+	 * to the socket instead of using TCP. If there is a {@link #getProxy() proxy}, an unsecure transport connects to the proxy, which forwards each request to
+	 * the host. Unsecure transports use a {@link SocketChannel}; secure transports are created using
+	 * {@link #getSSLSocketFactory()}, resuming any TLS session cached for the host. The time taken to connect and to perform any TLS handshake is recorded in the
+	 * transport.
+	 * @param host The host to which to connect.
+	 * @param secure Whether the transport should be secure.
+	 * @return A new transport connected to the host.
+	 * @throws IOException If there is an error connecting to the host.
+	 */
+	protected HTTPTransport openTransport(final Host host, final boolean secure) throws IOException {
+		final Path unixDomainSocket = getUnixDomainSocket(host);
+		if(unixDomainSocket != null) {
+			if(secure) {
+				throw new IOException("Secure connections to " + host + " over Unix domain socket " + unixDomainSocket + " are not supported.");
+			}
+			return connectRetrying(host, () -> {
+				final long startNanos = System.nanoTime();
+				final HTTPTransport transport = new ChannelHTTPTransport(host, secure, openUnixDomainSocketChannel(unixDomainSocket));
+				transport.setSetupNanos(System.nanoTime() - startNanos, 0);
+				return transport;
+			});
+		}
+		return connectRetrying(host, () -> {
+			final long startNanos = System.nanoTime();
+			final HTTPTransport transport;
+			if(secure) { //if this is a secure connection
+				final Socket socket = connectSocket(host, DEFAULT_SECURE_PORT);
+				final long connectedNanos = System.nanoTime();
+				final SocketHTTPTransport socketTransport = new SocketHTTPTransport(host, secure, startHandshake(socket, host));
+				socketTransport.setStaleCheckInactivity(getStaleCheckInactivity());
+				socketTransport.setSetupNanos(connectedNanos - startNanos, System.nanoTime() - connectedNanos);
+				transport = socketTransport;
+			} else { //if this is not a secure connection
+				final Host proxy = getProxy();
+				transport = new ChannelHTTPTransport(host, secure, connectChannel(proxy != null ? proxy : host, DEFAULT_PORT));
+				transport.setForwardingProxy(proxy);
+				transport.setSetupNanos(System.nanoTime() - startNanos, 0);
+			}
+			return transport;
+		});
+	}
+
+	/**
+	 * Opens a secure socket to a host using {@link #getSSLSocketFactory()} and performs the TLS handshake. Unless in {@link #isInsecure() insecure mode}, the
+	 * server certificate is verified against the host name. Both connecting and the handshake are limited by the connect timeout of the
+	 * {@link #getRetryPolicy() retry policy}.
+	 * @param host The host to which to connect.
+	 * @param applicationProtocols The application protocols to offer using ALPN, in order of preference, if ALPN is supported by the platform.
+	 * @return A new secure socket connected to the host.
+	 * @throws IOException If there is an error connecting to the host.
+	 */
+	protected SSLSocket openSSLSocket(final Host host, final String... applicationProtocols) throws IOException {
+		return startHandshake(connectSocket(host, DEFAULT_SECURE_PORT), host, applicationProtocols);
+	}
+
+	/**
+	 * Layers a secure socket over a socket already connected to a host using {@link #getSSLSocketFactory()} and performs the TLS handshake. Unless in
+	 * {@link #isInsecure() insecure mode}, the server certificate is verified against the host name. The handshake is limited by the connect timeout of the
+	 * {@link #getRetryPolicy() retry policy}. If the handshake fails, the socket is closed.
+	 * @param socket The socket connected to the host, possibly through a proxy tunnel.
+	 * @param host The host to which the socket is connected.
+	 * @param applicationProtocols The application protocols to offer using ALPN, in order of preference, if ALPN is supported by the platform.
+	 * @return A new secure socket connected to the host.
+	 * @throws IOException If there is an error performing the handshake.
+	 */
+	protected SSLSocket startHandshake(final Socket socket, final Host host, final String... applicationProtocols) throws IOException {
+		final int port = host.getPort() >= 0 ? host.getPort() : DEFAULT_SECURE_PORT; //get the port, if any
+		final int connectTimeout = getRetryPolicy().getConnectTimeout();
+		final SSLSocket sslSocket;
+		try {
+			sslSocket = (SSLSocket)getSSLSocketFactory().createSocket(socket, host.getName(), port, true); //layer a secure socket over the connection; using the host name allows the session to be resumed later
+		} catch(final IOException ioException) {
+			socket.close();
+			throw ioException;
+		}
+		try {
+			final SSLParameters sslParameters = sslSocket.getSSLParameters();
+			if(!isInsecure()) { //make sure the certificate was issued for this host
+				sslParameters.setEndpointIdentificationAlgorithm(HTTPS_ENDPOINT_IDENTIFICATION_ALGORITHM);
+			}
+			if(applicationProtocols.length > 0 && SSL_PARAMETERS_SET_APPLICATION_PROTOCOLS_METHOD != null) {
+				SSL_PARAMETERS_SET_APPLICATION_PROTOCOLS_METHOD.invoke(sslParameters, (Object)applicationProtocols);
+			}
+			sslSocket.setSSLParameters(sslParameters);
+			sslSocket.setSoTimeout(connectTimeout); //don't let a hung server block the handshake
+			sslSocket.startHandshake(); //handshake now so that any failure is reported as a connection failure
+			sslSocket.setSoTimeout(0); //each exchange sets its own read timeout
+		} catch(final IOException ioException) {
+			sslSocket.close();
+			throw ioException;
+		} catch(final ReflectiveOperationException reflectiveOperationException) {
+			sslSocket.close();
+			throw new IOException(reflectiveOperationException);
+		}
+		return sslSocket;
+	}
+
+	/** The resolver for finding the addresses of hosts. */
+	private volatile HostResolver resolver = new CachingHostResolver(HostResolver.SYSTEM);
+
+	/** @return The resolver for finding the addresses of hosts. */
+	public HostResolver getResolver() {
+		return resolver;
+	}
+
+	/**
+	 * Sets the resolver for finding the addresses of hosts. By default the addresses found by the platform name service are cached using a
+	 * {@link CachingHostResolver}.
+	 * @param resolver The resolver for finding the addresses of hosts.
+	 * @throws NullPointerException if the given resolver is <code>null</code>.
+	 */
+	public void setResolver(final HostResolver resolver) {
+		this.resolver = requireNonNull(resolver, "Resolver cannot be null.");
+	}
+
+	/** The method for creating a Unix domain socket address from a path, available in Java 16 and later; or <code>null</code> if not available. */
+	private static final Method UNIX_DOMAIN_SOCKET_ADDRESS_OF_METHOD;
+
+	/** The method for opening a socket channel for a protocol family, available in Java 15 and later; or <code>null</code> if not available. */
+	private static final Method SOCKET_CHANNEL_OPEN_METHOD;
+
+	/** The Unix domain protocol family, available in Java 16 and later; or <code>null</code> if not available. */
+	private static final ProtocolFamily UNIX_PROTOCOL_FAMILY;
+
+	static {
+		Method unixDomainSocketAddressOfMethod = null;
+		Method socketChannelOpenMethod = null;
+		ProtocolFamily unixProtocolFamily = null;
+		try {
+			unixDomainSocketAddressOfMethod = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+			socketChannelOpenMethod = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+			unixProtocolFamily = StandardProtocolFamily.valueOf("UNIX");
+		} catch(final ReflectiveOperationException | IllegalArgumentException exception) { //Unix domain sockets aren't supported on this platform
+			unixDomainSocketAddressOfMethod = null;
+			socketChannelOpenMethod = null;
+		}
+		UNIX_DOMAIN_SOCKET_ADDRESS_OF_METHOD = unixDomainSocketAddressOfMethod;
+		SOCKET_CHANNEL_OPEN_METHOD = socketChannelOpenMethod;
+		UNIX_PROTOCOL_FAMILY = unixProtocolFamily;
+	}
+
+	/** @return <code>true</code> if the platform supports connecting to Unix domain sockets, which requires Java 16 or later. */
+	public static boolean isUnixDomainSocketSupported() {
+		return UNIX_PROTOCOL_FAMILY != null;
+	}
+
+	/** The paths of the Unix domain sockets to use instead of TCP for connecting to hosts. */
+	private final ConcurrentMap<Host, Path> unixDomainSockets = new ConcurrentHashMap<Host, Path>();
+
+	/**
+	 * Returns the Unix domain socket to use instead of TCP for connecting to a host.
+	 * @param host The host, including any port.
+	 * @return The path of the Unix domain socket for the host, or <code>null</code> if the host is reached using TCP.
+	 */
+	public Path getUnixDomainSocket(final Host host) {
+		return unixDomainSockets.get(host);
+	}
+
+	/**
+	 * Sets a Unix domain socket to use instead of TCP for connecting to a host. Requests are made exactly as they would be over TCP, including the
+	 * {@value HTTP#HOST_HEADER} header, but the connection is made to the socket. Only unsecure connections and HTTP/1.1 are supported; secure connections to the
+	 * host will fail. Transports already connected to the host are not affected.
+	 * @param host The host, including any port, as it appears in request URIs.
+	 * @param unixDomainSocket The path of the Unix domain socket for the host, or <code>null</code> if the host should be reached using TCP.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 * @throws UnsupportedOperationException if a socket is given and the platform does not support Unix domain sockets.
+	 * @see #isUnixDomainSocketSupported()
+	 */
+	public void setUnixDomainSocket(final Host host, final Path unixDomainSocket) {
+		requireNonNull(host, "Host cannot be null.");
+		if(unixDomainSocket != null) {
+			if(!isUnixDomainSocketSupported()) {
+				throw new UnsupportedOperationException("Unix domain sockets are not supported on this platform.");
+			}
+			unixDomainSockets.put(host, unixDomainSocket);
+		} else {
+			unixDomainSockets.remove(host);
+		}
+	}
+
+	/**
+	 * Opens a blocking socket channel connected to a Unix domain socket.
+	 * @param unixDomainSocket The path of the Unix domain socket.
+	 * @return A new socket channel connected to the socket.
+	 * @throws IOException If there is an error connecting to the socket.
+	 */
+	private static SocketChannel openUnixDomainSocketChannel(final Path unixDomainSocket) throws IOException {
+		final SocketAddress address;
+		final SocketChannel channel;
+		try {
+			address = (SocketAddress)UNIX_DOMAIN_SOCKET_ADDRESS_OF_METHOD.invoke(null, unixDomainSocket);
+			channel = (SocketChannel)SOCKET_CHANNEL_OPEN_METHOD.invoke(null, UNIX_PROTOCOL_FAMILY);
+		} catch(final ReflectiveOperationException reflectiveOperationException) {
+			final Throwable cause = reflectiveOperationException.getCause();
+			throw cause instanceof IOException ? (IOException)cause : new IOException(reflectiveOperationException);
+		}
+		try {
+			channel.connect(address);
+		} catch(final IOException ioException) {
+			channel.close();
+			throw ioException;
+		}
+		return channel;
+	}
+
+	/**
+	 * Connects to a host for secure exchanges, either directly or through a tunnel if a {@link #getProxy() proxy} is configured.
+	 * @param <C> The type of connection made.
+	 * @param host The host to which to connect.
+	 * @param defaultPort The port to use if the host does not specify a port.
+	 * @param connector The strategy for making a single connection attempt to an address.
+	 * @param socketFunction The function for retrieving the blocking socket of a connection, for requesting a tunnel.
+	 * @return The connection made.
+	 * @throws IOException If there is an error connecting to the host.
+	 */
+	private <C extends Closeable> C connect(final Host host, final int defaultPort, final AddressRacer.Connector<C> connector,
+			final Function<? super C, Socket> socketFunction) throws IOException {
+		final Host proxy = getProxy();
+		if(proxy != null) {
+			return connectTunnel(proxy, host, host.getPort() >= 0 ? host.getPort() : defaultPort, connector, socketFunction);
+		}
+		return connectDirect(host, defaultPort, connector);
+	}
+
+	/**
+	 * Connects directly to one of the addresses of a host found by the {@link #getResolver() resolver}. When the host has several addresses, connection attempts
+	 * are raced across them, alternating between IPv6 and IPv4, so that a single unreachable address does not cause the connection to fail.
+	 * @param <C> The type of connection made.
+	 * @param host The host to which to connect.
+	 * @param defaultPort The port to use if the host does not specify a port.
+	 * @param connector The strategy for making a single connection attempt to an address.
+	 * @return The connection made.
+	 * @throws IOException If there is an error connecting to the host.
+	 * @see AddressRacer
+	 */
+	private <C extends Closeable> C connectDirect(final Host host, final int defaultPort, final AddressRacer.Connector<C> connector) throws IOException {
+		final List<InetAddress> addresses = getResolver().resolve(host.getName());
+		return AddressRacer.connect(addresses, host.getPort() >= 0 ? host.getPort() : defaultPort, getRetryPolicy().getConnectTimeout(), getExecutor(),
+				connector);
+	}
+
+	/**
+	 * Connects a socket to a host.
+	 * @param host The host to which to connect.
+	 * @param defaultPort The port to use if the host does not specify a port.
+	 * @return A new socket connected to the host.
+	 * @throws IOException If there is an error connecting to the host.
+	 * @see #connect(Host, int, AddressRacer.Connector, Function)
+	 */
+	private Socket connectSocket(final Host host, final int defaultPort) throws IOException {
+		return connect(host, defaultPort, (address, timeout) -> {
+			final Socket socket = new Socket();
+			try {
+				socket.connect(address, timeout);
+			} catch(final IOException ioException) {
+				socket.close();
+				throw ioException;
+			}
+			return socket;
+		}, socket -> socket);
+	}
+
+	/**
+	 * Connects a blocking socket channel directly to a host, which may be a proxy forwarding cleartext requests; cleartext connections are never tunnelled.
+	 * @param host The host to which to connect.
+	 * @param defaultPort The port to use if the host does not specify a port.
+	 * @return A new socket channel connected to the host.
+	 * @throws IOException If there is an error connecting to the host.
+	 * @see #connectDirect(Host, int, AddressRacer.Connector)
+	 */
+	private SocketChannel connectChannel(final Host host, final int defaultPort) throws IOException {
+		return connectDirect(host, defaultPort, (address, timeout) -> {
+			final SocketChannel channel = SocketChannel.open();
+			try {
+				channel.socket().connect(address, timeout); //unlike the channel itself, its socket supports a timeout
+			} catch(final IOException ioException) {
+				channel.close();
+				throw ioException;
+			}
+			return channel;
+		});
+	}
+
+	/** The header for a proxy to challenge the client to authenticate itself. */
+	public static final String PROXY_AUTHENTICATE_HEADER = "Proxy-Authenticate";
+
+	/** The header for the client to authenticate itself to a proxy. */
+	public static final String PROXY_AUTHORIZATION_HEADER = "Proxy-Authorization";
+
+	/**
+	 * The maximum number of times a tunnel is requested from a proxy for a single connection, or a cleartext request is sent through a proxy, allowing for
+	 * authentication challenges.
+	 */
+	static final int MAX_PROXY_REQUESTS = 3;
+
+	/** The HTTP proxy through which requests are sent, or <code>null</code> if connections are made directly. */
+	private volatile Host proxy = null;
+
+	/** @return The HTTP proxy through which requests are sent, or <code>null</code> if connections are made directly. */
+	public Host getProxy() {
+		return proxy;
+	}
+
+	/**
+	 * Sets an HTTP proxy through which requests are sent. Each new secure connection asks the proxy to open a tunnel to the host using the
+	 * {@value HTTP#CONNECT_METHOD} method, and then performs the TLS handshake with the host through the tunnel. Because tunnels are pooled and shared just like
+	 * direct connections, a tunnel is only opened once for many requests to the same host. Cleartext requests are instead sent to the proxy itself with the
+	 * absolute URI of the resource as the request target, for the proxy to forward to the host (RFC 7230 5.3.2). Transports already connected are not
+	 * affected.
+	 * @param proxy The host and port of the proxy, or <code>null</code> if connections should be made directly.
+	 * @see #setProxyPasswordAuthentication(PasswordAuthentication)
+	 */
+	public void setProxy(final Host proxy) {
+		this.proxy = proxy;
+	}
+
+	/** The credentials for authenticating with the proxy, or <code>null</code> if no proxy authentication is available. */
+	private volatile PasswordAuthentication proxyPasswordAuthentication = null;
+
+	/** @return The credentials for authenticating with the proxy, or <code>null</code> if no proxy authentication is available. */
+	public PasswordAuthentication getProxyPasswordAuthentication() {
+		return proxyPasswordAuthentication;
+	}
+
+	/**
+	 * Sets the credentials for authenticating with the proxy. Basic and digest authentication are supported. Once the proxy has issued a challenge, later
+	 * tunnels and cleartext requests are authenticated preemptively using the same challenge.
+	 * @param proxyPasswordAuthentication The credentials for authenticating with the proxy, or <code>null</code> if no proxy authentication is available.
+	 */
+	public void setProxyPasswordAuthentication(final PasswordAuthentication proxyPasswordAuthentication) {
+		this.proxyPasswordAuthentication = proxyPasswordAuthentication;
+	}
+
+	/**
+	 * The last authentication challenge issued by each proxy, along with the client nonce and nonce count with which it is answered, used to authenticate
+	 * preemptively. Each proxy is assumed to use a single realm, so a new challenge from a proxy replaces any earlier one.
+	 */
+	private final ConcurrentMap<Host, CachedChallenge> proxyChallenges = new ConcurrentHashMap<Host, CachedChallenge>();
+
+	/**
+	 * Connects to a host through a tunnel opened by a proxy. If the proxy challenges the client to authenticate itself, the tunnel is requested again using the
+	 * {@link #getProxyPasswordAuthentication() proxy credentials}, over a new connection to the proxy if the proxy does not keep the connection open.
+	 * @param <C> The type of connection made.
+	 * @param proxy The proxy through which to connect.
+	 * @param host The host to which to connect.
+	 * @param port The port of the host to which to connect.
+	 * @param connector The strategy for making a single connection attempt to an address of the proxy.
+	 * @param socketFunction The function for retrieving the blocking socket of a connection, for requesting the tunnel.
+	 * @return The connection to the proxy, tunnelled to the host.
+	 * @throws HTTPException if the proxy refuses to open the tunnel.
+	 * @throws IOException If there is an error connecting to the proxy or to the host.
+	 */
+	private <C extends Closeable> C connectTunnel(final Host proxy, final Host host, final int port, final AddressRacer.Connector<C> connector,
+			final Function<? super C, Socket> socketFunction) throws IOException {
+		final String hostName = host.getName();
+		final String authority = (hostName.indexOf(':') >= 0 && !hostName.startsWith("[") ? "[" + hostName + "]" : hostName) + ':' + port; //IPv6 literals must be bracketed
+		C connection = null;
+		try {
+			for(int tunnelRequestCount = 1;; ++tunnelRequestCount) {
+				if(connection == null) {
+					connection = connectDirect(proxy, DEFAULT_PORT, connector);
+				}
+				final Socket socket = socketFunction.apply(connection);
+				socket.setSoTimeout(getRetryPolicy().getConnectTimeout()); //don't let a hung proxy block the connection
+				final HTTPResponse response = requestTunnel(socket, proxy, authority);
+				final int statusCode = response.getStatusCode();
+				if(statusCode >= 200 && statusCode < 300) { //the tunnel is open; the host is now on the other end of the connection
+					socket.setSoTimeout(0); //each exchange sets its own read timeout
+					return connection;
+				}
+				if(statusCode != SC_PROXY_AUTHENTICATION_REQUIRED || tunnelRequestCount >= MAX_PROXY_REQUESTS || !updateProxyChallenge(proxy, response)) {
+					throw new HTTPException(statusCode, "Proxy " + proxy + " refused tunnel to " + authority + ": " + statusCode + " " + response.getReasonPhrase());
+				}
+				if(response.isConnectionClose() || !discardBody(response, socket.getInputStream())) { //if we can't reuse the connection, reconnect to the proxy
+					connection.close();
+					connection = null;
+				}
+			}
+		} catch(final IOException | RuntimeException exception) {
+			if(connection != null) {
+				connection.close();
+			}
+			throw exception;
+		}
+	}
+
+	/**
+	 * Asks a proxy to open a tunnel and reads its response. The message body of the response, if any, is not read.
+	 * @param socket The blocking socket connected to the proxy.
+	 * @param proxy The proxy to which the socket is connected.
+	 * @param authority The host and port to which the tunnel should be opened.
+	 * @return The response of the proxy.
+	 * @throws IOException If there is an error communicating with the proxy.
+	 */
+	private HTTPResponse requestTunnel(final Socket socket, final Host proxy, final String authority) throws IOException {
+		final StringBuilder headerBuilder = new StringBuilder();
+		formatRequestLine(headerBuilder, CONNECT_METHOD, authority, new HTTPVersion(1, 1)); //Request-Line in authority form (RFC 7230 5.3.3)
+		formatHeaderLine(headerBuilder, new NameValuePair<String, String>(HOST_HEADER, authority));
+		final AuthenticateCredentials credentials = getProxyCredentials(proxy, CONNECT_METHOD, authority);
+		if(credentials != null) {
+			formatHeaderLine(headerBuilder, new NameValuePair<String, String>(PROXY_AUTHORIZATION_HEADER, formatAuthorizationHeader(new StringBuilder(), credentials)
+					.toString()));
+		}
+		headerBuilder.append(CRLF); //append a blank line, signifying the end of the headers
+		final OutputStream outputStream = socket.getOutputStream(); //don't close the stream, which would close the socket
+		outputStream.write(headerBuilder.toString().getBytes(UTF_8));
+		outputStream.flush();
+		final InputStream inputStream = socket.getInputStream(); //read without buffering so that nothing the host sends through the tunnel is consumed
+		final HTTPStatus status = parseStatusLine(inputStream);
+		final HTTPResponse response = new DefaultHTTPResponse(status.getVersion(), status.getStatusCode(), status.getReasonPhrase());
+		for(final NameValuePair<String, String> header : parseHeaders(inputStream)) {
+			response.addHeader(header.getName(), header.getValue());
+		}
+		return response;
+	}
+
+	/**
+	 * Reads and discards the message body of a response from a proxy, so that another request may be made over the same connection.
+	 * @param response The response the body of which should be discarded.
+	 * @param inputStream The input stream from the proxy, positioned at the start of the message body.
+	 * @return <code>true</code> if the body was discarded, or <code>false</code> if the length of the body is unknown, so that the connection cannot be reused.
+	 * @throws IOException If there is an error reading the message body.
+	 */
+	private static boolean discardBody(final HTTPResponse response, final InputStream inputStream) throws IOException {
+		final String[] transferEncoding = response.getTransferEncoding(); //the transfer encoding takes precedence over any Content-Length header (RFC 2616 4.4.2)
+		final byte[] buffer = new byte[256];
+		if(transferEncoding != null && transferEncoding.length > 0 && !contains(transferEncoding, IDENTITY_TRANSFER_CODING)) { //chunked
+			try (final InputStream bodyInputStream = new HTTPChunkedInputStream(inputStream, false)) { //don't close the socket stream
+				while(bodyInputStream.read(buffer) >= 0) {}
+			}
+			return true;
+		}
+		long contentLength;
+		try {
+			contentLength = response.getContentLength();
+		} catch(final SyntaxException syntaxException) {
+			throw new IOException(syntaxException);
+		}
+		if(contentLength < 0) { //the body continues until the proxy closes the connection
+			return false;
+		}
+		while(contentLength > 0) {
+			final int count = inputStream.read(buffer, 0, (int)Math.min(buffer.length, contentLength));
+			if(count < 0) {
+				throw new EOFException("Proxy closed the connection before the end of the response.");
+			}
+			contentLength -= count;
+		}
+		return true;
+	}
+
+	/**
+	 * Remembers the authentication challenge from a proxy response, so that the tunnel or request may be sent again with credentials.
+	 * @param proxy The proxy that issued the challenge.
+	 * @param response The response from the proxy indicating that authentication is required.
+	 * @return <code>true</code> if the challenge can be answered using the {@link #getProxyPasswordAuthentication() proxy credentials}.
+	 * @throws IOException If the challenge could not be parsed.
+	 */
+	boolean updateProxyChallenge(final Host proxy, final HTTPResponse response) throws IOException {
+		if(getProxyPasswordAuthentication() == null) {
+			return false;
+		}
+		final String authenticateHeader = response.getHeader(PROXY_AUTHENTICATE_HEADER);
+		if(authenticateHeader == null) {
+			return false;
+		}
+		final AuthenticateChallenge challenge;
+		try {
+			challenge = parseWWWAuthenticateHeader(authenticateHeader); //the Proxy-Authenticate header has the same syntax as WWW-Authenticate (RFC 7235 4.3)
+		} catch(final SyntaxException | IllegalArgumentException exception) {
+			throw new IOException(exception);
+		}
+		if(!(challenge instanceof BasicAuthenticateChallenge) && !(challenge instanceof DigestAuthenticateChallenge)) { //we don't recognize the scheme
+			return false;
+		}
+		proxyChallenges.put(proxy, new CachedChallenge(challenge, 0, createCNonce())); //a new challenge starts a new nonce count
+		return true;
+	}
+
+	/**
+	 * Creates credentials for a request to a proxy, answering the last challenge issued by the proxy.
+	 * @param proxy The proxy to which the request is being sent.
+	 * @param method The method of the request, such as {@value HTTP#CONNECT_METHOD} when requesting a tunnel.
+	 * @param requestURI The target of the request: the host and port when requesting a tunnel, or the absolute URI of a resource.
+	 * @return The credentials for authenticating with the proxy, or <code>null</code> if the proxy has not challenged the client or no proxy credentials are
+	 *         available.
+	 * @throws IOException If there is an error creating the credentials.
+	 */
+	AuthenticateCredentials getProxyCredentials(final Host proxy, final String method, final String requestURI) throws IOException {
+		final CachedChallenge cachedChallenge = proxyChallenges.get(proxy);
+		final PasswordAuthentication passwordAuthentication = getProxyPasswordAuthentication();
+		if(cachedChallenge == null || passwordAuthentication == null) {
+			return null;
+		}
+		final AuthenticateChallenge challenge = cachedChallenge.getChallenge();
+		if(challenge instanceof DigestAuthenticateChallenge) {
+			final DigestAuthenticateChallenge digestChallenge = (DigestAuthenticateChallenge)challenge;
+			try {
+				return new DigestAuthenticateCredentials(method, passwordAuthentication.getUserName(), challenge.getRealm(),
+						passwordAuthentication.getPassword(), digestChallenge.getNonce(), requestURI, cachedChallenge.getCNonce(), digestChallenge.getOpaque(),
+						QOP.AUTH, cachedChallenge.incrementNonceCount(), digestChallenge.getAlgorithm());
+			} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
+				throw new IOException(noSuchAlgorithmException);
+			}
+		}
+		return new BasicAuthenticateCredentials(passwordAuthentication.getUserName(), challenge.getRealm(), passwordAuthentication.getPassword());
+	}
+
+	/**
+	 * Connects to a host, retrying with a jittered exponential backoff if the host refuses the connection or does not answer within the connect timeout, as
+	 * allowed by the {@link #getRetryPolicy() retry policy} and the {@link #getRetryBudget() retry budget}.
+	 * @param <T> The type of connection made.
+	 * @param host The host to which to connect.
+	 * @param connector The strategy for making a single connection attempt.
+	 * @return The connection made.
+	 * @throws IOException If there is an error connecting to the host.
+	 */
+	private <T> T connectRetrying(final Host host, final IOSupplier<T> connector) throws IOException {
+		final HTTPRetryPolicy retryPolicy = getRetryPolicy();
+		final HTTPCircuitBreaker circuitBreaker = getCircuitBreaker();
+		int attempt = 1;
+		while(true) {
+			try {
+				return connector.get();
+			} catch(final ConnectException | SocketTimeoutException exception) { //no request has been sent, so trying again is always safe
+				if(circuitBreaker != null) {
+					circuitBreaker.recordFailure(host);
+				}
+				if(attempt >= retryPolicy.getMaxAttempts() || !getRetryBudget().tryAcquireRetry()) {
+					throw exception;
+				}
+				if(circuitBreaker != null && circuitBreaker.getState(host) == HTTPCircuitBreaker.State.OPEN) { //don't keep waiting on a host that has been given up on
+					final HTTPCircuitOpenException circuitOpenException = new HTTPCircuitOpenException(host, 0);
+					circuitOpenException.addSuppressed(exception);
+					throw circuitOpenException;
+				}
+				getLogger().debug("Retrying connection to {} (attempt {}): {}", host, attempt + 1, exception.toString());
+				retryPolicy.backOff(attempt++);
+			}
+		}
+	}
+
 }
@@ -20,9 +20,9 @@
 import java.net.*;
 import java.security.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-import javax.net.ssl.*;
 import javax.xml.parsers.DocumentBuilder;
 
 import com.globalmentor.io.*;
@@ -30,7 +30,6 @@
 import com.globalmentor.model.ConfiguredStateException;
 import com.globalmentor.model.NameValuePair;
 import com.globalmentor.net.*;
-import com.globalmentor.security.*;
 import com.globalmentor.text.SyntaxException;
 import com.globalmentor.xml.XMLSerializer;
 
@@ -61,18 +60,46 @@
  * <li>The {@link Authenticable}, if any, specified by the default client.</li>
  * </ol>
  * <p>
- * This connection also provides a lock that can be used by callers to ensure that only one
+ * This connection also provides an exchange flag that can be used by callers to ensure that only one request/response exchange takes place at a time. The
+ * connection does not own a socket; for each exchange it leases a transport from the client's connection pool, returning it when the response body has been
+ * read so that other connections to the same host may reuse it. If the client uses {@link HTTPClient#isHTTP2() HTTP/2}, each exchange is instead carried on a
+ * stream of the client's shared HTTP/2 connection to the host.
+ * </p>
+ * <p>
+ * If {@link #setPipelining(boolean) pipelining} is enabled, idempotent requests may be written one after another without waiting for the responses, which
+ * must then be read in the order the requests were written. This saves a round trip per request on high-latency links. See
+ * {@link #sendRequests(List)}. Requests are not pipelined over HTTP/2, which multiplexes concurrent exchanges instead.
+ * </p>
  * @author Garret Wilson
  * @see HTTPClient
  * @see Client#isLogged()
  */
 public class HTTPClientTCPConnection implements Clogged {
 
-	/** The number of times to try a request if there is an error connecting. */
-	private static final int MAX_REQUEST_TRIES = 5;
+	/** The header with which the server indicates how long and for how many requests it will keep a persistent connection open. */
+	public static final String KEEP_ALIVE_HEADER = "Keep-Alive";
+
+	/** The {@value #KEEP_ALIVE_HEADER} parameter indicating the number of seconds the server will keep an idle connection open. */
+	public static final String KEEP_ALIVE_TIMEOUT_PARAMETER = "timeout";
+
+	/** The {@value #KEEP_ALIVE_HEADER} parameter indicating the number of further requests the server will allow on the connection. */
+	public static final String KEEP_ALIVE_MAX_PARAMETER = "max";
+
+	/** The header with which a client indicates the behavior it expects of the server. */
+	public static final String EXPECT_HEADER = "Expect";
+
+	/** The {@value #EXPECT_HEADER} value asking the server to accept the request header before the body is sent. */
+	public static final String EXPECT_100_CONTINUE = "100-continue";
 
-	/** The number of extra milliseconds to back each time off when retrying connections. */
-	private static final int REQUEST_RETRY_BACKOFF_DELAY = 500;
+	/** The interim status code indicating that the server has accepted the request header and the client should send the body. */
+	protected static final int SC_CONTINUE = 100;
+
+	/** The status code indicating that the server cannot meet the expectation of the {@value #EXPECT_HEADER} header. */
+	protected static final int SC_EXPECTATION_FAILED = 417;
+
+	/** The methods of requests that may be pipelined, being idempotent; includes the WebDAV <code>PROPFIND</code> method. */
+	protected static final Set<String> PIPELINABLE_METHODS = Collections
+			.unmodifiableSet(new HashSet<String>(Arrays.asList(GET_METHOD, HEAD_METHOD, OPTIONS_METHOD, TRACE_METHOD, PUT_METHOD, DELETE_METHOD, "PROPFIND")));
 
 	/** The atomic value indicating whether this connections is in the middle of a request/response exchange. */
 	private final AtomicBoolean exchanging;
@@ -83,19 +110,35 @@ public boolean isExchanging() {
 	}
 
 	/**
-	 * Atomically begins a request/response exchange.
+	 * Atomically begins a request/response exchange. A transport is leased from the client's connection pool when the exchange first needs to communicate
+	 * with the host. Writing a request implicitly begins an exchange.
 	 * @return <code>true</code> if an exchange was started, or <code>false</code> if an exchange was already started.
+	 * @see HTTPClient#getConnectionPool()
 	 */
 	public boolean beginExchange() {
 		return exchanging.compareAndSet(false, true);
 	}
 
 	/**
-	 * Atomically and unconditionally ends a request/response exchange.
+	 * Atomically and unconditionally ends a request/response exchange. Any leased transport is returned to the client's connection pool for reuse. If the body
+	 * of the last response has not been read, the transport cannot be reused and is closed instead.
 	 * @return <code>true</code> if an exchange was in progress, or <code>false</code> if the exchange was already ended.
+	 * @see HTTPClient#getConnectionPool()
 	 */
 	public boolean endExchange() {
-		return exchanging.getAndSet(false);
+		final boolean wasExchanging = exchanging.getAndSet(false);
+		final HTTPTransport transport = this.transport;
+		if(transport != null) { //if we have a leased transport, give it back
+			this.transport = null;
+			earlyResponse = null;
+			if(pendingResponseCount > 0 || closeDelimited || isCancelled()) { //if the transport is mid-message or was aborted, no one else can use it
+				pendingResponseCount = 0;
+				closeDelimited = false;
+				closeTransport(transport);
+			}
+			getClient().releaseTransport(transport);
+		}
+		return wasExchanging;
 	}
 
 	/** The client with which this connection is associated. */
@@ -122,12 +165,59 @@ public boolean isSecure() {
 		return secure;
 	}
 
-	/** The socket to the server. */
-	private Socket socket = null;
+	/** The transport leased from the client's connection pool for the current exchange, or <code>null</code> if no transport is leased. */
+	private volatile HTTPTransport transport = null;
 
-	/** @return The socket to the server. */
-	private Socket getSocket() {
-		return socket;
+	/**
+	 * Returns the transport leased for the current exchange. This allows callers to bypass the streams of the connection, e.g. using the channels of a
+	 * {@link ChannelHTTPTransport} to transfer a response body without copying; such callers are responsible for honoring the framing of the message.
+	 * @return The transport leased for the current exchange, or <code>null</code> if no transport is leased.
+	 */
+	public HTTPTransport getTransport() {
+		return transport;
+	}
+
+	/** The number of requests written on the current transport for which the response body has not yet been read. */
+	private int pendingResponseCount = 0;
+
+	/**
+	 * The final response the server sent before the body of the pending request was sent, to be returned by {@link #readResponse(HTTPRequest)}, or
+	 * <code>null</code> if there is none.
+	 */
+	private HTTPResponse earlyResponse = null;
+
+	/** Whether all the requests for which responses are pending may be pipelined. */
+	private boolean pendingPipelinable = false;
+
+	/** Whether idempotent requests are written without waiting for the responses to earlier requests. */
+	private volatile boolean pipelining = false;
+
+	/** @return Whether idempotent requests are written without waiting for the responses to earlier requests. */
+	public boolean isPipelining() {
+		return pipelining;
+	}
+
+	/**
+	 * Sets whether idempotent requests are written without waiting for the responses to earlier requests. If pipelining is enabled, a request that can be
+	 * pipelined is written on the current transport even if responses to earlier requests have not been read; the responses must then be read in the order in
+	 * which the requests were written. Otherwise, and for requests that cannot be pipelined, any unread response is abandoned along with its transport before a
+	 * new request is written.
+	 * @param pipelining <code>true</code> if requests should be pipelined if possible.
+	 * @see #isPipelinable(HTTPRequest)
+	 */
+	public void setPipelining(final boolean pipelining) {
+		this.pipelining = pipelining;
+	}
+
+	/**
+	 * Determines whether a request may be written before the responses to earlier requests have been read. Only idempotent requests are pipelined, so that they
+	 * may be safely sent again if the server closes the connection before responding.
+	 * @param request The request to check.
+	 * @return <code>true</code> if the request may be pipelined.
+	 * @see #PIPELINABLE_METHODS
+	 */
+	protected boolean isPipelinable(final HTTPRequest request) {
+		return PIPELINABLE_METHODS.contains(request.getMethod());
 	}
 
 	/** The connection-specific password authentication, or <code>null</code> if this connection specifies no password authentication. */
@@ -138,14 +228,28 @@ protected PasswordAuthentication getPasswordAuthentication() {
 		return passwordAuthentication;
 	}
 
+	/**
+	 * Determines the retry policy governing an exchange.
+	 * @param request The request being sent.
+	 * @return The retry policy of the request, or of the client if the request has no retry policy.
+	 * @see HTTPRequest#getRetryPolicy()
+	 * @see HTTPClient#getRetryPolicy()
+	 */
+	protected HTTPRetryPolicy getRetryPolicy(final HTTPRequest request) {
+		final HTTPRetryPolicy retryPolicy = request.getRetryPolicy();
+		return retryPolicy != null ? retryPolicy : getClient().getRetryPolicy();
+	}
+
 	/** @return The IP address to which the socket is connected, or <code>null</code> if this connection is not connected. */
 	protected InetAddress getInetAddress() {
-		return socket.getInetAddress();
+		final HTTPTransport transport = this.transport;
+		return transport != null ? transport.getInetAddress() : null;
 	}
 
 	/** @return <code>true</code> if the connection is currently open. */
 	public boolean isConnected() {
-		return socket != null && socket.isConnected();
+		final HTTPTransport transport = this.transport;
+		return transport != null && transport.isOpen();
 	}
 
 	/**
@@ -158,112 +262,114 @@ public void connect() throws IOException {
 	}
 
 	/**
-	 * Connects to a specified host. Useful for when the connection needs to redirect to another host. If the connection is already connected to the same host, no
-	 * action is taken.
+	 * Connects to a specified host by leasing a transport from the client's connection pool. Useful for when the connection needs to redirect to another host.
+	 * If the connection is already connected to the same host, no action is taken. Connecting implicitly begins an exchange.
 	 * @param host The host to which to connect.
 	 * @throws IOException If there is an error connecting to the host.
+	 * @see HTTPClient#getConnectionPool()
 	 */
 	protected void connect(final Host host) throws IOException {
-		if(!isConnected() || !getHost().equals(host)) { //if we're not connected or we're changing hosts
+		if(!isConnected() || !transport.getHost().equals(host)) { //if we're not connected or we're changing hosts
 			disconnect(); //make sure we're disconnected
-			final int port = host.getPort(); //get the port, if any
-			//TODO fix			final InetSocketAddress socketAddress=new InetSocketAddress(host.getName(), port>=0 ? port : DEFAULT_PORT);	//create a new socket address
-			//TODO fix			channel=SocketChannel.open(socketAddress);	//open a channel to the address
-			//		TODO del Log.trace("ready to make connection, with secure:", isSecure());
-
-			int tryCount = 1; //keep track of the number of tries
-			int retryDelay = REQUEST_RETRY_BACKOFF_DELAY; //keep track of the amount of time to delay
-			boolean connected = false; //we'll set this flag to true when the connection succeeds
-			do {
-				try {
-					if(isSecure()) { //if this is a secure connection
-						//TODO testing ignore all certificate problems
-						TrustManager[] trustAllCerts = new TrustManager[] {new X509TrustManager() {
-
-							public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-								return null;
-							}
-
-							public void checkClientTrusted(java.security.cert.X509Certificate[] certs, String authType) {
-							}
-
-							public void checkServerTrusted(java.security.cert.X509Certificate[] certs, String authType) {
-							}
-						}};
-
-						// Install the all-trusting trust manager
-
-						//TODO see http://www.javaalmanac.com/egs/javax.net.ssl/TrustAll.html
-						try {
-							SSLContext sc = SSLContext.getInstance("SSL");
-							sc.init(null, trustAllCerts, new java.security.SecureRandom());
-							final SSLSocketFactory sslSocketFactory = sc.getSocketFactory();
-							socket = sslSocketFactory.createSocket(host.getName(), port >= 0 ? port : DEFAULT_SECURE_PORT); //open a secure socket to the host
-						} catch(final NoSuchAlgorithmException noSuchAlgorithmException) { //we should always recognize SSL
-							throw new AssertionError(noSuchAlgorithmException);
-						} catch(final KeyManagementException keyManagementException) {
-							throw new AssertionError(keyManagementException);
-						}
-						/*TODO fix when certificate is renewed
-										final SSLSocketFactory sslSocketFactory=(SSLSocketFactory)SSLSocketFactory.getDefault();	//get the default SSL Socket factory TODO maybe keep one of these around for multiple use
-										socket=sslSocketFactory.createSocket(host.getName(), port>=0 ? port : DEFAULT_SECURE_PORT);	//open a secure socket to the host
-						*/
-						//TODO do extra certificate checks
-						//TODO see to disable certificate checks: http://www.javaalmanac.com/egs/javax.net.ssl/TrustAll.html
-						//TODO see http://javaboutique.internet.com/resources/books/JavaNut/javanut3_1.html
-						//TODO see http://jirc.hick.org/cgi-bin/raffi.cgi?ACTION=VIEW&PAGE=SSL_Java
-						//TODO see http://javaalmanac.com/egs/javax.net.ssl/Client.html?l=rel
-					} else { //if this is not a secure connection
-						socket = new Socket(host.getName(), port >= 0 ? port : DEFAULT_PORT); //open a socket to the host
-					}
-					connected = true; //if we reach this point, we connected successfully
-				} catch(final ConnectException connectException) { //if we encounter an error while connecting (typically a timeout)
-					if(tryCount == MAX_REQUEST_TRIES) { //if we've already tried enough times
-						throw connectException; //rethrow the exception and stop trying
-					}
-					try {
-						Thread.sleep(retryDelay); //delay the indicated amount of time before retrying 
-					} catch(final InterruptedException interruptedException) { //if we are interrupted while delaying
-						throw connectException; //rethrow the exception and stop trying
-					}
-					++tryCount; //indicate we're trying again
-					retryDelay += REQUEST_RETRY_BACKOFF_DELAY; //increase the amount of time we wait between retrying
-					getLogger().debug("Retrying connection to " + host + " (try " + tryCount + ").");
-				}
-			} while(!connected);
-			//TODO later turn on non-blocking access when we have a separate client which will on a separate thread feed requests and retrieve responses
-			//TODO fix			inputStream=new BufferedInputStream(newInputStream(channel));	//create a new input stream from the channel
-			//TODO fix			outputStream=new BufferedOutputStream(newOutputStream(channel));	//create a new output stream to the channel
-			inputStream = socket.getInputStream(); //get an input stream from the socket
-			outputStream = socket.getOutputStream(); //get an output stream from the socket
+			checkCancelled();
+			beginExchange(); //make sure we're in an exchange for as long as we hold the transport
+			transport = getClient().leaseTransport(new HTTPConnectionPool.Key(host, isSecure(), getPasswordAuthentication()));
+			if(isCancelled()) { //if we were cancelled while connecting, no one closed the transport
+				disconnect();
+				checkCancelled();
+			}
 			/*TODO bring back if transferred to Clogr
 			if(getClient().isLogged()) { //if we're using a logged client
 				inputStream = new LogInputStream(inputStream); //log all communication from the input stream
 				outputStream = new LogOutputStream(outputStream); //log all communication to the output stream
 			}
 			*/
-			inputStream = new BufferedInputStream(inputStream); //wrap the streams in buffered streams after adding logging, so larger chunks will be written to the log
-			outputStream = new BufferedOutputStream(outputStream);
 		}
 	}
 
+	/** Whether the connection has been cancelled. */
+	private volatile boolean cancelled = false;
+
+	/** @return Whether the connection has been {@link #cancel() cancelled}. */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
 	/**
-	 * Disconnects from the host.
+	 * Cancels the connection, for example because another connection sending the same request has already received a response. This method may be called from
+	 * any thread. The current transport, if any, is {@link HTTPTransport#abort() aborted} so that any exchange in progress fails; the thread performing the
+	 * exchange will close the transport rather than returning it to the pool. No further exchanges may take place on a cancelled connection.
+	 */
+	public void cancel() {
+		cancelled = true;
+		final HTTPTransport transport = this.transport;
+		if(transport != null) {
+			try {
+				transport.abort();
+			} catch(final IOException ioException) {
+				getLogger().debug("Error aborting connection to {}.", transport.getHost(), ioException);
+			}
+		}
+	}
+
+	/**
+	 * Disconnects from the host. The current transport, if any, is closed rather than returned to the pool.
 	 * @throws IOException if there is an error disconnecting from the host.
 	 */
 	public void disconnect() throws IOException {
-		if(socket != null) { //if there is a channel
-			if(!socket.isClosed()) { //if the channel is open
-				socket.close(); //close the channel
+		final HTTPTransport transport = this.transport;
+		if(transport != null) { //if there is a transport
+			this.transport = null; //release the transport
+			pendingResponseCount = 0;
+			closeDelimited = false;
+			earlyResponse = null;
+			try {
+				transport.close(); //close the transport
+			} finally {
+				getClient().releaseTransport(transport); //let the pool know the transport is gone
 			}
-			socket = null; //release the channel
-			inputStream = null; //release the input stream
-			outputStream = null; //release the output stream
 		}
 	}
 
-	/** The input stream from the channel. */
-	private InputStream inputStream;
+	/**
+	 * Ensures that the connection has not been cancelled.
+	 * @throws InterruptedIOException if the connection has been {@link #cancel() cancelled}.
+	 */
+	protected void checkCancelled() throws InterruptedIOException {
+		if(isCancelled()) {
+			throw new InterruptedIOException("Connection to " + getHost() + " was cancelled.");
+		}
+	}
+
+	/**
+	 * Closes a transport, logging rather than propagating any error.
+	 * @param transport The transport to close.
+	 */
+	private void closeTransport(final HTTPTransport transport) {
+		try {
+			transport.close();
+		} catch(final IOException ioException) {
+			getLogger().debug("Error closing connection to {}.", transport.getHost(), ioException);
+		}
+	}
+
+	/**
+	 * Disconnects from the host after an I/O error, when the state of the transport is unknown. Errors while disconnecting are logged rather than propagated.
+	 * @param ioException The error that caused the connection to be abandoned.
+	 * @return The given exception, for rethrowing.
+	 */
+	protected IOException abandon(final IOException ioException) {
+		final HTTPTransport transport = this.transport;
+		if(transport != null && ioException instanceof SocketTimeoutException) { //a host that stops responding may be overloaded
+			transport.recordOverload();
+		}
+		try {
+			disconnect();
+		} catch(final IOException disconnectIOException) {
+			ioException.addSuppressed(disconnectIOException);
+		}
+		return ioException;
+	}
 
 	/**
 	 * @return The input stream from the channel, connecting if needed.
@@ -273,12 +379,9 @@ protected InputStream getInputStream() throws IOException {
 		if(!isConnected()) { //if we're not connected
 			connect(); //connect to the host
 		}
-		return inputStream; //return the input stream
+		return transport.getInputStream(); //return the input stream
 	}
 
-	/** The output stream to the channel. */
-	private OutputStream outputStream;
-
 	/**
 	 * @return The output stream to the channel, connecting if needed.
 	 * @throws IOException if there is an error getting an output stream.
@@ -287,7 +390,7 @@ protected OutputStream getOutputStream() throws IOException {
 		if(!isConnected()) { //if we're not connected
 			connect(); //connect to the host
 		}
-		return outputStream; //return the output stream
+		return transport.getOutputStream(); //return the output stream
 	}
 
 	/**
@@ -331,6 +434,13 @@ protected OutputStream getOutputStream() throws IOException {
 	 * {@value HTTP#HOST_HEADER} header will be updated. The request's {@value HTTP#AUTHORIZATION_HEADER} header will be set to cached credentials if possible.
 	 * The request's {@value HTTP#CONTENT_LENGTH_HEADER} header will be updated to the length of the given request body. The request's
 	 * {@value HTTP#TRANSFER_ENCODING_HEADER} header, if any, will be removed.
+	 * <p>
+	 * If the body is larger than the client's {@link HTTPClient#getExpectContinueThreshold() expect continue threshold}, the request's {@value #EXPECT_HEADER}
+	 * header will be set to {@value #EXPECT_100_CONTINUE} and the body will only be sent once the server accepts the request header, or once the client's
+	 * {@link HTTPClient#getExpectContinueTimeout() expect continue timeout} elapses without an answer. If the server instead sends a final response, such as
+	 * <code>401 Unauthorized</code>, the body is not sent; the response is returned by {@link #readResponse(HTTPRequest)}, after which the transport is closed
+	 * as the server may still be waiting for the body.
+	 * </p>
 	 * @param request The request to write.
 	 * @param body The body of the request.
 	 * @throws NullPointerException if the given request and/or body is <code>null</code>.
@@ -339,10 +449,67 @@ protected OutputStream getOutputStream() throws IOException {
 	public void writeRequest(final HTTPRequest request, final byte[] body) throws IOException {
 		request.setContentLength(body.length); //set the content length
 		request.removeHeaders(TRANSFER_ENCODING_HEADER); //remove any transfer encoding
+		final boolean expectContinue = isExpectContinue(request, body.length);
+		if(expectContinue) {
+			request.setHeader(EXPECT_HEADER, EXPECT_100_CONTINUE);
+		} else if(EXPECT_100_CONTINUE.equalsIgnoreCase(request.getHeader(EXPECT_HEADER))) { //e.g. a request being sent again after the server refused the expectation
+			request.removeHeaders(EXPECT_HEADER);
+		}
 		writeRequestMessage(request); //write the request
-		final OutputStream outputStream = getOutputStream(); //get the output stream
-		outputStream.write(body); //write the request body
-		outputStream.flush(); //flush the data to the server
+		if(expectContinue && !awaitContinue()) { //if the server answered without waiting for the body, don't send it
+			return;
+		}
+		try {
+			final OutputStream outputStream = getOutputStream(); //get the output stream
+			outputStream.write(body); //write the request body
+			outputStream.flush(); //flush the data to the server
+		} catch(final IOException ioException) {
+			throw abandon(ioException);
+		}
+	}
+
+	/**
+	 * Determines whether the body of a request should only be sent once the server has accepted the request header. This version returns <code>true</code> if
+	 * the body is larger than the client's {@link HTTPClient#getExpectContinueThreshold() expect continue threshold}, no responses to earlier requests are
+	 * pending, the client does not use HTTP/2, and the host has not refused the expectation before on any connection of the client.
+	 * @param request The request to be written.
+	 * @param contentLength The length of the request body.
+	 * @return <code>true</code> if the request should be sent with an {@value #EXPECT_HEADER} header of {@value #EXPECT_100_CONTINUE}.
+	 */
+	protected boolean isExpectContinue(final HTTPRequest request, final long contentLength) {
+		final long threshold = getClient().getExpectContinueThreshold();
+		//a pipelined request's interim response would be queued behind the earlier responses; HTTP/2 streams are not worth holding back
+		return threshold >= 0 && contentLength > threshold && pendingResponseCount == 0 && !getClient().isHTTP2()
+				&& !getClient().isExpectContinueRefused(getHost());
+	}
+
+	/**
+	 * Waits for the server to accept the header of the request just written with an {@value #EXPECT_HEADER} header of {@value #EXPECT_100_CONTINUE}. If the
+	 * server sends a final response instead, the response is kept to be returned by {@link #readResponse(HTTPRequest)}, and the transport is marked as not
+	 * reusable, as the server may still be waiting for the body.
+	 * @return <code>true</code> if the server accepted the request header or did not answer in time, so that the body should be sent.
+	 * @throws IOException if there is an error reading the response of the server.
+	 */
+	protected boolean awaitContinue() throws IOException {
+		final HTTPTransport transport = this.transport;
+		try {
+			if(!transport.awaitInput(getClient().getExpectContinueTimeout())) { //the server or an intermediary may not support the expectation
+				return true;
+			}
+			final HTTPStatus status = parseStatusLine(getInputStream());
+			final HTTPResponse response = new DefaultHTTPResponse(status.getVersion(), status.getStatusCode(), status.getReasonPhrase()); //TODO use a factory
+			readHeaders(response);
+			if(status.getStatusCode() / 100 == 1) { //100 Continue, or some other interim response implying that the server is processing the request
+				return true;
+			}
+			transport.recordResponse(status.getStatusCode());
+			updateKeepAlive(response);
+			transport.setKeepAliveMax(0); //the server may still be waiting for the body, so the transport is no longer at a message boundary
+			earlyResponse = response;
+			return false;
+		} catch(final IOException ioException) {
+			throw abandon(ioException);
+		}
 	}
 
 	/**
@@ -391,20 +558,50 @@ public void writeRequest(final HTTPRequest request, final Document document) thr
 	 * @throws IOException if there is an error writing the data.
 	 */
 	protected void writeRequestMessage(final HTTPRequest request) throws IOException {
-		//if there is connection-specific password authentication, see if we can send it proactively TODO improve entire caching scheme to cache basic/digest preference in client after first failure; the current technique will fail the first time, anyway, as we don't know the realms
-		PasswordAuthentication passwordAuthentication = getPasswordAuthentication(); //see if password authentication has been specified specifically for this connection
-		if(passwordAuthentication != null) { //if we have connection-specific password authentication, try to find what realm to use
-			final URI rootURI = getRootURI(request.getURI()); //get the root URI of the host we were trying to connect to
-			final Set<String> realms = client.getRealms(rootURI); //get all the known realms for this domain
-			if(!realms.isEmpty()) { //if there are any realms we know about
-				final String realm = realms.iterator().next(); //get the first realm TODO this call can be improved
-				final AuthenticateCredentials credentials = new BasicAuthenticateCredentials(passwordAuthentication.getUserName(), realm,
-						passwordAuthentication.getPassword()); //create basic authentication credentials TODO somehow cache in the client whether basic or digest credentials are preferred; improve the entire client caching mechanism 
-				request.setAuthorization(credentials); //store the credentials in the request
-			}
+		final boolean pipelinable = isPipelinable(request);
+		if(pendingResponseCount > 0 && !(isPipelining() && pendingPipelinable && pipelinable && transport.isReusable())) { //if the body of an earlier response was never read, the transport can't be used for another request unless we're pipelining
+			disconnect();
+		} else if(transport != null && !transport.isReusable()) { //e.g. an HTTP/2 stream that has already carried an exchange
+			disconnect();
+		}
+		connect(URIs.getHost(request.getURI())); //make sure we're connected to the same host as the request TODO why do we even keep the host around in the class? verify and document
+		final byte[] header = formatRequestMessage(request, transport.getForwardingProxy()); //format the request line and headers for the transport
+		getClient().getRetryBudget().recordRequest();
+		try {
+			transport.setReadTimeout(getRetryPolicy(request).getReadTimeout());
+			final OutputStream outputStream = getOutputStream(); //get the output stream
+			outputStream.write(header); //write the header
+			outputStream.flush(); //flush the data to the server
+		} catch(final IOException ioException) {
+			throw abandon(ioException);
 		}
+		pendingPipelinable = (pendingResponseCount == 0 || pendingPipelinable) && pipelinable;
+		++pendingResponseCount; //the transport can't be reused until the response body has been read
+	}
+
+	/**
+	 * Formats the request line and headers of a request. The request's {@value HTTP#HOST_HEADER} header will be updated. If the request has no
+	 * {@value HTTP#AUTHORIZATION_HEADER} header, one with {@link #getPreemptiveCredentials(HTTPRequest) preemptive credentials} is included if possible. Like
+	 * any {@value HTTPClient#PROXY_AUTHORIZATION_HEADER} header, it is only formatted and not stored in the request, so that a request sent again, such as when
+	 * the exchange is replayed on a new transport, is authorized with new credentials; digest credentials sent again with the same nonce count would be refused
+	 * as a replay.
+	 * <p>
+	 * If the request is to be sent to a proxy that forwards it to the host, the request target is the absolute URI of the resource (RFC 7230 5.3.2), and a
+	 * {@value HTTPClient#PROXY_AUTHORIZATION_HEADER} header answering the last challenge of the proxy is included if possible. That header is only formatted,
+	 * and not stored in the request, so that it is never sent to the host should the request be sent again over another transport.
+	 * </p>
+	 * @param request The request to format.
+	 * @param forwardingProxy The proxy to which the request is to be sent for forwarding to the host, or <code>null</code> if the request is to be sent to the
+	 *          host itself.
+	 * @return The bytes of the request line and headers, including the blank line ending the headers.
+	 * @throws NullPointerException if the given request is <code>null</code>.
+	 * @see HTTPTransport#getForwardingProxy()
+	 */
+	protected byte[] formatRequestMessage(final HTTPRequest request, final Host forwardingProxy) {
 		final URI uri = request.getURI(); //get the URI of the request object
-		final String requestURI = getRawPathQueryFragment(uri); //get the unencoded path?query#fragment
+		final String pathQueryFragment = getRawPathQueryFragment(uri); //get the unencoded path?query#fragment
+		//a proxy needs the absolute form of the target to know where to forward the request
+		final String requestURI = forwardingProxy != null ? uri.getScheme() + "://" + uri.getRawAuthority() + pathQueryFragment : pathQueryFragment;
 		request.setRequestURI(requestURI); //set the request-uri 
 		final Host host = URIs.getHost(uri); //get the host
 		request.setHost(host); //set the host header to be identical to the host in our request URI
@@ -413,11 +610,53 @@ protected void writeRequestMessage(final HTTPRequest request) throws IOException
 		for(final NameValuePair<String, String> header : request.getHeaders()) { //look at each header
 			formatHeaderLine(headerBuilder, header); //format this header line
 		}
+		if(request.getHeader(AUTHORIZATION_HEADER) == null) { //if the request isn't already answering a challenge, see if we can authenticate proactively
+			final AuthenticateCredentials credentials = getPreemptiveCredentials(request);
+			if(credentials != null) {
+				formatHeaderLine(headerBuilder,
+						new NameValuePair<String, String>(AUTHORIZATION_HEADER, formatAuthorizationHeader(new StringBuilder(), credentials).toString()));
+			}
+		}
+		if(forwardingProxy != null) {
+			try {
+				final AuthenticateCredentials proxyCredentials = getClient().getProxyCredentials(forwardingProxy, request.getMethod(), requestURI);
+				if(proxyCredentials != null) {
+					formatHeaderLine(headerBuilder, new NameValuePair<String, String>(HTTPClient.PROXY_AUTHORIZATION_HEADER,
+							formatAuthorizationHeader(new StringBuilder(), proxyCredentials).toString()));
+				}
+			} catch(final IOException ioException) { //the proxy will simply challenge the request
+				getLogger().debug("Unable to authenticate preemptively with proxy {}: {}", forwardingProxy, ioException.toString());
+			}
+		}
 		headerBuilder.append(CRLF); //append a blank line, signifying the end of the headers
-		connect(host); //make sure we're connected to the same host as the request TODO why do we even keep the host around in the class? verify and document
-		final OutputStream outputStream = getOutputStream(); //get the output stream
-		outputStream.write(headerBuilder.toString().getBytes(UTF_8)); //write the header
-		outputStream.flush(); //flush the data to the server
+		return headerBuilder.toString().getBytes(UTF_8);
+	}
+
+	/**
+	 * Creates credentials for a request answering the challenge last accepted by the host, so that the request can be authorized without first being refused.
+	 * Connection-specific password authentication is used if available; otherwise a password cached by the client for the challenge realm is used. The request
+	 * URI must already have been set.
+	 * @param request The request to be authorized.
+	 * @return Credentials answering the host's cached challenge, or <code>null</code> if the host has not been authenticated with or no password is known.
+	 * @see HTTPClient#getChallenge(URI)
+	 */
+	protected AuthenticateCredentials getPreemptiveCredentials(final HTTPRequest request) {
+		final URI rootURI = getRootURI(request.getURI());
+		final AuthenticateChallenge challenge = getClient().getChallenge(rootURI);
+		if(challenge == null) { //if we haven't authenticated with the host yet, we wouldn't know the scheme or realm
+			return null;
+		}
+		final PasswordAuthentication passwordAuthentication = findPasswordAuthentication(rootURI, challenge.getRealm());
+		if(passwordAuthentication == null) {
+			return null;
+		}
+		try {
+			return createCredentials(request, challenge, passwordAuthentication, getClient().incrementNonceCount(rootURI, challenge),
+					getClient().getCNonce(rootURI, challenge));
+		} catch(final NoSuchAlgorithmException noSuchAlgorithmException) { //the request will simply be challenged
+			getLogger().debug("Unable to authenticate preemptively with {}: {}", rootURI, noSuchAlgorithmException.toString());
+			return null;
+		}
 	}
 
 	/**
@@ -427,13 +666,29 @@ protected void writeRequestMessage(final HTTPRequest request) throws IOException
 	 * @throws IOException if there is an error reading the data.
 	 */
 	public HTTPResponse readResponse(final HTTPRequest request) throws IOException {
+		if(pendingResponseCount == 0) { //e.g. the server closed a pipelined connection after an earlier response
+			throw new IOException("No response pending for request " + request.getMethod() + " " + request.getURI() + "; the connection was closed.");
+		}
+		final HTTPResponse earlyResponse = this.earlyResponse;
+		if(earlyResponse != null) { //if the server already answered before the request body was sent
+			this.earlyResponse = null;
+			return earlyResponse;
+		}
 		try {
 			final InputStream inputStream = getInputStream(); //get the input stream of the response
-			final HTTPStatus status = parseStatusLine(inputStream); //parse the status line
+			HTTPStatus status = parseStatusLine(inputStream); //parse the status line
+			while(status.getStatusCode() / 100 == 1 && status.getStatusCode() != SC_SWITCHING_PROTOCOLS) { //skip interim responses, e.g. a 100 Continue arriving after we gave up waiting for it
+				readHeaders(new DefaultHTTPResponse(status.getVersion(), status.getStatusCode(), status.getReasonPhrase()));
+				status = parseStatusLine(inputStream);
+			}
 			//TODO do something about errors, such as 400 No Host matches server name
 			final HTTPResponse response = new DefaultHTTPResponse(status.getVersion(), status.getStatusCode(), status.getReasonPhrase()); //create a new response TODO use a factory
+			transport.recordResponse(status.getStatusCode()); //let admission control know how quickly and how well the host responded
 			readHeaders(response); //read the headers into the response
+			updateKeepAlive(response); //note how much longer the server is willing to keep the transport open
 			return response; //return the response
+		} catch(final IOException ioException) {
+			throw abandon(ioException);
 		} finally {
 			/*TODO put somewhere else
 						if(request.isConnectionClose()) {	//if the response asks us to close
@@ -446,6 +701,46 @@ public HTTPResponse readResponse(final HTTPRequest request) throws IOException {
 		}
 	}
 
+	/**
+	 * Updates the current transport with the persistence hints, if any, in the {@value #KEEP_ALIVE_HEADER} header of the given response, so that the
+	 * connection pool can retire the transport before the server closes it. Invalid hints are ignored.
+	 * @param response The response that may contain a {@value #KEEP_ALIVE_HEADER} header.
+	 * @see HTTPTransport#setKeepAliveTimeout(long)
+	 * @see HTTPTransport#setKeepAliveMax(int)
+	 */
+	protected void updateKeepAlive(final HTTPResponse response) {
+		final HTTPTransport transport = this.transport;
+		if(transport != null) {
+			updateKeepAlive(transport, response);
+		}
+	}
+
+	/**
+	 * Updates a transport with the persistence hints, if any, in the {@value #KEEP_ALIVE_HEADER} header of the given response. Invalid hints are ignored.
+	 * @param transport The transport over which the response was received.
+	 * @param response The response that may contain a {@value #KEEP_ALIVE_HEADER} header.
+	 * @see HTTPTransport#setKeepAliveTimeout(long)
+	 * @see HTTPTransport#setKeepAliveMax(int)
+	 */
+	protected void updateKeepAlive(final HTTPTransport transport, final HTTPResponse response) {
+		final String keepAliveHeader = response.getHeader(KEEP_ALIVE_HEADER);
+		if(keepAliveHeader == null) {
+			return;
+		}
+		try {
+			for(final NameValuePair<String, String> parameter : parseParameters(new ParseReader(keepAliveHeader))) {
+				final String name = parameter.getName();
+				if(KEEP_ALIVE_TIMEOUT_PARAMETER.equalsIgnoreCase(name)) {
+					transport.setKeepAliveTimeout(Math.max(Long.parseLong(parameter.getValue().trim()), 0) * 1000); //the timeout is given in seconds
+				} else if(KEEP_ALIVE_MAX_PARAMETER.equalsIgnoreCase(name)) {
+					transport.setKeepAliveMax(Math.max(Integer.parseInt(parameter.getValue().trim()), 0));
+				}
+			}
+		} catch(final IOException | NumberFormatException exception) { //the header is only advisory
+			getLogger().debug("Ignoring invalid {} header: {}", KEEP_ALIVE_HEADER, keepAliveHeader);
+		}
+	}
+
 	/**
 	 * Reads headers from the current position in the input stream and places them in the given response.
 	 * @param response The response to contain the read headers.
@@ -480,33 +775,63 @@ public InputStream getResponseBodyInputStream(final HTTPRequest request, final H
 	}
 
 	/**
-	 * Retrieves an input stream to read the body of the given message. The returned input stream should always be closed after reading is finished.
+	 * Retrieves an input stream to read the body of the given message. The returned input stream should always be closed after reading is finished. A body
+	 * delimited by the host closing the connection is read until the end of the stream, after which the connection is closed rather than reused.
 	 * @param message The message for which a body input stream should be retrieved.
 	 * @return An input stream providing access to the body of the message.
 	 * @throws IOException if there was an error getting an input stream to the message body.
+	 * @see #getBodyLength(HTTPMessage)
 	 */
 	protected InputStream getBodyInputStream(final HTTPMessage message) throws IOException {
 		final String[] transferEncoding = message.getTransferEncoding(); //get the list of transfer encodings, which takes precedence over any Content-Length header (RFC 2616 4.4.2)
 		if(transferEncoding != null && transferEncoding.length > 0 && !contains(transferEncoding, IDENTITY_TRANSFER_CODING)) { //if the transfer encoding contains anything other than "identity", use the chunked encoding algorithm to get the body contents (RFC 2616 4.4.2)
 			return new HTTPChunkedInputStream(getInputStream(), false); //return an input stream to the chunked content; use a stream that doesn't close the underlying input stream when finished
 		} else { //if chunked encoding is not used
-			long contentLength;
+			final long contentLength;
 			try {
-				contentLength = message.getContentLength(); //get the content length
+				contentLength = getBodyLength(message);
 			} catch(final SyntaxException syntaxException) {
 				throw new IOException(syntaxException);
 			}
-			if(contentLength < 0) { //if there is no content length (Tomcat appears to send send back no content length if there is no message in some cases)
-				contentLength = 0; //assume a content length of zero
-			}
 			if(contentLength >= 0) { //if there is a content length
 				return new FixedLengthInputStream(getInputStream(), contentLength, false); //return an input stream only to these bytes; don't close the underlying stream when finished
-			} else { //if there is no content length		
-				throw new UnsupportedOperationException("Missing content length in HTTP response.");
+			} else { //if the body extends until the host closes the connection
+				closeDelimited = true; //the connection can't be reused after the body
+				return new FilterInputStream(getInputStream()) {
+					@Override
+					public void close() { //leave closing the connection to the end of the exchange rather than draining a body that might not end
+					}
+				};
 			}
 		}
 	}
 
+	/**
+	 * Determines the length of the body of a message that does not use chunked transfer coding. A response with a status that never has a body, such as
+	 * {@value HTTP#SC_NO_CONTENT} or {@value HTTP#SC_NOT_MODIFIED}, has no body regardless of its headers. Otherwise the length is given by the
+	 * {@value HTTP#CONTENT_LENGTH_HEADER} header; without one, a request has no body, while the body of a response extends until the host closes the
+	 * connection (RFC 7230 3.3.3), just as for an exchange using the {@link HTTPEventLoop event loop}.
+	 * @param message The message the length of the body of which should be determined.
+	 * @return The length of the body, or <code>-1</code> if the body extends until the host closes the connection.
+	 * @throws SyntaxException if the content length is not syntactically correct.
+	 */
+	protected long getBodyLength(final HTTPMessage message) throws SyntaxException {
+		if(message instanceof HTTPResponse) {
+			final int statusCode = ((HTTPResponse)message).getStatusCode();
+			if(statusCode == SC_NO_CONTENT || statusCode == SC_NOT_MODIFIED) { //responses that never have bodies
+				return 0;
+			}
+		}
+		final long contentLength = message.getContentLength();
+		if(contentLength < 0 && !(message instanceof HTTPResponse)) { //a request without a content length has no body
+			return 0;
+		}
+		return contentLength;
+	}
+
+	/** Whether the body of the response being read is delimited by the host closing the connection, so that the connection must be closed afterwards. */
+	private boolean closeDelimited = false;
+
 	/**
 	 * Reads the body of a response from an input stream. No content will be read in response to a HEAD method, as per RFC 2616, 9.4.
 	 * @param request The request to which the response is a response.
@@ -516,11 +841,12 @@ protected InputStream getBodyInputStream(final HTTPMessage message) throws IOExc
 	 * @throws IOException if there is an error reading the data.
 	 */
 	public byte[] readResponseBody(final HTTPRequest request, final HTTPResponse response) throws EOFException, IOException {
-		final InputStream inputStream = getInputStream(); //get the connection's input stream
 		if(HEAD_METHOD.equals(request.getMethod())) { //if this is the HEAD method
+			afterReadBody(response); //clean up the connection
 			return Bytes.NO_BYTES; //the HEAD method will never send content, even if there is a Content-Length header
 		} else { //if this is any other method
 			try {
+				final InputStream inputStream = getInputStream(); //get the connection's input stream
 				final String[] transferEncoding = response.getTransferEncoding(); //get the list of transfer encodings, which takes precedence over any Content-Length header (RFC 2616 4.4.2)
 				if(transferEncoding != null && transferEncoding.length > 0 && !contains(transferEncoding, IDENTITY_TRANSFER_CODING)) { //if the transfer encoding contains anything other than "identity", use the chunked encoding algorithm to get the body contents (RFC 2616 4.4.2)
 					final ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream(); //create a buffer in which to store chunks
@@ -532,25 +858,26 @@ public byte[] readResponseBody(final HTTPRequest request, final HTTPResponse res
 					afterReadBody(response); //clean up the connection
 					return bodyBuffer.toByteArray(); //return the body we read as chunks
 				} else { //if chunked encoding is not used
-					long contentLength = response.getContentLength(); //get the content length
-					if(contentLength < 0) { //TODO fix; does Tomcat send back no content length if there is no message? even if the response length is set to zero? is this correct?
-						contentLength = 0;
-					}
+					final long contentLength = getBodyLength(response);
 					if(contentLength >= 0) { //if there is a content length
 						assert contentLength <= Integer.MAX_VALUE : "Unsupported content length.";
 						final byte[] responseBody = InputStreams.readBytes(inputStream, (int)contentLength);
-						afterReadBody(response); //clean up the connection
-						if(responseBody.length == contentLength) { //if we read all the response body
-							return responseBody; //return the response body
-						} else { //if we couldn't read the entire body
+						if(responseBody.length != contentLength) { //if we couldn't read the entire body
 							throw new EOFException("Only read " + responseBody.length + " of " + contentLength + " expected content bytes."); //show that we reached the end of the stream
 						}
-					} else { //if there is no content length		
-						throw new UnsupportedOperationException("Missing content length in HTTP response."); //TODO fix chunked type
+						afterReadBody(response); //clean up the connection
+						return responseBody; //return the response body
+					} else { //if the body extends until the host closes the connection
+						closeDelimited = true; //the connection can't be reused after the body
+						final byte[] responseBody = InputStreams.readBytes(inputStream);
+						afterReadBody(response); //clean up the connection
+						return responseBody; //return the response body
 					}
 				}
 			} catch(final SyntaxException syntaxException) { //if there is a syntax error
-				throw new ParseIOException(syntaxException);
+				throw abandon(new ParseIOException(syntaxException));
+			} catch(final IOException ioException) { //we don't know where the message boundary is, so the transport can't be reused
+				throw abandon(ioException);
 			}
 		}
 	}
@@ -582,9 +909,11 @@ public Document readResponseBodyXML(final HTTPRequest request, final HTTPRespons
 	}
 
 	/**
-	 * Sends a fixed-length request and gets a response. This convenience method can retry requests with appropriate authorization if necessary. Once the request
-	 * is successful, the body of the response will still be waiting to be read. If an the response results in a corresponding {@link HTTPException}, the response
-	 * body will be ignored and will no longer be available in the input stream.
+	 * Sends a fixed-length request and gets a response. This convenience method can retry requests with appropriate authorization if necessary, and replays
+	 * the request if the exchange fails in a way the {@link #getRetryPolicy(HTTPRequest) retry policy} considers safe. Once the request is successful, the body
+	 * of the response will still be waiting to be read. If an the response results in a corresponding {@link HTTPException}, the response body will be ignored
+	 * and will no longer be available in the input stream. A large body is only sent once the server has accepted the request header, so that a body is not
+	 * sent in vain to a server requiring authorization; see {@link #writeRequest(HTTPRequest, byte[])}.
 	 * @param request The request to send to the server.
 	 * @param body The body of the request.
 	 * @return The response to get from the server
@@ -592,71 +921,318 @@ public Document readResponseBodyXML(final HTTPRequest request, final HTTPRespons
 	 * @throws IOException if there is an error writing the request or reading the response.
 	 */
 	public HTTPResponse sendRequest(final HTTPRequest request, final byte[] body) throws IOException {
-		long nonceCount = 0; //TODO testing
-		try {
-			//		TODO del Log.trace("writing request");
-			writeRequest(request, body); //write the request along with the request body
-			//		TODO del Log.trace("reading response");
-			HTTPResponse response = readResponse(request); //read the response TODO check for redirects
-			//		TODO del Log.trace("response connection header:", response.getConnection());
-			while(response.getStatusCode() == SC_UNAUTHORIZED) { //if the request requires authorization
-				readResponseBody(request, response); //skip the response body
-				//TODO fix; del if not needed				disconnect();	//disconnect from the server so that the server won't time out while we look for credentials and throw a SocketException TODO improve
-				//			TODO del Log.trace("unauthorized; looking for challenge");
-				final AuthenticateChallenge challenge = response.getWWWAuthenticate(); //get the challenge
-				if(challenge == null) { //if there is no challenge
-					response.checkStatus(); //we can't authenticate without a challenge, so throw an exception (we've already read the message body, so we can't just return)
-				}
-				final URI rootURI = getRootURI(request.getURI()); //get the root URI of the host we were trying to connect to
-				final AuthenticationScheme scheme = challenge.getScheme(); //get the scheme
-				if(scheme != AuthenticationScheme.BASIC && scheme != AuthenticationScheme.DIGEST) { //if we don't recognize the scheme
-					response.checkStatus(); //we can't authenticate ourselves, so throw an exception (we've already read the message body, so we can't just return)
-				}
-				final String realm = challenge.getRealm(); //get the challenge realm
-				PasswordAuthentication passwordAuthentication = getPasswordAuthentication(); //see if password authentication has been specified specifically for this connection
-				if(passwordAuthentication == null) { //if there is no connection-specific password authentication, try to find some
-					final HTTPClient client = getClient(); //get the client with which we're associated
-					final Set<String> usernames = client.getUsernames(rootURI, realm); //get users that are cached for this domain and realm
-					if(usernames.size() == 1) { //if we have exactly one user's authentication information
-						final String username = usernames.iterator().next(); //get the username
-						final char[] password = client.getPassword(rootURI, realm, username); //get the password for this user
-						if(password != null) { //if we found a cached password
-							passwordAuthentication = new PasswordAuthentication(username, password); //create new password authentication
-						}
-					}
+		long attempt = 0; //the digest nonce count is kept by the client across requests
+		//		TODO del Log.trace("writing request");
+		HTTPResponse response = exchange(request, body); //write the request and read the response TODO check for redirects
+		//		TODO del Log.trace("response connection header:", response.getConnection());
+		while(response.getStatusCode() == SC_UNAUTHORIZED) { //if the request requires authorization
+			readResponseBody(request, response); //skip the response body
+			//TODO fix; del if not needed				disconnect();	//disconnect from the server so that the server won't time out while we look for credentials and throw a SocketException TODO improve
+			final Authentication authentication = authenticate(request, response, ++attempt); //find credentials to answer the challenge
+			request.setAuthorization(authentication.getCredentials()); //store the credentials in the request
+			response = exchange(request, body); //write the modified request and read the new response
+			updatePasswordCache(request, authentication, response); //remember or forget the password based upon the response
+		}
+		return response; //return the response we received
+	}
+
+	/**
+	 * Writes a fixed-length request and reads the response. If the exchange fails and the {@link #getRetryPolicy(HTTPRequest) retry policy} considers the
+	 * failure safe to retry, such as when a server resets an idle connection before answering an idempotent request, the request is written again on a new
+	 * transport after a backoff delay, as long as attempts remain and the client's {@link HTTPClient#getRetryBudget() retry budget} allows. If the server
+	 * responds with {@value #SC_EXPECTATION_FAILED} to a request sent with an {@value #EXPECT_HEADER} header of {@value #EXPECT_100_CONTINUE}, the request is
+	 * written again with the body sent immediately. If a proxy forwarding the request responds with {@value HTTP#SC_PROXY_AUTHENTICATION_REQUIRED} and the
+	 * challenge can be answered using the {@link HTTPClient#getProxyPasswordAuthentication() proxy credentials}, the request is written again with credentials.
+	 * @param request The request to send to the server.
+	 * @param body The body of the request, which can be written again if needed.
+	 * @return The response from the server, the body of which will still be waiting to be read.
+	 * @throws IOException if there is an error writing the request or reading the response.
+	 * @see HTTPRetryPolicy#isRetryable(HTTPRequest, IOException)
+	 */
+	protected HTTPResponse exchange(final HTTPRequest request, final byte[] body) throws IOException {
+		final HTTPRetryPolicy retryPolicy = getRetryPolicy(request);
+		int attempt = 1;
+		int proxyRequestCount = 0;
+		while(true) {
+			try {
+				writeRequest(request, body);
+				final Host forwardingProxy = transport.getForwardingProxy(); //note the proxy before the transport is released along with the response body
+				final HTTPResponse response = readResponse(request);
+				if(response.getStatusCode() == SC_EXPECTATION_FAILED && EXPECT_100_CONTINUE.equalsIgnoreCase(request.getHeader(EXPECT_HEADER))) { //if the host doesn't support waiting for the body
+					readResponseBody(request, response); //skip the response body
+					getClient().recordExpectContinueRefused(getHost()); //send the body right away from now on, on any connection to the host
+					continue;
 				}
-				if(passwordAuthentication == null) { //if we have no password authentication, yet, either specified for this connection or cached in the client
-					passwordAuthentication = askPasswordAuthentication(request, response, challenge); //ask for a password
+				if(response.getStatusCode() == SC_PROXY_AUTHENTICATION_REQUIRED && forwardingProxy != null && ++proxyRequestCount < HTTPClient.MAX_PROXY_REQUESTS
+						&& getClient().updateProxyChallenge(forwardingProxy, response)) { //if the proxy wants credentials we have
+					readResponseBody(request, response); //skip the response body
+					continue; //the request will now be formatted with credentials for the proxy
 				}
-				if(passwordAuthentication == null) { //if we got no authentication
-					response.checkStatus(); //we can't authenticate without a password, so throw an exception (we've already read the message body, so we can't just return)
+				return response;
+			} catch(final IOException ioException) { //the transport has already been abandoned
+				if(attempt >= retryPolicy.getMaxAttempts() || isCancelled() || !retryPolicy.isRetryable(request, ioException)
+						|| !getClient().getRetryBudget().tryAcquireRetry()) {
+					throw ioException;
 				}
-				//TODO make sure that QOP.AUTH is allowed in the challenge
-				if(++nonceCount > 3) { //increase our nonce count; only allow three attempts
-					response.checkStatus(); //throw an exception (we've already read the message body, so we can't just return)
+				getLogger().debug("Retrying {} {} (attempt {}): {}", request.getMethod(), request.getURI(), attempt + 1, ioException.toString());
+				retryPolicy.backOff(attempt++);
+			}
+		}
+	}
+
+	/**
+	 * Sends several requests without bodies and gets their responses, the bodies of which will have been read in their entirety. If pipelining is enabled,
+	 * consecutive requests that can be pipelined are written back-to-back and their responses are read in order; otherwise the requests are sent one at a time.
+	 * If the server closes the connection before answering all the pipelined requests, the unanswered requests are sent again on a new transport. Requests
+	 * requiring authorization are retried individually as with {@link #sendRequest(HTTPRequest, byte[])} once the pipeline has been read.
+	 * @param requests The requests to send, such as <code>HEAD</code> or <code>PROPFIND</code> requests checking metadata.
+	 * @return The responses to the requests, in the same order as the requests.
+	 * @throws NullPointerException if the given requests is <code>null</code>.
+	 * @throws IOException if there is an error writing the requests or reading the responses.
+	 * @see #setPipelining(boolean)
+	 */
+	public List<BufferedHTTPResponse> sendRequests(final List<? extends HTTPRequest> requests) throws IOException {
+		final int requestCount = requests.size();
+		final List<BufferedHTTPResponse> responses = new ArrayList<BufferedHTTPResponse>(requestCount);
+		final List<Integer> unauthorizedIndexes = new ArrayList<Integer>();
+		boolean retried = false; //whether we've already resent requests without making progress
+		while(responses.size() < requestCount) {
+			final int start = responses.size();
+			int writtenCount = 0;
+			try {
+				do {
+					writeRequest(requests.get(start + writtenCount), Bytes.NO_BYTES);
+					++writtenCount;
+				} while(isPipelining() && start + writtenCount < requestCount && pendingPipelinable && transport.isReusable()
+						&& isPipelinable(requests.get(start + writtenCount)));
+				while(responses.size() < start + writtenCount) {
+					final HTTPRequest request = requests.get(responses.size());
+					final HTTPResponse response = readResponse(request);
+					final BufferedHTTPResponse bufferedResponse = toBufferedResponse(response, readResponseBody(request, response));
+					if(response.getStatusCode() == SC_UNAUTHORIZED) { //we'll authenticate once the pipeline has been read
+						unauthorizedIndexes.add(responses.size());
+					}
+					responses.add(bufferedResponse);
+					retried = false; //we made progress
 				}
-				final AuthenticateCredentials credentials; //try to get credentials based upon the authentication type
-				if(challenge instanceof BasicAuthenticateChallenge) { //if this is basic authentication
-					credentials = new BasicAuthenticateCredentials(passwordAuthentication.getUserName(), realm, passwordAuthentication.getPassword()); //create basic authentication credentials
-				} else if(challenge instanceof DigestAuthenticateChallenge) { //if this is digest authentication
-					final DigestAuthenticateChallenge digestChallenge = (DigestAuthenticateChallenge)challenge; //get the challenge as a digest challenge
-					final Nonce cnonce = new DefaultNonce(getClass().getName()); //create our own nonce value to send back
-					credentials = new DigestAuthenticateCredentials(request.getMethod(), //generate credentials for the client
-							passwordAuthentication.getUserName(), realm, passwordAuthentication.getPassword(), digestChallenge.getNonce(), request.getRequestURI(), "cnonce",
-							digestChallenge.getOpaque(), QOP.AUTH, nonceCount, digestChallenge.getMessageDigest().getAlgorithm()); //TODO fix cnonce
-				} else { //if we don't recognize the challenge type
-					throw new AssertionError("Unrecognized challenge type: " + challenge.getClass());
+			} catch(final IOException ioException) {
+				if(!isPipelining() || writtenCount == 0 || responses.size() == start && retried) { //only resend pipelined requests, and only once without progress
+					throw ioException;
 				}
-				request.setAuthorization(credentials); //store the credentials in the request
-				writeRequest(request, body); //write the modified request along with the request body
-				response = readResponse(request); //read the new response
-				if(response.getResponseClass() == HTTPResponseClass.SUCCESS) { //if we succeeded
-					client.putPassword(rootURI, realm, passwordAuthentication.getUserName(), passwordAuthentication.getPassword()); //cache the username and password in the client
-				} else if(response.getStatusCode() == SC_UNAUTHORIZED) { //if we're still unauthorized
-					client.removePassword(rootURI, realm, passwordAuthentication.getUserName()); //make sure there is no password cached for this user
+				getLogger().debug("Connection to {} closed after {} of {} pipelined responses; resending remaining requests.", getHost(), responses.size() - start,
+						writtenCount, ioException);
+				disconnect(); //abandon any pipelined requests that were not answered
+				retried = responses.size() == start;
+			}
+		}
+		for(final int index : unauthorizedIndexes) { //retry requests requiring authorization one at a time
+			final HTTPRequest request = requests.get(index);
+			final HTTPResponse response = sendRequest(request, Bytes.NO_BYTES);
+			responses.set(index, toBufferedResponse(response, readResponseBody(request, response)));
+		}
+		return responses;
+	}
+
+	/**
+	 * Creates a buffered copy of a response with its body.
+	 * @param response The response to copy.
+	 * @param body The body of the response.
+	 * @return A response with the status, headers, and body of the given response.
+	 */
+	private static BufferedHTTPResponse toBufferedResponse(final HTTPResponse response, final byte[] body) {
+		final BufferedHTTPResponse bufferedResponse = new BufferedHTTPResponse(response.getVersion(), response.getStatusCode(), response.getReasonPhrase());
+		for(final NameValuePair<String, String> header : response.getHeaders()) {
+			bufferedResponse.addHeader(header.getName(), header.getValue());
+		}
+		bufferedResponse.setBody(body);
+		return bufferedResponse;
+	}
+
+	/**
+	 * Sends a fixed-length request and asynchronously gets a response, the body of which will have been read in its entirety. As with
+	 * {@link #sendRequest(HTTPRequest, byte[])}, requests are retried with appropriate authorization if necessary.
+	 * <p>
+	 * Only cleartext HTTP/1.1 exchanges are driven by the client's event loop using non-blocking I/O, with no thread blocked while waiting for the server. The
+	 * requests of secure connections and of clients using {@link HTTPClient#isHTTP2() HTTP/2}, as well as exchanges over transports other than
+	 * {@link ChannelHTTPTransport}, are sent using blocking I/O on the client's executor instead. Callers may use this method concurrently with other
+	 * asynchronous requests on the same connection, but not concurrently with synchronous requests.
+	 * </p>
+	 * @param request The request to send to the server.
+	 * @param body The body of the request.
+	 * @return The future response from the server.
+	 * @throws NullPointerException if the given request and/or body is <code>null</code>.
+	 * @see HTTPClient#getExecutor()
+	 */
+	public CompletableFuture<BufferedHTTPResponse> sendRequestAsync(final HTTPRequest request, final byte[] body) {
+		requireNonNull(request, "Request cannot be null.");
+		requireNonNull(body, "Body cannot be null.");
+		if(isSecure() || getClient().isHTTP2() || getClient().getProxy() != null) { //the event loop only speaks cleartext HTTP/1.1 and doesn't answer proxies
+			return sendRequestBlockingAsync(request, body);
+		}
+		return exchangeAsync(request, body).thenCompose(response -> retryUnauthorizedAsync(request, body, response, 0));
+	}
+
+	/**
+	 * Asynchronously sends a request using blocking I/O on the client's executor. A separate connection is used so as not to interfere with this connection's
+	 * state.
+	 * @param request The request to send to the server.
+	 * @param body The body of the request.
+	 * @return The future response from the server.
+	 */
+	private CompletableFuture<BufferedHTTPResponse> sendRequestBlockingAsync(final HTTPRequest request, final byte[] body) {
+		final CompletableFuture<BufferedHTTPResponse> future = new CompletableFuture<BufferedHTTPResponse>();
+		getClient().getExecutor().execute(() -> {
+			try {
+				final HTTPClientTCPConnection connection = getClient().createConnection(getHost(), getPasswordAuthentication(), isSecure());
+				final HTTPResponse response = connection.sendRequest(request, body);
+				future.complete(toBufferedResponse(response, connection.readResponseBody(request, response)));
+			} catch(final IOException | RuntimeException exception) {
+				future.completeExceptionally(exception);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Asynchronously performs a single request/response exchange using blocking I/O on the client's executor. A separate connection is used so as not to
+	 * interfere with this connection's state.
+	 * @param request The request to send to the server.
+	 * @param body The body of the request.
+	 * @return The future response from the server.
+	 */
+	private CompletableFuture<BufferedHTTPResponse> exchangeBlockingAsync(final HTTPRequest request, final byte[] body) {
+		final CompletableFuture<BufferedHTTPResponse> future = new CompletableFuture<BufferedHTTPResponse>();
+		getClient().getExecutor().execute(() -> {
+			try {
+				final HTTPClientTCPConnection connection = getClient().createConnection(getHost(), getPasswordAuthentication(), isSecure());
+				final HTTPResponse response = connection.exchange(request, body);
+				future.complete(toBufferedResponse(response, connection.readResponseBody(request, response)));
+			} catch(final IOException | RuntimeException exception) {
+				future.completeExceptionally(exception);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Asynchronously performs a single request/response exchange using a transport leased from the client's connection pool, driven by the client's event loop.
+	 * If the pool provides a transport the event loop cannot drive, the transport is returned and the exchange is instead performed using blocking I/O on the
+	 * client's executor.
+	 * @param request The request to send to the server.
+	 * @param body The body of the request.
+	 * @return The future response from the server.
+	 */
+	protected CompletableFuture<BufferedHTTPResponse> exchangeAsync(final HTTPRequest request, final byte[] body) {
+		final HTTPClient client = getClient();
+		request.setContentLength(body.length); //set the content length
+		request.removeHeaders(TRANSFER_ENCODING_HEADER); //remove any transfer encoding
+		final HTTPConnectionPool.Key key = new HTTPConnectionPool.Key(URIs.getHost(request.getURI()), isSecure(), getPasswordAuthentication());
+		final int readTimeout = getRetryPolicy(request).getReadTimeout();
+		return client.leaseTransportAsync(key).thenCompose(transport -> {
+			if(!(transport instanceof ChannelHTTPTransport)) { //e.g. a subclass opening its own kind of transport
+				client.releaseTransport(transport);
+				return exchangeBlockingAsync(request, body);
+			}
+			final byte[] header = formatRequestMessage(request, transport.getForwardingProxy()); //format the request line and headers for the transport
+			client.getRetryBudget().recordRequest();
+			final CompletableFuture<BufferedHTTPResponse> exchange;
+			try {
+				transport.setReadTimeout(readTimeout); //the event loop times out the exchange
+				exchange = client.getEventLoop().exchange((ChannelHTTPTransport)transport, request, header, body);
+			} catch(final IOException ioException) {
+				closeTransport(transport);
+				client.releaseTransport(transport);
+				final CompletableFuture<BufferedHTTPResponse> future = new CompletableFuture<BufferedHTTPResponse>();
+				future.completeExceptionally(ioException);
+				return future;
+			}
+			return exchange.whenComplete((response, throwable) -> {
+				if(response != null) {
+					transport.recordResponse(response.getStatusCode()); //the response is complete, so the latency includes the body
+					updateKeepAlive(transport, response); //note how much longer the server is willing to keep the transport open
+					if(response.isConnectionClose()) { //if the response asks us to close
+						closeTransport(transport);
+					}
+				} else if(throwable instanceof SocketTimeoutException || throwable.getCause() instanceof SocketTimeoutException) { //a host that stops responding may be overloaded
+					transport.recordOverload();
 				}
+				client.releaseTransport(transport); //the event loop closes the transport if the exchange failed
+			});
+		});
+	}
+
+	/**
+	 * Asynchronously retries a request with appropriate authorization if the given response indicates that authorization is required.
+	 * @param request The request sent to the server.
+	 * @param body The body of the request.
+	 * @param response The response from the server.
+	 * @param attempt The number of times authorization has already been attempted.
+	 * @return The future response from the server, which will be the given response if no authorization is required.
+	 */
+	private CompletableFuture<BufferedHTTPResponse> retryUnauthorizedAsync(final HTTPRequest request, final byte[] body, final BufferedHTTPResponse response,
+			final long attempt) {
+		if(response.getStatusCode() != SC_UNAUTHORIZED) { //if the request doesn't require authorization
+			return CompletableFuture.completedFuture(response);
+		}
+		final Authentication authentication;
+		try {
+			authentication = authenticate(request, response, attempt + 1); //find credentials to answer the challenge; this may ask the user, so we're never on the event loop thread
+		} catch(final IOException ioException) {
+			final CompletableFuture<BufferedHTTPResponse> future = new CompletableFuture<BufferedHTTPResponse>();
+			future.completeExceptionally(ioException);
+			return future;
+		}
+		request.setAuthorization(authentication.getCredentials()); //store the credentials in the request
+		return exchangeAsync(request, body).thenCompose(newResponse -> {
+			updatePasswordCache(request, authentication, newResponse); //remember or forget the password based upon the response
+			return retryUnauthorizedAsync(request, body, newResponse, attempt + 1);
+		});
+	}
+
+	/**
+	 * Determines credentials for answering the authentication challenge of a response. Connection-specific password authentication is used if available;
+	 * otherwise a password cached by the client is used, or the user is asked for a password. If the challenge cannot be answered, the exception appropriate
+	 * for the response status is thrown.
+	 * <p>
+	 * The nonce count of a digest challenge continues from any earlier use of the same nonce by the client. A digest challenge marked as stale, indicating that
+	 * the credentials were correct but the nonce had expired, is answered with the password already used without asking the user again.
+	 * </p>
+	 * @param request The request that was not authorized.
+	 * @param response The response indicating that authorization is required.
+	 * @param attempt The number of this authorization attempt, starting at 1.
+	 * @return The authentication information for retrying the request.
+	 * @throws HTTPException if the challenge cannot be answered.
+	 * @throws IOException if there is an error processing the challenge.
+	 * @see HTTPClient#getChallenge(URI)
+	 */
+	protected Authentication authenticate(final HTTPRequest request, final HTTPResponse response, final long attempt) throws IOException {
+		try {
+			//			TODO del Log.trace("unauthorized; looking for challenge");
+			final AuthenticateChallenge challenge = response.getWWWAuthenticate(); //get the challenge
+			if(challenge == null) { //if there is no challenge
+				response.checkStatus(); //we can't authenticate without a challenge, so throw an exception (we've already read the message body, so we can't just return)
+			}
+			final URI rootURI = getRootURI(request.getURI()); //get the root URI of the host we were trying to connect to
+			final AuthenticationScheme scheme = challenge.getScheme(); //get the scheme
+			if(scheme != AuthenticationScheme.BASIC && scheme != AuthenticationScheme.DIGEST) { //if we don't recognize the scheme
+				response.checkStatus(); //we can't authenticate ourselves, so throw an exception (we've already read the message body, so we can't just return)
+			}
+			final String realm = challenge.getRealm(); //get the challenge realm
+			PasswordAuthentication passwordAuthentication = findPasswordAuthentication(rootURI, realm); //see if password authentication has been specified or cached
+			if(passwordAuthentication == null) { //if we have no password authentication, yet, either specified for this connection or cached in the client
+				passwordAuthentication = askPasswordAuthentication(request, response, challenge); //ask for a password
+			}
+			if(passwordAuthentication == null) { //if we got no authentication
+				response.checkStatus(); //we can't authenticate without a password, so throw an exception (we've already read the message body, so we can't just return)
 			}
-			return response; //return the response we received
+			//TODO make sure that QOP.AUTH is allowed in the challenge
+			if(attempt > 3) { //only allow three attempts
+				response.checkStatus(); //throw an exception (we've already read the message body, so we can't just return)
+			}
+			final long nonceCount = getClient().incrementNonceCount(rootURI, challenge); //don't restart the count of a nonce we've already used
+			final String cnonce = getClient().getCNonce(rootURI, challenge); //keep using the client nonce of a challenge we've already answered
+			final AuthenticateCredentials credentials = createCredentials(request, challenge, passwordAuthentication, nonceCount, cnonce); //get credentials based upon the authentication type
+			return new Authentication(rootURI, challenge, nonceCount, passwordAuthentication, credentials);
 		} catch(final IllegalArgumentException illegalArgumentException) {
 			throw new IOException(illegalArgumentException);
 		} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
@@ -666,6 +1242,99 @@ public HTTPResponse sendRequest(final HTTPRequest request, final byte[] body) th
 		}
 	}
 
+	/**
+	 * Determines whether a response refuses a request only because the nonce of its digest credentials had expired, the credentials otherwise being correct.
+	 * @param response The response to a request sent with credentials.
+	 * @return <code>true</code> if the response is {@value HTTP#SC_UNAUTHORIZED} with a digest challenge marked as stale.
+	 */
+	protected static boolean isStaleChallenge(final HTTPResponse response) {
+		if(response.getStatusCode() != SC_UNAUTHORIZED) {
+			return false;
+		}
+		try {
+			final AuthenticateChallenge challenge = response.getWWWAuthenticate();
+			return challenge instanceof DigestAuthenticateChallenge && ((DigestAuthenticateChallenge)challenge).isStale();
+		} catch(final SyntaxException | IllegalArgumentException exception) { //an invalid challenge will be reported when answering it
+			return false;
+		}
+	}
+
+	/**
+	 * Finds password authentication for answering a challenge. Connection-specific password authentication is used if available; otherwise a password cached by
+	 * the client is used if exactly one user is cached for the realm.
+	 * @param rootURI The root URI of the host that issued the challenge.
+	 * @param realm The realm of the challenge.
+	 * @return The password authentication for answering the challenge, or <code>null</code> if none is available without asking the user.
+	 */
+	protected PasswordAuthentication findPasswordAuthentication(final URI rootURI, final String realm) {
+		final PasswordAuthentication passwordAuthentication = getPasswordAuthentication(); //see if password authentication has been specified specifically for this connection
+		if(passwordAuthentication != null) {
+			return passwordAuthentication;
+		}
+		final HTTPClient client = getClient(); //get the client with which we're associated
+		final Set<String> usernames = client.getUsernames(rootURI, realm); //get users that are cached for this domain and realm
+		if(usernames.size() == 1) { //if we have exactly one user's authentication information
+			final String username = usernames.iterator().next(); //get the username
+			final char[] password = client.getPassword(rootURI, realm, username); //get the password for this user
+			if(password != null) { //if we found a cached password
+				return new PasswordAuthentication(username, password); //create new password authentication
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates credentials for a request answering a challenge.
+	 * @param request The request to be authorized, the request URI of which has already been set.
+	 * @param challenge The challenge to answer, using either the basic or the digest scheme.
+	 * @param passwordAuthentication The username and password with which to answer the challenge.
+	 * @param nonceCount The number of times the nonce of a digest challenge has been used, including this time.
+	 * @param cnonce The client nonce with which to answer a digest challenge.
+	 * @return The credentials answering the challenge.
+	 * @throws NoSuchAlgorithmException if the algorithm of a digest challenge is not supported.
+	 * @see HTTPClient#getCNonce(URI, AuthenticateChallenge)
+	 */
+	protected AuthenticateCredentials createCredentials(final HTTPRequest request, final AuthenticateChallenge challenge,
+			final PasswordAuthentication passwordAuthentication, final long nonceCount, final String cnonce) throws NoSuchAlgorithmException {
+		final String realm = challenge.getRealm();
+		if(challenge instanceof BasicAuthenticateChallenge) { //if this is basic authentication
+			return new BasicAuthenticateCredentials(passwordAuthentication.getUserName(), realm, passwordAuthentication.getPassword()); //create basic authentication credentials
+		} else if(challenge instanceof DigestAuthenticateChallenge) { //if this is digest authentication
+			final DigestAuthenticateChallenge digestChallenge = (DigestAuthenticateChallenge)challenge; //get the challenge as a digest challenge
+			return new DigestAuthenticateCredentials(request.getMethod(), //generate credentials for the client
+					passwordAuthentication.getUserName(), realm, passwordAuthentication.getPassword(), digestChallenge.getNonce(), request.getRequestURI(), cnonce,
+					digestChallenge.getOpaque(), QOP.AUTH, nonceCount, digestChallenge.getAlgorithm());
+		} else { //if we don't recognize the challenge type
+			throw new AssertionError("Unrecognized challenge type: " + challenge.getClass());
+		}
+	}
+
+	/**
+	 * Updates the client's password and challenge caches based upon the response to a request retried with authorization. If the request succeeded the password
+	 * is cached, and the challenge is cached so that later requests to the host can be authorized preemptively. If the request was refused only because the
+	 * digest nonce was {@link #isStaleChallenge(HTTPResponse) stale}, the password is still cached. If the request is otherwise still unauthorized, any cached
+	 * password for the user and any cached challenge are removed.
+	 * @param request The request retried with authorization.
+	 * @param authentication The authentication information used for retrying the request.
+	 * @param response The response to the retried request.
+	 * @see HTTPClient#putChallenge(URI, AuthenticateChallenge, long, String)
+	 */
+	protected void updatePasswordCache(final HTTPRequest request, final Authentication authentication, final HTTPResponse response) {
+		final PasswordAuthentication passwordAuthentication = authentication.getPasswordAuthentication();
+		if(response.getResponseClass() == HTTPResponseClass.SUCCESS) { //if we succeeded
+			client.putPassword(authentication.getRootURI(), authentication.getRealm(), passwordAuthentication.getUserName(), passwordAuthentication.getPassword()); //cache the username and password in the client
+			final AuthenticateCredentials credentials = authentication.getCredentials();
+			final String cnonce = credentials instanceof DigestAuthenticateCredentials ? ((DigestAuthenticateCredentials)credentials).getCNonce() : null;
+			client.putChallenge(authentication.getRootURI(), authentication.getChallenge(), authentication.getNonceCount(), cnonce); //authenticate later requests up front
+		} else if(isStaleChallenge(response)) { //if the password was accepted but the nonce had expired, keep the password so that the user isn't asked again
+			client.putPassword(authentication.getRootURI(), authentication.getRealm(), passwordAuthentication.getUserName(), passwordAuthentication.getPassword());
+			client.removeChallenge(authentication.getRootURI(), authentication.getRealm()); //the new challenge will be cached once it has been answered
+		} else if(response.getStatusCode() == SC_UNAUTHORIZED) { //if we're still unauthorized
+			client.removePassword(authentication.getRootURI(), authentication.getRealm(), passwordAuthentication.getUserName()); //make sure there is no password cached for this user
+			client.removeChallenge(authentication.getRootURI(), authentication.getRealm());
+		}
+	}
+
 	/**
 	 * Sends an XML document as the body of a fixed-length request and gets a response. This convenience method can retry requests with appropriate authorization
 	 * if necessary. Once the request is successful, the body of the response will still be waiting to be read. If an the response results in a corresponding
@@ -714,7 +1383,8 @@ protected PasswordAuthentication askPasswordAuthentication(final HTTPRequest req
 	}
 
 	/**
-	 * Cleans up the connection after reading a response body. The connection is closed if requested. If auto-exchange is enabled, the exchange is ended.
+	 * Cleans up the connection after reading a response body. The connection is closed if requested, or if the body was delimited by the host closing it. If
+	 * auto-exchange is enabled and no pipelined responses remain to be read, the exchange is ended, returning the transport to the client's connection pool.
 	 * @param response The response in an HTTP exchange for which this input stream reads the body.
 	 * @throws NullPointerException if the given response is <code>null</code>.
 	 * @throws IOException if there is an error cleaning up the connection.
@@ -722,10 +1392,14 @@ protected PasswordAuthentication askPasswordAuthentication(final HTTPRequest req
 	 * @see #endExchange()
 	 */
 	protected void afterReadBody(final HTTPResponse response) throws IOException {
-		if(response.isConnectionClose()) { //if the response asks us to close
-			disconnect(); //disconnect from the host
+		if(pendingResponseCount > 0) {
+			--pendingResponseCount; //the transport is now at a message boundary
+		}
+		if(response.isConnectionClose() || closeDelimited) { //if the response asks us to close, or the host closed the connection to end the body
+			closeDelimited = false;
+			disconnect(); //disconnect from the host; any pipelined responses are lost
 		}
-		if(true/*TODO fix: isAutoExchange()*/) //if auto-exchange is turned on
+		if(pendingResponseCount == 0 /*TODO fix: && isAutoExchange()*/) //if auto-exchange is turned on and no pipelined responses remain
 		{
 			endExchange(); //end the request/response exchange
 		}
@@ -758,14 +1432,100 @@ public ResponseBodyInputStreamDecorator(final InputStream outputStream, final HT
 			this.response = requireNonNull(response, "Response cannot be null.");
 		}
 
+		/**
+		 * {@inheritDoc}
+		 * <p>
+		 * This version closes the decorated body stream, draining any remaining body, before the decorator itself is closed. The decorator's
+		 * {@link #close(boolean)} is synchronized, and blocking on network I/O while holding a monitor would pin a virtual thread to its carrier thread.
+		 * </p>
+		 */
+		@Override
+		public void close() throws IOException {
+			final InputStream inputStream = getInputStream();
+			if(inputStream != null) {
+				inputStream.close(); //drain the body outside the monitor; the decorated stream ignores being closed again
+			}
+			super.close();
+		}
+
 		/**
 		 * Called after the stream is successfully closed. This version closes the connection if requested. If auto-exchange is enabled, the exchange is ended.
 		 * @throws IOException if there is an error cleaning up the connection.
 		 * @see HTTPClientTCPConnection#afterReadBody(HTTPResponse)
 		 */
+		@Override
 		protected void afterClose() throws IOException {
 			afterReadBody(response); //clean up the connection
 		}
 	}
 
+	/**
+	 * The information used to answer an authentication challenge.
+	 * @author Garret Wilson
+	 */
+	protected static class Authentication {
+
+		/** The root URI of the host that issued the challenge. */
+		private final URI rootURI;
+
+		/** @return The root URI of the host that issued the challenge. */
+		public URI getRootURI() {
+			return rootURI;
+		}
+
+		/** The challenge answered. */
+		private final AuthenticateChallenge challenge;
+
+		/** @return The challenge answered. */
+		public AuthenticateChallenge getChallenge() {
+			return challenge;
+		}
+
+		/** @return The realm of the challenge. */
+		public String getRealm() {
+			return challenge.getRealm();
+		}
+
+		/** The number of times the nonce of a digest challenge has been used in answering it. */
+		private final long nonceCount;
+
+		/** @return The number of times the nonce of a digest challenge has been used in answering it. */
+		public long getNonceCount() {
+			return nonceCount;
+		}
+
+		/** The username and password used to answer the challenge. */
+		private final PasswordAuthentication passwordAuthentication;
+
+		/** @return The username and password used to answer the challenge. */
+		public PasswordAuthentication getPasswordAuthentication() {
+			return passwordAuthentication;
+		}
+
+		/** The credentials answering the challenge. */
+		private final AuthenticateCredentials credentials;
+
+		/** @return The credentials answering the challenge. */
+		public AuthenticateCredentials getCredentials() {
+			return credentials;
+		}
+
+		/**
+		 * Constructor.
+		 * @param rootURI The root URI of the host that issued the challenge.
+		 * @param challenge The challenge answered.
+		 * @param nonceCount The number of times the nonce of a digest challenge has been used in answering it.
+		 * @param passwordAuthentication The username and password used to answer the challenge.
+		 * @param credentials The credentials answering the challenge.
+		 */
+		public Authentication(final URI rootURI, final AuthenticateChallenge challenge, final long nonceCount, final PasswordAuthentication passwordAuthentication,
+				final AuthenticateCredentials credentials) {
+			this.rootURI = rootURI;
+			this.challenge = challenge;
+			this.nonceCount = nonceCount;
+			this.passwordAuthentication = passwordAuthentication;
+			this.credentials = credentials;
+		}
+	}
+
 }
@@ -0,0 +1,776 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.lang.ref.WeakReference;
+import java.net.PasswordAuthentication;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+import com.globalmentor.net.Host;
+
+import io.clogr.Clogged;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.Objects.*;
+
+/**
+ * A pool of persistent HTTP transports. Transports are pooled by {@link Key}, which identifies the host, whether the transport is secure, and any
+ * connection-specific credentials, so that a transport is only ever reused by connections that would have opened an identical one.
+ * <p>
+ * A transport is leased for the duration of a request/response exchange and returned when the exchange ends. The number of transports per key and the total
+ * number of transports are limited; when a limit is reached, callers wait until another transport is released. If the total limit is reached but an idle
+ * transport is available for some other key, that idle transport is closed to make room. Transports may also be leased asynchronously using
+ * {@link #leaseAsync(Key, Executor)}, in which case the caller is never blocked; pending asynchronous leases are fulfilled in order as transports become
+ * available.
+ * </p>
+ * <p>
+ * Idle transports are retired once they have been idle longer than the {@link #getMaxIdleTime() maximum idle time}, or shortly before reaching the idle
+ * timeout the server indicated using the {@value HTTPClientTCPConnection#KEEP_ALIVE_HEADER} header. A background daemon thread periodically closes such
+ * transports, and each idle transport is checked for staleness before it is reused so that a transport the server closed while idle is transparently
+ * replaced with a new one.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPClientTCPConnection#beginExchange()
+ * @see HTTPClientTCPConnection#endExchange()
+ */
+public class HTTPConnectionPool implements Closeable, Clogged {
+
+	/** The default maximum number of transports, leased or idle, for each key. */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+	/** The default maximum number of transports, leased or idle, for all keys. */
+	public static final int DEFAULT_MAX_CONNECTIONS = 64;
+
+	/** The default number of milliseconds a transport may be idle before it is closed. */
+	public static final long DEFAULT_MAX_IDLE_TIME = 30 * 1000;
+
+	/** The number of milliseconds before the server's indicated idle timeout at which an idle transport is retired, to allow for clock and network delays. */
+	private static final long KEEP_ALIVE_TIMEOUT_MARGIN = 1000;
+
+	/** The number of milliseconds between checks for expired idle transports. */
+	private static final long REAPER_INTERVAL = 1000;
+
+	/** The shared daemon thread that periodically closes expired idle transports of all pools. */
+	private static final ScheduledExecutorService REAPER_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		final Thread thread = new Thread(runnable, HTTPConnectionPool.class.getSimpleName() + " reaper");
+		thread.setDaemon(true); //don't keep the JVM running just to close idle connections
+		return thread;
+	});
+
+	/**
+	 * The strategy for opening a new transport when none is available in the pool.
+	 * @author Garret Wilson
+	 */
+	@FunctionalInterface
+	public interface Connector {
+
+		/**
+		 * Opens a new transport.
+		 * @param key The key identifying the transport to open.
+		 * @return A new, open transport.
+		 * @throws IOException if there was an error opening the transport.
+		 */
+		public HTTPTransport connect(final Key key) throws IOException;
+	}
+
+	/** The strategy for opening new transports. */
+	private final Connector connector;
+
+	/** The lock guarding the pool state. */
+	private final Lock lock = new ReentrantLock();
+
+	/** The condition signaled when a transport is released or discarded. */
+	private final Condition releaseCondition = lock.newCondition();
+
+	/** The pool state for each key; guarded by {@link #lock}. */
+	private final Map<Key, Route> routeMap = new HashMap<Key, Route>();
+
+	/** The total number of transports, leased or idle; guarded by {@link #lock}. */
+	private int connectionCount = 0;
+
+	/** Asynchronous leases waiting for the pool limits to allow a transport, in the order requested; guarded by {@link #lock}. */
+	private final Deque<PendingLease> pendingLeases = new ArrayDeque<PendingLease>();
+
+	/** Tasks to hand off to the executors of pending leases once the lock is released; guarded by {@link #lock}. */
+	private final List<Runnable> handoffs = new ArrayList<Runnable>();
+
+	/** Whether pending leases are currently being fulfilled, to prevent reentrant fulfillment; guarded by {@link #lock}. */
+	private boolean fulfillingPendingLeases = false;
+
+	/** Whether the pool has been closed; guarded by {@link #lock}. */
+	private boolean closed = false;
+
+	/** The maximum number of transports, leased or idle, for each key. */
+	private volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+	/** @return The maximum number of transports, leased or idle, for each key. */
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * Sets the maximum number of transports, leased or idle, for each key. Any {@link AdaptiveHTTPAdmissionControl} of the client should not be allowed to
+	 * raise its limit above this maximum.
+	 * @param maxConnectionsPerHost The maximum number of transports per key.
+	 * @throws IllegalArgumentException if the given maximum is not positive.
+	 */
+	public void setMaxConnectionsPerHost(final int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = checkArgumentPositive(maxConnectionsPerHost);
+		signalRelease(); //waiting callers may now be able to proceed
+	}
+
+	/** The maximum number of transports, leased or idle, for all keys. */
+	private volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+	/** @return The maximum number of transports, leased or idle, for all keys. */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * Sets the maximum number of transports, leased or idle, for all keys.
+	 * @param maxConnections The maximum total number of transports.
+	 * @throws IllegalArgumentException if the given maximum is not positive.
+	 */
+	public void setMaxConnections(final int maxConnections) {
+		this.maxConnections = checkArgumentPositive(maxConnections);
+		signalRelease(); //waiting callers may now be able to proceed
+	}
+
+	/** The maximum number of milliseconds a transport may be idle before it is closed. */
+	private volatile long maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+
+	/** @return The maximum number of milliseconds a transport may be idle before it is closed. */
+	public long getMaxIdleTime() {
+		return maxIdleTime;
+	}
+
+	/**
+	 * Sets the maximum number of milliseconds a transport may be idle before it is closed.
+	 * @param maxIdleTime The maximum idle time in milliseconds; <code>0</code> effectively disables reuse of idle transports.
+	 * @throws IllegalArgumentException if the given maximum is negative.
+	 */
+	public void setMaxIdleTime(final long maxIdleTime) {
+		this.maxIdleTime = checkArgumentNotNegative(maxIdleTime);
+	}
+
+	/** The scheduled task periodically closing expired idle transports. */
+	private final ScheduledFuture<?> reaperFuture;
+
+	/**
+	 * Connector constructor.
+	 * @param connector The strategy for opening new transports.
+	 * @throws NullPointerException if the given connector is <code>null</code>.
+	 */
+	public HTTPConnectionPool(final Connector connector) {
+		this.connector = requireNonNull(connector, "Connector cannot be null.");
+		reaperFuture = REAPER_EXECUTOR.scheduleWithFixedDelay(new Reaper(this), REAPER_INTERVAL, REAPER_INTERVAL, TimeUnit.MILLISECONDS);
+	}
+
+	/** @return The total number of transports, leased or idle, in the pool. */
+	public int getConnectionCount() {
+		lock.lock();
+		try {
+			return connectionCount;
+		} finally {
+			unlock();
+		}
+	}
+
+	/** @return The number of idle transports in the pool. */
+	public int getIdleConnectionCount() {
+		lock.lock();
+		try {
+			int idleCount = 0;
+			for(final Route route : routeMap.values()) {
+				idleCount += route.idleTransports.size();
+			}
+			return idleCount;
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Leases a transport for the given key. If an idle transport is available it is returned; otherwise a new transport is opened if the pool limits allow.
+	 * If the limits have been reached, this method blocks until a transport is released. The most recently used idle transport is preferred, as it is the least
+	 * likely to have been closed by the server.
+	 * @param key The key identifying the transport to lease.
+	 * @return An open transport that must be returned to the pool using {@link #release(HTTPTransport)}.
+	 * @throws NullPointerException if the given key is <code>null</code>.
+	 * @throws InterruptedIOException if the thread was interrupted while waiting for a transport.
+	 * @throws IOException if there was an error opening a new transport, or if the pool has been closed.
+	 */
+	public HTTPTransport lease(final Key key) throws IOException {
+		requireNonNull(key, "Key cannot be null.");
+		while(true) {
+			final List<HTTPTransport> evictedTransports = new ArrayList<HTTPTransport>(); //idle transports we close to make room
+			HTTPTransport idleTransport = null;
+			lock.lock();
+			try {
+				while(true) {
+					if(closed) {
+						throw new IOException("Connection pool is closed.");
+					}
+					final Route route = getRoute(key);
+					idleTransport = route.idleTransports.pollFirst(); //most recently used transports are at the head of the queue
+					if(idleTransport != null) { //if there is an idle transport
+						if(!idleTransport.isExpired(System.nanoTime(), getMaxIdleTime(), KEEP_ALIVE_TIMEOUT_MARGIN)) {
+							break;
+						}
+						discard(key, route); //the transport has been idle too long; forget about it and try again
+						evictedTransports.add(idleTransport);
+						idleTransport = null;
+						continue;
+					}
+					if(route.connectionCount < getMaxConnectionsPerHost()) { //if this key has room for another transport
+						if(connectionCount >= getMaxConnections()) { //if the pool as a whole is full, try to make room
+							evictIdleTransport(evictedTransports);
+						}
+						if(connectionCount < getMaxConnections()) { //if there is room, reserve a slot and open a transport outside the lock
+							++route.connectionCount;
+							++connectionCount;
+							break;
+						}
+					}
+					try {
+						releaseCondition.await(); //wait for another transport to be released
+					} catch(final InterruptedException interruptedException) {
+						Thread.currentThread().interrupt(); //preserve the interrupted status
+						throw new InterruptedIOException("Interrupted while waiting for a connection to " + key.getHost() + ".");
+					}
+				}
+			} finally {
+				unlock();
+				closeQuietly(evictedTransports);
+			}
+			if(idleTransport == null) { //if we reserved a slot rather than finding an idle transport
+				return open(key);
+			}
+			if(!idleTransport.isStale()) { //check staleness outside the lock, as it may involve I/O
+				return idleTransport;
+			}
+			getLogger().debug("Replacing stale connection to {}.", key.getHost());
+			lock.lock();
+			try {
+				discard(key, getRoute(key));
+			} finally {
+				unlock();
+			}
+			closeQuietly(Collections.singletonList(idleTransport));
+		}
+	}
+
+	/**
+	 * Opens a new transport in a slot that has already been reserved. If the transport cannot be opened, the reservation is given up.
+	 * @param key The key identifying the transport to open.
+	 * @return A new, open transport.
+	 * @throws IOException if there was an error opening the transport.
+	 */
+	private HTTPTransport open(final Key key) throws IOException {
+		boolean opened = false;
+		try {
+			final HTTPTransport transport = connector.connect(key); //open a new transport in the slot we reserved
+			transport.setPoolKey(key);
+			transport.setNewlyOpened(true);
+			opened = true;
+			return transport;
+		} finally {
+			if(!opened) { //if we couldn't open a transport, give up our reservation
+				lock.lock();
+				try {
+					discard(key, getRoute(key));
+				} finally {
+					unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a leased transport to the pool. If the transport is still open it is kept for later reuse; otherwise it is discarded. Transports not leased from
+	 * this pool are closed.
+	 * @param transport The transport to return.
+	 * @throws NullPointerException if the given transport is <code>null</code>.
+	 */
+	public void release(final HTTPTransport transport) {
+		final Key key = transport.getPoolKey();
+		transport.setNewlyOpened(false); //any later lease reuses the transport
+		boolean kept = false;
+		lock.lock();
+		try {
+			final Route route = key != null ? routeMap.get(key) : null;
+			if(route != null) { //if this transport belongs to us
+				if(!closed && transport.isOpen() && transport.isReusable()) {
+					transport.touch(); //the transport starts being idle now
+					route.idleTransports.addFirst(transport); //keep the most recently used transport at the head
+					kept = true;
+					onRelease();
+				} else {
+					discard(key, route);
+				}
+			}
+		} finally {
+			unlock();
+		}
+		if(!kept) {
+			closeQuietly(Collections.singletonList(transport));
+		}
+	}
+
+	/**
+	 * Closes the pool, closing all idle transports. Leased transports are closed when they are returned.
+	 */
+	@Override
+	public void close() {
+		reaperFuture.cancel(false);
+		final List<HTTPTransport> idleTransports = new ArrayList<HTTPTransport>();
+		lock.lock();
+		try {
+			closed = true;
+			for(final Iterator<Map.Entry<Key, Route>> routeEntryIterator = routeMap.entrySet().iterator(); routeEntryIterator.hasNext();) {
+				final Route route = routeEntryIterator.next().getValue();
+				idleTransports.addAll(route.idleTransports);
+				route.connectionCount -= route.idleTransports.size();
+				connectionCount -= route.idleTransports.size();
+				route.idleTransports.clear();
+				if(route.connectionCount == 0) {
+					routeEntryIterator.remove();
+				}
+			}
+			releaseCondition.signalAll(); //let waiting callers discover that the pool is closed
+			final IOException closedException = new IOException("Connection pool is closed.");
+			for(final PendingLease pendingLease : pendingLeases) {
+				handOff(pendingLease.executor, () -> pendingLease.future.completeExceptionally(closedException));
+			}
+			pendingLeases.clear();
+		} finally {
+			unlock();
+		}
+		closeQuietly(idleTransports);
+	}
+
+	/**
+	 * Leases a transport for the given key without blocking. If an idle transport is available or a new transport can be opened within the pool limits, the
+	 * transport is provided as soon as it has been checked or opened; otherwise the lease waits until a transport is released. Checking idle transports and
+	 * opening new transports is performed using the given executor, which is also used to complete the returned future.
+	 * <p>
+	 * The transport must be returned to the pool using {@link #release(HTTPTransport)}. If the returned future is cancelled before it is completed, any transport
+	 * obtained for it is released automatically.
+	 * </p>
+	 * @param key The key identifying the transport to lease.
+	 * @param executor The executor for checking and opening transports and for completing the lease.
+	 * @return A future open transport.
+	 * @throws NullPointerException if the given key and/or executor is <code>null</code>.
+	 */
+	public CompletableFuture<HTTPTransport> leaseAsync(final Key key, final Executor executor) {
+		final PendingLease pendingLease = new PendingLease(requireNonNull(key, "Key cannot be null."), requireNonNull(executor, "Executor cannot be null."));
+		lock.lock();
+		try {
+			if(closed) {
+				pendingLease.future.completeExceptionally(new IOException("Connection pool is closed."));
+			} else if(!tryFulfill(pendingLease)) {
+				pendingLeases.add(pendingLease);
+			}
+		} finally {
+			unlock();
+		}
+		return pendingLease.future;
+	}
+
+	/**
+	 * Attempts to fulfill a pending lease with an idle transport or a new transport within the pool limits. Any checking or opening of transports is handed off
+	 * to the executor of the pending lease once the lock is released. The lock must be held.
+	 * @param pendingLease The lease to fulfill.
+	 * @return <code>true</code> if the lease will be fulfilled, or <code>false</code> if it must wait for a transport to be released.
+	 */
+	private boolean tryFulfill(final PendingLease pendingLease) {
+		final Key key = pendingLease.key;
+		final Executor executor = pendingLease.executor;
+		final List<HTTPTransport> evictedTransports = new ArrayList<HTTPTransport>(); //idle transports we close to make room
+		try {
+			final Route route = getRoute(key);
+			HTTPTransport idleTransport;
+			while((idleTransport = route.idleTransports.pollFirst()) != null) { //most recently used transports are at the head of the queue
+				if(!idleTransport.isExpired(System.nanoTime(), getMaxIdleTime(), KEEP_ALIVE_TIMEOUT_MARGIN)) {
+					final HTTPTransport transport = idleTransport;
+					handOff(executor, () -> fulfillIdle(pendingLease, transport)); //check staleness outside the lock, as it may involve I/O
+					return true;
+				}
+				discard(key, route); //the transport has been idle too long
+				evictedTransports.add(idleTransport);
+			}
+			if(route.connectionCount < getMaxConnectionsPerHost()) { //if this key has room for another transport
+				if(connectionCount >= getMaxConnections()) { //if the pool as a whole is full, try to make room
+					evictIdleTransport(evictedTransports);
+				}
+				if(connectionCount < getMaxConnections()) { //if there is room, reserve a slot and open a transport
+					++route.connectionCount;
+					++connectionCount;
+					handOff(executor, () -> fulfillOpen(pendingLease));
+					return true;
+				}
+			}
+			return false;
+		} finally {
+			if(!evictedTransports.isEmpty()) {
+				handOff(executor, () -> closeQuietly(evictedTransports));
+			}
+		}
+	}
+
+	/**
+	 * Fulfills a pending lease with an idle transport if the transport is not stale. Otherwise the transport is discarded and the lease is attempted again.
+	 * @param pendingLease The lease to fulfill.
+	 * @param transport The idle transport removed from the pool for the lease.
+	 */
+	private void fulfillIdle(final PendingLease pendingLease, final HTTPTransport transport) {
+		if(!transport.isStale()) {
+			complete(pendingLease, transport);
+			return;
+		}
+		getLogger().debug("Replacing stale connection to {}.", pendingLease.key.getHost());
+		lock.lock();
+		try {
+			discard(pendingLease.key, getRoute(pendingLease.key));
+			if(closed) {
+				pendingLease.future.completeExceptionally(new IOException("Connection pool is closed."));
+			} else if(!tryFulfill(pendingLease)) {
+				pendingLeases.addFirst(pendingLease); //the lease was already at the head of the line
+			}
+		} finally {
+			unlock();
+		}
+		closeQuietly(Collections.singletonList(transport));
+	}
+
+	/**
+	 * Fulfills a pending lease by opening a new transport in a slot that has already been reserved.
+	 * @param pendingLease The lease to fulfill.
+	 */
+	private void fulfillOpen(final PendingLease pendingLease) {
+		final HTTPTransport transport;
+		try {
+			transport = open(pendingLease.key);
+		} catch(final IOException | RuntimeException exception) {
+			pendingLease.future.completeExceptionally(exception);
+			return;
+		}
+		complete(pendingLease, transport);
+	}
+
+	/**
+	 * Completes a pending lease with a transport. If the lease was already completed, e.g. by being cancelled, the transport is released back to the pool.
+	 * @param pendingLease The lease to complete.
+	 * @param transport The transport leased.
+	 */
+	private void complete(final PendingLease pendingLease, final HTTPTransport transport) {
+		if(!pendingLease.future.complete(transport)) {
+			release(transport);
+		}
+	}
+
+	/**
+	 * Closes all idle transports that have been idle longer than the {@link #getMaxIdleTime() maximum idle time} or are about to reach the idle timeout
+	 * indicated by the server. This method is called periodically by a background thread, but may be called manually as well.
+	 * @return The number of idle transports closed.
+	 */
+	public int closeExpiredConnections() {
+		final List<HTTPTransport> expiredTransports = new ArrayList<HTTPTransport>();
+		lock.lock();
+		try {
+			final long nowNanos = System.nanoTime();
+			final long maxIdleTime = getMaxIdleTime();
+			for(final Map.Entry<Key, Route> routeEntry : new ArrayList<Map.Entry<Key, Route>>(routeMap.entrySet())) { //discarding may remove routes
+				final Route route = routeEntry.getValue();
+				for(final Iterator<HTTPTransport> transportIterator = route.idleTransports.iterator(); transportIterator.hasNext();) {
+					final HTTPTransport transport = transportIterator.next();
+					if(transport.isExpired(nowNanos, maxIdleTime, KEEP_ALIVE_TIMEOUT_MARGIN) || !transport.isOpen()) {
+						transportIterator.remove();
+						expiredTransports.add(transport);
+						discard(routeEntry.getKey(), route);
+					}
+				}
+			}
+		} finally {
+			unlock();
+		}
+		closeQuietly(expiredTransports);
+		return expiredTransports.size();
+	}
+
+	/**
+	 * Retrieves the route state for the given key, creating it if needed. The lock must be held.
+	 * @param key The pool key.
+	 * @return The route state for the key.
+	 */
+	private Route getRoute(final Key key) {
+		Route route = routeMap.get(key);
+		if(route == null) {
+			route = new Route();
+			routeMap.put(key, route);
+		}
+		return route;
+	}
+
+	/**
+	 * Forgets about a transport slot for the given key, and signals waiting callers. The lock must be held.
+	 * @param key The pool key.
+	 * @param route The route state for the key.
+	 */
+	private void discard(final Key key, final Route route) {
+		--route.connectionCount;
+		--connectionCount;
+		if(route.connectionCount == 0 && route.idleTransports.isEmpty()) { //don't keep state around for hosts we no longer talk to
+			routeMap.remove(key);
+		}
+		onRelease();
+	}
+
+	/**
+	 * Notifies callers waiting for a transport that a transport has been released or discarded, fulfilling pending asynchronous leases in order where possible.
+	 * The lock must be held.
+	 */
+	private void onRelease() {
+		releaseCondition.signalAll();
+		if(!fulfillingPendingLeases && !closed) { //fulfilling a lease may itself discard transports
+			fulfillingPendingLeases = true;
+			try {
+				for(final Iterator<PendingLease> pendingLeaseIterator = pendingLeases.iterator(); pendingLeaseIterator.hasNext();) {
+					final PendingLease pendingLease = pendingLeaseIterator.next();
+					if(pendingLease.future.isDone() || tryFulfill(pendingLease)) { //forget cancelled leases
+						pendingLeaseIterator.remove();
+					}
+				}
+			} finally {
+				fulfillingPendingLeases = false;
+			}
+		}
+	}
+
+	/**
+	 * Removes the least recently used idle transport of any key so that it can be closed. The lock must be held.
+	 * @param evictedTransports The list to which an evicted transport will be added.
+	 */
+	private void evictIdleTransport(final List<HTTPTransport> evictedTransports) {
+		for(final Map.Entry<Key, Route> routeEntry : routeMap.entrySet()) {
+			final Route route = routeEntry.getValue();
+			final HTTPTransport transport = route.idleTransports.pollLast(); //the least recently used transport is at the tail
+			if(transport != null) {
+				evictedTransports.add(transport);
+				discard(routeEntry.getKey(), route);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Schedules a task to be passed to an executor once the lock is released, so that an executor running tasks on the calling thread, or blocking to accept
+	 * them, does so without holding up the pool. The lock must be held.
+	 * @param executor The executor to run the task.
+	 * @param task The task to run.
+	 */
+	private void handOff(final Executor executor, final Runnable task) {
+		handoffs.add(() -> executor.execute(task));
+	}
+
+	/** Releases the lock, and then passes any tasks {@link #handOff(Executor, Runnable) handed off} while it was held to their executors. */
+	private void unlock() {
+		final List<Runnable> tasks;
+		if(handoffs.isEmpty()) {
+			tasks = Collections.emptyList();
+		} else {
+			tasks = new ArrayList<Runnable>(handoffs);
+			handoffs.clear();
+		}
+		lock.unlock();
+		for(final Runnable task : tasks) {
+			task.run();
+		}
+	}
+
+	/** Signals callers waiting for a transport to re-check the pool limits. */
+	private void signalRelease() {
+		lock.lock();
+		try {
+			releaseCondition.signalAll();
+		} finally {
+			unlock();
+		}
+	}
+
+	/**
+	 * Closes the given transports, logging rather than propagating any errors.
+	 * @param transports The transports to close.
+	 */
+	private void closeQuietly(final Collection<HTTPTransport> transports) {
+		for(final HTTPTransport transport : transports) {
+			try {
+				transport.close();
+			} catch(final IOException ioException) {
+				getLogger().debug("Error closing pooled connection {}.", transport, ioException);
+			}
+		}
+	}
+
+	/**
+	 * The pool state for a single key. All access must be guarded by the pool lock.
+	 * @author Garret Wilson
+	 */
+	private static class Route {
+
+		/** The idle transports, most recently used first. */
+		final Deque<HTTPTransport> idleTransports = new ArrayDeque<HTTPTransport>();
+
+		/** The number of transports for this key, leased or idle. */
+		int connectionCount = 0;
+	}
+
+	/**
+	 * An asynchronous lease that has not yet been fulfilled.
+	 * @author Garret Wilson
+	 */
+	private static class PendingLease {
+
+		/** The key identifying the transport to lease. */
+		final Key key;
+
+		/** The executor for checking and opening transports and for completing the lease. */
+		final Executor executor;
+
+		/** The future transport. */
+		final CompletableFuture<HTTPTransport> future = new CompletableFuture<HTTPTransport>();
+
+		/**
+		 * Key and executor constructor.
+		 * @param key The key identifying the transport to lease.
+		 * @param executor The executor for checking and opening transports and for completing the lease.
+		 */
+		public PendingLease(final Key key, final Executor executor) {
+			this.key = key;
+			this.executor = executor;
+		}
+	}
+
+	/**
+	 * The task that periodically closes expired idle transports. The pool is only weakly referenced so that the shared reaper thread does not prevent a pool
+	 * that was never closed from being garbage collected; once the pool is gone, the task cancels itself.
+	 * @author Garret Wilson
+	 */
+	private static class Reaper implements Runnable {
+
+		/** The pool whose transports are reaped. */
+		private final WeakReference<HTTPConnectionPool> poolReference;
+
+		/**
+		 * Pool constructor.
+		 * @param pool The pool whose transports are reaped.
+		 */
+		public Reaper(final HTTPConnectionPool pool) {
+			poolReference = new WeakReference<HTTPConnectionPool>(pool);
+		}
+
+		@Override
+		public void run() {
+			final HTTPConnectionPool pool = poolReference.get();
+			if(pool == null) {
+				throw new CancellationException("Connection pool no longer exists."); //throwing an exception suppresses subsequent executions
+			}
+			try {
+				final int closedCount = pool.closeExpiredConnections();
+				if(closedCount > 0) {
+					pool.getLogger().trace("Closed {} expired idle connection(s).", closedCount);
+				}
+			} catch(final RuntimeException runtimeException) { //don't let an unexpected error stop the reaper
+				pool.getLogger().warn("Error closing expired idle connections.", runtimeException);
+			}
+		}
+	}
+
+	/**
+	 * The identity of a pooled transport: the host, whether the transport is secure, and the connection-specific credentials, if any.
+	 * @author Garret Wilson
+	 */
+	public static final class Key {
+
+		/** The host to which the transport connects. */
+		private final Host host;
+
+		/** @return The host to which the transport connects. */
+		public Host getHost() {
+			return host;
+		}
+
+		/** Whether the transport is secure. */
+		private final boolean secure;
+
+		/** @return Whether the transport is secure. */
+		public boolean isSecure() {
+			return secure;
+		}
+
+		/** The username of the connection-specific credentials, or <code>null</code> if there are no connection-specific credentials. */
+		private final String username;
+
+		/** The password of the connection-specific credentials, or <code>null</code> if there are no connection-specific credentials. */
+		private final char[] password;
+
+		/**
+		 * Constructor.
+		 * @param host The host to which the transport connects.
+		 * @param secure Whether the transport is secure.
+		 * @param passwordAuthentication The connection-specific password authentication, or <code>null</code> if there is no connection-specific password
+		 *          authentication.
+		 * @throws NullPointerException if the given host is <code>null</code>.
+		 */
+		public Key(final Host host, final boolean secure, final PasswordAuthentication passwordAuthentication) {
+			this.host = requireNonNull(host, "Host cannot be null.");
+			this.secure = secure;
+			this.username = passwordAuthentication != null ? passwordAuthentication.getUserName() : null;
+			this.password = passwordAuthentication != null ? passwordAuthentication.getPassword() : null;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(host, secure, username); //leave out the password; keys differing only by password are rare
+		}
+
+		@Override
+		public boolean equals(final Object object) {
+			if(this == object) {
+				return true;
+			}
+			if(!(object instanceof Key)) {
+				return false;
+			}
+			final Key key = (Key)object;
+			return host.equals(key.host) && secure == key.secure && Objects.equals(username, key.username) && Arrays.equals(password, key.password);
+		}
+
+		@Override
+		public String toString() {
+			return host + (secure ? " (secure)" : "") + (username != null ? " as " + username : "");
+		}
+	}
+
+}
@@ -0,0 +1,577 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.globalmentor.io.ParseIOException;
+import com.globalmentor.model.NameValuePair;
+import com.globalmentor.text.SyntaxException;
+
+import io.clogr.Clogged;
+
+import static com.globalmentor.java.Arrays.*;
+import static com.globalmentor.net.HTTP.*;
+import static com.globalmentor.net.http.HTTPParser.*;
+import static java.nio.channels.SelectionKey.*;
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * A single thread driving many cleartext HTTP/1.1 request/response exchanges over {@link ChannelHTTPTransport}s using non-blocking I/O and a
+ * {@link Selector}.
+ * <p>
+ * For each exchange the channel of the transport is placed in non-blocking mode and registered with the selector; the request is written as the channel
+ * becomes writable, and the response is parsed incrementally as data arrives. The response head is parsed using {@link HTTPParser}, and the body, whether
+ * fixed-length, chunked, or delimited by the server closing the connection, is read into memory. Once the exchange is finished the channel is returned to
+ * blocking mode, so that the transport may be reused by blocking connections. Data is read through a single direct buffer shared by all exchanges, as all
+ * exchanges are serviced by the same thread.
+ * </p>
+ * <p>
+ * Exchange futures are completed using the given executor, never the event loop thread, so that dependent actions cannot stall the event loop.
+ * </p>
+ * <p>
+ * An exchange fails with a {@link SocketTimeoutException} if its channel makes no progress for longer than the {@link HTTPTransport#getReadTimeout() read
+ * timeout} of the transport. Timeouts are checked periodically, so an exchange may take up to {@value #TIMEOUT_CHECK_INTERVAL} milliseconds longer to time out.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPClient#sendAsync(HTTPRequest, byte[])
+ */
+class HTTPEventLoop implements Closeable, Clogged {
+
+	/** The maximum number of bytes to accept in a response head or trailer. */
+	private static final int MAX_HEAD_LENGTH = 64 * 1024;
+
+	/** The number of milliseconds between checks for exchanges that have timed out. */
+	private static final long TIMEOUT_CHECK_INTERVAL = 1000;
+
+	/** The selector for determining which channels are ready. */
+	private final Selector selector;
+
+	/** The buffer for reading from channels, shared by all exchanges. */
+	private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(ChannelHTTPTransport.BUFFER_SIZE);
+
+	/** The tasks to run on the event loop thread. */
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+	/** The executor for completing exchange futures. */
+	private final Executor executor;
+
+	/** The event loop thread. */
+	private final Thread thread;
+
+	/** Whether the event loop has been closed. */
+	private volatile boolean closed = false;
+
+	/**
+	 * Name and executor constructor. The event loop thread is started immediately.
+	 * @param name The name of the event loop thread.
+	 * @param executor The executor for completing exchange futures.
+	 * @throws NullPointerException if the given name and/or executor is <code>null</code>.
+	 * @throws IOException if the selector could not be opened.
+	 */
+	public HTTPEventLoop(final String name, final Executor executor) throws IOException {
+		this.executor = requireNonNull(executor, "Executor cannot be null.");
+		selector = Selector.open();
+		thread = new Thread(this::run, requireNonNull(name, "Name cannot be null."));
+		thread.setDaemon(true); //don't keep the JVM running just for outstanding exchanges
+		thread.start();
+	}
+
+	/**
+	 * Runs a task on the event loop thread after the selector next wakes.
+	 * @param task The task to run.
+	 * @throws RejectedExecutionException if the event loop has been closed.
+	 */
+	protected void execute(final Runnable task) {
+		if(closed) {
+			throw new RejectedExecutionException("Event loop is closed.");
+		}
+		tasks.add(task);
+		selector.wakeup();
+	}
+
+	/**
+	 * Performs a request/response exchange over the given transport. The request message must already be formatted. On success the transport is left at a
+	 * message boundary, ready to be returned to the pool; if the exchange fails, or if the response leaves the transport in an unknown state, the transport is
+	 * closed.
+	 * @param transport The transport, which must not be in use by anyone else until the exchange is complete.
+	 * @param request The request being sent.
+	 * @param head The formatted request line and headers.
+	 * @param body The request body.
+	 * @return The future response, the body of which will have been read.
+	 * @throws NullPointerException if one of the given arguments is <code>null</code>.
+	 */
+	public CompletableFuture<BufferedHTTPResponse> exchange(final ChannelHTTPTransport transport, final HTTPRequest request, final byte[] head,
+			final byte[] body) {
+		final Exchange exchange = new Exchange(transport, request, head, body);
+		try {
+			execute(exchange::start);
+		} catch(final RejectedExecutionException rejectedExecutionException) {
+			exchange.fail(new IOException(rejectedExecutionException.getMessage(), rejectedExecutionException));
+		}
+		return exchange.future;
+	}
+
+	/** The event loop, which runs until the event loop is closed. */
+	private void run() {
+		long lastTimeoutCheckNanos = System.nanoTime();
+		try {
+			while(!closed) {
+				selector.select(TIMEOUT_CHECK_INTERVAL);
+				Runnable task;
+				while((task = tasks.poll()) != null) { //tasks run after selecting so that cancelled keys have been deregistered
+					runQuietly(task);
+				}
+				final Iterator<SelectionKey> selectedKeyIterator = selector.selectedKeys().iterator();
+				while(selectedKeyIterator.hasNext()) {
+					final SelectionKey selectionKey = selectedKeyIterator.next();
+					selectedKeyIterator.remove();
+					final Exchange exchange = (Exchange)selectionKey.attachment();
+					if(selectionKey.isValid()) {
+						exchange.service(selectionKey);
+					}
+				}
+				final long nowNanos = System.nanoTime();
+				if(nowNanos - lastTimeoutCheckNanos >= MILLISECONDS.toNanos(TIMEOUT_CHECK_INTERVAL)) {
+					for(final SelectionKey selectionKey : selector.keys()) {
+						if(selectionKey.isValid()) { //cancelled keys belong to exchanges that are already finished
+							((Exchange)selectionKey.attachment()).checkTimeout(nowNanos);
+						}
+					}
+					lastTimeoutCheckNanos = nowNanos;
+				}
+			}
+		} catch(final IOException | ClosedSelectorException exception) {
+			if(!closed) {
+				getLogger().error("HTTP event loop failed.", exception);
+			}
+		} finally {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Runs a task, logging rather than propagating any unexpected error, so that the event loop keeps running.
+	 * @param task The task to run.
+	 */
+	private void runQuietly(final Runnable task) {
+		try {
+			task.run();
+		} catch(final RuntimeException runtimeException) {
+			getLogger().error("Unexpected error in HTTP event loop task.", runtimeException);
+		}
+	}
+
+	/** Fails all outstanding exchanges and closes the selector. Called on the event loop thread when the loop ends. */
+	private void shutdown() {
+		closed = true;
+		Runnable task;
+		while((task = tasks.poll()) != null) { //let finished exchanges complete
+			runQuietly(task);
+		}
+		final IOException closedException = new IOException("HTTP event loop closed.");
+		try {
+			for(final SelectionKey selectionKey : selector.keys()) {
+				if(selectionKey.isValid()) { //cancelled keys belong to exchanges that are already finished
+					((Exchange)selectionKey.attachment()).fail(closedException);
+				}
+			}
+		} catch(final ClosedSelectorException closedSelectorException) { //nothing more to clean up
+		}
+		try {
+			selector.close();
+		} catch(final IOException ioException) {
+			getLogger().debug("Error closing selector.", ioException);
+		}
+	}
+
+	/** Closes the event loop. Outstanding exchanges fail and their transports are closed. */
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+	}
+
+	/** The state of parsing a response. */
+	private enum State {
+		/** Reading the status line and headers. */
+		HEAD,
+		/** Reading a fixed-length body. */
+		BODY,
+		/** Reading the size line of a chunk. */
+		CHUNK_SIZE,
+		/** Reading the data of a chunk. */
+		CHUNK_DATA,
+		/** Reading a body delimited by the server closing the connection. */
+		UNTIL_CLOSE,
+		/** Reading the line ending after the data of a chunk. */
+		CHUNK_END,
+		/** Reading the trailer headers after the last chunk. */
+		TRAILER,
+		/** The exchange is finished. */
+		DONE
+	}
+
+	/**
+	 * A single request/response exchange over a transport. All methods other than the constructor are called on the event loop thread.
+	 * @author Garret Wilson
+	 */
+	private class Exchange {
+
+		/** The transport over which the exchange takes place. */
+		private final ChannelHTTPTransport transport;
+
+		/** The channel of the transport. */
+		private final SocketChannel channel;
+
+		/** The request being sent. */
+		private final HTTPRequest request;
+
+		/** The request head and body remaining to be written. */
+		private final ByteBuffer[] output;
+
+		/** The future response. */
+		final CompletableFuture<BufferedHTTPResponse> future = new CompletableFuture<BufferedHTTPResponse>();
+
+		/** The key of the channel registration with the selector, or <code>null</code> if the channel has not been registered. */
+		private SelectionKey selectionKey = null;
+
+		/** The current state of parsing. */
+		private State state = State.HEAD;
+
+		/** The accumulated bytes of the current response head, trailer, or chunk size line. */
+		private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+
+		/** The length of the line being read, not counting line ending characters. */
+		private int lineLength = 0;
+
+		/** The length of the last line completely read, not counting line ending characters. */
+		private int lastLineLength = 0;
+
+		/** The response, or <code>null</code> if the response head has not been parsed. */
+		private BufferedHTTPResponse response = null;
+
+		/** The accumulated response body. */
+		private final ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream();
+
+		/** The number of body or chunk bytes remaining to be read. */
+		private long remaining = 0;
+
+		/** The number of nanoseconds the channel may make no progress before the exchange times out, or <code>0</code> if the exchange never times out. */
+		private final long timeoutNanos;
+
+		/** The {@link System#nanoTime()} at which the channel last made progress. */
+		private long lastProgressNanos = System.nanoTime();
+
+		/**
+		 * Constructor.
+		 * @param transport The transport over which the exchange takes place.
+		 * @param request The request being sent.
+		 * @param head The formatted request line and headers.
+		 * @param body The request body.
+		 */
+		public Exchange(final ChannelHTTPTransport transport, final HTTPRequest request, final byte[] head, final byte[] body) {
+			this.transport = requireNonNull(transport, "Transport cannot be null.");
+			this.channel = transport.getChannel();
+			this.request = requireNonNull(request, "Request cannot be null.");
+			this.output = new ByteBuffer[] {ByteBuffer.wrap(head), ByteBuffer.wrap(body)};
+			this.timeoutNanos = MILLISECONDS.toNanos(transport.getReadTimeout());
+		}
+
+		/**
+		 * Fails the exchange if the channel has made no progress for longer than the timeout.
+		 * @param nowNanos The current {@link System#nanoTime()}.
+		 */
+		public void checkTimeout(final long nowNanos) {
+			if(timeoutNanos > 0 && nowNanos - lastProgressNanos > timeoutNanos) {
+				fail(new SocketTimeoutException("No response from " + transport.getHost() + " after " + NANOSECONDS.toMillis(timeoutNanos) + " ms."));
+			}
+		}
+
+		/** Registers the channel with the selector for writing the request. */
+		public void start() {
+			try {
+				if(closed) {
+					throw new IOException("HTTP event loop closed.");
+				}
+				channel.configureBlocking(false);
+				selectionKey = channel.register(selector, OP_WRITE, this);
+			} catch(final IOException ioException) {
+				fail(ioException);
+			} catch(final ClosedSelectorException closedSelectorException) {
+				fail(new IOException("HTTP event loop closed.", closedSelectorException));
+			}
+		}
+
+		/**
+		 * Writes or reads as the channel allows.
+		 * @param selectionKey The selected key of the channel.
+		 */
+		public void service(final SelectionKey selectionKey) {
+			try {
+				if(selectionKey.isWritable()) {
+					write();
+				} else if(selectionKey.isReadable()) {
+					read();
+				}
+			} catch(final IOException ioException) {
+				fail(ioException);
+			} catch(final SyntaxException syntaxException) {
+				fail(new ParseIOException(syntaxException));
+			} catch(final RuntimeException runtimeException) {
+				fail(new IOException(runtimeException));
+			}
+		}
+
+		/**
+		 * Writes as much of the request as the channel allows, switching to reading once the request has been written.
+		 * @throws IOException if there is an error writing to the channel.
+		 */
+		private void write() throws IOException {
+			if(channel.write(output) > 0) {
+				lastProgressNanos = System.nanoTime();
+			}
+			if(!output[output.length - 1].hasRemaining()) { //if everything has been written
+				selectionKey.interestOps(OP_READ);
+			}
+		}
+
+		/**
+		 * Reads whatever data is available and processes it.
+		 * @throws IOException if there is an error reading from the channel or parsing the response.
+		 * @throws SyntaxException if the response is not syntactically correct.
+		 */
+		private void read() throws IOException, SyntaxException {
+			readBuffer.clear();
+			final int count = channel.read(readBuffer);
+			if(count < 0) {
+				if(state == State.UNTIL_CLOSE) { //the server closing the connection marks the end of the body
+					state = State.DONE;
+					finish(true);
+					return;
+				}
+				throw new EOFException("Connection closed before the response was complete.");
+			}
+			lastProgressNanos = System.nanoTime();
+			readBuffer.flip();
+			while(readBuffer.hasRemaining() && state != State.DONE) {
+				process(readBuffer);
+			}
+			if(state == State.DONE) {
+				finish(readBuffer.hasRemaining()); //anything left over means we don't know where the next message starts
+			}
+		}
+
+		/**
+		 * Processes data read from the channel according to the current state.
+		 * @param buffer The buffer containing unprocessed data.
+		 * @throws IOException if there is an error parsing the response.
+		 * @throws SyntaxException if the response is not syntactically correct.
+		 */
+		private void process(final ByteBuffer buffer) throws IOException, SyntaxException {
+			switch(state) {
+				case HEAD:
+					if(readLine(buffer) && lastLineLength == 0) { //if we reached a blank line
+						if(lineBuffer.size() <= 2) { //ignore blank lines before the status line
+							lineBuffer.reset();
+						} else {
+							parseHead();
+						}
+					}
+					break;
+				case BODY:
+				case CHUNK_DATA:
+					{
+						final int count = (int)Math.min(remaining, buffer.remaining());
+						final byte[] bytes = new byte[count];
+						buffer.get(bytes);
+						bodyBuffer.write(bytes);
+						remaining -= count;
+						if(remaining == 0) {
+							state = state == State.BODY ? State.DONE : State.CHUNK_END;
+						}
+					}
+					break;
+				case UNTIL_CLOSE:
+					{
+						final byte[] bytes = new byte[buffer.remaining()];
+						buffer.get(bytes);
+						bodyBuffer.write(bytes);
+					}
+					break;
+				case CHUNK_SIZE:
+					if(readLine(buffer)) {
+						final String sizeLine = new String(lineBuffer.toByteArray(), US_ASCII).trim();
+						lineBuffer.reset();
+						final int extensionIndex = sizeLine.indexOf(';'); //ignore chunk extensions
+						try {
+							remaining = Long.parseLong((extensionIndex >= 0 ? sizeLine.substring(0, extensionIndex) : sizeLine).trim(), 16);
+						} catch(final NumberFormatException numberFormatException) {
+							throw new ParseIOException("Invalid chunk size: " + sizeLine);
+						}
+						if(remaining < 0) {
+							throw new ParseIOException("Invalid chunk size: " + sizeLine);
+						}
+						state = remaining > 0 ? State.CHUNK_DATA : State.TRAILER;
+					}
+					break;
+				case CHUNK_END:
+					if(readLine(buffer)) {
+						if(lastLineLength != 0) {
+							throw new ParseIOException("Missing line ending after chunk data.");
+						}
+						lineBuffer.reset();
+						state = State.CHUNK_SIZE;
+					}
+					break;
+				case TRAILER:
+					if(readLine(buffer) && lastLineLength == 0) { //if we reached a blank line
+						for(final NameValuePair<String, String> header : parseHeaders(new ByteArrayInputStream(lineBuffer.toByteArray()))) { //add any trailers as headers
+							response.addHeader(header.getName(), header.getValue());
+						}
+						lineBuffer.reset();
+						state = State.DONE;
+					}
+					break;
+				default:
+					throw new AssertionError(state);
+			}
+		}
+
+		/**
+		 * Reads bytes into the line buffer up to and including the end of a line.
+		 * @param buffer The buffer containing unprocessed data.
+		 * @return <code>true</code> if the end of a line was reached, in which case the length of the line (not including the line ending) is available in
+		 *         {@link #lastLineLength}.
+		 * @throws ParseIOException if the head is too long.
+		 */
+		private boolean readLine(final ByteBuffer buffer) throws ParseIOException {
+			while(buffer.hasRemaining()) {
+				final byte b = buffer.get();
+				lineBuffer.write(b);
+				if(b == LF) {
+					lastLineLength = lineLength;
+					lineLength = 0;
+					return true;
+				}
+				if(lineBuffer.size() > MAX_HEAD_LENGTH) {
+					throw new ParseIOException("Response head too long.");
+				}
+				if(b != CR) {
+					lineLength++;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Parses the accumulated response head and determines how the body is delimited.
+		 * @throws IOException if there is an error parsing the response head.
+		 * @throws SyntaxException if the response is not syntactically correct.
+		 */
+		private void parseHead() throws IOException, SyntaxException {
+			final InputStream headInputStream = new ByteArrayInputStream(lineBuffer.toByteArray());
+			lineBuffer.reset();
+			final HTTPStatus status = parseStatusLine(headInputStream);
+			response = new BufferedHTTPResponse(status.getVersion(), status.getStatusCode(), status.getReasonPhrase());
+			for(final NameValuePair<String, String> header : parseHeaders(headInputStream)) {
+				response.addHeader(header.getName(), header.getValue());
+			}
+			final int statusCode = response.getStatusCode();
+			if(statusCode >= 100 && statusCode < 200 && statusCode != SC_SWITCHING_PROTOCOLS) { //ignore interim responses such as 100 Continue
+				response = null;
+				return;
+			}
+			if(HEAD_METHOD.equals(request.getMethod()) || statusCode == SC_NO_CONTENT || statusCode == SC_NOT_MODIFIED) { //responses that never have bodies
+				state = State.DONE;
+				return;
+			}
+			final String[] transferEncoding = response.getTransferEncoding(); //transfer encoding takes precedence over any Content-Length header (RFC 2616 4.4.2)
+			if(transferEncoding != null && transferEncoding.length > 0 && !contains(transferEncoding, IDENTITY_TRANSFER_CODING)) {
+				state = State.CHUNK_SIZE;
+			} else {
+				final long contentLength = response.getContentLength();
+				if(contentLength >= 0) {
+					remaining = contentLength;
+					state = remaining > 0 ? State.BODY : State.DONE;
+				} else { //without a content length, the body extends until the server closes the connection (RFC 7230 3.3.3)
+					state = State.UNTIL_CLOSE;
+				}
+			}
+		}
+
+		/**
+		 * Finishes a successful exchange. The channel is deregistered, and once deregistration is complete the channel is returned to blocking mode and the future
+		 * is completed.
+		 * @param unusable <code>true</code> if the transport is not at a message boundary and must be closed.
+		 */
+		private void finish(final boolean unusable) {
+			selectionKey.cancel();
+			final BufferedHTTPResponse response = this.response;
+			response.setBody(bodyBuffer.toByteArray());
+			final Runnable completion = () -> executor.execute(() -> future.complete(response));
+			if(unusable) {
+				closeQuietly();
+				completion.run();
+				return;
+			}
+			try {
+				execute(() -> { //the channel can only be made blocking again after the selector has deregistered it
+					try {
+						channel.configureBlocking(true);
+					} catch(final IOException ioException) {
+						closeQuietly();
+					}
+					completion.run();
+				});
+			} catch(final RejectedExecutionException rejectedExecutionException) { //if the event loop is closing, the transport can't be reused
+				closeQuietly();
+				completion.run();
+			}
+		}
+
+		/**
+		 * Fails the exchange, closing the transport.
+		 * @param ioException The cause of the failure.
+		 */
+		public void fail(final IOException ioException) {
+			state = State.DONE;
+			if(selectionKey != null) {
+				selectionKey.cancel();
+			}
+			closeQuietly();
+			executor.execute(() -> future.completeExceptionally(ioException));
+		}
+
+		/** Closes the transport, logging rather than propagating any error. */
+		private void closeQuietly() {
+			try {
+				transport.close();
+			} catch(final IOException ioException) {
+				getLogger().debug("Error closing connection to {}.", transport.getHost(), ioException);
+			}
+		}
+	}
+
+}
@@ -123,7 +123,7 @@ public static StringBuilder formatAuthorizationHeader(final StringBuilder string
 			parameterList.add(new NameValuePair<String, String>(NONCE_PARAMETER, digestCredentials.getNonce())); //nonce
 			parameterList.add(new NameValuePair<String, String>(DIGEST_URI_PARAMETER, digestCredentials.getURI().toString())); //digest-uri	TODO remove toString() when changed from URI to String
 			parameterList.add(new NameValuePair<String, String>(RESPONSE_PARAMETER, digestCredentials.getResponse())); //response
-			parameterList.add(new NameValuePair<String, String>(ALGORITHM_PARAMETER, digestCredentials.getMessageDigest().getAlgorithm())); //algorithm
+			parameterList.add(new NameValuePair<String, String>(ALGORITHM_PARAMETER, digestCredentials.getAlgorithm())); //algorithm
 			final String cnonce = digestCredentials.getCNonce(); //get the cnonce value
 			if(cnonce != null) { //if we have a cnonce value
 				parameterList.add(new NameValuePair<String, String>(CNONCE_PARAMETER, cnonce)); //cnonce
@@ -175,7 +175,7 @@ public static StringBuilder formatWWWAuthenticateHeader(final StringBuilder stri
 			if(stale) { //if an earlier request had a stale nonce
 				parameterList.add(new NameValuePair<String, String>(STALE_PARAMETER, Boolean.toString(stale))); //stale				
 			}
-			parameterList.add(new NameValuePair<String, String>(ALGORITHM_PARAMETER, digestChallenge.getMessageDigest().getAlgorithm())); //algorithm
+			parameterList.add(new NameValuePair<String, String>(ALGORITHM_PARAMETER, digestChallenge.getAlgorithm())); //algorithm
 			final QOP[] qopOptions = digestChallenge.getQOPOptions(); //get the quality of protection options
 			if(qopOptions != null) { //if quality of protection was specified
 				parameterList.add(new NameValuePair<String, String>(QOP_PARAMETER, formatList(new StringBuilder(), (Object[])qopOptions).toString())); //qop
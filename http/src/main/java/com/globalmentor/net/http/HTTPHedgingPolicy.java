@@ -0,0 +1,258 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.globalmentor.net.http;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.*;
+
+import com.globalmentor.net.Host;
+
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * Determines when an idempotent read from a host is hedged: sent again on a second connection because the first has been waiting unusually long. Whichever
+ * attempt completes its read first is used, and the other is cancelled. A read that returns the response body as a stream, such as
+ * {@link HTTPResource#getInputStream()}, completes once the response head arrives, so the body is then read only from the winning connection; a read that
+ * reads the entire body, such as {@link HTTPResource#get()}, completes once the whole response has arrived.
+ * <p>
+ * A request is hedged once it has waited longer than a {@link #getPercentile() percentile} of the latencies recently observed from the host, but never
+ * sooner than the {@link #getMinDelay() minimum delay}. Requests to a host are not hedged until enough latencies have been observed to estimate the
+ * percentile, which is estimated again only after several more latencies have been observed rather than for every request. Hedges are limited by a token
+ * bucket like the {@link HTTPRetryBudget retry budget}, so that they add no more than the {@link #getHedgeRatio() hedge ratio} of extra requests.
+ * </p>
+ * <p>
+ * Unlike an {@link HTTPRetryPolicy}, a hedging policy keeps the latencies and budget of the client using it, and should not be shared between clients.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPClient#setHedgingPolicy(HTTPHedgingPolicy)
+ */
+public class HTTPHedgingPolicy {
+
+	/** The default percentile of recent latencies after which a request is hedged. */
+	public static final double DEFAULT_PERCENTILE = 0.95;
+
+	/** The default minimum number of milliseconds to wait before hedging a request. */
+	public static final long DEFAULT_MIN_DELAY = 10;
+
+	/** The default number of hedges allowed per request. */
+	public static final double DEFAULT_HEDGE_RATIO = 0.05;
+
+	/** The default number of hedges that may be made in a burst. */
+	public static final int DEFAULT_MAX_HEDGES = 10;
+
+	/** The number of recent latencies kept for each host. */
+	private static final int SAMPLE_COUNT = 128;
+
+	/** The number of latencies that must be observed from a host before requests to it are hedged. */
+	private static final int MIN_SAMPLE_COUNT = 20;
+
+	/** The number of latencies recorded from a host between estimates of the percentile, which is otherwise reused. */
+	private static final int PERCENTILE_INTERVAL = 16;
+
+	/** The percentile of recent latencies after which a request is hedged. */
+	private final double percentile;
+
+	/** @return The percentile of recent latencies after which a request is hedged, such as <code>0.95</code> for the 95th percentile. */
+	public double getPercentile() {
+		return percentile;
+	}
+
+	/** The minimum number of milliseconds to wait before hedging a request. */
+	private final long minDelay;
+
+	/** @return The minimum number of milliseconds to wait before hedging a request. */
+	public long getMinDelay() {
+		return minDelay;
+	}
+
+	/** The number of hedges allowed per request. */
+	private final double hedgeRatio;
+
+	/** @return The number of hedges allowed per request, such as <code>0.05</code> for at most five percent extra requests. */
+	public double getHedgeRatio() {
+		return hedgeRatio;
+	}
+
+	/** The budget of hedges, which are withdrawn as retries. */
+	private final HTTPRetryBudget budget;
+
+	/** The recent latencies of each host. */
+	private final ConcurrentMap<Host, Latencies> hostLatencies = new ConcurrentHashMap<Host, Latencies>();
+
+	/** The number of requests hedged. */
+	private final LongAdder hedgedCount = new LongAdder();
+
+	/** @return The number of requests for which a hedge was sent. */
+	public long getHedgedCount() {
+		return hedgedCount.sum();
+	}
+
+	/** The number of hedged requests won by the hedge. */
+	private final LongAdder hedgeWonCount = new LongAdder();
+
+	/** @return The number of hedged requests for which the hedge received a response before the original request. */
+	public long getHedgeWonCount() {
+		return hedgeWonCount.sum();
+	}
+
+	/** Default constructor with the default percentile, minimum delay, hedge ratio and maximum hedges. */
+	public HTTPHedgingPolicy() {
+		this(DEFAULT_PERCENTILE, DEFAULT_MIN_DELAY, DEFAULT_HEDGE_RATIO, DEFAULT_MAX_HEDGES);
+	}
+
+	/**
+	 * Full constructor.
+	 * @param percentile The percentile of recent latencies after which a request is hedged, such as <code>0.95</code> for the 95th percentile.
+	 * @param minDelay The minimum number of milliseconds to wait before hedging a request.
+	 * @param hedgeRatio The number of hedges allowed per request, such as <code>0.05</code> for at most five percent extra requests.
+	 * @param maxHedges The number of hedges that may be made in a burst, which is also the number of hedges available initially.
+	 * @throws IllegalArgumentException if the percentile is not greater than zero and less than one, or if any other value is negative.
+	 */
+	public HTTPHedgingPolicy(final double percentile, final long minDelay, final double hedgeRatio, final int maxHedges) {
+		if(!(percentile > 0 && percentile < 1)) { //catch NaN as well
+			throw new IllegalArgumentException("Invalid percentile: " + percentile);
+		}
+		if(minDelay < 0) {
+			throw new IllegalArgumentException("Minimum delay cannot be negative: " + minDelay);
+		}
+		this.percentile = percentile;
+		this.minDelay = minDelay;
+		this.hedgeRatio = hedgeRatio;
+		this.budget = new HTTPRetryBudget(hedgeRatio, maxHedges); //checks the ratio and maximum
+	}
+
+	/**
+	 * Determines how long a request to a host should wait before being hedged.
+	 * @param host The host to which the request is sent.
+	 * @return The number of nanoseconds to wait before hedging, or <code>-1</code> if too few latencies have been observed from the host to hedge.
+	 */
+	public long getDelayNanos(final Host host) {
+		final Latencies latencies = hostLatencies.get(host);
+		if(latencies == null) {
+			return -1;
+		}
+		final long latencyNanos = latencies.getPercentile(getPercentile());
+		return latencyNanos >= 0 ? Math.max(latencyNanos, MILLISECONDS.toNanos(getMinDelay())) : -1;
+	}
+
+	/**
+	 * Records the latency of a request to a host.
+	 * @param host The host to which the request was sent.
+	 * @param latencyNanos The number of nanoseconds until a response was received.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	public void recordLatency(final Host host, final long latencyNanos) {
+		hostLatencies.computeIfAbsent(requireNonNull(host, "Host cannot be null."), __ -> new Latencies()).add(latencyNanos);
+	}
+
+	/** Records that a request is being made that may be hedged, increasing the hedges available. */
+	public void recordRequest() {
+		budget.recordRequest();
+	}
+
+	/**
+	 * Attempts to withdraw a hedge from the budget.
+	 * @return <code>true</code> if a hedge may be sent.
+	 */
+	public boolean tryAcquireHedge() {
+		if(!budget.tryAcquireRetry()) {
+			return false;
+		}
+		hedgedCount.increment();
+		return true;
+	}
+
+	/** Records that a hedge received a response before the request it was hedging. */
+	public void recordHedgeWon() {
+		hedgeWonCount.increment();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(percentile=" + percentile + ", minDelay=" + minDelay + "ms, hedgeRatio=" + hedgeRatio + ", hedged="
+				+ getHedgedCount() + ", hedgeWon=" + getHedgeWonCount() + ")";
+	}
+
+	/**
+	 * The recent latencies of a single host, kept in a ring buffer.
+	 * @author Garret Wilson
+	 */
+	private static class Latencies {
+
+		/** The lock guarding the latencies. */
+		private final Lock lock = new ReentrantLock();
+
+		/** The latencies in nanoseconds; guarded by {@link #lock}. */
+		private final long[] samples = new long[SAMPLE_COUNT];
+
+		/** The number of latencies recorded, which may exceed the number kept; guarded by {@link #lock}. */
+		private long count = 0;
+
+		/** The number of latencies recorded when the percentile was last estimated; guarded by {@link #lock}. */
+		private long percentileCount = 0;
+
+		/** The last estimate of the percentile, or <code>-1</code> if the percentile has not been estimated. */
+		private volatile long percentileNanos = -1;
+
+		/**
+		 * Adds a latency, replacing the oldest if the buffer is full.
+		 * @param latencyNanos The latency in nanoseconds.
+		 */
+		void add(final long latencyNanos) {
+			lock.lock();
+			try {
+				samples[(int)(count++ % SAMPLE_COUNT)] = latencyNanos;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Estimates a percentile of the recent latencies. The samples are only copied and sorted once {@value HTTPHedgingPolicy#PERCENTILE_INTERVAL} latencies
+		 * have been recorded since the last estimate; until then the last estimate is returned. The percentile must be the same for every call.
+		 * @param percentile The percentile, greater than zero and less than one.
+		 * @return The latency at the given percentile, or <code>-1</code> if too few latencies have been recorded.
+		 */
+		long getPercentile(final double percentile) {
+			final long[] sortedSamples;
+			lock.lock();
+			try {
+				if(count < MIN_SAMPLE_COUNT) {
+					return -1;
+				}
+				final long lastPercentileNanos = percentileNanos;
+				if(lastPercentileNanos >= 0 && count - percentileCount < PERCENTILE_INTERVAL) { //the last estimate is recent enough
+					return lastPercentileNanos;
+				}
+				percentileCount = count; //other threads use the last estimate while we make a new one
+				sortedSamples = Arrays.copyOf(samples, (int)Math.min(count, SAMPLE_COUNT));
+			} finally {
+				lock.unlock();
+			}
+			Arrays.sort(sortedSamples);
+			final long newPercentileNanos = sortedSamples[Math.min((int)Math.ceil(percentile * sortedSamples.length) - 1, sortedSamples.length - 1)];
+			percentileNanos = newPercentileNanos;
+			return newPercentileNanos;
+		}
+	}
+
+}
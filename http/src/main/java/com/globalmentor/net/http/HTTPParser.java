@@ -19,6 +19,8 @@
 import java.io.*;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.Base64;
+import static java.nio.charset.StandardCharsets.*;
 import static java.util.Collections.*;
 import java.util.regex.Matcher;
 
@@ -28,8 +30,6 @@
 import com.globalmentor.model.NameValuePair;
 import com.globalmentor.net.HTTP;
 
-import static com.globalmentor.security.MessageDigests.*;
-
 import com.globalmentor.text.SyntaxException;
 import com.globalmentor.util.*;
 
@@ -39,6 +39,7 @@
 import static com.globalmentor.java.CharSequences.*;
 import static com.globalmentor.java.Characters.*;
 import static com.globalmentor.java.StringBuilders.*;
+import static com.globalmentor.net.http.BasicAuthentication.*;
 import static com.globalmentor.net.http.DigestAuthentication.*;
 import static com.globalmentor.net.HTTP.*;
 
@@ -472,6 +473,19 @@ public static AuthenticateCredentials parseAuthorizationHeader(final CharSequenc
 				final String scheme = header.subSequence(0, schemeDelimiterIndex).toString(); //get the scheme
 				final String parameters = header.subSequence(schemeDelimiterIndex + 1, header.length()).toString(); //get the rest of the credentials
 				switch(AuthenticationScheme.valueOf(scheme.toUpperCase())) { //see which type of authentication scheme this is
+					case BASIC: {
+						final String userPass; //username:password
+						try {
+							userPass = new String(Base64.getDecoder().decode(parameters.trim()), UTF_8); //decode the credentials as the formatter encodes them
+						} catch(final IllegalArgumentException illegalArgumentException) { //if the credentials are not Base64-encoded
+							throw new SyntaxException(illegalArgumentException, header.toString());
+						}
+						final int delimiterIndex = userPass.indexOf(BASIC_DELIMITER); //the username cannot contain the delimiter, but the password can
+						if(delimiterIndex < 0) { //if there is no delimiter
+							throw new SyntaxException(AUTHORIZATION_HEADER + " missing basic credentials delimiter.", header.toString());
+						}
+						return new BasicAuthenticateCredentials(userPass.substring(0, delimiterIndex), userPass.substring(delimiterIndex + 1).toCharArray());
+					}
 					case DIGEST: {
 						final Map<String, String> parameterMap = parseParameterMap(new ParseReader(parameters)); //parse the parameters into a map
 						//						TODO del 		Log.trace("parameter map", parameterMap);
@@ -501,14 +515,14 @@ public static AuthenticateCredentials parseAuthorizationHeader(final CharSequenc
 						final String opaque = parameterMap.get(OPAQUE_PARAMETER); //get the opaque parameter
 						final String messageQOPString = parameterMap.get(QOP_PARAMETER); //get the quality of protection
 						final QOP messageQOP = messageQOPString != null ? QOP.valueOfString(messageQOPString) : null; //convert the quality of protection from a string to an enum
-						final String nonceCountString = parameterMap.get(NONCE_COUNT_PARAMETER); //get the quality of protection
-						if(nonceCountString.length() != NONCE_COUNT_LENGTH) { //if the nonce count is not of the correct length
+						final String nonceCountString = parameterMap.get(NONCE_COUNT_PARAMETER); //get the nonce count
+						if(nonceCountString != null && nonceCountString.length() != NONCE_COUNT_LENGTH) { //if the nonce count is not of the correct length
 							throw new SyntaxException(AUTHORIZATION_HEADER + ' ' + NONCE_COUNT_PARAMETER + " does not have length " + NONCE_COUNT_LENGTH + ".",
 									header.toString());
 						}
-						final long nonceCount = Long.parseLong(nonceCountString, 16); //parse the hex nonce count string to a long
+						final long nonceCount = nonceCountString != null ? Long.parseLong(nonceCountString, 16) : -1; //parse the hex nonce count string to a long, if there is one
 						return new DigestAuthenticateCredentials(username, realm, nonce, digestURIString, response, cnonce, opaque, messageQOP, nonceCount,
-								algorithm != null ? algorithm : MD5.getName());
+								algorithm != null ? algorithm : DigestAlgorithm.MD5.toString());
 					}
 					default: //if we don't support this authentication scheme
 						return null; //show that we don't support this authentication scheme TODO fix for BASIC and other schemes
@@ -565,7 +579,8 @@ public static AuthenticateChallenge parseWWWAuthenticateHeader(final CharSequenc
 						final String algorithm = parameterMap.get(ALGORITHM_PARAMETER); //get the algorithm
 						final String qopOptionsString = parameterMap.get(QOP_PARAMETER); //get the quality of protection
 						//TODO implement auth-param
-						final DigestAuthenticateChallenge digestChallenge = new DigestAuthenticateChallenge(realm, nonce, opaque, algorithm); //create the challenge
+						final DigestAuthenticateChallenge digestChallenge = new DigestAuthenticateChallenge(realm, nonce, opaque,
+								algorithm != null ? algorithm : DigestAlgorithm.MD5.toString()); //create the challenge, defaulting to MD5 as per RFC 2617
 						if(stale != null) { //if a stale parameter was given
 							digestChallenge.setStale(stale); //set the staleness
 						}
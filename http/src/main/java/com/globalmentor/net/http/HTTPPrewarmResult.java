@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * The outcome of pre-warming connections to a host using {@link HTTPClient#prewarm(Host, boolean, int)}, reporting how long each phase of connection setup
+ * took. Connections are opened in parallel, so the connect and handshake times are those of the slowest connection opened, which is how long the phase held
+ * up the caller.
+ * <p>
+ * This class is immutable.
+ * </p>
+ * @author Garret Wilson
+ */
+public final class HTTPPrewarmResult {
+
+	/** The host to which connections were pre-warmed. */
+	private final Host host;
+
+	/** @return The host to which connections were pre-warmed. */
+	public Host getHost() {
+		return host;
+	}
+
+	/** Whether the connections are secure. */
+	private final boolean secure;
+
+	/** @return Whether the connections are secure. */
+	public boolean isSecure() {
+		return secure;
+	}
+
+	/** The number of connections left idle in the pool, ready for use. */
+	private final int connectionCount;
+
+	/** @return The number of connections left idle in the pool, ready for use, including any that were already idle. */
+	public int getConnectionCount() {
+		return connectionCount;
+	}
+
+	/** The number of new connections opened. */
+	private final int openedCount;
+
+	/** @return The number of new connections opened; the others were already idle in the pool. */
+	public int getOpenedCount() {
+		return openedCount;
+	}
+
+	/** The number of nanoseconds taken by the slowest TCP connection, or <code>0</code> if no connection was opened. */
+	private final long connectNanos;
+
+	/** @return The number of nanoseconds taken by the slowest TCP connection, including any proxy tunnel, or <code>0</code> if no connection was opened. */
+	public long getConnectNanos() {
+		return connectNanos;
+	}
+
+	/** The number of nanoseconds taken by the slowest TLS handshake, or <code>0</code> if no secure connection was opened. */
+	private final long handshakeNanos;
+
+	/** @return The number of nanoseconds taken by the slowest TLS handshake, or <code>0</code> if no secure connection was opened. */
+	public long getHandshakeNanos() {
+		return handshakeNanos;
+	}
+
+	/** The number of nanoseconds taken to authenticate, or <code>0</code> if authentication was not attempted. */
+	private final long authenticationNanos;
+
+	/**
+	 * @return The number of nanoseconds taken by the request answering any authentication challenge of the host, or <code>0</code> if authentication was not
+	 *         attempted.
+	 */
+	public long getAuthenticationNanos() {
+		return authenticationNanos;
+	}
+
+	/** The number of nanoseconds taken by pre-warming as a whole. */
+	private final long elapsedNanos;
+
+	/** @return The number of nanoseconds taken by pre-warming as a whole. */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Constructor.
+	 * @param host The host to which connections were pre-warmed.
+	 * @param secure Whether the connections are secure.
+	 * @param connectionCount The number of connections left idle in the pool.
+	 * @param openedCount The number of new connections opened.
+	 * @param connectNanos The number of nanoseconds taken by the slowest TCP connection.
+	 * @param handshakeNanos The number of nanoseconds taken by the slowest TLS handshake.
+	 * @param authenticationNanos The number of nanoseconds taken to authenticate.
+	 * @param elapsedNanos The number of nanoseconds taken by pre-warming as a whole.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	public HTTPPrewarmResult(final Host host, final boolean secure, final int connectionCount, final int openedCount, final long connectNanos,
+			final long handshakeNanos, final long authenticationNanos, final long elapsedNanos) {
+		this.host = requireNonNull(host, "Host cannot be null.");
+		this.secure = secure;
+		this.connectionCount = connectionCount;
+		this.openedCount = openedCount;
+		this.connectNanos = connectNanos;
+		this.handshakeNanos = handshakeNanos;
+		this.authenticationNanos = authenticationNanos;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return host + (secure ? " (secure)" : "") + ": " + connectionCount + " connection(s), " + openedCount + " opened; connect " + NANOSECONDS.toMillis(connectNanos)
+				+ "ms, handshake " + NANOSECONDS.toMillis(handshakeNanos) + "ms, authentication " + NANOSECONDS.toMillis(authenticationNanos) + "ms, total "
+				+ NANOSECONDS.toMillis(elapsedNanos) + "ms";
+	}
+
+}
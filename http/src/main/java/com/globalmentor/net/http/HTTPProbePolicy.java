@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.globalmentor.net.http;
+
+/**
+ * Determines how a tripped {@link HTTPCircuitBreaker} probes a host to find out whether it has recovered. A policy is immutable; a modified copy may be
+ * created using the <code>with…()</code> methods.
+ * <p>
+ * Once the circuit for a host opens, exchanges with the host fail at once for the {@link #getOpenDuration() open duration}. After that, up to
+ * {@link #getMaxProbes() a number of} exchanges are let through as probes. If the {@link #getRequiredSuccesses() required number} of probes succeed, the
+ * circuit closes; if a probe fails, the circuit opens again for twice as long as before, up to the {@link #getMaxOpenDuration() maximum open duration}.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPCircuitBreaker
+ */
+public final class HTTPProbePolicy {
+
+	/** The default number of milliseconds a circuit stays open after first tripping. */
+	public static final long DEFAULT_OPEN_DURATION = 5 * 1000;
+
+	/** The default maximum number of milliseconds a circuit stays open after repeated failed probes. */
+	public static final long DEFAULT_MAX_OPEN_DURATION = 60 * 1000;
+
+	/** The default number of probes that may be in progress at the same time. */
+	public static final int DEFAULT_MAX_PROBES = 1;
+
+	/** The default number of successful probes needed to close the circuit. */
+	public static final int DEFAULT_REQUIRED_SUCCESSES = 1;
+
+	/** The default probe policy. */
+	public static final HTTPProbePolicy DEFAULT = new HTTPProbePolicy(DEFAULT_OPEN_DURATION, DEFAULT_MAX_OPEN_DURATION, DEFAULT_MAX_PROBES,
+			DEFAULT_REQUIRED_SUCCESSES);
+
+	/** The number of milliseconds a circuit stays open after first tripping. */
+	private final long openDuration;
+
+	/** @return The number of milliseconds a circuit stays open after first tripping. */
+	public long getOpenDuration() {
+		return openDuration;
+	}
+
+	/** The maximum number of milliseconds a circuit stays open after repeated failed probes. */
+	private final long maxOpenDuration;
+
+	/** @return The maximum number of milliseconds a circuit stays open after repeated failed probes. */
+	public long getMaxOpenDuration() {
+		return maxOpenDuration;
+	}
+
+	/** The number of probes that may be in progress at the same time. */
+	private final int maxProbes;
+
+	/** @return The number of probes that may be in progress at the same time. */
+	public int getMaxProbes() {
+		return maxProbes;
+	}
+
+	/** The number of successful probes needed to close the circuit. */
+	private final int requiredSuccesses;
+
+	/** @return The number of successful probes needed to close the circuit. */
+	public int getRequiredSuccesses() {
+		return requiredSuccesses;
+	}
+
+	/**
+	 * Full constructor.
+	 * @param openDuration The number of milliseconds a circuit stays open after first tripping.
+	 * @param maxOpenDuration The maximum number of milliseconds a circuit stays open after repeated failed probes.
+	 * @param maxProbes The number of probes that may be in progress at the same time.
+	 * @param requiredSuccesses The number of successful probes needed to close the circuit.
+	 * @throws IllegalArgumentException if the open duration is negative, the maximum open duration is less than the open duration, or the maximum probes or
+	 *           required successes is less than one.
+	 */
+	public HTTPProbePolicy(final long openDuration, final long maxOpenDuration, final int maxProbes, final int requiredSuccesses) {
+		if(openDuration < 0 || maxOpenDuration < openDuration) {
+			throw new IllegalArgumentException("Invalid open duration range: " + openDuration + "-" + maxOpenDuration);
+		}
+		if(maxProbes < 1) {
+			throw new IllegalArgumentException("Maximum probes must be at least one: " + maxProbes);
+		}
+		if(requiredSuccesses < 1) {
+			throw new IllegalArgumentException("Required successes must be at least one: " + requiredSuccesses);
+		}
+		this.openDuration = openDuration;
+		this.maxOpenDuration = maxOpenDuration;
+		this.maxProbes = maxProbes;
+		this.requiredSuccesses = requiredSuccesses;
+	}
+
+	/**
+	 * Returns a policy with a different open duration.
+	 * @param openDuration The number of milliseconds a circuit stays open after first tripping.
+	 * @param maxOpenDuration The maximum number of milliseconds a circuit stays open after repeated failed probes.
+	 * @return A policy the same as this one but with the given open duration.
+	 * @throws IllegalArgumentException if the open duration is negative, or if the maximum open duration is less than the open duration.
+	 */
+	public HTTPProbePolicy withOpenDuration(final long openDuration, final long maxOpenDuration) {
+		return new HTTPProbePolicy(openDuration, maxOpenDuration, maxProbes, requiredSuccesses);
+	}
+
+	/**
+	 * Returns a policy with a different maximum number of probes.
+	 * @param maxProbes The number of probes that may be in progress at the same time.
+	 * @return A policy the same as this one but with the given maximum number of probes.
+	 * @throws IllegalArgumentException if the maximum probes is less than one.
+	 */
+	public HTTPProbePolicy withMaxProbes(final int maxProbes) {
+		return new HTTPProbePolicy(openDuration, maxOpenDuration, maxProbes, requiredSuccesses);
+	}
+
+	/**
+	 * Returns a policy with a different number of required successes.
+	 * @param requiredSuccesses The number of successful probes needed to close the circuit.
+	 * @return A policy the same as this one but with the given number of required successes.
+	 * @throws IllegalArgumentException if the required successes is less than one.
+	 */
+	public HTTPProbePolicy withRequiredSuccesses(final int requiredSuccesses) {
+		return new HTTPProbePolicy(openDuration, maxOpenDuration, maxProbes, requiredSuccesses);
+	}
+
+	/**
+	 * Determines how long a circuit stays open after tripping.
+	 * @param tripCount The number of times the circuit has tripped without closing, starting at <code>1</code> for the first trip.
+	 * @return The number of milliseconds to keep the circuit open, doubling with each consecutive trip up to the maximum open duration.
+	 * @throws IllegalArgumentException if the given trip count is less than one.
+	 */
+	public long getOpenDuration(final int tripCount) {
+		if(tripCount < 1) {
+			throw new IllegalArgumentException("Invalid trip count: " + tripCount);
+		}
+		return Math.min(maxOpenDuration, openDuration << Math.min(tripCount - 1, Long.numberOfLeadingZeros(Math.max(openDuration, 1)) - 1)); //don't overflow
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(openDuration=" + openDuration + "-" + maxOpenDuration + "ms, maxProbes=" + maxProbes + ", requiredSuccesses="
+				+ requiredSuccesses + ")";
+	}
+
+}
@@ -75,4 +75,15 @@ public interface HTTPRequest extends HTTPMessage {
 	 */
 	public void setAuthorization(final AuthenticateCredentials credentials);
 
+	/** @return The retry policy for this request, or <code>null</code> if the policy of the client should be used. */
+	public HTTPRetryPolicy getRetryPolicy();
+
+	/**
+	 * Sets the retry policy for this request, which determines the read timeout and whether the request is replayed after a connection failure. The connect
+	 * timeout and connection retries are always those of the client.
+	 * @param retryPolicy The retry policy for this request, or <code>null</code> if the policy of the client should be used.
+	 * @see HTTPClient#getRetryPolicy()
+	 */
+	public void setRetryPolicy(final HTTPRetryPolicy retryPolicy);
+
 }
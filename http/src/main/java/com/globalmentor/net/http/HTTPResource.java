@@ -19,10 +19,14 @@
 import java.io.*;
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.locks.*;
+import java.util.function.UnaryOperator;
 
 import com.globalmentor.collections.*;
 import com.globalmentor.io.*;
+import com.globalmentor.io.function.IOFunction;
+import com.globalmentor.io.function.IOSupplier;
 import com.globalmentor.java.Bytes;
 import com.globalmentor.model.AbstractHashObject;
 import com.globalmentor.net.*;
@@ -35,6 +39,15 @@
 /**
  * A client's view of an HTTP resource on the server. For many error conditions, a subclass of {@link HTTPException} will be thrown. This class is not thread
  * safe.
+ * <p>
+ * Identical idempotent requests made at the same time by different resource instances for the same URI using the same client, such as many threads calling
+ * {@link #exists()} when cached information expires, are coalesced: only one request is sent, and all callers receive its result or exception.
+ * </p>
+ * <p>
+ * If the client has a {@link HTTPClient#getHedgingPolicy() hedging policy}, retrieving the contents of the resource is hedged, sending the request again on a
+ * second connection when the server is slower than usual to respond. For {@link #get()} the first complete response is used; for {@link #getInputStream()}
+ * the first response head is used, and the body is then streamed from that connection alone.
+ * </p>
  * @author Garret Wilson
  * @see HTTPException
  */
@@ -111,6 +124,79 @@ protected void uncacheInfo() {
 		uncacheInfo(getURI()); //uncache the information for this resource
 	}
 
+	/** The in-progress coalesced operations, each of which will complete with a {@link SharedResult} or with an exception. */
+	protected static final ConcurrentMap<FlightKey, CompletableFuture<Object>> inFlightMap = new ConcurrentHashMap<FlightKey, CompletableFuture<Object>>();
+
+	/**
+	 * Performs an idempotent operation on this resource, coalescing it with any identical operation already in progress for the same URI using the same client
+	 * and password authentication. If such an operation is in progress, this method waits for it and returns its result or throws its exception; otherwise the
+	 * operation is performed, and its outcome is shared with any identical operations requested in the meantime. This is a convenience method for
+	 * {@link #coalesce(String, Object, IOSupplier, UnaryOperator)} that shares the same result with all callers.
+	 * @param <T> The type of result of the operation.
+	 * @param operation The name of the operation, such as <code>"exists"</code>.
+	 * @param parameter A value further distinguishing the operation, such as the depth of a request, or <code>null</code> if there is none.
+	 * @param exchange The strategy for performing the operation if no identical operation is in progress.
+	 * @return The result of the operation.
+	 * @throws IOException if there was an error performing the operation.
+	 */
+	protected <T> T coalesce(final String operation, final Object parameter, final IOSupplier<T> exchange) throws IOException {
+		return coalesce(operation, parameter, exchange, UnaryOperator.identity());
+	}
+
+	/**
+	 * Performs an idempotent operation on this resource, coalescing it with any identical operation already in progress for the same URI using the same client
+	 * and password authentication. If such an operation is in progress, this method waits for it and returns a copy of its result or throws its exception;
+	 * otherwise the operation is performed, and its outcome is shared with any identical operations requested in the meantime.
+	 * <p>
+	 * The caller performing the operation keeps the result itself, and shares a private snapshot made with the copier, from which each joining caller receives
+	 * its own copy. The copies are made one at a time, so the copier need not support being called concurrently on the same object, as is the case for DOM
+	 * nodes. Thus no caller can see changes another caller makes to its result.
+	 * </p>
+	 * @param <T> The type of result of the operation.
+	 * @param operation The name of the operation, such as <code>"exists"</code>.
+	 * @param parameter A value further distinguishing the operation, such as the depth of a request, or <code>null</code> if there is none.
+	 * @param exchange The strategy for performing the operation if no identical operation is in progress.
+	 * @param copier The strategy for copying a mutable result for the snapshot and for each caller that joined the operation in progress.
+	 * @return The result of the operation.
+	 * @throws InterruptedIOException if interrupted while waiting for the operation in progress.
+	 * @throws IOException if there was an error performing the operation.
+	 */
+	protected <T> T coalesce(final String operation, final Object parameter, final IOSupplier<T> exchange, final UnaryOperator<T> copier) throws IOException {
+		final FlightKey flightKey = new FlightKey(getClient(), getURI(), getPasswordAuthentication(), operation, parameter);
+		final CompletableFuture<Object> flight = new CompletableFuture<Object>();
+		final CompletableFuture<Object> existingFlight = inFlightMap.putIfAbsent(flightKey, flight);
+		if(existingFlight != null) { //if an identical operation is in progress, wait for it
+			final SharedResult sharedResult;
+			try {
+				sharedResult = (SharedResult)existingFlight.get();
+			} catch(final InterruptedException interruptedException) {
+				Thread.currentThread().interrupt(); //preserve the interrupted status
+				throw new InterruptedIOException("Interrupted while waiting for " + operation + " of " + getURI() + ".");
+			} catch(final ExecutionException executionException) {
+				final Throwable cause = executionException.getCause();
+				if(cause instanceof IOException) { //rethrow the same exception so that callers can detect specific conditions such as HTTPNotFoundException
+					throw (IOException)cause;
+				} else if(cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				} else if(cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new IOException(cause);
+			}
+			return sharedResult.copy(copier);
+		}
+		try {
+			final T result = exchange.get();
+			flight.complete(new SharedResult(result != null ? copier.apply(result) : null)); //never share the instance this caller may modify
+			return result;
+		} catch(final IOException | RuntimeException | Error throwable) {
+			flight.completeExceptionally(throwable);
+			throw throwable;
+		} finally {
+			inFlightMap.remove(flightKey, flight); //later operations start anew
+		}
+	}
+
 	/**
 	 * Constructs an HTTP resource at a particular URI using the default client.
 	 * @param referenceURI The URI of the HTTP resource this object represents.
@@ -207,7 +293,7 @@ public boolean exists() throws IOException {
 				return cachedExists.exists(); //return the new exists information
 			}
 		}
-		final boolean exists = getExists(); //determine if the resource exists
+		final boolean exists = coalesce("exists", null, this::getExists).booleanValue(); //determine if the resource exists, sharing any identical check in progress
 		if(isCached()) { //if we are caching information
 			cachedExistsMap.put(new CacheKey(getClient(), getURI()), new CachedExists(exists)); //cache the exists status
 		}
@@ -234,29 +320,30 @@ protected boolean getExists() throws IOException {
 	}
 
 	/**
-	 * Retrieves the contents of a resource using the {@value HTTP#GET_METHOD} method.
+	 * Retrieves the contents of a resource using the {@value HTTP#GET_METHOD} method. If the retrieval is hedged, the stream is returned for whichever
+	 * connection first receives the response head.
 	 * @return An input stream to the server.
 	 * @throws IOException if there was an error invoking the method.
 	 */
 	public InputStream getInputStream() throws IOException {
 		Boolean exists = null; //we'll see if we can determine existence
-		final HTTPRequest request = new DefaultHTTPRequest(GET_METHOD, getURI()); //create a GET request
-		final HTTPClientTCPConnection connection = getConnection(); //get a connection to the server
 		try {
-			final HTTPResponse response = connection.sendRequest(request, Bytes.NO_BYTES); //get the response
-			try {
-				response.checkStatus(); //check the status of the response, throwing an exception if this is an error
-				exists = Boolean.TRUE; //if GET succeeds, the resource exists
-			} catch(final HTTPNotFoundException notFoundException) { //404 Not Found
-				exists = Boolean.FALSE; //show that the resource is not there
-				connection.readResponseBody(request, response); //skip the response body
-				throw notFoundException; //rethrow the exception
-			} catch(final HTTPGoneException goneException) { //410 Gone
-				exists = Boolean.FALSE; //show that the resource is permanently not there
-				connection.readResponseBody(request, response); //skip the response body
-				throw goneException; //rethrow the exception
-			}
-			return connection.getResponseBodyInputStream(request, response); //get an input stream to the response body
+			final InputStream inputStream = hedge(connection -> {
+				final HTTPRequest request = new DefaultHTTPRequest(GET_METHOD, getURI()); //create a GET request
+				final HTTPResponse response = connection.sendRequest(request, Bytes.NO_BYTES); //get the response
+				try {
+					response.checkStatus(); //check the status of the response, throwing an exception if this is an error
+				} catch(final HTTPException httpException) {
+					connection.readResponseBody(request, response); //skip the response body so that the connection can be reused
+					throw httpException; //rethrow the exception
+				}
+				return connection.getResponseBodyInputStream(request, response); //get an input stream to the response body
+			});
+			exists = Boolean.TRUE; //if GET succeeds, the resource exists
+			return inputStream;
+		} catch(final HTTPNotFoundException | HTTPGoneException notFoundException) { //404 Not Found or 410 Gone
+			exists = Boolean.FALSE; //show that the resource is not there
+			throw notFoundException; //rethrow the exception
 		} finally {
 			if(isCached() && exists != null) { //if information is being cached and we know the latest existence state
 				cacheExists(exists.booleanValue()); //update the exists status
@@ -266,23 +353,37 @@ public InputStream getInputStream() throws IOException {
 
 	/**
 	 * Retrieves the contents of a resource using the {@value HTTP#GET_METHOD} method. The cached existence property is updated if information is being cached.
+	 * Identical concurrent retrievals are coalesced; each caller receives its own copy of the content.
 	 * @return The content received from the server.
 	 * @throws IOException if there was an error invoking the method.
 	 * @see #cacheExists(boolean)
 	 */
 	public byte[] get() throws IOException {
+		return coalesce("get", null, this::getUncoalesced, byte[]::clone);
+	}
+
+	/**
+	 * Retrieves the contents of a resource using the {@value HTTP#GET_METHOD} method, without coalescing the request with others. The cached existence property
+	 * is updated if information is being cached.
+	 * @return The content received from the server.
+	 * @throws IOException if there was an error invoking the method.
+	 * @see #get()
+	 */
+	protected byte[] getUncoalesced() throws IOException {
 		Boolean exists = null; //we'll see if we can determine existence
-		final HTTPRequest request = new DefaultHTTPRequest(GET_METHOD, getURI()); //create a GET request
-		final HTTPClientTCPConnection connection = getConnection(); //get a connection to the server
 		try {
-			final HTTPResponse response = connection.sendRequest(request, Bytes.NO_BYTES); //get the response
-			if(response.getStatusCode() == SC_NOT_FOUND //404 Not Found
-					|| response.getStatusCode() == SC_GONE) { //410 Gone
-				exists = Boolean.FALSE; //show that the resource is not there
-			}
-			response.checkStatus(); //check the status of the response, throwing an exception if this is an error
+			final byte[] body = hedge(connection -> {
+				final HTTPRequest request = new DefaultHTTPRequest(GET_METHOD, getURI()); //create a GET request
+				final HTTPResponse response = connection.sendRequest(request, Bytes.NO_BYTES); //get the response
+				final byte[] responseBody = connection.readResponseBody(request, response); //read the response body even for errors, so that the connection can be reused
+				response.checkStatus(); //check the status of the response, throwing an exception if this is an error
+				return responseBody;
+			});
 			exists = Boolean.TRUE; //if GET succeeds, the resource exists
-			return connection.readResponseBody(request, response); //read and return the response body
+			return body; //return the response body
+		} catch(final HTTPNotFoundException | HTTPGoneException notFoundException) { //404 Not Found or 410 Gone
+			exists = Boolean.FALSE; //show that the resource is not there
+			throw notFoundException; //rethrow the exception
 		} finally {
 			if(isCached() && exists != null) { //if information is being cached and we know the latest existence state
 				cacheExists(exists.booleanValue()); //update the exists status
@@ -291,11 +392,23 @@ public byte[] get() throws IOException {
 	}
 
 	/**
-	 * Accesses a resource using the {@value HTTP#HEAD_METHOD} method. The cached existence property is updated.
+	 * Accesses a resource using the {@value HTTP#HEAD_METHOD} method. The cached existence property is updated. Identical concurrent accesses are coalesced.
 	 * @throws IOException if there was an error invoking the method.
 	 * @see #cacheExists(boolean)
 	 */
 	public void head() throws IOException {
+		coalesce("head", null, () -> {
+			headUncoalesced();
+			return null;
+		});
+	}
+
+	/**
+	 * Accesses a resource using the {@value HTTP#HEAD_METHOD} method, without coalescing the request with others. The cached existence property is updated.
+	 * @throws IOException if there was an error invoking the method.
+	 * @see #head()
+	 */
+	protected void headUncoalesced() throws IOException {
 		Boolean exists = null; //we'll see if we can determine existence
 		final HTTPRequest request = new DefaultHTTPRequest(HEAD_METHOD, getURI()); //create a HEAD request
 		final HTTPClientTCPConnection connection = getConnection(); //get a connection to the server
@@ -388,7 +501,8 @@ public <T> void put(final T object, final IO<T> io) throws IOException {
 	private HTTPClientTCPConnection connection = null;
 
 	/**
-	 * Gets a connection to the server.
+	 * Gets a connection to the server. The connection leases a transport from the client's connection pool for each exchange, so resources to the same host
+	 * share persistent connections.
 	 * @return A connection to the server.
 	 */
 	protected HTTPClientTCPConnection getConnection() {
@@ -400,6 +514,24 @@ protected HTTPClientTCPConnection getConnection() {
 		return connection;
 	}
 
+	/**
+	 * Performs an idempotent read of this resource. If the client has a {@link HTTPClient#getHedgingPolicy() hedging policy}, the read is
+	 * {@link HTTPClient#hedge(Host, PasswordAuthentication, boolean, IOFunction) hedged} using new connections; otherwise it is performed using the
+	 * {@link #getConnection() connection} of this resource.
+	 * @param <T> The type of result of the read.
+	 * @param read The read to perform using a connection, which must create its own request.
+	 * @return The result of the read.
+	 * @throws IOException if there was an error performing the read.
+	 */
+	protected <T> T hedge(final IOFunction<? super HTTPClientTCPConnection, ? extends T> read) throws IOException {
+		final HTTPClient client = getClient();
+		if(client.getHedgingPolicy() == null) {
+			return read.apply(getConnection());
+		}
+		final URI referenceURI = getURI(); //get the reference URI
+		return client.hedge(getHost(referenceURI), getPasswordAuthentication(), HTTP.HTTPS_URI_SCHEME.equals(referenceURI.getScheme()), read);
+	}
+
 	/**
 	 * Sends a request to the server.
 	 * @param request The request to send to the server.
@@ -467,11 +599,21 @@ public ReadResponseOutputStreamDecorator(final HTTPClientTCPConnection connectio
 		}
 
 		/**
-		 * Called after the stream is successfully closed. This version reads the HTTP response and throws an error if the response is an error condition.
-		 * @throws IOException if an I/O error occurs.
+		 * {@inheritDoc}
+		 * <p>
+		 * This version finishes the request body and then reads the HTTP response, throwing an error if the response is an error condition. The network I/O is
+		 * performed outside the decorator's synchronized {@link #close(boolean)} so that a virtual thread blocked on the server is not pinned to its carrier
+		 * thread.
+		 * </p>
 		 */
-		protected void afterClose() throws IOException {
-			super.afterClose();
+		@Override
+		public void close() throws IOException {
+			final OutputStream outputStream = getOutputStream();
+			if(outputStream == null) { //if we've already been closed
+				return;
+			}
+			outputStream.close(); //finish the request body outside the monitor; the decorated stream ignores being closed again
+			super.close();
 			final HTTPResponse response = connection.readResponse(request); //read the response
 			connection.readResponseBody(request, response); //ignore the response body
 			response.checkStatus(); //check the status of the response, throwing an exception if this is an error
@@ -496,6 +638,69 @@ public CacheKey(final HTTPClient httpClient, final URI resourceURI) {
 		}
 	}
 
+	/**
+	 * A key identifying a coalesced operation in progress.
+	 * @author Garret Wilson
+	 */
+	protected static class FlightKey extends AbstractHashObject {
+
+		/**
+		 * Constructor.
+		 * @param httpClient The HTTP client.
+		 * @param resourceURI The resource URI.
+		 * @param passwordAuthentication The preset password authentication of the resource, or <code>null</code> if there is none; compared by identity.
+		 * @param operation The name of the operation.
+		 * @param parameter A value further distinguishing the operation, or <code>null</code> if there is none.
+		 * @throws NullPointerException if the given HTTP client, resource URI, and/or operation is <code>null</code>.
+		 */
+		public FlightKey(final HTTPClient httpClient, final URI resourceURI, final PasswordAuthentication passwordAuthentication, final String operation,
+				final Object parameter) {
+			super(requireNonNull(httpClient, "HTTP client cannot be null."), requireNonNull(resourceURI, "Resource URI cannot be null."), passwordAuthentication,
+					requireNonNull(operation, "Operation cannot be null."), parameter);
+		}
+	}
+
+	/**
+	 * The result of a coalesced operation, shared by the callers that joined the operation in progress. The result is never returned itself; each caller
+	 * receives a copy made while holding the lock, so that copying never takes place concurrently.
+	 * @author Garret Wilson
+	 */
+	private static final class SharedResult {
+
+		/** The lock guarding copying of the result. */
+		private final Lock lock = new ReentrantLock();
+
+		/** The snapshot of the result, or <code>null</code> if the operation produced no result. */
+		private final Object result;
+
+		/**
+		 * Constructor.
+		 * @param result The snapshot of the result, or <code>null</code> if the operation produced no result.
+		 */
+		public SharedResult(final Object result) {
+			this.result = result;
+		}
+
+		/**
+		 * Makes a copy of the result for a caller.
+		 * @param <T> The type of result.
+		 * @param copier The strategy for copying the result.
+		 * @return A copy of the result, or <code>null</code> if the operation produced no result.
+		 */
+		@SuppressWarnings("unchecked")
+		public <T> T copy(final UnaryOperator<T> copier) {
+			if(result == null) {
+				return null;
+			}
+			lock.lock();
+			try {
+				return copier.apply((T)result);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
 	/**
 	 * Abstract class for information stored in an HTTP resource cache.
 	 * @author Garret Wilson
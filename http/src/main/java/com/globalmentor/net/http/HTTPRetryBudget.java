@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits retries to a fraction of the requests made, so that when a server is failing, retries don't multiply the load on it just as it is trying to
+ * recover.
+ * <p>
+ * The budget is a token bucket. Each request deposits a fraction of a token, and each retry withdraws a whole token; a retry is not allowed if less than a
+ * token is available. The bucket starts full, allowing a burst of retries, and holds no more than that many tokens. Over time no more retries are made than
+ * the retry ratio of the requests made.
+ * </p>
+ * <p>
+ * This class is thread safe.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPRetryPolicy
+ */
+public class HTTPRetryBudget {
+
+	/** The default number of retries allowed per request. */
+	public static final double DEFAULT_RETRY_RATIO = 0.2;
+
+	/** The default number of retries that may be made in a burst. */
+	public static final int DEFAULT_MAX_RETRIES = 10;
+
+	/** The number of balance units in a token, allowing fractional deposits without floating-point contention. */
+	private static final long TOKEN = 1000;
+
+	/** The number of balance units deposited by each request. */
+	private final long deposit;
+
+	/** The maximum balance. */
+	private final long capacity;
+
+	/** The current balance, of which each {@link #TOKEN} units allow a retry. */
+	private final AtomicLong balance;
+
+	/** Default constructor with the default retry ratio and maximum retries. */
+	public HTTPRetryBudget() {
+		this(DEFAULT_RETRY_RATIO, DEFAULT_MAX_RETRIES);
+	}
+
+	/**
+	 * Retry ratio and maximum retries constructor.
+	 * @param retryRatio The number of retries allowed per request, such as <code>0.2</code> for one retry for every five requests.
+	 * @param maxRetries The number of retries that may be made in a burst, which is also the number of retries available initially.
+	 * @throws IllegalArgumentException if the retry ratio or the maximum retries is negative.
+	 */
+	public HTTPRetryBudget(final double retryRatio, final int maxRetries) {
+		if(!(retryRatio >= 0)) { //catch NaN as well
+			throw new IllegalArgumentException("Invalid retry ratio: " + retryRatio);
+		}
+		if(maxRetries < 0) {
+			throw new IllegalArgumentException("Maximum retries cannot be negative: " + maxRetries);
+		}
+		deposit = Math.round(retryRatio * TOKEN);
+		capacity = maxRetries * TOKEN;
+		balance = new AtomicLong(capacity);
+	}
+
+	/** Records that a request is being made, increasing the retries available. */
+	public void recordRequest() {
+		if(deposit > 0 && balance.get() < capacity) { //avoid contention once the bucket is full
+			balance.accumulateAndGet(deposit, (current, amount) -> Math.min(current + amount, capacity));
+		}
+	}
+
+	/**
+	 * Withdraws a retry from the budget if one is available.
+	 * @return <code>true</code> if a retry may be made.
+	 */
+	public boolean tryAcquireRetry() {
+		long current;
+		do {
+			current = balance.get();
+			if(current < TOKEN) {
+				return false;
+			}
+		} while(!balance.compareAndSet(current, current - TOKEN));
+		return true;
+	}
+
+	/** @return The number of whole retries currently available. */
+	public int getAvailableRetries() {
+		return (int)(balance.get() / TOKEN);
+	}
+
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.ClosedChannelException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.globalmentor.net.HTTP.*;
+import static java.util.Collections.*;
+import static java.util.Objects.*;
+
+/**
+ * Determines how long to wait for a server and how to retry failed attempts to reach it. A policy is immutable; a modified copy may be created using the
+ * <code>with…()</code> methods.
+ * <p>
+ * Connection attempts refused by the host or not answered within the {@link #getConnectTimeout() connect timeout} are retried, as no request has been sent.
+ * A request that fails after it has been sent is replayed on a new connection only if replaying it is safe: the request was refused by the server before
+ * being processed, or the request uses an {@link #isIdempotent(String) idempotent method} and the connection failed, such as when a server resets a
+ * connection that was idle in the pool. A request that times out is never replayed, as a hung server would only be given more work.
+ * </p>
+ * <p>
+ * Retries are delayed by an exponential backoff with "full jitter": before retry <var>n</var> the delay is chosen at random between zero and
+ * <code>initialBackoff×2<sup>n-1</sup></code>, up to the maximum backoff, so that clients failing at the same time do not retry in lockstep.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPRetryBudget
+ */
+public final class HTTPRetryPolicy {
+
+	/** The default maximum number of attempts, including the first attempt. */
+	public static final int DEFAULT_MAX_ATTEMPTS = 5;
+
+	/** The default backoff ceiling in milliseconds before the first retry. */
+	public static final long DEFAULT_INITIAL_BACKOFF = 500;
+
+	/** The default maximum backoff ceiling in milliseconds. */
+	public static final long DEFAULT_MAX_BACKOFF = 10 * 1000;
+
+	/** The default number of milliseconds to wait for a connection to be established. */
+	public static final int DEFAULT_CONNECT_TIMEOUT = 30 * 1000;
+
+	/** The default number of milliseconds to wait for data from the server. */
+	public static final int DEFAULT_READ_TIMEOUT = 60 * 1000;
+
+	/** The WebDAV <code>PROPFIND</code> method, which is safe; see <a href="https://tools.ietf.org/html/rfc4918">RFC 4918</a>. */
+	private static final String PROPFIND_METHOD = "PROPFIND";
+
+	/** The methods that are idempotent by default, as defined by <a href="https://tools.ietf.org/html/rfc7231#section-4.2.2">RFC 7231</a>. */
+	public static final Set<String> DEFAULT_IDEMPOTENT_METHODS = unmodifiableSet(
+			new HashSet<String>(Arrays.asList(GET_METHOD, HEAD_METHOD, OPTIONS_METHOD, TRACE_METHOD, PUT_METHOD, DELETE_METHOD, PROPFIND_METHOD)));
+
+	/** The default retry policy. */
+	public static final HTTPRetryPolicy DEFAULT = new HTTPRetryPolicy(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_BACKOFF, DEFAULT_MAX_BACKOFF,
+			DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_IDEMPOTENT_METHODS);
+
+	/** The maximum number of attempts, including the first attempt. */
+	private final int maxAttempts;
+
+	/** @return The maximum number of attempts, including the first attempt; <code>1</code> indicates that nothing is retried. */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/** The backoff ceiling in milliseconds before the first retry. */
+	private final long initialBackoff;
+
+	/** @return The backoff ceiling in milliseconds before the first retry. */
+	public long getInitialBackoff() {
+		return initialBackoff;
+	}
+
+	/** The maximum backoff ceiling in milliseconds. */
+	private final long maxBackoff;
+
+	/** @return The maximum backoff ceiling in milliseconds. */
+	public long getMaxBackoff() {
+		return maxBackoff;
+	}
+
+	/** The number of milliseconds to wait for a connection to be established, or <code>0</code> to wait indefinitely. */
+	private final int connectTimeout;
+
+	/** @return The number of milliseconds to wait for a connection to be established, or <code>0</code> to wait indefinitely. */
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	/** The number of milliseconds to wait for data from the server, or <code>0</code> to wait indefinitely. */
+	private final int readTimeout;
+
+	/** @return The number of milliseconds to wait for data from the server, or <code>0</code> to wait indefinitely. */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/** The methods of requests that may be replayed after a connection failure. */
+	private final Set<String> idempotentMethods;
+
+	/** @return The methods of requests that may be replayed after a connection failure. */
+	public Set<String> getIdempotentMethods() {
+		return idempotentMethods;
+	}
+
+	/**
+	 * Full constructor.
+	 * @param maxAttempts The maximum number of attempts, including the first attempt.
+	 * @param initialBackoff The backoff ceiling in milliseconds before the first retry.
+	 * @param maxBackoff The maximum backoff ceiling in milliseconds.
+	 * @param connectTimeout The number of milliseconds to wait for a connection to be established, or <code>0</code> to wait indefinitely.
+	 * @param readTimeout The number of milliseconds to wait for data from the server, or <code>0</code> to wait indefinitely.
+	 * @param idempotentMethods The methods of requests that may be replayed after a connection failure.
+	 * @throws NullPointerException if the given idempotent methods is <code>null</code>.
+	 * @throws IllegalArgumentException if the maximum attempts is less than one, or if any of the other values is negative, or if the maximum backoff is less
+	 *           than the initial backoff.
+	 */
+	public HTTPRetryPolicy(final int maxAttempts, final long initialBackoff, final long maxBackoff, final int connectTimeout, final int readTimeout,
+			final Set<String> idempotentMethods) {
+		if(maxAttempts < 1) {
+			throw new IllegalArgumentException("Maximum attempts must be at least one: " + maxAttempts);
+		}
+		if(initialBackoff < 0 || maxBackoff < initialBackoff) {
+			throw new IllegalArgumentException("Invalid backoff range: " + initialBackoff + "-" + maxBackoff);
+		}
+		if(connectTimeout < 0 || readTimeout < 0) {
+			throw new IllegalArgumentException("Timeouts cannot be negative.");
+		}
+		this.maxAttempts = maxAttempts;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.idempotentMethods = unmodifiableSet(new HashSet<String>(requireNonNull(idempotentMethods, "Idempotent methods cannot be null.")));
+	}
+
+	/**
+	 * Returns a policy with a different maximum number of attempts.
+	 * @param maxAttempts The maximum number of attempts, including the first attempt.
+	 * @return A policy the same as this one but with the given maximum number of attempts.
+	 * @throws IllegalArgumentException if the maximum attempts is less than one.
+	 */
+	public HTTPRetryPolicy withMaxAttempts(final int maxAttempts) {
+		return new HTTPRetryPolicy(maxAttempts, initialBackoff, maxBackoff, connectTimeout, readTimeout, idempotentMethods);
+	}
+
+	/**
+	 * Returns a policy with a different backoff.
+	 * @param initialBackoff The backoff ceiling in milliseconds before the first retry.
+	 * @param maxBackoff The maximum backoff ceiling in milliseconds.
+	 * @return A policy the same as this one but with the given backoff.
+	 * @throws IllegalArgumentException if either value is negative, or if the maximum backoff is less than the initial backoff.
+	 */
+	public HTTPRetryPolicy withBackoff(final long initialBackoff, final long maxBackoff) {
+		return new HTTPRetryPolicy(maxAttempts, initialBackoff, maxBackoff, connectTimeout, readTimeout, idempotentMethods);
+	}
+
+	/**
+	 * Returns a policy with a different connect timeout.
+	 * @param connectTimeout The number of milliseconds to wait for a connection to be established, or <code>0</code> to wait indefinitely.
+	 * @return A policy the same as this one but with the given connect timeout.
+	 * @throws IllegalArgumentException if the timeout is negative.
+	 */
+	public HTTPRetryPolicy withConnectTimeout(final int connectTimeout) {
+		return new HTTPRetryPolicy(maxAttempts, initialBackoff, maxBackoff, connectTimeout, readTimeout, idempotentMethods);
+	}
+
+	/**
+	 * Returns a policy with a different read timeout.
+	 * @param readTimeout The number of milliseconds to wait for data from the server, or <code>0</code> to wait indefinitely.
+	 * @return A policy the same as this one but with the given read timeout.
+	 * @throws IllegalArgumentException if the timeout is negative.
+	 */
+	public HTTPRetryPolicy withReadTimeout(final int readTimeout) {
+		return new HTTPRetryPolicy(maxAttempts, initialBackoff, maxBackoff, connectTimeout, readTimeout, idempotentMethods);
+	}
+
+	/**
+	 * Returns a policy with different idempotent methods.
+	 * @param idempotentMethods The methods of requests that may be replayed after a connection failure.
+	 * @return A policy the same as this one but with the given idempotent methods.
+	 * @throws NullPointerException if the given idempotent methods is <code>null</code>.
+	 */
+	public HTTPRetryPolicy withIdempotentMethods(final Set<String> idempotentMethods) {
+		return new HTTPRetryPolicy(maxAttempts, initialBackoff, maxBackoff, connectTimeout, readTimeout, idempotentMethods);
+	}
+
+	/**
+	 * Determines whether requests using the given method may be replayed after a connection failure.
+	 * @param method The HTTP method.
+	 * @return <code>true</code> if the method is one of the idempotent methods of this policy.
+	 */
+	public boolean isIdempotent(final String method) {
+		return idempotentMethods.contains(method);
+	}
+
+	/**
+	 * Determines whether a request that failed after the connection was established may safely be replayed. Whether any attempts remain is not considered.
+	 * @param request The request that failed.
+	 * @param ioException The cause of the failure.
+	 * @return <code>true</code> if the request may be sent again on a new connection.
+	 */
+	public boolean isRetryable(final HTTPRequest request, final IOException ioException) {
+		if(ioException instanceof HTTP2Exception) { //only a stream the server never processed can be replayed
+			return ((HTTP2Exception)ioException).isRefused();
+		}
+		if(!isIdempotent(request.getMethod())) {
+			return false;
+		}
+		if(ioException instanceof SocketException) {
+			return !(ioException instanceof ConnectException || ioException instanceof NoRouteToHostException); //connections are retried when connecting
+		}
+		return ioException instanceof EOFException || ioException instanceof ClosedChannelException
+				|| ioException.getClass() == IOException.class; //channels report resets and broken pipes using plain I/O exceptions
+	}
+
+	/**
+	 * Determines the delay before a retry, chosen at random up to the exponential backoff ceiling for the retry.
+	 * @param retry The number of the retry, starting at <code>1</code> for the retry following the first attempt.
+	 * @return The number of milliseconds to wait before the retry.
+	 * @throws IllegalArgumentException if the given retry is less than one.
+	 */
+	public long getBackoffDelay(final int retry) {
+		if(retry < 1) {
+			throw new IllegalArgumentException("Invalid retry: " + retry);
+		}
+		final long ceiling = Math.min(maxBackoff, initialBackoff << Math.min(retry - 1, Long.numberOfLeadingZeros(Math.max(initialBackoff, 1)) - 1)); //don't overflow
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	/**
+	 * Waits for the {@link #getBackoffDelay(int) backoff delay} before a retry.
+	 * @param retry The number of the retry, starting at <code>1</code> for the retry following the first attempt.
+	 * @throws InterruptedIOException if the current thread was interrupted while waiting.
+	 */
+	public void backOff(final int retry) throws InterruptedIOException {
+		try {
+			Thread.sleep(getBackoffDelay(retry));
+		} catch(final InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry.");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(maxAttempts=" + maxAttempts + ", backoff=" + initialBackoff + "-" + maxBackoff + "ms, connectTimeout="
+				+ connectTimeout + "ms, readTimeout=" + readTimeout + "ms, idempotentMethods=" + idempotentMethods + ")";
+	}
+
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+
+import com.globalmentor.net.Host;
+
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * A physical connection to an HTTP server over which request/response exchanges take place. A transport is used by a single {@link HTTPClientTCPConnection}
+ * for the duration of an exchange; between exchanges it is kept by an {@link HTTPConnectionPool} so that it can be reused by other connections to the same
+ * host.
+ * <p>
+ * This class is not thread safe; the pool guarantees that a transport is leased to only one connection at a time. The exceptions are {@link #abort()} and
+ * {@link #close()}, which may be called from any thread, for example by {@link HTTPClientTCPConnection#cancel()} while another thread is blocked reading a
+ * response. Implementations guarantee this by only changing <code>volatile</code> or atomic state and by shutting down or closing the underlying socket,
+ * channel or stream, which unblocks a read or write in progress, rather than releasing buffers or other resources a read or write in progress may still be
+ * using; a second call, or a call racing with the thread using the transport, has no further effect.
+ * </p>
+ * @author Garret Wilson
+ * @see HTTPConnectionPool
+ */
+public abstract class HTTPTransport implements Closeable {
+
+	/** The host to which the transport is connected. */
+	private final Host host;
+
+	/** @return The host to which the transport is connected. */
+	public Host getHost() {
+		return host;
+	}
+
+	/** Whether the transport is secure. */
+	private final boolean secure;
+
+	/** @return Whether the transport is secure. */
+	public boolean isSecure() {
+		return secure;
+	}
+
+	/** The pool key under which this transport was leased, or <code>null</code> if the transport is not pooled. */
+	private HTTPConnectionPool.Key poolKey = null;
+
+	/** @return The pool key under which this transport was leased, or <code>null</code> if the transport is not pooled. */
+	HTTPConnectionPool.Key getPoolKey() {
+		return poolKey;
+	}
+
+	/**
+	 * Sets the pool key under which this transport was leased.
+	 * @param poolKey The pool key of the transport.
+	 */
+	void setPoolKey(final HTTPConnectionPool.Key poolKey) {
+		this.poolKey = poolKey;
+	}
+
+	/** Whether the pool opened this transport for its current lease, rather than reusing an idle transport. */
+	private boolean newlyOpened = false;
+
+	/** @return Whether the pool opened this transport for its current lease, rather than reusing an idle transport. */
+	boolean isNewlyOpened() {
+		return newlyOpened;
+	}
+
+	/**
+	 * Sets whether the pool opened this transport for its current lease.
+	 * @param newlyOpened <code>true</code> if the transport was opened for the current lease, or <code>false</code> if it has been leased before.
+	 */
+	void setNewlyOpened(final boolean newlyOpened) {
+		this.newlyOpened = newlyOpened;
+	}
+
+	/**
+	 * The proxy to which the transport is connected and which forwards each request to the host, or <code>null</code> if requests are sent to the host itself,
+	 * perhaps through a tunnel.
+	 */
+	private Host forwardingProxy = null;
+
+	/**
+	 * @return The proxy to which the transport is connected and which forwards each request to the host, or <code>null</code> if requests are sent to the host
+	 *         itself, perhaps through a tunnel.
+	 */
+	Host getForwardingProxy() {
+		return forwardingProxy;
+	}
+
+	/**
+	 * Sets the proxy to which the transport is connected and which forwards each request to the host. Requests over the transport must then use the absolute
+	 * form of the request target (RFC 7230 5.3.2).
+	 * @param forwardingProxy The proxy forwarding requests, or <code>null</code> if requests are sent to the host itself.
+	 */
+	void setForwardingProxy(final Host forwardingProxy) {
+		this.forwardingProxy = forwardingProxy;
+	}
+
+	/** The admission control that admitted the current exchange over this transport, or <code>null</code> if the exchange was not subject to admission. */
+	private HTTPAdmissionControl admissionControl = null;
+
+	/** @return The admission control that admitted the current exchange over this transport, or <code>null</code> if the exchange was not subject to admission. */
+	HTTPAdmissionControl getAdmissionControl() {
+		return admissionControl;
+	}
+
+	/** The circuit breaker that allowed the current exchange over this transport, or <code>null</code> if the exchange was not subject to a circuit breaker. */
+	private HTTPCircuitBreaker circuitBreaker = null;
+
+	/** @return The circuit breaker that allowed the current exchange over this transport, or <code>null</code> if the exchange was not subject to a circuit breaker. */
+	HTTPCircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	/**
+	 * Starts an exchange over this transport, noting the admission control and circuit breaker that let it through and starting the measurement of the
+	 * exchange.
+	 * @param admissionControl The admission control that admitted the exchange, or <code>null</code> if the exchange was not subject to admission.
+	 * @param circuitBreaker The circuit breaker that allowed the exchange, or <code>null</code> if the exchange was not subject to a circuit breaker.
+	 */
+	void startExchange(final HTTPAdmissionControl admissionControl, final HTTPCircuitBreaker circuitBreaker) {
+		this.admissionControl = admissionControl;
+		this.circuitBreaker = circuitBreaker;
+		exchangeStartNanos = System.nanoTime();
+		responseLatencyNanos = -1;
+		overloaded = false;
+	}
+
+	/** Finishes the current exchange over this transport, so that the transport may be leased again for another exchange. */
+	void finishExchange() {
+		admissionControl = null;
+		circuitBreaker = null;
+	}
+
+	/** The {@link System#nanoTime()} at which the current exchange started. */
+	private long exchangeStartNanos;
+
+	/** The number of nanoseconds from the start of the current exchange until the host began responding, or <code>-1</code> if the host has not responded. */
+	private long responseLatencyNanos = -1;
+
+	/** @return The number of nanoseconds from the start of the current exchange until the host began responding, or <code>-1</code> if the host has not responded. */
+	long getResponseLatencyNanos() {
+		return responseLatencyNanos;
+	}
+
+	/** Whether the host has indicated during the current exchange that it is overloaded. */
+	private boolean overloaded = false;
+
+	/** @return Whether the host has indicated during the current exchange that it is overloaded. */
+	boolean isOverloaded() {
+		return overloaded;
+	}
+
+	/**
+	 * Records that the host has begun responding in the current exchange. The latency is measured to the first response of the exchange; a server error
+	 * indicates that the host is overloaded.
+	 * @param statusCode The status code of the response.
+	 */
+	void recordResponse(final int statusCode) {
+		if(responseLatencyNanos < 0) {
+			responseLatencyNanos = System.nanoTime() - exchangeStartNanos;
+		}
+		if(statusCode / 100 == 5) {
+			overloaded = true;
+		}
+	}
+
+	/** Records that the host has indicated during the current exchange that it is overloaded, for example by not responding in time. */
+	void recordOverload() {
+		overloaded = true;
+	}
+
+	/** The {@link System#nanoTime()} at which the transport was last used. */
+	private long lastUsedNanos = System.nanoTime();
+
+	/** @return The {@link System#nanoTime()} at which the transport was last used. */
+	public long getLastUsedNanos() {
+		return lastUsedNanos;
+	}
+
+	/** Records that the transport has just been used, e.g. when it finishes an exchange and becomes idle. */
+	public void touch() {
+		lastUsedNanos = System.nanoTime();
+	}
+
+	/** The number of nanoseconds taken to connect to the host, or <code>-1</code> if not known. */
+	private long connectNanos = -1;
+
+	/** @return The number of nanoseconds taken to connect to the host, including any proxy tunnel, or <code>-1</code> if not known. */
+	public long getConnectNanos() {
+		return connectNanos;
+	}
+
+	/** The number of nanoseconds taken by the TLS handshake, or <code>-1</code> if not known. */
+	private long handshakeNanos = -1;
+
+	/** @return The number of nanoseconds taken by the TLS handshake, <code>0</code> if the transport is not secure, or <code>-1</code> if not known. */
+	public long getHandshakeNanos() {
+		return handshakeNanos;
+	}
+
+	/**
+	 * Records how long it took to establish the transport.
+	 * @param connectNanos The number of nanoseconds taken to connect to the host.
+	 * @param handshakeNanos The number of nanoseconds taken by the TLS handshake, or <code>0</code> if the transport is not secure.
+	 */
+	void setSetupNanos(final long connectNanos, final long handshakeNanos) {
+		this.connectNanos = connectNanos;
+		this.handshakeNanos = handshakeNanos;
+	}
+
+	/** The number of milliseconds the server will keep the transport open while idle, or <code>-1</code> if the server has not indicated a timeout. */
+	private long keepAliveTimeout = -1;
+
+	/** @return The number of milliseconds the server will keep the transport open while idle, or <code>-1</code> if the server has not indicated a timeout. */
+	public long getKeepAliveTimeout() {
+		return keepAliveTimeout;
+	}
+
+	/**
+	 * Sets the number of milliseconds the server will keep the transport open while idle, as indicated by the server.
+	 * @param keepAliveTimeout The idle timeout in milliseconds, or <code>-1</code> if the server has not indicated a timeout.
+	 */
+	public void setKeepAliveTimeout(final long keepAliveTimeout) {
+		this.keepAliveTimeout = keepAliveTimeout;
+	}
+
+	/** The number of further requests the server will allow on the transport, or <code>-1</code> if the server has not indicated a maximum. */
+	private int keepAliveMax = -1;
+
+	/** @return The number of further requests the server will allow on the transport, or <code>-1</code> if the server has not indicated a maximum. */
+	public int getKeepAliveMax() {
+		return keepAliveMax;
+	}
+
+	/**
+	 * Sets the number of further requests the server will allow on the transport, as indicated by the server.
+	 * @param keepAliveMax The number of further requests, or <code>-1</code> if the server has not indicated a maximum.
+	 */
+	public void setKeepAliveMax(final int keepAliveMax) {
+		this.keepAliveMax = keepAliveMax;
+	}
+
+	/** @return <code>true</code> if the server has not indicated that it will refuse further requests on this transport. */
+	public boolean isReusable() {
+		return keepAliveMax != 0;
+	}
+
+	/** The number of milliseconds to wait for data from the server before timing out, or <code>0</code> to wait indefinitely. */
+	private int readTimeout = 0;
+
+	/** @return The number of milliseconds to wait for data from the server before timing out, or <code>0</code> to wait indefinitely. */
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * Sets the number of milliseconds to wait for data from the server before timing out. A read that times out throws a {@link SocketTimeoutException}, after
+	 * which the state of the exchange is unknown and the transport should be closed.
+	 * @param readTimeout The read timeout in milliseconds, or <code>0</code> to wait indefinitely.
+	 * @throws IllegalArgumentException if the given timeout is negative.
+	 * @throws IOException if there is an error applying the timeout to the underlying connection.
+	 */
+	public void setReadTimeout(final int readTimeout) throws IOException {
+		if(readTimeout < 0) {
+			throw new IllegalArgumentException("Read timeout cannot be negative: " + readTimeout);
+		}
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * Determines whether the transport has been idle too long to be reused, either because it has exceeded the given idle time or because it is about to reach
+	 * the idle timeout indicated by the server.
+	 * @param nowNanos The current {@link System#nanoTime()}.
+	 * @param maxIdleTime The maximum number of milliseconds a transport may be idle.
+	 * @param keepAliveTimeoutMargin The number of milliseconds before the server's idle timeout at which to consider the transport expired; at most half the
+	 *          timeout is used as a margin.
+	 * @return <code>true</code> if the transport should no longer be used.
+	 */
+	public boolean isExpired(final long nowNanos, final long maxIdleTime, final long keepAliveTimeoutMargin) {
+		final long idleTime = NANOSECONDS.toMillis(nowNanos - lastUsedNanos);
+		if(idleTime >= maxIdleTime) {
+			return true;
+		}
+		final long keepAliveTimeout = getKeepAliveTimeout();
+		return keepAliveTimeout >= 0 && idleTime >= keepAliveTimeout - Math.min(keepAliveTimeoutMargin, keepAliveTimeout / 2); //don't let the margin swallow short timeouts
+	}
+
+	/**
+	 * Host and secure constructor.
+	 * @param host The host to which the transport is connected.
+	 * @param secure Whether the transport is secure.
+	 * @throws NullPointerException if the given host is <code>null</code>.
+	 */
+	public HTTPTransport(final Host host, final boolean secure) {
+		this.host = requireNonNull(host, "Host cannot be null.");
+		this.secure = secure;
+	}
+
+	/** @return The IP address to which the transport is connected, or <code>null</code> if the address is not known or does not apply. */
+	public abstract InetAddress getInetAddress();
+
+	/** @return The buffered input stream for reading from the server. */
+	public abstract InputStream getInputStream();
+
+	/** @return The buffered output stream for writing to the server. */
+	public abstract OutputStream getOutputStream();
+
+	/** @return <code>true</code> if the transport is connected and has not been closed. */
+	public abstract boolean isOpen();
+
+	/**
+	 * Determines whether an idle transport can no longer be used, for example because the server closed the connection while it was idle. This check should be
+	 * inexpensive enough to perform each time an idle transport is reused. This version returns <code>true</code> if the transport is not open.
+	 * @return <code>true</code> if the transport should not be reused.
+	 */
+	public boolean isStale() {
+		return !isOpen();
+	}
+
+	/**
+	 * Waits for data from the server to become available, without consuming it, e.g. to see whether the server answers a request header before its body is
+	 * sent. Unlike a read that exceeds the {@link #getReadTimeout() read timeout}, the wait timing out leaves the transport usable. This version only checks for
+	 * data already buffered, without waiting.
+	 * @param timeout The maximum number of milliseconds to wait.
+	 * @return <code>true</code> if data or the end of the stream is available to be read, or <code>false</code> if the wait timed out.
+	 * @throws IOException if there is an error waiting for data from the server.
+	 */
+	public boolean awaitInput(final int timeout) throws IOException {
+		return getInputStream().available() > 0;
+	}
+
+	/**
+	 * Aborts the transport from another thread, failing any read or write in progress or to come, without releasing anything the thread using the transport may
+	 * still need. The transport will no longer be {@link #isOpen() open}, and must still be {@link #close() closed} by the thread using it. This method is safe
+	 * to call from any thread, at any time, and more than once. This version simply closes the transport.
+	 * @throws IOException if there is an error aborting the transport.
+	 */
+	public void abort() throws IOException {
+		close();
+	}
+
+	/**
+	 * Closes the transport. If the transport is already closed, no action occurs. This method is safe to call from any thread, even while another thread is
+	 * reading or writing, which will then fail.
+	 * @throws IOException if there is an error closing the transport.
+	 */
+	@Override
+	public abstract void close() throws IOException;
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "(" + getHost() + (isSecure() ? ", secure" : "") + ")";
+	}
+
+}
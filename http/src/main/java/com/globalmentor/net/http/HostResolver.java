@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.net.*;
+import java.util.*;
+
+/**
+ * A strategy for resolving the name of a host to the addresses at which it may be reached. A test may supply its own resolver to map host names to local
+ * servers.
+ * @author Garret Wilson
+ * @see HTTPClient#setResolver(HostResolver)
+ */
+@FunctionalInterface
+public interface HostResolver {
+
+	/** The resolver that uses the name service of the platform, which returns all the IPv4 and IPv6 addresses of a host. */
+	public static final HostResolver SYSTEM = hostName -> Arrays.asList(InetAddress.getAllByName(hostName));
+
+	/**
+	 * Resolves a host name.
+	 * @param hostName The name of the host, which may be an IP address literal.
+	 * @return The addresses of the host, in order of preference; never empty.
+	 * @throws UnknownHostException if no address for the host could be found.
+	 */
+	public List<InetAddress> resolve(final String hostName) throws UnknownHostException;
+
+}
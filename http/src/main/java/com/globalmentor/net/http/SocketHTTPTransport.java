@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import java.io.*;
+import java.net.*;
+
+import com.globalmentor.net.Host;
+
+import static com.globalmentor.java.Conditions.*;
+import static java.util.Objects.*;
+import static java.util.concurrent.TimeUnit.*;
+
+/**
+ * An HTTP transport using a blocking {@link Socket}, which may be an SSL socket for secure transports.
+ * @author Garret Wilson
+ */
+public class SocketHTTPTransport extends HTTPTransport {
+
+	/** The number of milliseconds to wait for the server when checking whether an idle socket is stale. */
+	private static final int STALE_CHECK_TIMEOUT = 1;
+
+	/** The default number of milliseconds a socket must have been idle before it is checked by reading from it. */
+	public static final int DEFAULT_STALE_CHECK_INACTIVITY = 2000;
+
+	/** The number of milliseconds a socket must have been idle before it is checked by reading from it. */
+	private volatile int staleCheckInactivity = DEFAULT_STALE_CHECK_INACTIVITY;
+
+	/** @return The number of milliseconds a socket must have been idle before it is checked by reading from it. */
+	public int getStaleCheckInactivity() {
+		return staleCheckInactivity;
+	}
+
+	/**
+	 * Sets the number of milliseconds a socket must have been idle before {@link #isStale()} checks it by reading from it. A socket used more recently is
+	 * assumed to still be alive, as servers rarely close connections so soon, sparing each reuse the cost of a blocking read.
+	 * @param staleCheckInactivity The inactivity threshold in milliseconds, or <code>0</code> if the socket should be checked each time.
+	 * @throws IllegalArgumentException if the given threshold is negative.
+	 */
+	public void setStaleCheckInactivity(final int staleCheckInactivity) {
+		this.staleCheckInactivity = checkArgumentNotNegative(staleCheckInactivity);
+	}
+
+	/** The socket to the server. */
+	private final Socket socket;
+
+	/** @return The socket to the server. */
+	public Socket getSocket() {
+		return socket;
+	}
+
+	/** The buffered input stream from the socket. */
+	private final InputStream inputStream;
+
+	@Override
+	public InputStream getInputStream() {
+		return inputStream;
+	}
+
+	/** The buffered output stream to the socket. */
+	private final OutputStream outputStream;
+
+	@Override
+	public OutputStream getOutputStream() {
+		return outputStream;
+	}
+
+	/**
+	 * Socket constructor.
+	 * @param host The host to which the transport is connected.
+	 * @param secure Whether the transport is secure.
+	 * @param socket The connected socket to the server.
+	 * @throws NullPointerException if the given host and/or socket is <code>null</code>.
+	 * @throws IOException if the streams of the socket could not be retrieved.
+	 */
+	public SocketHTTPTransport(final Host host, final boolean secure, final Socket socket) throws IOException {
+		super(host, secure);
+		this.socket = requireNonNull(socket, "Socket cannot be null.");
+		inputStream = new BufferedInputStream(socket.getInputStream()); //buffer the streams so that the parser's byte-by-byte reads don't result in system calls
+		outputStream = new BufferedOutputStream(socket.getOutputStream());
+	}
+
+	@Override
+	public InetAddress getInetAddress() {
+		return socket.getInetAddress();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version sets the timeout of the socket.
+	 * </p>
+	 * @see Socket#setSoTimeout(int)
+	 */
+	@Override
+	public void setReadTimeout(final int readTimeout) throws IOException {
+		super.setReadTimeout(readTimeout);
+		socket.setSoTimeout(readTimeout);
+	}
+
+	@Override
+	public boolean isOpen() {
+		return socket.isConnected() && !socket.isClosed();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the socket has been idle longer than the {@link #getStaleCheckInactivity() stale check inactivity} threshold, this version briefly attempts to read
+	 * from the socket. An idle socket should have nothing to read; if the server has closed the connection the read will report the end of the stream, and if
+	 * the server has sent something unsolicited (such as a timeout response) the socket is no longer at a message boundary. Either way the socket cannot be
+	 * reused. If the read times out, the socket is still usable.
+	 * </p>
+	 */
+	@Override
+	public boolean isStale() {
+		if(!isOpen() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+			return true;
+		}
+		try {
+			if(inputStream.available() > 0) { //if something unexpected is already waiting for us
+				return true;
+			}
+			if(System.nanoTime() - getLastUsedNanos() < MILLISECONDS.toNanos(staleCheckInactivity)) { //don't pay for a read if the socket was used recently
+				return false;
+			}
+			final int soTimeout = socket.getSoTimeout();
+			socket.setSoTimeout(STALE_CHECK_TIMEOUT);
+			try {
+				inputStream.mark(1);
+				if(inputStream.read() < 0) { //if the server closed the connection
+					return true;
+				}
+				inputStream.reset();
+				return true; //the server sent data we didn't ask for
+			} catch(final SocketTimeoutException socketTimeoutException) { //nothing to read; the connection is still alive
+				return false;
+			} finally {
+				socket.setSoTimeout(soTimeout);
+			}
+		} catch(final IOException ioException) { //if we can't even check the socket, it's not worth using
+			return true;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This version briefly reads from the socket with the given timeout, leaving the byte read in the buffer.
+	 * </p>
+	 */
+	@Override
+	public boolean awaitInput(final int timeout) throws IOException {
+		if(inputStream.available() > 0) {
+			return true;
+		}
+		final int soTimeout = socket.getSoTimeout();
+		socket.setSoTimeout(timeout);
+		try {
+			inputStream.mark(1);
+			inputStream.read(); //the end of the stream counts as input, as it will be reported by the next read
+			inputStream.reset();
+			return true;
+		} catch(final SocketTimeoutException socketTimeoutException) { //nothing to read yet; the socket is still usable
+			return false;
+		} finally {
+			socket.setSoTimeout(soTimeout);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(!socket.isClosed()) { //if the socket is still open
+			socket.close();
+		}
+	}
+
+}
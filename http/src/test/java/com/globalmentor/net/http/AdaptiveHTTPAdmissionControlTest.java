@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of {@link AdaptiveHTTPAdmissionControl}.
+ * @author Garret Wilson
+ */
+public class AdaptiveHTTPAdmissionControlTest {
+
+	/** The host with which exchanges take place. */
+	private static final Host HOST = new Host("example.com", 80);
+
+	/** The latency of a normal exchange. */
+	private static final long LATENCY_NANOS = 1_000_000;
+
+	/**
+	 * Runs exchanges with the host, keeping the host at its current limit.
+	 * @param admissionControl The admission control.
+	 * @param count The number of exchanges to run.
+	 * @param latencyNanos The latency of each exchange.
+	 * @param overloaded Whether each exchange indicates that the host is overloaded.
+	 */
+	private static void exchange(final AdaptiveHTTPAdmissionControl admissionControl, final int count, final long latencyNanos, final boolean overloaded)
+			throws IOException {
+		for(int i = 0; i < count; ++i) {
+			final int limit = admissionControl.getLimit(HOST);
+			for(int j = 0; j < limit; ++j) {
+				admissionControl.acquire(HOST);
+			}
+			admissionControl.release(HOST, latencyNanos, overloaded);
+			for(int j = 1; j < limit; ++j) {
+				admissionControl.release(HOST);
+			}
+		}
+	}
+
+	/** Tests that the limit grows while the host is saturated and responds normally, up to the maximum. */
+	@Test
+	public void testLimitGrowsWhenSaturated() throws IOException {
+		final AdaptiveHTTPAdmissionControl admissionControl = new AdaptiveHTTPAdmissionControl(4, 1, 8, 0);
+		exchange(admissionControl, 20, LATENCY_NANOS, false);
+		assertThat(admissionControl.getLimit(HOST), is(greaterThan(4)));
+		exchange(admissionControl, 200, LATENCY_NANOS, false);
+		assertThat(admissionControl.getLimit(HOST), is(8));
+	}
+
+	/** Tests that by default the limit never grows beyond the number of connections the connection pool allows for a host. */
+	@Test
+	public void testDefaultLimitCappedByPool() throws IOException {
+		final AdaptiveHTTPAdmissionControl admissionControl = new AdaptiveHTTPAdmissionControl();
+		assertThat(admissionControl.getMaxConcurrency(), is(HTTPConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST));
+		exchange(admissionControl, 200, LATENCY_NANOS, false);
+		assertThat(admissionControl.getLimit(HOST), is(HTTPConnectionPool.DEFAULT_MAX_CONNECTIONS_PER_HOST));
+	}
+
+	/** Tests that the limit does not grow when the host is far from its limit. */
+	@Test
+	public void testLimitUnchangedWhenIdle() throws IOException {
+		final AdaptiveHTTPAdmissionControl admissionControl = new AdaptiveHTTPAdmissionControl(4, 1, 8, 0);
+		for(int i = 0; i < 100; ++i) {
+			admissionControl.acquire(HOST);
+			admissionControl.release(HOST, LATENCY_NANOS, false);
+		}
+		assertThat(admissionControl.getLimit(HOST), is(4));
+	}
+
+	/** Tests that the limit shrinks when the host is overloaded, but no lower than the minimum. */
+	@Test
+	public void testLimitShrinksWhenOverloaded() throws IOException {
+		final AdaptiveHTTPAdmissionControl admissionControl = new AdaptiveHTTPAdmissionControl(8, 2, 16, 0);
+		admissionControl.acquire(HOST);
+		admissionControl.release(HOST, -1, true);
+		assertThat(admissionControl.getLimit(HOST), is(7));
+		admissionControl.acquire(HOST);
+		admissionControl.release(HOST, -1, true);
+		assertThat("Limit not reduced again within the same window.", admissionControl.getLimit(HOST), is(7));
+		exchange(admissionControl, 200, -1, true);
+		assertThat(admissionControl.getLimit(HOST), is(2));
+	}
+
+	/** Tests that the limit shrinks when an exchange is much slower than usual. */
+	@Test
+	public void testLimitShrinksWhenSlow() throws IOException {
+		final AdaptiveHTTPAdmissionControl admissionControl = new AdaptiveHTTPAdmissionControl(8, 1, 16, 0);
+		for(int i = 0; i < 10; ++i) {
+			admissionControl.acquire(HOST);
+			admissionControl.release(HOST, LATENCY_NANOS, false);
+		}
+		assertThat(admissionControl.getAverageLatencyNanos(HOST), is(LATENCY_NANOS));
+		admissionControl.acquire(HOST);
+		admissionControl.release(HOST, LATENCY_NANOS * 10, false);
+		assertThat(admissionControl.getLimit(HOST), is(7));
+	}
+
+}
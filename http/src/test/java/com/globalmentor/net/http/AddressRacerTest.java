@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.util.Arrays.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.net.*;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link AddressRacer}.
+ * @author Garret Wilson
+ */
+public class AddressRacerTest {
+
+	/** Tests that IPv6 and IPv4 addresses are interleaved for racing connection attempts, beginning with the family of the first address. */
+	@Test
+	public void testInterleaveAddressFamilies() throws UnknownHostException {
+		final InetAddress ipv6Address1 = InetAddress.getByName("2001:db8::1");
+		final InetAddress ipv6Address2 = InetAddress.getByName("2001:db8::2");
+		final InetAddress ipv4Address1 = InetAddress.getByName("192.0.2.1");
+		final InetAddress ipv4Address2 = InetAddress.getByName("192.0.2.2");
+		final List<InetAddress> interleaved = AddressRacer.interleave(asList(ipv6Address1, ipv6Address2, ipv4Address1, ipv4Address2));
+		assertThat(interleaved, is(asList(ipv6Address1, ipv4Address1, ipv6Address2, ipv4Address2)));
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.util.Arrays.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.net.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link CachingHostResolver}.
+ * @author Garret Wilson
+ */
+public class CachingHostResolverTest {
+
+	/** Tests that addresses are looked up once while cached, and that successive resolutions rotate through the addresses. */
+	@Test
+	public void testCachedRoundRobin() throws UnknownHostException {
+		final InetAddress address1 = InetAddress.getByAddress("replica", new byte[] {10, 0, 0, 1});
+		final InetAddress address2 = InetAddress.getByAddress("replica", new byte[] {10, 0, 0, 2});
+		final InetAddress address3 = InetAddress.getByAddress("replica", new byte[] {10, 0, 0, 3});
+		final AtomicInteger lookupCount = new AtomicInteger();
+		final CachingHostResolver resolver = new CachingHostResolver(hostName -> {
+			lookupCount.incrementAndGet();
+			return asList(address1, address2, address3);
+		});
+		assertThat(resolver.resolve("replica"), is(asList(address1, address2, address3)));
+		assertThat(resolver.resolve("replica"), is(asList(address2, address3, address1)));
+		assertThat(resolver.resolve("replica"), is(asList(address3, address1, address2)));
+		assertThat(lookupCount.get(), is(1));
+		resolver.invalidate("replica");
+		resolver.resolve("replica");
+		assertThat(lookupCount.get(), is(2));
+	}
+
+	/** Tests that addresses are looked up again once the time-to-live has passed. */
+	@Test
+	public void testExpiration() throws UnknownHostException {
+		final AtomicInteger lookupCount = new AtomicInteger();
+		final CachingHostResolver resolver = new CachingHostResolver(hostName -> {
+			lookupCount.incrementAndGet();
+			return asList(InetAddress.getByAddress(hostName, new byte[] {127, 0, 0, 1}));
+		}, 0);
+		resolver.resolve("localhost");
+		resolver.resolve("localhost");
+		assertThat(lookupCount.get(), is(2));
+	}
+
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link ChannelHTTPTransport}, using a loopback server that echoes each line it receives.
+ * @author Garret Wilson
+ */
+public class ChannelHTTPTransportTest {
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The executor for reading on another thread. */
+	private ExecutorService executor;
+
+	/** Starts a loopback server echoing lines until the client closes the connection. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer((inputStream, outputStream) -> {
+			String line;
+			while((line = LoopbackServer.readLine(inputStream)) != null) {
+				outputStream.write((line + "\r\n").getBytes(ISO_8859_1));
+				outputStream.flush();
+			}
+		});
+		executor = Executors.newCachedThreadPool();
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		executor.shutdownNow();
+		server.close();
+	}
+
+	/** @return A new transport connected to the loopback server. */
+	private ChannelHTTPTransport connect() throws IOException {
+		return new ChannelHTTPTransport(server.getHost(), false, SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort())));
+	}
+
+	/** Tests writing to and reading from the server through the streams. */
+	@Test
+	public void testWriteRead() throws IOException {
+		try (final ChannelHTTPTransport transport = connect()) {
+			transport.getOutputStream().write("hello\r\n".getBytes(ISO_8859_1));
+			transport.getOutputStream().flush();
+			assertThat(LoopbackServer.readLine(transport.getInputStream()), is("hello"));
+		}
+	}
+
+	/** Tests that closing an idle transport recycles its buffers at once, and that its streams may no longer be used. */
+	@Test
+	public void testCloseRecyclesBuffers() throws IOException {
+		final ChannelHTTPTransport transport = connect();
+		transport.close();
+		assertThat(transport.isBuffersRecycled(), is(true));
+		assertThrows(ClosedChannelException.class, () -> transport.getInputStream().read());
+		assertThrows(ClosedChannelException.class, () -> transport.getOutputStream().write(0));
+	}
+
+	/** Tests that a transport closed from another thread during a blocked read fails the read cleanly, with the buffers recycled once the read returns. */
+	@Test
+	public void testCloseDuringRead() throws Exception {
+		final ChannelHTTPTransport transport = connect();
+		final Future<Integer> read = executor.submit(() -> transport.getInputStream().read()); //the server sends nothing unless asked
+		transport.close();
+		final ExecutionException executionException = assertThrows(ExecutionException.class, () -> read.get(5, TimeUnit.SECONDS));
+		assertThat(executionException.getCause(), is(instanceOf(IOException.class)));
+		assertThat(transport.isBuffersRecycled(), is(true));
+	}
+
+	/**
+	 * Tests that aborting a transport from another thread during a blocked read ends the read without closing the channel or recycling the buffers, which are
+	 * left for the reading thread.
+	 */
+	@Test
+	public void testAbortDuringRead() throws Exception {
+		final ChannelHTTPTransport transport = connect();
+		final Future<Integer> read = executor.submit(() -> transport.getInputStream().read()); //the server sends nothing unless asked
+		transport.abort();
+		assertThat(read.get(5, TimeUnit.SECONDS), is(-1));
+		assertThat(transport.isOpen(), is(false));
+		assertThat(transport.getChannel().isOpen(), is(true));
+		assertThat(transport.isBuffersRecycled(), is(false));
+		transport.close();
+		assertThat(transport.isBuffersRecycled(), is(true));
+	}
+
+	/** Tests that a read blocking longer than the read timeout fails with a timeout, after which the transport is no longer open and cannot be read again. */
+	@Test
+	public void testReadTimeout() throws IOException {
+		try (final ChannelHTTPTransport transport = connect()) {
+			transport.setReadTimeout(100);
+			assertThrows(SocketTimeoutException.class, () -> transport.getInputStream().read()); //the server sends nothing unless asked
+			assertThat(transport.isOpen(), is(false));
+			assertThrows(SocketTimeoutException.class, () -> transport.getInputStream().read());
+		}
+	}
+
+	/** Tests that reads returning within the read timeout leave the transport open for further exchanges. */
+	@Test
+	public void testReadsWithinTimeout() throws IOException {
+		try (final ChannelHTTPTransport transport = connect()) {
+			transport.setReadTimeout(5000);
+			for(int i = 0; i < 100; ++i) {
+				transport.getOutputStream().write(("line" + i + "\r\n").getBytes(ISO_8859_1));
+				transport.getOutputStream().flush();
+				assertThat(LoopbackServer.readLine(transport.getInputStream()), is("line" + i));
+			}
+			assertThat(transport.isOpen(), is(true));
+		}
+	}
+
+}
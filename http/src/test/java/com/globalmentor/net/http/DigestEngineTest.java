@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of {@link DigestEngine}, using the examples of <a href="https://www.ietf.org/rfc/rfc2617.txt">RFC 2617</a> section 3.5 and
+ * <a href="https://www.rfc-editor.org/rfc/rfc7616">RFC 7616</a> section 3.9.1.
+ * @author Garret Wilson
+ */
+public class DigestEngineTest {
+
+	/** The username of the example. */
+	private static final String USERNAME = "Mufasa";
+
+	/** The realm of the example. */
+	private static final String REALM = "testrealm@host.com";
+
+	/** The password of the example. */
+	private static final String PASSWORD = "Circle Of Life";
+
+	/** The nonce of the example. */
+	private static final String NONCE = "dcd98b7102dd2f0e8b11d0f600bfb0c093";
+
+	/** The digest URI of the example. */
+	private static final String DIGEST_URI = "/dir/index.html";
+
+	/** The cnonce of the example. */
+	private static final String CNONCE = "0a4f113b";
+
+	/** The request digest of the example. */
+	private static final String RESPONSE = "6629fae49393a05397450978507c4ef1";
+
+	/** The realm of the RFC 7616 example. */
+	private static final String RFC7616_REALM = "http-auth@example.org";
+
+	/** The password of the RFC 7616 example. */
+	private static final String RFC7616_PASSWORD = "Circle of Life";
+
+	/** The nonce of the RFC 7616 example. */
+	private static final String RFC7616_NONCE = "7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v";
+
+	/** The cnonce of the RFC 7616 example. */
+	private static final String RFC7616_CNONCE = "f2/wE4q74E6zIJEtWaHKaf5wv/H5QzzpXusqGemxURZJ";
+
+	/** Tests that the request digest of the RFC 2617 example is calculated. */
+	@Test
+	public void testGetResponse() throws NoSuchAlgorithmException {
+		final DigestEngine engine = new DigestEngine();
+		final char[] password = PASSWORD.toCharArray();
+		assertThat(engine.getResponse(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH), is(RESPONSE));
+		assertThat("Cached hash gives the same result.",
+				engine.getResponse(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH), is(RESPONSE));
+	}
+
+	/** Tests that the request digests of the RFC 7616 example are calculated for each algorithm. */
+	@Test
+	public void testGetResponseAlgorithms() throws NoSuchAlgorithmException {
+		final DigestEngine engine = new DigestEngine();
+		final char[] password = RFC7616_PASSWORD.toCharArray();
+		assertThat(engine.getResponse(DigestAlgorithm.MD5, "GET", USERNAME, RFC7616_REALM, password, RFC7616_NONCE, DIGEST_URI, 1, RFC7616_CNONCE, QOP.AUTH),
+				is("8ca523f5e9506fed4657c9700eebdbec"));
+		assertThat(
+				engine.getResponse(DigestAlgorithm.SHA_256, "GET", USERNAME, RFC7616_REALM, password, RFC7616_NONCE, DIGEST_URI, 1, RFC7616_CNONCE, QOP.AUTH),
+				is("753927fa0e85d155564e2e272a28d1802ca10daf4496794697cf8db5856cb6c1"));
+		assertThat(
+				engine.getResponse(DigestAlgorithm.SHA_512_256, "GET", USERNAME, RFC7616_REALM, password, RFC7616_NONCE, DIGEST_URI, 1, RFC7616_CNONCE, QOP.AUTH),
+				is("430d05014cecc49cab6fbe03176d41a1da86cbfe24a16580e22aaad928d960d0"));
+	}
+
+	/** Tests that the request digests of the session variants are calculated, both before and after the session key is cached. */
+	@Test
+	public void testGetResponseSession() throws NoSuchAlgorithmException {
+		final DigestEngine engine = new DigestEngine();
+		final char[] password = RFC7616_PASSWORD.toCharArray();
+		for(int i = 0; i < 2; ++i) {
+			assertThat(
+					engine.getResponse(DigestAlgorithm.MD5_SESS, "GET", USERNAME, RFC7616_REALM, password, RFC7616_NONCE, DIGEST_URI, 1, RFC7616_CNONCE, QOP.AUTH),
+					is("e783283f46242139c486a698fec7211d"));
+			assertThat(engine.getResponse(DigestAlgorithm.SHA_256_SESS, "GET", USERNAME, RFC7616_REALM, password, RFC7616_NONCE, DIGEST_URI, 1, RFC7616_CNONCE,
+					QOP.AUTH), is("2fd51b3a77ad75bad6afad6003e818d767133c46d9e2749e7f5232ae1ea3efd7"));
+			assertThat(engine.getResponse(DigestAlgorithm.SHA_512_256_SESS, "GET", USERNAME, RFC7616_REALM, password, RFC7616_NONCE, DIGEST_URI, 1,
+					RFC7616_CNONCE, QOP.AUTH), is("3f2a34f923c38b0fb26dce2fdfc2ce326c23cecf86fbb1444f3e51fbbc2cb92e"));
+		}
+		assertThat("The session key depends on the cnonce.",
+				engine.getResponse(DigestAlgorithm.SHA_256_SESS, "GET", USERNAME, RFC7616_REALM, password, RFC7616_NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH),
+				not("2fd51b3a77ad75bad6afad6003e818d767133c46d9e2749e7f5232ae1ea3efd7"));
+	}
+
+	/** Tests validating request digests. */
+	@Test
+	public void testIsValid() throws NoSuchAlgorithmException {
+		final DigestEngine engine = new DigestEngine();
+		final char[] password = PASSWORD.toCharArray();
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE), is(true));
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 2, CNONCE, QOP.AUTH, RESPONSE), is(false));
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "PUT", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE), is(false));
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, "Circle of Life".toCharArray(), NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE),
+				is(false));
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE.substring(1)), is(false));
+	}
+
+	/** Tests that a cached hash is not used for a password changed in place once it has been forgotten. */
+	@Test
+	public void testForget() throws NoSuchAlgorithmException {
+		final DigestEngine engine = new DigestEngine();
+		final char[] password = PASSWORD.toCharArray();
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE), is(true));
+		Arrays.fill(password, 'x');
+		engine.forget(USERNAME, REALM);
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE), is(false));
+	}
+
+	/** Tests that caching many session keys does not evict the cached hash of a password still in use. */
+	@Test
+	public void testSessionKeysDoNotEvictPasswordHashes() throws NoSuchAlgorithmException {
+		final DigestEngine engine = new DigestEngine(2);
+		final char[] password = PASSWORD.toCharArray();
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE), is(true));
+		for(int i = 0; i < 10; ++i) {
+			engine.getResponse(DigestAlgorithm.MD5_SESS, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE + i, QOP.AUTH);
+		}
+		Arrays.fill(password, 'x'); //only the cached hash can still validate the response
+		assertThat(engine.isValid(DigestAlgorithm.MD5, "GET", USERNAME, REALM, password, NONCE, DIGEST_URI, 1, CNONCE, QOP.AUTH, RESPONSE), is(true));
+	}
+
+	/** Tests that credentials parsed from a request are validated by the default engine. */
+	@Test
+	public void testCredentialsIsValid() throws NoSuchAlgorithmException {
+		final DigestAuthenticateCredentials credentials = new DigestAuthenticateCredentials(USERNAME, REALM, NONCE, DIGEST_URI, RESPONSE, CNONCE, null, QOP.AUTH,
+				1, "MD5");
+		assertThat(credentials.getNonceCountString(), is("00000001"));
+		assertThat(credentials.isValid("GET", PASSWORD.toCharArray()), is(true));
+		assertThat(credentials.isValid("GET", "wrong".toCharArray()), is(false));
+	}
+
+	/** Tests that credentials recognize the RFC 7616 algorithm names regardless of case. */
+	@Test
+	public void testCredentialsAlgorithm() throws NoSuchAlgorithmException {
+		final DigestAuthenticateCredentials credentials = new DigestAuthenticateCredentials(USERNAME, RFC7616_REALM, RFC7616_NONCE, DIGEST_URI,
+				"2fd51b3a77ad75bad6afad6003e818d767133c46d9e2749e7f5232ae1ea3efd7", RFC7616_CNONCE, null, QOP.AUTH, 1, "sha-256-SESS");
+		assertThat(credentials.getDigestAlgorithm(), is(DigestAlgorithm.SHA_256_SESS));
+		assertThat(credentials.getAlgorithm(), is("SHA-256-sess"));
+		assertThat(credentials.isValid("GET", RFC7616_PASSWORD.toCharArray()), is(true));
+		assertThrows(NoSuchAlgorithmException.class,
+				() -> new DigestAuthenticateCredentials(USERNAME, REALM, NONCE, DIGEST_URI, RESPONSE, CNONCE, null, QOP.AUTH, 1, "SHA-1"));
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.http.DigestNonceManager.Status;
+
+/**
+ * Tests of {@link DigestNonceManager}.
+ * @author Garret Wilson
+ */
+public class DigestNonceManagerTest {
+
+	/** The realm of the challenges. */
+	private static final String REALM = "test";
+
+	/**
+	 * Creates credentials for a nonce. The response is not checked by the nonce manager, so it is not calculated.
+	 * @param nonce The nonce as sent to the client.
+	 * @param nonceCount The nonce count.
+	 * @return Credentials with the given nonce and nonce count.
+	 */
+	private static DigestAuthenticateCredentials createCredentials(final String nonce, final long nonceCount) throws NoSuchAlgorithmException {
+		return new DigestAuthenticateCredentials("user", REALM, nonce, "/", "0", "cnonce", null, QOP.AUTH, nonceCount, DigestAlgorithm.MD5.toString());
+	}
+
+	/** Tests that each nonce count may only be used once, even out of order. */
+	@Test
+	public void testReplay() throws NoSuchAlgorithmException {
+		final DigestNonceManager nonceManager = new DigestNonceManager();
+		final String nonce = nonceManager.createChallenge(REALM).getNonceDigest();
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 1)), is(Status.ACCEPTED));
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 1)), is(Status.REPLAYED));
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 3)), is(Status.ACCEPTED));
+		assertThat("An earlier nonce count arriving late is allowed once.", nonceManager.checkNonce(createCredentials(nonce, 2)), is(Status.ACCEPTED));
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 2)), is(Status.REPLAYED));
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 0)), is(Status.REPLAYED));
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 100)), is(Status.ACCEPTED));
+		assertThat("A nonce count far below the highest is not tracked.", nonceManager.checkNonce(createCredentials(nonce, 50)), is(Status.REPLAYED));
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 80)), is(Status.ACCEPTED));
+	}
+
+	/** Tests that nonces not issued by the manager are stale, as are nonces issued before the manager was cleared. */
+	@Test
+	public void testStale() throws NoSuchAlgorithmException {
+		final DigestNonceManager nonceManager = new DigestNonceManager();
+		final String nonce = nonceManager.createChallenge(REALM).getNonceDigest();
+		assertThat(nonceManager.checkNonce(createCredentials("unknown", 1)), is(Status.STALE));
+		nonceManager.clear();
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 1)), is(Status.STALE));
+		final DigestAuthenticateChallenge staleChallenge = nonceManager.createChallenge(REALM, true);
+		assertThat(HTTPFormatter.formatWWWAuthenticateHeader(new StringBuilder(), staleChallenge).toString(), containsString("stale=true"));
+	}
+
+	/** Tests that nonces live for at least the lifetime less one interval, and expire after their lifetime. */
+	@Test
+	public void testExpiration() throws NoSuchAlgorithmException {
+		final AtomicLong nanoTime = new AtomicLong();
+		final DigestNonceManager nonceManager = new DigestNonceManager(DigestAlgorithm.SHA_256, 100, 2, nanoTime::get);
+		final String nonce = nonceManager.createChallenge(REALM).getNonceDigest();
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 1)), is(Status.ACCEPTED));
+		nanoTime.set(MILLISECONDS.toNanos(60)); //the next interval
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 2)), is(Status.ACCEPTED));
+		nanoTime.set(MILLISECONDS.toNanos(110)); //the interval in which the nonce was issued has expired
+		assertThat(nonceManager.checkNonce(createCredentials(nonce, 3)), is(Status.STALE));
+	}
+
+	/** Tests concurrent use of the nonce counts of a nonce, each of which must be accepted exactly once. */
+	@Test
+	public void testConcurrentNonceCounts() throws NoSuchAlgorithmException, InterruptedException {
+		final DigestNonceManager nonceManager = new DigestNonceManager();
+		final String nonce = nonceManager.createChallenge(REALM).getNonceDigest();
+		final int threadCount = 4;
+		final int nonceCountMax = 10000;
+		final AtomicInteger acceptedCount = new AtomicInteger();
+		final Thread[] threads = new Thread[threadCount];
+		for(int i = 0; i < threadCount; ++i) {
+			threads[i] = new Thread(() -> {
+				try {
+					for(int nonceCount = 1; nonceCount <= nonceCountMax; ++nonceCount) { //every thread tries every nonce count
+						if(nonceManager.checkNonce(createCredentials(nonce, nonceCount)) == Status.ACCEPTED) {
+							acceptedCount.incrementAndGet();
+						}
+					}
+				} catch(final NoSuchAlgorithmException noSuchAlgorithmException) {
+					throw new AssertionError(noSuchAlgorithmException);
+				}
+			});
+			threads[i].start();
+		}
+		for(final Thread thread : threads) {
+			thread.join();
+		}
+		assertThat("No nonce count is accepted twice.", acceptedCount.get(), is(lessThanOrEqualTo(nonceCountMax)));
+	}
+
+}
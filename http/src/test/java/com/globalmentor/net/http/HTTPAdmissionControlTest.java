@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of {@link HTTPAdmissionControl}.
+ * @author Garret Wilson
+ */
+public class HTTPAdmissionControlTest {
+
+	/** The host with which exchanges take place. */
+	private static final Host HOST = new Host("example.com", 80);
+
+	/** Tests that exchanges beyond the concurrency limit wait in order, and are admitted as earlier exchanges are released. */
+	@Test
+	public void testQueuedInOrder() throws Exception {
+		final HTTPAdmissionControl admissionControl = new HTTPAdmissionControl(1, 2);
+		admissionControl.acquire(HOST);
+		final CompletableFuture<Void> second = admissionControl.acquireAsync(HOST);
+		final CompletableFuture<Void> third = admissionControl.acquireAsync(HOST);
+		assertThat(second.isDone(), is(false));
+		assertThat(third.isDone(), is(false));
+		assertThat(admissionControl.getActiveCount(HOST), is(1));
+		assertThat(admissionControl.getQueueLength(HOST), is(2));
+		admissionControl.release(HOST);
+		assertThat(second.isDone(), is(true));
+		assertThat(third.isDone(), is(false));
+		admissionControl.release(HOST);
+		assertThat(third.isDone(), is(true));
+		admissionControl.release(HOST);
+		assertThat(admissionControl.getActiveCount(HOST), is(0));
+		assertThat(admissionControl.getQueueLength(HOST), is(0));
+		assertThat(admissionControl.getAdmittedCount(), is(3L));
+		assertThat(admissionControl.getQueuedCount(), is(2L));
+		assertThat(admissionControl.getMaxQueueNanos(), is(greaterThan(0L)));
+	}
+
+	/** Tests that an exchange is rejected at once when the queue for the host is full, without affecting other hosts. */
+	@Test
+	public void testRejectedWhenQueueFull() throws Exception {
+		final HTTPAdmissionControl admissionControl = new HTTPAdmissionControl(1, 1);
+		admissionControl.acquire(HOST);
+		admissionControl.acquireAsync(HOST);
+		final ExecutionException executionException = assertThrows(ExecutionException.class, () -> admissionControl.acquireAsync(HOST).get());
+		assertThat(executionException.getCause(), is(instanceOf(HTTPAdmissionException.class)));
+		assertThrows(HTTPAdmissionException.class, () -> admissionControl.acquire(HOST));
+		assertThat(admissionControl.getRejectedCount(), is(2L));
+		admissionControl.acquire(new Host("example.org", 80)); //other hosts are limited separately
+	}
+
+	/** Tests that a thread interrupted while waiting leaves the queue without being admitted. */
+	@Test
+	public void testInterruptedWhileWaiting() throws Exception {
+		final CountDownLatch queuedLatch = new CountDownLatch(1);
+		final HTTPAdmissionControl admissionControl = new HTTPAdmissionControl(1, 1) {
+			@Override
+			public CompletableFuture<Void> acquireAsync(final Host host) {
+				final CompletableFuture<Void> admission = super.acquireAsync(host);
+				if(!admission.isDone()) { //the exchange is waiting in the queue
+					queuedLatch.countDown();
+				}
+				return admission;
+			}
+		};
+		admissionControl.acquire(HOST);
+		final CompletableFuture<Throwable> failure = new CompletableFuture<Throwable>();
+		final Thread thread = new Thread(() -> {
+			try {
+				admissionControl.acquire(HOST);
+				failure.complete(null);
+			} catch(final Throwable throwable) {
+				failure.complete(throwable);
+			}
+		});
+		thread.start();
+		assertThat(queuedLatch.await(5, TimeUnit.SECONDS), is(true));
+		thread.interrupt(); //even if the thread has not yet started waiting, it will find itself interrupted when it does
+		assertThat(failure.get(5, TimeUnit.SECONDS), is(instanceOf(InterruptedIOException.class)));
+		assertThat(admissionControl.getQueueLength(HOST), is(0));
+		admissionControl.release(HOST);
+		assertThat(admissionControl.getActiveCount(HOST), is(0));
+	}
+
+}
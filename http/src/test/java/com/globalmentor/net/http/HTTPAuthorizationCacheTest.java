@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.text.SyntaxException;
+
+/**
+ * Tests of {@link HTTPAuthorizationCache}.
+ * @author Garret Wilson
+ */
+public class HTTPAuthorizationCacheTest {
+
+	/** A basic authorization header value. */
+	private static final String BASIC_HEADER = "Basic " + Base64.getEncoder().encodeToString("user:pass:word".getBytes(UTF_8));
+
+	/** A digest authorization header value with a nonce count. */
+	private static final String DIGEST_HEADER = "Digest username=\"user\", realm=\"test\", nonce=\"abc\", uri=\"/\", response=\"0123\", algorithm=MD5, "
+			+ "cnonce=\"def\", qop=auth, nc=00000001";
+
+	/** Tests that basic credentials are parsed once and then returned from the cache. */
+	@Test
+	public void testBasic() throws SyntaxException {
+		final HTTPAuthorizationCache cache = new HTTPAuthorizationCache();
+		final AuthenticateCredentials credentials = cache.getCredentials(BASIC_HEADER);
+		assertThat(credentials, is(instanceOf(BasicAuthenticateCredentials.class)));
+		assertThat(((BasicAuthenticateCredentials)credentials).getUsername(), is("user"));
+		assertThat(new String(((BasicAuthenticateCredentials)credentials).getPassword()), is("pass:word"));
+		assertThat(cache.getCredentials(BASIC_HEADER), is(sameInstance(credentials)));
+	}
+
+	/** Tests that modifying the password of cached basic credentials does not affect later uses of the cached header. */
+	@Test
+	public void testBasicPasswordNotShared() throws SyntaxException {
+		final HTTPAuthorizationCache cache = new HTTPAuthorizationCache();
+		final char[] password = ((BasicAuthenticateCredentials)cache.getCredentials(BASIC_HEADER)).getPassword();
+		Arrays.fill(password, '\0'); //clear the password as a careful caller would
+		assertThat(new String(((BasicAuthenticateCredentials)cache.getCredentials(BASIC_HEADER)).getPassword()), is("pass:word"));
+	}
+
+	/** Tests that digest credentials with a nonce count are not cached. */
+	@Test
+	public void testDigestNotCached() throws SyntaxException {
+		final HTTPAuthorizationCache cache = new HTTPAuthorizationCache();
+		final AuthenticateCredentials credentials = cache.getCredentials(DIGEST_HEADER);
+		assertThat(credentials, is(instanceOf(DigestAuthenticateCredentials.class)));
+		assertThat(((DigestAuthenticateCredentials)credentials).getNonceCount(), is(1L));
+		assertThat(cache.getCredentials(DIGEST_HEADER), is(not(sameInstance(credentials))));
+	}
+
+	/** Tests that the cache does not grow beyond its maximum size. */
+	@Test
+	public void testMaxSize() throws SyntaxException {
+		final HTTPAuthorizationCache cache = new HTTPAuthorizationCache(1);
+		final AuthenticateCredentials credentials = cache.getCredentials(BASIC_HEADER);
+		cache.getCredentials("Basic " + Base64.getEncoder().encodeToString("other:password".getBytes(UTF_8)));
+		assertThat(cache.getCredentials(BASIC_HEADER), is(not(sameInstance(credentials))));
+	}
+
+	/** Tests that when the cache is full only the header cached longest ago is evicted. */
+	@Test
+	public void testOldestEvicted() throws SyntaxException {
+		final HTTPAuthorizationCache cache = new HTTPAuthorizationCache(2);
+		final String otherHeader = "Basic " + Base64.getEncoder().encodeToString("other:password".getBytes(UTF_8));
+		final AuthenticateCredentials credentials = cache.getCredentials(BASIC_HEADER);
+		final AuthenticateCredentials otherCredentials = cache.getCredentials(otherHeader);
+		cache.getCredentials("Basic " + Base64.getEncoder().encodeToString("third:password".getBytes(UTF_8)));
+		assertThat(cache.getCredentials(otherHeader), is(sameInstance(otherCredentials)));
+		assertThat(cache.getCredentials(BASIC_HEADER), is(not(sameInstance(credentials))));
+	}
+
+}
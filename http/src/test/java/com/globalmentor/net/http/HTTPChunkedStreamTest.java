@@ -16,8 +16,10 @@
 
 package com.globalmentor.net.http;
 
+import static java.nio.charset.StandardCharsets.*;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.*;
 
@@ -63,4 +65,16 @@ public void testHTTPChunkedRoundTrip() throws IOException {
 		assertThat("HTTP chunked output stream did not correctly write data.", copy.toByteArray(), is(equalTo(testData)));
 	}
 
+	/** Tests that the HTTP chunked input stream reports that it does not support mark/reset, and that marking does not affect reading. */
+	@Test
+	public void testHTTPChunkedInputMarkResetNotSupported() throws IOException {
+		final InputStream inputStream = new HTTPChunkedInputStream(new ByteArrayInputStream("1\r\na\r\n1\r\nb\r\n0\r\n\r\n".getBytes(US_ASCII)));
+		assertThat(inputStream.markSupported(), is(false));
+		assertThat(inputStream.read(), is((int)'a'));
+		inputStream.mark(1);
+		assertThat(inputStream.read(), is((int)'b'));
+		assertThrows(IOException.class, inputStream::reset);
+		assertThat(inputStream.read(), is(-1));
+	}
+
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of {@link HTTPCircuitBreaker}.
+ * @author Garret Wilson
+ */
+public class HTTPCircuitBreakerTest {
+
+	/** The host with which exchanges take place. */
+	private static final Host HOST = new Host("example.com", 80);
+
+	/** The number of milliseconds a circuit stays open in the tests. */
+	private static final long OPEN_DURATION = 100;
+
+	/** The current time of the circuit breakers, in nanoseconds, which only changes when the tests advance it. */
+	private final AtomicLong nanoTime = new AtomicLong();
+
+	/** @return A circuit breaker tripping after three failures and probing after a short delay, using the test time. */
+	private HTTPCircuitBreaker createCircuitBreaker() {
+		return new HTTPCircuitBreaker(3, HTTPProbePolicy.DEFAULT.withOpenDuration(OPEN_DURATION, OPEN_DURATION * 4), nanoTime::get);
+	}
+
+	/**
+	 * Advances the test time.
+	 * @param milliseconds The number of milliseconds by which to advance the time.
+	 */
+	private void advance(final long milliseconds) {
+		nanoTime.addAndGet(MILLISECONDS.toNanos(milliseconds));
+	}
+
+	/** Tests that the circuit opens only after consecutive failures. */
+	@Test
+	public void testOpensAfterConsecutiveFailures() throws IOException {
+		final HTTPCircuitBreaker circuitBreaker = createCircuitBreaker();
+		circuitBreaker.recordFailure(HOST);
+		circuitBreaker.recordFailure(HOST);
+		circuitBreaker.recordSuccess(HOST);
+		circuitBreaker.recordFailure(HOST);
+		circuitBreaker.recordFailure(HOST);
+		assertThat(circuitBreaker.getState(HOST), is(HTTPCircuitBreaker.State.CLOSED));
+		circuitBreaker.acquire(HOST);
+		circuitBreaker.recordFailure(HOST);
+		assertThat(circuitBreaker.getState(HOST), is(HTTPCircuitBreaker.State.OPEN));
+		final HTTPCircuitOpenException circuitOpenException = assertThrows(HTTPCircuitOpenException.class, () -> circuitBreaker.acquire(HOST));
+		assertThat(circuitOpenException.getHost(), is(HOST));
+		assertThat(circuitOpenException.getRetryAfter(), is(both(greaterThan(0L)).and(lessThanOrEqualTo(OPEN_DURATION))));
+		assertThat(circuitBreaker.getTrippedCount(), is(1L));
+		assertThat(circuitBreaker.getRejectedCount(), is(1L));
+		circuitBreaker.acquire(new Host("example.org", 80)); //other hosts are unaffected
+	}
+
+	/** Tests that a successful probe closes an open circuit once the open duration has passed, while other exchanges are rejected during the probe. */
+	@Test
+	public void testProbeClosesCircuit() throws IOException {
+		final HTTPCircuitBreaker circuitBreaker = createCircuitBreaker();
+		for(int i = 0; i < 3; ++i) {
+			circuitBreaker.recordFailure(HOST);
+		}
+		advance(OPEN_DURATION * 2);
+		circuitBreaker.acquire(HOST); //the probe
+		assertThat(circuitBreaker.getState(HOST), is(HTTPCircuitBreaker.State.HALF_OPEN));
+		assertThrows(HTTPCircuitOpenException.class, () -> circuitBreaker.acquire(HOST));
+		circuitBreaker.recordSuccess(HOST);
+		assertThat(circuitBreaker.getState(HOST), is(HTTPCircuitBreaker.State.CLOSED));
+		circuitBreaker.acquire(HOST);
+	}
+
+	/** Tests that a failed probe opens the circuit again for longer. */
+	@Test
+	public void testFailedProbeReopensCircuit() throws IOException {
+		final HTTPCircuitBreaker circuitBreaker = createCircuitBreaker();
+		for(int i = 0; i < 3; ++i) {
+			circuitBreaker.recordFailure(HOST);
+		}
+		advance(OPEN_DURATION * 2);
+		circuitBreaker.acquire(HOST);
+		circuitBreaker.recordFailure(HOST);
+		assertThat(circuitBreaker.getState(HOST), is(HTTPCircuitBreaker.State.OPEN));
+		assertThat(circuitBreaker.getTrippedCount(), is(2L));
+		final HTTPCircuitOpenException circuitOpenException = assertThrows(HTTPCircuitOpenException.class, () -> circuitBreaker.acquire(HOST));
+		assertThat(circuitOpenException.getRetryAfter(), is(greaterThan(OPEN_DURATION)));
+		advance(OPEN_DURATION);
+		assertThrows(HTTPCircuitOpenException.class, () -> circuitBreaker.acquire(HOST)); //the longer open duration has not yet passed
+	}
+
+	/** Tests that a circuit closed by a success starts counting failures anew. */
+	@Test
+	public void testFailuresCountedAnewAfterClosing() throws IOException {
+		final HTTPCircuitBreaker circuitBreaker = createCircuitBreaker();
+		for(int i = 0; i < 3; ++i) {
+			circuitBreaker.recordFailure(HOST);
+		}
+		advance(OPEN_DURATION);
+		circuitBreaker.acquire(HOST);
+		circuitBreaker.recordSuccess(HOST);
+		circuitBreaker.recordFailure(HOST);
+		circuitBreaker.recordFailure(HOST);
+		assertThat(circuitBreaker.getState(HOST), is(HTTPCircuitBreaker.State.CLOSED));
+		circuitBreaker.recordFailure(HOST);
+		assertThat(circuitBreaker.getState(HOST), is(HTTPCircuitBreaker.State.OPEN));
+		assertThat(circuitBreaker.getTrippedCount(), is(2L));
+	}
+
+	/** Tests that a client stops retrying connections to a host that refuses them once the circuit opens, and afterwards fails at once. */
+	@Test
+	public void testClientFailsFastWhenHostRefusesConnections() throws IOException {
+		final int port;
+		try (final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			port = serverSocket.getLocalPort(); //nothing will be listening on the port once the socket is closed
+		}
+		final HTTPClient client = new HTTPClient();
+		client.setRetryPolicy(HTTPRetryPolicy.DEFAULT.withBackoff(0, 0));
+		final HTTPCircuitBreaker circuitBreaker = createCircuitBreaker();
+		client.setCircuitBreaker(circuitBreaker);
+		final Host host = new Host(InetAddress.getLoopbackAddress().getHostAddress(), port);
+		final HTTPResource resource = new HTTPResource(URI.create("http://" + host + "/resource"), client);
+		resource.setCached(false);
+		final HTTPCircuitOpenException circuitOpenException = assertThrows(HTTPCircuitOpenException.class, resource::get);
+		assertThat(circuitOpenException.getSuppressed()[0], is(instanceOf(ConnectException.class)));
+		assertThat(circuitBreaker.getState(host), is(HTTPCircuitBreaker.State.OPEN));
+		assertThrows(HTTPCircuitOpenException.class, resource::get);
+		assertThat(circuitBreaker.getRejectedCount(), is(1L));
+	}
+
+}
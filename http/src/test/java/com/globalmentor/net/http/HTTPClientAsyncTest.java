@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of asynchronous exchanges driven by the event loop of {@link HTTPClient}, using a loopback server.
+ * @author Garret Wilson
+ */
+public class HTTPClientAsyncTest {
+
+	/** The number of requests to have outstanding at the same time. */
+	private static final int CONCURRENT_REQUEST_COUNT = 20;
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** Released to let a stalled request be answered. */
+	private final CountDownLatch stallLatch = new CountDownLatch(1);
+
+	/** The client under test. */
+	private HTTPClient client;
+
+	/** Starts a loopback server and creates a client. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+		client = new HTTPClient();
+	}
+
+	/** Closes the client and stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		client.close();
+		stallLatch.countDown();
+		server.close();
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it. The path of each request determines how the response body is delimited:
+	 * <code>/chunked</code> uses chunked transfer coding, <code>/close</code> sends no content length and closes the connection after the body, and
+	 * <code>/stall</code> waits to be released before answering with a content length, as do all other paths.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException, InterruptedException {
+		LoopbackServer.Request request;
+		while((request = LoopbackServer.readRequest(inputStream)) != null) {
+			switch(request.getTarget()) {
+				case "/chunked":
+					outputStream.write("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n5\r\nchunk\r\n3\r\ned!\r\n0\r\n\r\n".getBytes(ISO_8859_1));
+					outputStream.flush();
+					break;
+				case "/close":
+					outputStream.write("HTTP/1.1 200 OK\r\n\r\nread until close".getBytes(ISO_8859_1));
+					outputStream.flush();
+					return;
+				case "/stall":
+					stallLatch.await();
+					//fall through
+				default:
+					LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "ok");
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Sends a <code>GET</code> request asynchronously.
+	 * @param path The path of the resource.
+	 * @return The future response.
+	 */
+	private CompletableFuture<BufferedHTTPResponse> get(final String path) {
+		return client.sendAsync(new DefaultHTTPRequest("GET", server.getURI(path)), new byte[0]);
+	}
+
+	/** Tests that many requests may be outstanding at the same time, and that each is answered. */
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		final List<CompletableFuture<BufferedHTTPResponse>> futures = new ArrayList<CompletableFuture<BufferedHTTPResponse>>();
+		for(int i = 0; i < CONCURRENT_REQUEST_COUNT; ++i) {
+			futures.add(get("/resource"));
+		}
+		for(final CompletableFuture<BufferedHTTPResponse> future : futures) {
+			final BufferedHTTPResponse response = future.get(5, TimeUnit.SECONDS);
+			assertThat(response.getStatusCode(), is(200));
+			assertThat(new String(response.getBody(), UTF_8), is("ok"));
+		}
+	}
+
+	/** Tests that a chunked response body is read. */
+	@Test
+	public void testChunkedResponse() throws Exception {
+		assertThat(new String(get("/chunked").get(5, TimeUnit.SECONDS).getBody(), UTF_8), is("chunked!"));
+	}
+
+	/** Tests that a response body without a content length is read until the server closes the connection, and that later requests use a new connection. */
+	@Test
+	public void testResponseReadUntilClose() throws Exception {
+		assertThat(new String(get("/close").get(5, TimeUnit.SECONDS).getBody(), UTF_8), is("read until close"));
+		assertThat(new String(get("/resource").get(5, TimeUnit.SECONDS).getBody(), UTF_8), is("ok"));
+		assertThat(server.getAcceptCount(), is(2));
+	}
+
+	/** Tests that a blocking exchange frames a response body without a content length the same way, reading it until the server closes the connection. */
+	@Test
+	public void testBlockingResponseReadUntilClose() throws Exception {
+		final HTTPResource closeResource = new HTTPResource(server.getURI("/close"), client);
+		closeResource.setCached(false);
+		assertThat(new String(closeResource.get(), UTF_8), is("read until close"));
+		try (final InputStream inputStream = closeResource.getInputStream()) {
+			assertThat(new BufferedReader(new InputStreamReader(inputStream, UTF_8)).readLine(), is("read until close"));
+		}
+		final HTTPResource resource = new HTTPResource(server.getURI("/resource"), client);
+		resource.setCached(false);
+		assertThat(new String(resource.get(), UTF_8), is("ok"));
+		assertThat(server.getAcceptCount(), is(3));
+	}
+
+	/** Tests that closing the client fails an exchange still in progress, and that no further exchanges may take place. */
+	@Test
+	public void testClose() throws Exception {
+		final CompletableFuture<BufferedHTTPResponse> stalled = get("/stall");
+		assertThat(new String(get("/resource").get(5, TimeUnit.SECONDS).getBody(), UTF_8), is("ok")); //make sure the event loop is running
+		client.close();
+		final ExecutionException stalledException = assertThrows(ExecutionException.class, () -> stalled.get(5, TimeUnit.SECONDS));
+		assertThat(stalledException.getCause(), is(instanceOf(IOException.class)));
+		final ExecutionException closedException = assertThrows(ExecutionException.class, () -> get("/resource").get(5, TimeUnit.SECONDS));
+		assertThat(closedException.getCause(), is(instanceOf(IOException.class)));
+	}
+
+}
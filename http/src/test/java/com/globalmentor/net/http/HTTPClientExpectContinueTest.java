@@ -0,0 +1,205 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of sending large request bodies with <code>Expect: 100-continue</code>, using a loopback server that answers the request header in various ways.
+ * @author Garret Wilson
+ */
+public class HTTPClientExpectContinueTest {
+
+	/** The size of the request bodies, above the expect continue threshold used by the tests. */
+	private static final int BODY_SIZE = 64 * 1024;
+
+	/** How the server answers a request header with an expectation. */
+	private enum Answer {
+		/** The server accepts the header with <code>100 Continue</code>. */
+		CONTINUE,
+		/** The server rejects the request without reading the body. */
+		REJECT,
+		/** The server ignores the expectation and simply waits for the body. */
+		IGNORE,
+		/** The server does not support the expectation, answering <code>417 Expectation Failed</code>. */
+		REFUSE
+	}
+
+	/** How the server answers request headers with expectations. */
+	private volatile Answer answer = Answer.CONTINUE;
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The {@value HTTPClientTCPConnection#EXPECT_HEADER} header of each request received, or <code>null</code> for requests without one. */
+	private final List<String> expectations = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * The number of body bytes received for each request, available once the body has been read or, for a request rejected before its body was sent, once the
+	 * client closes the connection.
+	 */
+	private final BlockingQueue<Integer> bodySizes = new LinkedBlockingQueue<Integer>();
+
+	/** The client under test. */
+	private HTTPClient client;
+
+	/** Starts a loopback server and creates a client that expects a continue for bodies larger than a few bytes. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+		client = new HTTPClient();
+		client.setExpectContinueThreshold(16);
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Counts the bytes sent by the client until it closes the connection.
+	 * @param inputStream The stream for reading from the client.
+	 * @return The number of bytes read.
+	 */
+	private static int drain(final InputStream inputStream) {
+		int count = 0;
+		try {
+			while(inputStream.read() >= 0) {
+				count++;
+			}
+		} catch(final IOException ioException) { //the client went away
+		}
+		return count;
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it, recording the number of body bytes received for each.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		LoopbackServer.Request request;
+		while((request = LoopbackServer.readRequest(inputStream)) != null) {
+			final String expectation = request.getHeader(HTTPClientTCPConnection.EXPECT_HEADER);
+			expectations.add(expectation);
+			if(expectation != null) {
+				switch(answer) {
+					case CONTINUE:
+						outputStream.write("HTTP/1.1 100 Continue\r\n\r\n".getBytes(ISO_8859_1));
+						outputStream.flush();
+						break;
+					case REJECT:
+						LoopbackServer.writeResponse(outputStream, "HTTP/1.1 413 Content Too Large", "");
+						bodySizes.add(drain(inputStream)); //count anything sent until the client closes the connection
+						return;
+					case IGNORE:
+						break;
+					case REFUSE:
+						LoopbackServer.writeResponse(outputStream, "HTTP/1.1 417 Expectation Failed", "");
+						bodySizes.add(drain(inputStream));
+						return;
+				}
+			}
+			bodySizes.add(LoopbackServer.readBody(inputStream, request).length);
+			LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "ok");
+		}
+	}
+
+	/**
+	 * Sends a <code>PUT</code> request with a large body to the server and reads the response body.
+	 * @return The response to the request.
+	 */
+	private HTTPResponse put() throws IOException {
+		final Host host = server.getHost();
+		final HTTPClientTCPConnection connection = client.createConnection(host);
+		final HTTPRequest request = new DefaultHTTPRequest("PUT", URI.create("http://" + host + "/resource"));
+		try {
+			final HTTPResponse response = connection.sendRequest(request, new byte[BODY_SIZE]);
+			connection.readResponseBody(request, response);
+			return response;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/** Tests that the body is sent once the server accepts the request header. */
+	@Test
+	public void testBodySentAfterContinue() throws IOException, InterruptedException {
+		assertThat(put().getStatusCode(), is(200));
+		assertThat(expectations, contains(HTTPClientTCPConnection.EXPECT_100_CONTINUE));
+		assertThat(bodySizes.poll(5, TimeUnit.SECONDS), is(BODY_SIZE));
+	}
+
+	/** Tests that the body is not sent if the server rejects the request header. */
+	@Test
+	public void testBodyNotSentWhenRejected() throws IOException, InterruptedException {
+		answer = Answer.REJECT;
+		assertThat(put().getStatusCode(), is(413));
+		assertThat(bodySizes.poll(5, TimeUnit.SECONDS), is(0));
+	}
+
+	/** Tests that the body is sent anyway if the server does not answer the request header in time. */
+	@Test
+	public void testBodySentAfterTimeout() throws IOException, InterruptedException {
+		answer = Answer.IGNORE;
+		client.setExpectContinueTimeout(100);
+		assertThat(put().getStatusCode(), is(200));
+		assertThat(bodySizes.poll(5, TimeUnit.SECONDS), is(BODY_SIZE));
+	}
+
+	/** Tests that a request is sent again without the expectation if the server does not support it, and that later requests don't ask again. */
+	@Test
+	public void testRequestResentWhenExpectationFails() throws IOException {
+		answer = Answer.REFUSE;
+		final Host host = server.getHost();
+		final HTTPClientTCPConnection connection = client.createConnection(host);
+		try {
+			for(int i = 0; i < 2; ++i) {
+				final HTTPRequest request = new DefaultHTTPRequest("PUT", URI.create("http://" + host + "/resource"));
+				final HTTPResponse response = connection.sendRequest(request, new byte[BODY_SIZE]);
+				assertThat(response.getStatusCode(), is(200));
+				connection.readResponseBody(request, response);
+			}
+		} finally {
+			connection.disconnect();
+		}
+		assertThat(expectations, contains(HTTPClientTCPConnection.EXPECT_100_CONTINUE, null, null));
+	}
+
+	/** Tests that once a host refuses the expectation, new connections of the same client send bodies to the host without asking. */
+	@Test
+	public void testExpectationRefusalRememberedForHost() throws IOException {
+		answer = Answer.REFUSE;
+		assertThat(put().getStatusCode(), is(200));
+		assertThat(client.isExpectContinueRefused(server.getHost()), is(true));
+		assertThat(put().getStatusCode(), is(200));
+		assertThat(expectations, contains(HTTPClientTCPConnection.EXPECT_100_CONTINUE, null, null));
+	}
+
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.globalmentor.net.http;
+
+import static com.globalmentor.net.http.HTTP2.*;
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.*;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.model.NameValuePair;
+
+/**
+ * Tests of HTTP/2 exchanges made by {@link HTTPClient} with prior knowledge over cleartext (<code>h2c</code>), using a loopback server that speaks just enough
+ * HTTP/2 to answer each request with the number of request body bytes it received.
+ * @author Garret Wilson
+ */
+public class HTTPClientHTTP2Test {
+
+	/** The maximum number of concurrent streams advertised by the server. */
+	private static final int MAX_CONCURRENT_STREAMS = 2;
+
+	/** The initial stream window advertised by the server, small enough that request bodies must wait for window updates. */
+	private static final int INITIAL_WINDOW_SIZE = 1024;
+
+	/** The number of complete requests the server waits for before answering them together. */
+	private volatile int responseBatchSize = 1;
+
+	/** Whether the server sends <code>GOAWAY</code> after answering the first batch of requests on each connection. */
+	private volatile boolean goAway = false;
+
+	/** The settings sent by the client, in the order received. */
+	private final List<Integer> clientSettings = new CopyOnWriteArrayList<Integer>();
+
+	/** The increments of connection window updates sent by the client. */
+	private final List<Integer> connectionWindowIncrements = new CopyOnWriteArrayList<Integer>();
+
+	/** Counted down when the client acknowledges the server settings. */
+	private final CountDownLatch settingsAcknowledged = new CountDownLatch(1);
+
+	/** The largest number of streams open at the same time on a connection. */
+	private final AtomicInteger maxOpenStreamCount = new AtomicInteger();
+
+	/** The number of stream window updates sent by the server. */
+	private final AtomicInteger streamWindowUpdateCount = new AtomicInteger();
+
+	/** The number of times the client sent more data on a stream than the server's window allowed. */
+	private final AtomicInteger flowControlViolationCount = new AtomicInteger();
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The client under test. */
+	private HTTPClient client;
+
+	/** Starts a loopback HTTP/2 server and creates a client that uses HTTP/2. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+		client = new HTTPClient();
+		client.setHTTP2(true);
+	}
+
+	/** Closes the client and stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		client.close();
+		server.close();
+	}
+
+	/**
+	 * Serves HTTP/2 frames on a connection until the client closes it. Requests are answered in batches of {@link #responseBatchSize} once their headers and
+	 * bodies have been received. Once the server has sent <code>GOAWAY</code>, later streams are ignored.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		final DataInputStream input = new DataInputStream(inputStream);
+		final byte[] preface = new byte[CLIENT_PREFACE.length];
+		input.readFully(preface);
+		if(!Arrays.equals(preface, CLIENT_PREFACE)) {
+			return;
+		}
+		final ByteArrayOutputStream settings = new ByteArrayOutputStream();
+		writeSetting(settings, SETTINGS_MAX_CONCURRENT_STREAMS, MAX_CONCURRENT_STREAMS);
+		writeSetting(settings, SETTINGS_INITIAL_WINDOW_SIZE, INITIAL_WINDOW_SIZE);
+		writeFrame(outputStream, SETTINGS, 0, 0, settings.toByteArray());
+		final HPACK.Decoder decoder = new HPACK.Decoder(HPACK.DEFAULT_HEADER_TABLE_SIZE, 64 * 1024);
+		final HPACK.Encoder encoder = new HPACK.Encoder();
+		final Map<Integer, Integer> streamWindows = new HashMap<Integer, Integer>(); //the window remaining for each open stream
+		final Map<Integer, Integer> bodyLengths = new HashMap<Integer, Integer>(); //the body bytes received on each open stream
+		final List<Integer> completeStreamIds = new ArrayList<Integer>();
+		boolean goingAway = false;
+		final byte[] header = new byte[FRAME_HEADER_LENGTH];
+		while(true) {
+			try {
+				input.readFully(header);
+			} catch(final EOFException eofException) { //the client closed the connection
+				return;
+			}
+			final int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8) | (header[2] & 0xff);
+			final int type = header[3] & 0xff;
+			final int flags = header[4] & 0xff;
+			final int streamId = readInt(header, 5) & MAX_STREAM_ID;
+			final byte[] payload = new byte[length];
+			input.readFully(payload);
+			final boolean endStream = (flags & FLAG_END_STREAM) != 0;
+			switch(type) {
+				case SETTINGS:
+					if((flags & FLAG_ACK) != 0) {
+						settingsAcknowledged.countDown();
+					} else {
+						for(int offset = 0; offset < length; offset += 6) {
+							clientSettings.add(((payload[offset] & 0xff) << 8) | (payload[offset + 1] & 0xff));
+							clientSettings.add(readInt(payload, offset + 2));
+						}
+						writeFrame(outputStream, SETTINGS, FLAG_ACK, 0, new byte[0]);
+					}
+					break;
+				case WINDOW_UPDATE:
+					if(streamId == 0) {
+						connectionWindowIncrements.add(readInt(payload, 0));
+					}
+					break;
+				case HEADERS:
+					decoder.decode(payload, 0, length); //keep the dynamic table in step even for ignored streams
+					if(!goingAway) {
+						streamWindows.put(streamId, INITIAL_WINDOW_SIZE);
+						bodyLengths.put(streamId, 0);
+						maxOpenStreamCount.accumulateAndGet(bodyLengths.size(), Math::max);
+						if(endStream) {
+							completeStreamIds.add(streamId);
+						}
+					}
+					break;
+				case DATA:
+					if(bodyLengths.containsKey(streamId)) {
+						final int window = streamWindows.get(streamId) - length;
+						if(window < 0) {
+							flowControlViolationCount.incrementAndGet();
+						}
+						bodyLengths.put(streamId, bodyLengths.get(streamId) + length);
+						if(endStream) {
+							completeStreamIds.add(streamId);
+						} else if(length > 0) { //give back the window the data used
+							streamWindows.put(streamId, window + length);
+							writeFrame(outputStream, WINDOW_UPDATE, 0, streamId, toBytes(length));
+							streamWindowUpdateCount.incrementAndGet();
+						}
+					}
+					if(length > 0) {
+						writeFrame(outputStream, WINDOW_UPDATE, 0, 0, toBytes(length));
+					}
+					break;
+				case RST_STREAM:
+					streamWindows.remove(streamId);
+					bodyLengths.remove(streamId);
+					break;
+				default: //ignore other frames
+					break;
+			}
+			if(!completeStreamIds.isEmpty() && completeStreamIds.size() >= responseBatchSize) {
+				int lastStreamId = 0;
+				for(final int completeStreamId : completeStreamIds) {
+					final byte[] body = Integer.toString(bodyLengths.remove(completeStreamId)).getBytes(UTF_8);
+					streamWindows.remove(completeStreamId);
+					final byte[] headerBlock = encoder.encode(Arrays.asList(new NameValuePair<String, String>(":status", "200"),
+							new NameValuePair<String, String>("content-length", Integer.toString(body.length))));
+					writeFrame(outputStream, HEADERS, FLAG_END_HEADERS, completeStreamId, headerBlock);
+					writeFrame(outputStream, DATA, FLAG_END_STREAM, completeStreamId, body);
+					lastStreamId = Math.max(lastStreamId, completeStreamId);
+				}
+				completeStreamIds.clear();
+				if(goAway && !goingAway) {
+					final ByteArrayOutputStream goAwayPayload = new ByteArrayOutputStream();
+					goAwayPayload.write(toBytes(lastStreamId));
+					goAwayPayload.write(toBytes(NO_ERROR));
+					writeFrame(outputStream, GOAWAY, 0, 0, goAwayPayload.toByteArray());
+					goingAway = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes a frame and flushes the output stream.
+	 * @param outputStream The stream for writing to the client.
+	 * @param type The frame type.
+	 * @param flags The frame flags.
+	 * @param streamId The stream identifier.
+	 * @param payload The frame payload.
+	 */
+	private static void writeFrame(final OutputStream outputStream, final int type, final int flags, final int streamId, final byte[] payload)
+			throws IOException {
+		final byte[] header = new byte[FRAME_HEADER_LENGTH];
+		header[0] = (byte)(payload.length >>> 16);
+		header[1] = (byte)(payload.length >>> 8);
+		header[2] = (byte)payload.length;
+		header[3] = (byte)type;
+		header[4] = (byte)flags;
+		System.arraycopy(toBytes(streamId), 0, header, 5, 4);
+		outputStream.write(header);
+		outputStream.write(payload);
+		outputStream.flush();
+	}
+
+	/**
+	 * Writes a setting to a settings payload.
+	 * @param outputStream The stream collecting the payload.
+	 * @param identifier The setting identifier.
+	 * @param value The setting value.
+	 */
+	private static void writeSetting(final ByteArrayOutputStream outputStream, final int identifier, final int value) {
+		outputStream.write(identifier >>> 8);
+		outputStream.write(identifier);
+		outputStream.write(toBytes(value), 0, 4);
+	}
+
+	/**
+	 * Converts an integer to its four big-endian bytes.
+	 * @param value The value to convert.
+	 * @return The bytes of the value.
+	 */
+	private static byte[] toBytes(final int value) {
+		return new byte[] {(byte)(value >>> 24), (byte)(value >>> 16), (byte)(value >>> 8), (byte)value};
+	}
+
+	/**
+	 * Reads a big-endian integer.
+	 * @param bytes The bytes from which to read.
+	 * @param offset The offset of the integer.
+	 * @return The integer read.
+	 */
+	private static int readInt(final byte[] bytes, final int offset) {
+		return ((bytes[offset] & 0xff) << 24) | ((bytes[offset + 1] & 0xff) << 16) | ((bytes[offset + 2] & 0xff) << 8) | (bytes[offset + 3] & 0xff);
+	}
+
+	/**
+	 * Retrieves a resource from the server.
+	 * @param path The absolute path of the resource.
+	 * @return The response body.
+	 */
+	private String get(final String path) throws IOException {
+		final HTTPResource resource = new HTTPResource(server.getURI(path), client);
+		resource.setCached(false);
+		return new String(resource.get(), UTF_8);
+	}
+
+	/** Tests that the client sends its settings and connection window, and acknowledges the settings of the server. */
+	@Test
+	public void testSettingsExchanged() throws IOException, InterruptedException {
+		assertThat(get("/"), is("0"));
+		assertThat(settingsAcknowledged.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(clientSettings, contains(SETTINGS_ENABLE_PUSH, 0, SETTINGS_INITIAL_WINDOW_SIZE, HTTP2Connection.STREAM_RECEIVE_WINDOW,
+				SETTINGS_MAX_HEADER_LIST_SIZE, HTTP2Connection.MAX_HEADER_LIST_SIZE));
+		assertThat(connectionWindowIncrements, contains(HTTP2Connection.CONNECTION_RECEIVE_WINDOW - DEFAULT_INITIAL_WINDOW_SIZE));
+	}
+
+	/** Tests that concurrent requests share one connection as concurrent streams, within the limit advertised by the server. */
+	@Test
+	public void testConcurrentStreams() throws Exception {
+		responseBatchSize = MAX_CONCURRENT_STREAMS; //only answer once the client has used all the streams it may
+		final int requestCount = MAX_CONCURRENT_STREAMS * 3;
+		final ExecutorService executor = Executors.newFixedThreadPool(requestCount);
+		try {
+			final List<Future<String>> responses = new ArrayList<Future<String>>();
+			for(int i = 0; i < requestCount; ++i) {
+				final String path = "/" + i; //separate resources, so that the requests aren't coalesced
+				responses.add(executor.submit(() -> get(path)));
+			}
+			for(final Future<String> response : responses) {
+				assertThat(response.get(10, TimeUnit.SECONDS), is("0"));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(maxOpenStreamCount.get(), is(MAX_CONCURRENT_STREAMS));
+		assertThat(server.getAcceptCount(), is(1));
+	}
+
+	/** Tests that a request body larger than the stream window advertised by the server is sent as the server updates the window. */
+	@Test
+	public void testRequestBodyFlowControlled() throws IOException {
+		final int bodyLength = INITIAL_WINDOW_SIZE * 8;
+		final HTTPClientTCPConnection connection = client.createConnection(server.getHost(), null, false);
+		final HTTPRequest request = new DefaultHTTPRequest("POST", server.getURI("/"));
+		try {
+			final HTTPResponse response = connection.sendRequest(request, new byte[bodyLength]);
+			assertThat(response.getStatusCode(), is(200));
+			assertThat(new String(connection.readResponseBody(request, response), UTF_8), is(Integer.toString(bodyLength)));
+		} finally {
+			connection.disconnect();
+		}
+		assertThat(streamWindowUpdateCount.get(), is(greaterThan(0)));
+		assertThat(flowControlViolationCount.get(), is(0));
+	}
+
+	/** Tests that once the server sends <code>GOAWAY</code>, later requests are sent on a new connection. */
+	@Test
+	public void testGoAway() throws IOException {
+		goAway = true;
+		assertThat(get("/first"), is("0"));
+		assertThat(get("/second"), is("0"));
+		assertThat(get("/third"), is("0"));
+		assertThat(server.getAcceptCount(), is(3));
+	}
+
+}
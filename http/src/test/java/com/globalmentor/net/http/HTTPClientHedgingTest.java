@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of hedging reads using {@link HTTPClient#setHedgingPolicy(HTTPHedgingPolicy)}, using a loopback server that can be made to stall a request.
+ * @author Garret Wilson
+ */
+public class HTTPClientHedgingTest {
+
+	/** The number of reads needed for the client to learn the latency of the server. */
+	private static final int WARMUP_COUNT = 30;
+
+	/** The number of milliseconds within which a hedged read should complete even though the original request stalls. */
+	private static final long HEDGED_READ_TIMEOUT = 2000;
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The number of requests received by the server. */
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	/** Whether the server should stall the next request it receives. */
+	private final AtomicBoolean stallNext = new AtomicBoolean();
+
+	/** Released to let a stalled request be answered. */
+	private final CountDownLatch stallLatch = new CountDownLatch(1);
+
+	/** Starts a loopback server that answers requests on persistent connections. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		stallLatch.countDown();
+		server.close();
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it, stalling the request if asked.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException, InterruptedException {
+		while(LoopbackServer.readRequest(inputStream) != null) {
+			requestCount.incrementAndGet();
+			if(stallNext.compareAndSet(true, false)) {
+				stallLatch.await();
+			}
+			LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "ok");
+		}
+	}
+
+	/** Tests that a read stalled by the server is hedged on another connection, and that the hedge's response is used. */
+	@Test
+	public void testStalledReadHedged() throws Exception {
+		final HTTPClient client = new HTTPClient();
+		final HTTPHedgingPolicy hedgingPolicy = new HTTPHedgingPolicy();
+		client.setHedgingPolicy(hedgingPolicy);
+		final URI uri = server.getURI("/resource");
+		for(int i = 0; i < WARMUP_COUNT; ++i) {
+			new HTTPResource(uri, client).get();
+		}
+		final int warmupRequestCount = requestCount.get(); //a warm-up read may itself have been hedged if the server was briefly slow
+		final long warmupHedgedCount = hedgingPolicy.getHedgedCount();
+		final long warmupHedgeWonCount = hedgingPolicy.getHedgeWonCount();
+		stallNext.set(true);
+		final Future<byte[]> content = Executors.newSingleThreadExecutor().submit(() -> new HTTPResource(uri, client).get());
+		assertThat(new String(content.get(HEDGED_READ_TIMEOUT, TimeUnit.MILLISECONDS), UTF_8), is("ok"));
+		assertThat(requestCount.get(), is(warmupRequestCount + 2));
+		assertThat(hedgingPolicy.getHedgedCount(), is(warmupHedgedCount + 1));
+		assertThat(hedgingPolicy.getHedgeWonCount(), is(warmupHedgeWonCount + 1));
+		for(int i = 0; i < WARMUP_COUNT; ++i) { //the cancelled connection must not be reused
+			assertThat(new String(new HTTPResource(uri, client).get(), UTF_8), is("ok"));
+		}
+	}
+
+	/** Tests that reads are not hedged when the hedge budget is exhausted. */
+	@Test
+	public void testHedgesLimitedByBudget() throws Exception {
+		final HTTPClient client = new HTTPClient();
+		final HTTPHedgingPolicy hedgingPolicy = new HTTPHedgingPolicy(HTTPHedgingPolicy.DEFAULT_PERCENTILE, HTTPHedgingPolicy.DEFAULT_MIN_DELAY, 0, 0);
+		client.setHedgingPolicy(hedgingPolicy);
+		final URI uri = server.getURI("/resource");
+		for(int i = 0; i < WARMUP_COUNT; ++i) {
+			new HTTPResource(uri, client).get();
+		}
+		final int warmupRequestCount = requestCount.get();
+		stallNext.set(true);
+		final Future<byte[]> content = Executors.newSingleThreadExecutor().submit(() -> new HTTPResource(uri, client).get());
+		assertThrows(TimeoutException.class, () -> content.get(HEDGED_READ_TIMEOUT, TimeUnit.MILLISECONDS));
+		stallLatch.countDown();
+		assertThat(new String(content.get(), UTF_8), is("ok"));
+		assertThat(requestCount.get(), is(warmupRequestCount + 1));
+		assertThat(hedgingPolicy.getHedgedCount(), is(0L));
+	}
+
+}
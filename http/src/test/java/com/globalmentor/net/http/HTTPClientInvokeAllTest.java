@@ -0,0 +1,139 @@
+/*
+ * Copyright © 1996-2008 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of running operations on many resources using {@link HTTPClient#invokeAll(Collection, com.globalmentor.io.function.IOFunction)}, against a loopback
+ * server that answers each request with the path of the requested resource.
+ * @author Garret Wilson
+ */
+public class HTTPClientInvokeAllTest {
+
+	/** The number of resources on which to perform an operation. */
+	private static final int RESOURCE_COUNT = 20;
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** Starts a loopback server that answers requests on persistent connections, reporting resources named <code>missing</code> as not found. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(HTTPClientInvokeAllTest::serve);
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private static void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		LoopbackServer.Request request;
+		while((request = LoopbackServer.readRequest(inputStream)) != null) {
+			final String path = request.getTarget();
+			if(path.endsWith("/missing")) {
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 404 Not Found", "");
+			} else {
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", path);
+			}
+		}
+	}
+
+	/** @return The URIs of resources on the server, each with a distinct path. */
+	private List<URI> getResourceURIs() {
+		final List<URI> resourceURIs = new ArrayList<URI>();
+		for(int i = 0; i < RESOURCE_COUNT; ++i) {
+			resourceURIs.add(server.getURI("/resource" + i));
+		}
+		return resourceURIs;
+	}
+
+	/**
+	 * Retrieves the content of a resource as a string.
+	 * @param resource The resource.
+	 * @return The content of the resource.
+	 */
+	private static String getContent(final HTTPResource resource) throws IOException {
+		resource.setCached(false);
+		return new String(resource.get(), UTF_8);
+	}
+
+	/** Tests that the futures of the operations are returned completed, in the order of the resource URIs. */
+	@Test
+	public void testResultsInOrder() throws InterruptedException, ExecutionException {
+		final List<URI> resourceURIs = getResourceURIs();
+		final List<Future<String>> futures = new HTTPClient().invokeAll(resourceURIs, HTTPClientInvokeAllTest::getContent);
+		assertThat(futures, hasSize(RESOURCE_COUNT));
+		for(int i = 0; i < RESOURCE_COUNT; ++i) {
+			assertThat(futures.get(i).isDone(), is(true));
+			assertThat(futures.get(i).get(), is(resourceURIs.get(i).getPath()));
+		}
+	}
+
+	/** Tests that a failed operation is reported by its own future without affecting the other operations. */
+	@Test
+	public void testFailureHeldByFuture() throws InterruptedException, ExecutionException {
+		final List<URI> resourceURIs = Arrays.asList(server.getURI("/first"), server.getURI("/missing"), server.getURI("/last"));
+		final List<Future<String>> futures = new HTTPClient().invokeAll(resourceURIs, HTTPClientInvokeAllTest::getContent);
+		assertThat(futures.get(0).get(), is("/first"));
+		final ExecutionException executionException = assertThrows(ExecutionException.class, futures.get(1)::get);
+		assertThat(executionException.getCause(), is(instanceOf(HTTPNotFoundException.class)));
+		assertThat(futures.get(2).get(), is("/last"));
+	}
+
+	/** Tests that operations on the same host share the pooled connections of the client, waiting for one rather than opening more than the pool allows. */
+	@Test
+	public void testConnectionsShared() throws InterruptedException, ExecutionException {
+		final HTTPClient client = new HTTPClient();
+		client.getConnectionPool().setMaxConnectionsPerHost(2);
+		for(final Future<String> future : client.invokeAll(getResourceURIs(), HTTPClientInvokeAllTest::getContent)) {
+			assertThat(future.get(), startsWith("/resource"));
+		}
+		assertThat(server.getAcceptCount(), is(lessThanOrEqualTo(2)));
+	}
+
+	/** Tests that operations are run using a caller-supplied executor service, which is left running. */
+	@Test
+	public void testCallerExecutorService() throws InterruptedException, ExecutionException {
+		final ExecutorService executorService = Executors.newFixedThreadPool(3);
+		try {
+			final List<Future<String>> futures = new HTTPClient().invokeAll(getResourceURIs(), HTTPClientInvokeAllTest::getContent, executorService);
+			assertThat(futures.get(RESOURCE_COUNT - 1).get(), is("/resource" + (RESOURCE_COUNT - 1)));
+			assertThat(executorService.isShutdown(), is(false));
+		} finally {
+			executorService.shutdown();
+		}
+	}
+
+}
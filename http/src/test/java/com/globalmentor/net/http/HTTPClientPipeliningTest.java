@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of pipelined requests sent by {@link HTTPClientTCPConnection#sendRequests(List)}, using a loopback server that only answers the first connection once
+ * it has read several requests.
+ * @author Garret Wilson
+ */
+public class HTTPClientPipeliningTest {
+
+	/** The path of a resource the server does not have. */
+	private static final String MISSING_PATH = "/missing";
+
+	/** The number of requests the server reads on the first connection before writing any response. */
+	private volatile int pipelineDepth = 4;
+
+	/** The number of responses the server writes on the first connection before closing it, or <code>-1</code> if the connection is kept open. */
+	private volatile int dropAfter = -1;
+
+	/** The request targets received on each connection, in the order the connections were accepted. */
+	private final List<List<String>> receivedTargets = new CopyOnWriteArrayList<List<String>>();
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The executor for sending requests, so that a client that doesn't pipeline can't hang the test. */
+	private ExecutorService executor;
+
+	/** Starts a loopback server. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		executor.shutdownNow();
+		server.close();
+	}
+
+	/**
+	 * Answers requests with their targets as the response bodies. On the first connection no response is written until {@link #pipelineDepth} requests have
+	 * been read, after which the connection is closed if {@link #dropAfter} responses have been written. Later connections are answered one request at a time.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		final List<String> targets = new CopyOnWriteArrayList<String>();
+		final boolean first;
+		synchronized(receivedTargets) {
+			first = receivedTargets.isEmpty();
+			receivedTargets.add(targets);
+		}
+		final int batchSize = first ? pipelineDepth : 1;
+		final List<String> batch = new ArrayList<String>();
+		int responseCount = 0;
+		LoopbackServer.Request request;
+		while((request = LoopbackServer.readRequest(inputStream)) != null) {
+			targets.add(request.getTarget());
+			batch.add(request.getTarget());
+			if(batch.size() < batchSize) {
+				continue;
+			}
+			for(final String target : batch) {
+				if(first && responseCount == dropAfter) {
+					return;
+				}
+				if(target.equals(MISSING_PATH)) {
+					LoopbackServer.writeResponse(outputStream, "HTTP/1.1 404 Not Found", target);
+				} else {
+					LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", target);
+				}
+				++responseCount;
+			}
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Sends <code>GET</code> requests on a single pipelining connection.
+	 * @param paths The absolute paths of the resources to request.
+	 * @return The responses, in the order of the requests.
+	 */
+	private List<BufferedHTTPResponse> get(final String... paths) throws Exception {
+		final HTTPClientTCPConnection connection = new HTTPClient().createConnection(server.getHost(), null, false);
+		connection.setPipelining(true);
+		final List<HTTPRequest> requests = new ArrayList<HTTPRequest>();
+		for(final String path : paths) {
+			requests.add(new DefaultHTTPRequest("GET", server.getURI(path)));
+		}
+		try {
+			return executor.submit(() -> connection.sendRequests(requests)).get(10, TimeUnit.SECONDS);
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Determines the bodies of responses.
+	 * @param responses The responses.
+	 * @return The response bodies as strings.
+	 */
+	private static List<String> getBodies(final List<BufferedHTTPResponse> responses) {
+		final List<String> bodies = new ArrayList<String>();
+		for(final BufferedHTTPResponse response : responses) {
+			bodies.add(new String(response.getBody(), UTF_8));
+		}
+		return bodies;
+	}
+
+	/** Tests that all the requests are written before any response is read, as the server answers none until it has read them all. */
+	@Test
+	public void testRequestsWrittenBeforeResponses() throws Exception {
+		final List<BufferedHTTPResponse> responses = get("/0", "/1", "/2", "/3");
+		assertThat(getBodies(responses), contains("/0", "/1", "/2", "/3"));
+		assertThat(server.getAcceptCount(), is(1));
+		assertThat(receivedTargets.get(0), contains("/0", "/1", "/2", "/3"));
+	}
+
+	/** Tests that responses of different lengths and statuses are matched to their requests in order. */
+	@Test
+	public void testResponsesMatchedInOrder() throws Exception {
+		pipelineDepth = 3;
+		final String longPath = "/" + String.join("", Collections.nCopies(1000, "x"));
+		final List<BufferedHTTPResponse> responses = get("/a", MISSING_PATH, longPath);
+		assertThat(getBodies(responses), contains("/a", MISSING_PATH, longPath));
+		assertThat(responses.get(0).getStatusCode(), is(200));
+		assertThat(responses.get(1).getStatusCode(), is(404));
+		assertThat(responses.get(2).getStatusCode(), is(200));
+	}
+
+	/** Tests that if the server closes the connection partway through the pipeline, only the unanswered requests are sent again on a new connection. */
+	@Test
+	public void testConnectionDroppedMidPipeline() throws Exception {
+		dropAfter = 2;
+		final List<BufferedHTTPResponse> responses = get("/0", "/1", "/2", "/3");
+		assertThat(getBodies(responses), contains("/0", "/1", "/2", "/3"));
+		assertThat(server.getAcceptCount(), is(2));
+		assertThat(receivedTargets.get(0), contains("/0", "/1", "/2", "/3"));
+		assertThat(receivedTargets.get(1), contains("/2", "/3"));
+	}
+
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.*;
+import java.net.*;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.regex.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of authorizing requests preemptively using the challenge cached by {@link HTTPClient}, against a loopback server that closes the connection after
+ * each response so that every request is made on a new connection.
+ * @author Garret Wilson
+ */
+public class HTTPClientPreemptiveAuthenticationTest {
+
+	/** The realm of the server. */
+	private static final String REALM = "test";
+
+	/** The user name required by the server. */
+	private static final String USERNAME = "user";
+
+	/** The password required by the server. */
+	private static final String PASSWORD = "secret";
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The scheme with which the server challenges requests. */
+	private volatile String scheme = "Basic";
+
+	/** The current nonce of the server when using the digest scheme. */
+	private volatile String nonce = "dcd98b7102dd2f0e8b11d0f600bfb0c093";
+
+	/** Whether the server should close the connection without responding to the next request with credentials of the challenged scheme. */
+	private volatile boolean dropAuthorized = false;
+
+	/**
+	 * The <code>Authorization</code> header of each request received, with the scheme in the case used by the server, or <code>null</code> for requests
+	 * without one.
+	 */
+	private final List<String> authorizations = Collections.synchronizedList(new ArrayList<String>());
+
+	/** Starts a loopback server that challenges requests without credentials and accepts any credentials of the challenged scheme. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Answers a single request on a connection, then closes it.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		final LoopbackServer.Request request = LoopbackServer.readRequest(inputStream);
+		if(request == null) {
+			return;
+		}
+		String authorization = request.getHeader("Authorization");
+		final boolean schemeMatches = LoopbackServer.hasScheme(authorization, scheme);
+		if(schemeMatches) {
+			authorization = scheme + authorization.substring(scheme.length()); //record the scheme in the case used by the server
+		}
+		authorizations.add(authorization);
+		if(schemeMatches && dropAuthorized) {
+			dropAuthorized = false;
+			return; //close the connection as if it had timed out
+		}
+		final boolean digest = scheme.equals("Digest");
+		if(schemeMatches && (!digest || authorization.contains(nonce))) {
+			LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "ok", "Connection: close");
+		} else {
+			String challenge = scheme + " realm=\"" + REALM + "\"";
+			if(digest) {
+				challenge += ", nonce=\"" + nonce + "\", qop=\"auth\", algorithm=MD5";
+				if(schemeMatches) { //credentials with an old nonce
+					challenge += ", stale=true";
+				}
+			}
+			LoopbackServer.writeResponse(outputStream, "HTTP/1.1 401 Unauthorized", "", "WWW-Authenticate: " + challenge, "Connection: close");
+		}
+	}
+
+	/** @return The host of the loopback server. */
+	private Host getHost() {
+		return server.getHost();
+	}
+
+	/** @return A client with the credentials of the server cached. */
+	private HTTPClient createClient() {
+		final HTTPClient client = new HTTPClient();
+		client.putPassword(URI.create("http://" + getHost() + "/"), REALM, USERNAME, PASSWORD.toCharArray());
+		return client;
+	}
+
+	/**
+	 * Retrieves a resource on the server using a new resource instance.
+	 * @param client The client to use.
+	 * @param path The path of the resource.
+	 */
+	private void get(final HTTPClient client, final String path) throws IOException {
+		final HTTPResource resource = new HTTPResource(URI.create("http://" + getHost() + path), client);
+		resource.setCached(false);
+		assertThat(new String(resource.get(), UTF_8), is("ok"));
+	}
+
+	/**
+	 * Retrieves two resources on the server, each using a new resource instance.
+	 * @return The client used.
+	 */
+	private HTTPClient getTwoResources() throws IOException {
+		final HTTPClient client = createClient();
+		get(client, "/first");
+		get(client, "/second");
+		return client;
+	}
+
+	/** The pattern of the client nonce parameter of digest credentials, capturing the client nonce. */
+	private static final Pattern CNONCE_PATTERN = Pattern.compile("cnonce=\"([^\"]*)\"");
+
+	/**
+	 * Determines the client nonce sent in digest credentials.
+	 * @param authorization The authorization header value.
+	 * @return The client nonce.
+	 */
+	private static String getCNonce(final String authorization) {
+		final Matcher matcher = CNONCE_PATTERN.matcher(authorization);
+		assertThat(authorization, matcher.find(), is(true));
+		return matcher.group(1);
+	}
+
+	/** Tests that once basic credentials are accepted, later requests on new connections are authorized without being challenged. */
+	@Test
+	public void testBasicCredentialsSentPreemptively() throws IOException {
+		final HTTPClient client = getTwoResources();
+		assertThat(authorizations, hasSize(3));
+		assertThat(authorizations.get(0), is(nullValue()));
+		assertThat(authorizations.get(1), startsWith("Basic "));
+		assertThat(authorizations.get(2), is(authorizations.get(1)));
+		assertThat(client.getChallenge(URI.create("http://" + getHost() + "/"), REALM), is(instanceOf(BasicAuthenticateChallenge.class)));
+	}
+
+	/** Tests that once digest credentials are accepted, later requests reuse the nonce of the challenge with an increasing nonce count. */
+	@Test
+	public void testDigestCredentialsSentPreemptively() throws IOException {
+		scheme = "Digest";
+		getTwoResources();
+		assertThat(authorizations, hasSize(3));
+		assertThat(authorizations.get(0), is(nullValue()));
+		assertThat(authorizations.get(1), allOf(startsWith("Digest "), containsString("dcd98b7102dd2f0e8b11d0f600bfb0c093"), containsString("00000001")));
+		assertThat(authorizations.get(2), allOf(startsWith("Digest "), containsString("dcd98b7102dd2f0e8b11d0f600bfb0c093"), containsString("00000002")));
+		final String cnonce = getCNonce(authorizations.get(1));
+		assertThat(cnonce, is(not("cnonce")));
+		assertThat(getCNonce(authorizations.get(2)), is(cnonce)); //the same nonce is answered with the same client nonce
+	}
+
+	/** Tests that a request replayed on a new connection is authorized preemptively with a new nonce count, rather than repeating one the server has seen. */
+	@Test
+	public void testReplayedDigestCredentialsUseNewNonceCount() throws IOException {
+		scheme = "Digest";
+		final HTTPClient client = createClient();
+		client.setRetryPolicy(HTTPRetryPolicy.DEFAULT.withBackoff(0, 0));
+		get(client, "/first");
+		dropAuthorized = true;
+		get(client, "/second");
+		assertThat(authorizations, hasSize(4));
+		assertThat(authorizations.get(2), containsString("00000002"));
+		assertThat(authorizations.get(3), containsString("00000003"));
+	}
+
+	/** Tests that a client nonce is random, so that different clients answering the same challenge send different client nonces. */
+	@Test
+	public void testDigestCNonceRandom() throws IOException {
+		scheme = "Digest";
+		getTwoResources();
+		getTwoResources();
+		assertThat(authorizations, hasSize(6));
+		assertThat(getCNonce(authorizations.get(4)), is(not(getCNonce(authorizations.get(1)))));
+	}
+
+	/** Tests that a stale digest nonce is refreshed using the password already accepted without asking the user, and that the nonce count of the new nonce starts over. */
+	@Test
+	public void testStaleNonceRefreshed() throws IOException {
+		scheme = "Digest";
+		final HTTPClient client = new HTTPClient();
+		final HTTPClientTCPConnection connection = client.createConnection(getHost(), new PasswordAuthentication(USERNAME, PASSWORD.toCharArray()));
+		for(final String path : Arrays.asList("/first", "/second")) {
+			final HTTPRequest request = new DefaultHTTPRequest("GET", URI.create("http://" + getHost() + path));
+			final HTTPResponse response = connection.sendRequest(request, new byte[0]);
+			assertThat(response.getStatusCode(), is(200));
+			connection.readResponseBody(request, response);
+			nonce = "a8f2e1c46b9d"; //expire the nonce
+		}
+		assertThat(authorizations, hasSize(4));
+		assertThat(authorizations.get(2), containsString("dcd98b7102dd2f0e8b11d0f600bfb0c093")); //sent preemptively with the old nonce
+		assertThat(authorizations.get(3), allOf(containsString("a8f2e1c46b9d"), containsString("00000001")));
+	}
+
+	/** Tests that challenges are cached for each realm of a host, so that answering one realm does not restart the nonce count of another. */
+	@Test
+	public void testChallengesCachedPerRealm() throws NoSuchAlgorithmException {
+		final HTTPClient client = new HTTPClient();
+		final URI rootURI = URI.create("http://" + getHost() + "/");
+		final AuthenticateChallenge firstChallenge = new DigestAuthenticateChallenge("first", "dcd98b7102dd2f0e8b11d0f600bfb0c093");
+		final AuthenticateChallenge secondChallenge = new DigestAuthenticateChallenge("second", "a8f2e1c46b9d");
+		client.putChallenge(rootURI, firstChallenge, 1, "cnonce1");
+		client.putChallenge(rootURI, secondChallenge, 1, "cnonce2");
+		assertThat(client.getChallenge(rootURI, "first"), is(sameInstance(firstChallenge)));
+		assertThat(client.getChallenge(rootURI, "second"), is(sameInstance(secondChallenge)));
+		assertThat(client.getChallenge(rootURI), is(sameInstance(secondChallenge))); //the realm answered last is used preemptively
+		assertThat(client.incrementNonceCount(rootURI, firstChallenge), is(2L));
+		assertThat(client.incrementNonceCount(rootURI, secondChallenge), is(2L));
+		assertThat(client.getCNonce(rootURI, firstChallenge), is("cnonce1"));
+		client.removeChallenge(rootURI, "second");
+		assertThat(client.getChallenge(rootURI, "first"), is(sameInstance(firstChallenge)));
+		assertThat(client.getChallenge(rootURI, "second"), is(nullValue()));
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of pre-warming connections using {@link HTTPClient#prewarm(Host, boolean, int)} and related methods against a loopback server requiring basic
+ * authentication.
+ * @author Garret Wilson
+ */
+public class HTTPClientPrewarmTest {
+
+	/** The realm of the server. */
+	private static final String REALM = "test";
+
+	/** The user name required by the server. */
+	private static final String USERNAME = "user";
+
+	/** The password required by the server. */
+	private static final String PASSWORD = "secret";
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The number of authentication challenges issued by the server. */
+	private final AtomicInteger challengeCount = new AtomicInteger();
+
+	/** Starts a loopback server that answers requests on persistent connections, challenging requests lacking the correct credentials. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		final String expectedCredentials = Base64.getEncoder().encodeToString((USERNAME + ":" + PASSWORD).getBytes(UTF_8));
+		LoopbackServer.Request request;
+		while((request = LoopbackServer.readRequest(inputStream)) != null) {
+			final String authorization = request.getHeader("Authorization");
+			if(LoopbackServer.hasScheme(authorization, "Basic") && authorization.substring(6).equals(expectedCredentials)) {
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "");
+			} else {
+				challengeCount.incrementAndGet();
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 401 Unauthorized", "", "WWW-Authenticate: Basic realm=\"" + REALM + "\"");
+			}
+		}
+	}
+
+	/** @return The host of the loopback server. */
+	private Host getHost() {
+		return server.getHost();
+	}
+
+	/** @return A client with the credentials of the server cached. */
+	private HTTPClient createClient() {
+		final HTTPClient client = new HTTPClient();
+		client.putPassword(URI.create("http://" + getHost() + "/"), REALM, USERNAME, PASSWORD.toCharArray());
+		return client;
+	}
+
+	/** Tests that the requested number of connections are opened in parallel, authenticated, and left idle for later requests. */
+	@Test
+	public void testPrewarmOpensAndAuthenticatesConnections() throws IOException {
+		final HTTPClient client = createClient();
+		final HTTPPrewarmResult result = client.prewarm(getHost(), false, 3);
+		assertThat(result.getConnectionCount(), is(3));
+		assertThat(result.getOpenedCount(), is(3));
+		assertThat(result.getConnectNanos(), is(greaterThan(0L)));
+		assertThat(result.getHandshakeNanos(), is(0L));
+		assertThat(result.getAuthenticationNanos(), is(greaterThan(0L)));
+		assertThat(server.getAcceptCount(), is(3));
+		assertThat(challengeCount.get(), is(1));
+		assertThat(client.getConnectionPool().getIdleConnectionCount(), is(3));
+		final HTTPResource resource = new HTTPResource(URI.create("http://" + getHost() + "/resource"), client);
+		resource.setCached(false);
+		resource.get();
+		assertThat(server.getAcceptCount(), is(3));
+	}
+
+	/** Tests that idle connections already in the pool count toward the number of connections requested. */
+	@Test
+	public void testPrewarmReusesIdleConnections() throws IOException {
+		final HTTPClient client = createClient();
+		client.prewarm(getHost(), false, 3);
+		final HTTPPrewarmResult result = client.prewarm(getHost(), false, 2);
+		assertThat(result.getConnectionCount(), is(2));
+		assertThat(result.getOpenedCount(), is(0));
+		assertThat(server.getAcceptCount(), is(3));
+	}
+
+	/** Tests that connections are pre-warmed for connection-specific credentials and then reused by requests with the same credentials. */
+	@Test
+	public void testPrewarmWithConnectionCredentials() throws IOException {
+		final HTTPClient client = new HTTPClient();
+		final PasswordAuthentication passwordAuthentication = new PasswordAuthentication(USERNAME, PASSWORD.toCharArray());
+		final HTTPPrewarmResult result = client.prewarm(URI.create("http://" + getHost() + "/"), passwordAuthentication, 2);
+		assertThat(result.getConnectionCount(), is(2));
+		assertThat(result.getOpenedCount(), is(2));
+		assertThat(server.getAcceptCount(), is(2));
+		final HTTPResource resource = new HTTPResource(URI.create("http://" + getHost() + "/resource"), client, passwordAuthentication);
+		resource.setCached(false);
+		resource.get();
+		assertThat(server.getAcceptCount(), is(2));
+	}
+
+	/** Tests that pre-warming is refused without connecting while the circuit of the host is open. */
+	@Test
+	public void testPrewarmRefusedWhenCircuitOpen() throws IOException {
+		final HTTPClient client = createClient();
+		final HTTPCircuitBreaker circuitBreaker = new HTTPCircuitBreaker(1, HTTPProbePolicy.DEFAULT);
+		client.setCircuitBreaker(circuitBreaker);
+		circuitBreaker.recordFailure(getHost());
+		assertThrows(HTTPCircuitOpenException.class, () -> client.prewarm(getHost(), false, 2));
+		assertThat(server.getAcceptCount(), is(0));
+	}
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.*;
+
+/**
+ * Tests of connections made by {@link HTTPClient} through a loopback proxy, which tunnels secure connections to a loopback TLS server and answers cleartext
+ * requests itself as if it had forwarded them.
+ * @author Garret Wilson
+ */
+public class HTTPClientProxyTest {
+
+	/** The name of the test key store resource, containing a self-signed certificate for <code>localhost</code>. */
+	private static final String KEY_STORE_RESOURCE_NAME = "localhost.p12";
+
+	/** The password of the test key store. */
+	private static final char[] KEY_STORE_PASSWORD = "password".toCharArray();
+
+	/** The user name required by the proxy. */
+	private static final String PROXY_USERNAME = "user";
+
+	/** The password required by the proxy. */
+	private static final String PROXY_PASSWORD = "secret";
+
+	/** The test key store. */
+	private KeyStore keyStore;
+
+	/** The loopback TLS server. */
+	private LoopbackServer server;
+
+	/** The loopback proxy. */
+	private LoopbackServer proxy;
+
+	/** The number of tunnels opened by the proxy. */
+	private final AtomicInteger tunnelCount = new AtomicInteger();
+
+	/** The number of authentication challenges issued by the proxy. */
+	private final AtomicInteger challengeCount = new AtomicInteger();
+
+	/** The targets of the authorized cleartext requests received by the proxy for forwarding. */
+	private final List<String> forwardedTargets = Collections.synchronizedList(new ArrayList<String>());
+
+	/** Starts a loopback TLS server that answers requests on persistent connections, and a loopback proxy requiring basic authentication. */
+	@BeforeEach
+	public void startServers() throws IOException, GeneralSecurityException {
+		keyStore = KeyStore.getInstance("PKCS12");
+		try (final InputStream inputStream = HTTPClientProxyTest.class.getResourceAsStream(KEY_STORE_RESOURCE_NAME)) {
+			keyStore.load(inputStream, KEY_STORE_PASSWORD);
+		}
+		final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD);
+		final SSLContext serverSSLContext = SSLContext.getInstance("TLS");
+		serverSSLContext.init(keyManagerFactory.getKeyManagers(), null, null);
+		final ServerSocket serverSocket = serverSSLContext.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		server = new LoopbackServer(serverSocket, HTTPClientProxyTest::serve);
+		proxy = new LoopbackServer(this::proxy);
+	}
+
+	/** Stops the loopback servers. */
+	@AfterEach
+	public void stopServers() throws IOException {
+		server.close();
+		proxy.close();
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private static void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		while(LoopbackServer.readRequest(inputStream) != null) {
+			LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "ok");
+		}
+	}
+
+	/**
+	 * Serves a connection to the proxy, challenging requests lacking the correct credentials. Otherwise a tunnel is opened to the requested host, or a
+	 * cleartext request is answered as if it had been forwarded.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void proxy(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		final String expectedCredentials = Base64.getEncoder().encodeToString((PROXY_USERNAME + ":" + PROXY_PASSWORD).getBytes(UTF_8));
+		LoopbackServer.Request request;
+		while((request = LoopbackServer.readRequest(inputStream)) != null) {
+			final String authorization = request.getHeader(HTTPClient.PROXY_AUTHORIZATION_HEADER);
+			if(!LoopbackServer.hasScheme(authorization, "Basic") || !authorization.substring(6).equals(expectedCredentials)) {
+				challengeCount.incrementAndGet();
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 407 Proxy Authentication Required", "deny", "Proxy-Authenticate: Basic realm=\"proxy\"");
+				continue;
+			}
+			if(!request.getMethod().equals("CONNECT")) { //a cleartext request to be forwarded
+				forwardedTargets.add(request.getTarget());
+				LoopbackServer.readBody(inputStream, request);
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "forwarded");
+				continue;
+			}
+			final String authority = request.getTarget();
+			final int colonIndex = authority.lastIndexOf(':');
+			try (final Socket hostSocket = new Socket(authority.substring(0, colonIndex), Integer.parseInt(authority.substring(colonIndex + 1)))) {
+				tunnelCount.incrementAndGet();
+				outputStream.write("HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(ISO_8859_1));
+				outputStream.flush();
+				final OutputStream hostOutputStream = hostSocket.getOutputStream();
+				proxy.execute(() -> relay(inputStream, hostOutputStream)); //ends once the client connection is closed
+				relay(hostSocket.getInputStream(), outputStream);
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Copies data from an input stream to an output stream until the end of the input stream is reached or there is an error.
+	 * @param inputStream The stream from which to read.
+	 * @param outputStream The stream to which to write.
+	 */
+	private static void relay(final InputStream inputStream, final OutputStream outputStream) {
+		final byte[] buffer = new byte[8192];
+		try {
+			int count;
+			while((count = inputStream.read(buffer)) >= 0) {
+				outputStream.write(buffer, 0, count);
+				outputStream.flush();
+			}
+		} catch(final IOException ioException) { //one side went away
+		}
+	}
+
+	/** @return An HTTP client that trusts the test certificate and connects through the proxy. */
+	private HTTPClient createProxiedClient() throws GeneralSecurityException {
+		final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagerFactory.init(keyStore);
+		final SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+		final HTTPClient client = new HTTPClient();
+		client.setSSLContext(sslContext);
+		client.setProxy(proxy.getHost());
+		return client;
+	}
+
+	/** @return The URI of the loopback TLS server. */
+	private URI getServerURI() {
+		return URI.create("https://localhost:" + server.getPort() + "/");
+	}
+
+	/**
+	 * Tests that secure requests are tunnelled through the proxy after answering its authentication challenge, and that the tunnel is reused for later
+	 * requests to the same host.
+	 * @see HTTPClient#setProxy(Host)
+	 */
+	@Test
+	public void testTunnelAuthenticatedAndReused() throws IOException, GeneralSecurityException {
+		final HTTPClient client = createProxiedClient();
+		client.setProxyPasswordAuthentication(new PasswordAuthentication(PROXY_USERNAME, PROXY_PASSWORD.toCharArray()));
+		for(int i = 0; i < 3; ++i) {
+			final HTTPResource resource = new HTTPResource(getServerURI(), client);
+			resource.setCached(false);
+			assertThat(new String(resource.get(), UTF_8), is("ok"));
+		}
+		assertThat(challengeCount.get(), is(1));
+		assertThat(tunnelCount.get(), is(1));
+	}
+
+	/**
+	 * Tests that cleartext requests are sent to the proxy with the absolute URI of the resource as the target after answering its authentication challenge,
+	 * without opening a tunnel, and that later requests are authenticated preemptively over the same connection to the proxy.
+	 * @see HTTPClient#setProxy(Host)
+	 */
+	@Test
+	public void testCleartextRequestsForwarded() throws IOException, GeneralSecurityException {
+		final HTTPClient client = createProxiedClient();
+		client.setProxyPasswordAuthentication(new PasswordAuthentication(PROXY_USERNAME, PROXY_PASSWORD.toCharArray()));
+		final URI resourceURI = URI.create("http://origin.invalid/resource"); //the proxy forwards the request, so the client never resolves the host
+		for(int i = 0; i < 3; ++i) {
+			final HTTPResource resource = new HTTPResource(resourceURI, client);
+			resource.setCached(false);
+			assertThat(new String(resource.get(), UTF_8), is("forwarded"));
+		}
+		assertThat(forwardedTargets, contains(resourceURI.toString(), resourceURI.toString(), resourceURI.toString()));
+		assertThat(challengeCount.get(), is(1));
+		assertThat(tunnelCount.get(), is(0));
+		assertThat(proxy.getAcceptCount(), is(1));
+	}
+
+	/** Tests that a cleartext request refused by the proxy for lack of credentials is reported with the status of the proxy response. */
+	@Test
+	public void testCleartextRequestRefusedWithoutCredentials() throws GeneralSecurityException {
+		final HTTPResource resource = new HTTPResource(URI.create("http://origin.invalid/resource"), createProxiedClient());
+		resource.setCached(false);
+		final HTTPException httpException = assertThrows(HTTPException.class, resource::get);
+		assertThat(httpException.getStatusCode(), is(HTTP.SC_PROXY_AUTHENTICATION_REQUIRED));
+		assertThat(forwardedTargets, hasSize(0));
+	}
+
+	/** Tests that a tunnel refused by the proxy for lack of credentials is reported with the status of the proxy response. */
+	@Test
+	public void testTunnelRefusedWithoutCredentials() throws GeneralSecurityException {
+		final HTTPResource resource = new HTTPResource(getServerURI(), createProxiedClient());
+		resource.setCached(false);
+		final HTTPException httpException = assertThrows(HTTPException.class, resource::get);
+		assertThat(httpException.getStatusCode(), is(HTTP.SC_PROXY_AUTHENTICATION_REQUIRED));
+		assertThat(tunnelCount.get(), is(0));
+	}
+
+}
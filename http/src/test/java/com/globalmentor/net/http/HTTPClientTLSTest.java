@@ -0,0 +1,243 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.security.*;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of secure connections made by {@link HTTPClient} to a loopback TLS server.
+ * @author Garret Wilson
+ */
+public class HTTPClientTLSTest {
+
+	/** The name of the test key store resource, containing a self-signed certificate for <code>localhost</code>. */
+	private static final String KEY_STORE_RESOURCE_NAME = "localhost.p12";
+
+	/** The password of the test key store. */
+	private static final char[] KEY_STORE_PASSWORD = "password".toCharArray();
+
+	/** The test key store. */
+	private KeyStore keyStore;
+
+	/** The number of full handshakes performed by the server, as indicated by the number of times the server chose a certificate. */
+	private final AtomicInteger fullHandshakeCount = new AtomicInteger();
+
+	/** Whether the server announces that it closes the connection after each response. */
+	private volatile boolean closeAnnounced = true;
+
+	/** Released each time the server has closed a connection without announcing it. */
+	private final Semaphore unannouncedCloses = new Semaphore(0);
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** Starts a loopback TLS server that answers each request with a short response and then closes the connection. */
+	@BeforeEach
+	public void startServer() throws IOException, GeneralSecurityException {
+		keyStore = KeyStore.getInstance("PKCS12");
+		try (final InputStream inputStream = HTTPClientTLSTest.class.getResourceAsStream(KEY_STORE_RESOURCE_NAME)) {
+			keyStore.load(inputStream, KEY_STORE_PASSWORD);
+		}
+		final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD);
+		final SSLContext serverSSLContext = SSLContext.getInstance("TLS");
+		serverSSLContext.init(new KeyManager[] {new CountingKeyManager((X509ExtendedKeyManager)keyManagerFactory.getKeyManagers()[0])}, null, null);
+		final ServerSocket serverSocket = serverSSLContext.getServerSocketFactory().createServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		server = new LoopbackServer(serverSocket, this::serve);
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Reads a single request from the connection and writes a response, closing the connection so that each request requires a new transport. Unless
+	 * {@link #closeAnnounced}, the response does not indicate that the connection will be closed, as if the server had closed an idle connection.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		if(LoopbackServer.readRequest(inputStream) != null) {
+			if(closeAnnounced) {
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "ok", "Connection: close");
+			} else {
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", "ok");
+				outputStream.close(); //closes the socket
+				unannouncedCloses.release();
+			}
+		}
+	}
+
+	/** @return The URI of the loopback server. */
+	private URI getServerURI() {
+		return URI.create("https://localhost:" + server.getPort() + "/");
+	}
+
+	/** @return An SSL context that trusts the test certificate. */
+	private SSLContext createTrustingSSLContext() throws GeneralSecurityException {
+		final TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trustManagerFactory.init(keyStore);
+		final SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, trustManagerFactory.getTrustManagers(), null);
+		return sslContext;
+	}
+
+	/**
+	 * Tests that separate connections to the same host resume the TLS session rather than performing a full handshake each time.
+	 * @see HTTPClient#setSSLContext(SSLContext)
+	 */
+	@Test
+	public void testSessionResumed() throws IOException, GeneralSecurityException {
+		final HTTPClient client = new HTTPClient();
+		client.setSSLContext(createTrustingSSLContext());
+		for(int i = 0; i < 3; ++i) {
+			final HTTPResource resource = new HTTPResource(getServerURI(), client);
+			resource.setCached(false);
+			assertThat(new String(resource.get(), UTF_8), is("ok"));
+		}
+		assertThat(fullHandshakeCount.get(), is(1));
+	}
+
+	/**
+	 * Tests that an idle connection closed by the server is not reused. The requests are not idempotent, so a stale connection being reused would fail the
+	 * request rather than it being retried.
+	 * @see HTTPClient#setStaleCheckInactivity(int)
+	 */
+	@Test
+	public void testIdleConnectionClosedByServerNotReused() throws IOException, GeneralSecurityException, InterruptedException {
+		closeAnnounced = false;
+		final HTTPClient client = new HTTPClient();
+		client.setSSLContext(createTrustingSSLContext());
+		client.setStaleCheckInactivity(0);
+		final Host host = new Host("localhost", server.getPort());
+		for(int i = 0; i < 2; ++i) {
+			final HTTPClientTCPConnection connection = client.createConnection(host, null, true);
+			final HTTPRequest request = new DefaultHTTPRequest("POST", getServerURI());
+			try {
+				final HTTPResponse response = connection.sendRequest(request, "test".getBytes(UTF_8));
+				assertThat(response.getStatusCode(), is(200));
+				assertThat(new String(connection.readResponseBody(request, response), UTF_8), is("ok"));
+			} finally {
+				connection.disconnect(); //releases the transport to the pool
+			}
+			assertThat(unannouncedCloses.tryAcquire(5, TimeUnit.SECONDS), is(true));
+		}
+		assertThat(server.getAcceptCount(), is(2));
+	}
+
+	/** Tests that a server with an untrusted certificate is rejected by default. */
+	@Test
+	public void testUntrustedCertificateRejected() {
+		final HTTPResource resource = new HTTPResource(getServerURI(), new HTTPClient());
+		resource.setCached(false);
+		assertThrows(SSLException.class, resource::get);
+	}
+
+	/**
+	 * Tests that insecure mode accepts an untrusted certificate.
+	 * @see HTTPClient#setInsecure(boolean)
+	 */
+	@Test
+	public void testInsecureAcceptsUntrustedCertificate() throws IOException {
+		final HTTPClient client = new HTTPClient();
+		client.setInsecure(true);
+		final HTTPResource resource = new HTTPResource(getServerURI(), client);
+		resource.setCached(false);
+		assertThat(new String(resource.get(), UTF_8), is("ok"));
+	}
+
+	/**
+	 * A key manager that counts the number of times a server certificate is chosen. A certificate is only chosen during a full handshake, not when a session is
+	 * resumed.
+	 * @author Garret Wilson
+	 */
+	private class CountingKeyManager extends X509ExtendedKeyManager {
+
+		/** The decorated key manager. */
+		private final X509ExtendedKeyManager keyManager;
+
+		/**
+		 * Decorated key manager constructor.
+		 * @param keyManager The key manager to decorate.
+		 */
+		public CountingKeyManager(final X509ExtendedKeyManager keyManager) {
+			this.keyManager = keyManager;
+		}
+
+		@Override
+		public String chooseServerAlias(final String keyType, final Principal[] issuers, final Socket socket) {
+			final String alias = keyManager.chooseServerAlias(keyType, issuers, socket);
+			if(alias != null) {
+				fullHandshakeCount.incrementAndGet();
+			}
+			return alias;
+		}
+
+		@Override
+		public String chooseEngineServerAlias(final String keyType, final Principal[] issuers, final SSLEngine engine) {
+			final String alias = keyManager.chooseEngineServerAlias(keyType, issuers, engine);
+			if(alias != null) {
+				fullHandshakeCount.incrementAndGet();
+			}
+			return alias;
+		}
+
+		@Override
+		public String[] getServerAliases(final String keyType, final Principal[] issuers) {
+			return keyManager.getServerAliases(keyType, issuers);
+		}
+
+		@Override
+		public String[] getClientAliases(final String keyType, final Principal[] issuers) {
+			return keyManager.getClientAliases(keyType, issuers);
+		}
+
+		@Override
+		public String chooseClientAlias(final String[] keyTypes, final Principal[] issuers, final Socket socket) {
+			return keyManager.chooseClientAlias(keyTypes, issuers, socket);
+		}
+
+		@Override
+		public X509Certificate[] getCertificateChain(final String alias) {
+			return keyManager.getCertificateChain(alias);
+		}
+
+		@Override
+		public PrivateKey getPrivateKey(final String alias) {
+			return keyManager.getPrivateKey(alias);
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assumptions.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of connections made by {@link HTTPClient} to a server listening on a Unix domain socket. The tests are skipped on platforms that do not support Unix
+ * domain socket channels.
+ * @author Garret Wilson
+ */
+public class HTTPClientUnixDomainSocketTest {
+
+	/** The host mapped to the Unix domain socket; it cannot be resolved, so any attempt to use TCP would fail. */
+	private static final Host HOST = new Host("sidecar.invalid");
+
+	/** The directory containing the socket file. */
+	private Path directory;
+
+	/** The path of the socket file. */
+	private Path socketPath;
+
+	/** The server listening on the socket. */
+	private LoopbackServer server;
+
+	/** Starts a server listening on a Unix domain socket that answers each request on a connection with a chunked response. */
+	@BeforeEach
+	public void startServer() throws IOException, ReflectiveOperationException {
+		assumeTrue(HTTPClient.isUnixDomainSocketSupported());
+		directory = Files.createTempDirectory(getClass().getSimpleName());
+		socketPath = directory.resolve("server.sock");
+		final SocketAddress address = (SocketAddress)Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class).invoke(null, socketPath);
+		final ServerSocketChannel serverChannel = (ServerSocketChannel)ServerSocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null,
+				StandardProtocolFamily.valueOf("UNIX"));
+		serverChannel.bind(address);
+		server = new LoopbackServer(serverChannel, HTTPClientUnixDomainSocketTest::serve);
+	}
+
+	/** Stops the server and removes the socket file. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		if(server != null) {
+			server.close();
+			Files.deleteIfExists(socketPath);
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private static void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		while(LoopbackServer.readRequest(inputStream) != null) {
+			outputStream.write("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n6\r\nhello \r\n5\r\nworld\r\n0\r\n\r\n".getBytes(ISO_8859_1));
+			outputStream.flush();
+		}
+	}
+
+	/** Tests that requests to a mapped host are sent over the Unix domain socket, reusing the connection. */
+	@Test
+	public void testRequestsOverUnixDomainSocket() throws IOException {
+		final HTTPClient client = new HTTPClient();
+		client.setUnixDomainSocket(HOST, socketPath);
+		for(int i = 0; i < 3; ++i) {
+			final HTTPResource resource = new HTTPResource(URI.create("http://" + HOST + "/resource"), client);
+			resource.setCached(false);
+			assertThat(new String(resource.get(), UTF_8), is("hello world"));
+		}
+		assertThat(server.getAcceptCount(), is(1));
+	}
+
+}
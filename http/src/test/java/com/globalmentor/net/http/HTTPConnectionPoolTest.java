@@ -0,0 +1,276 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.globalmentor.net.http;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests of {@link HTTPConnectionPool}, using transports that are not connected to anything.
+ * @author Garret Wilson
+ */
+public class HTTPConnectionPoolTest {
+
+	/** The key of transports to the first test host. */
+	private static final HTTPConnectionPool.Key KEY = new HTTPConnectionPool.Key(new Host("example.com"), false, null);
+
+	/** The key of transports to the second test host. */
+	private static final HTTPConnectionPool.Key OTHER_KEY = new HTTPConnectionPool.Key(new Host("example.org"), false, null);
+
+	/** An executor that runs tasks on the calling thread. */
+	private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+	/** The transports opened by the pool, in the order opened. */
+	private final List<TestTransport> openedTransports = new CopyOnWriteArrayList<TestTransport>();
+
+	/** The pool under test. */
+	private HTTPConnectionPool pool;
+
+	/** Creates a pool that opens test transports. */
+	@BeforeEach
+	public void createPool() {
+		pool = new HTTPConnectionPool(key -> {
+			final TestTransport transport = new TestTransport(key.getHost());
+			openedTransports.add(transport);
+			return transport;
+		});
+	}
+
+	/** Closes the pool. */
+	@AfterEach
+	public void closePool() {
+		pool.close();
+	}
+
+	/** Tests that a released transport is reused by the next lease for the same key, and not for another key. */
+	@Test
+	public void testReleasedTransportReused() throws IOException {
+		final HTTPTransport transport = pool.lease(KEY);
+		pool.release(transport);
+		assertThat(pool.getIdleConnectionCount(), is(1));
+		assertThat(pool.lease(KEY), is(sameInstance(transport)));
+		assertThat(pool.lease(OTHER_KEY), is(not(sameInstance(transport))));
+		assertThat(openedTransports, hasSize(2));
+		assertThat(pool.getConnectionCount(), is(2));
+	}
+
+	/** Tests that a stale idle transport is closed and replaced rather than leased. */
+	@Test
+	public void testStaleTransportReplaced() throws IOException {
+		final TestTransport transport = (TestTransport)pool.lease(KEY);
+		pool.release(transport);
+		transport.stale = true;
+		assertThat(pool.lease(KEY), is(not(sameInstance(transport))));
+		assertThat(transport.isOpen(), is(false));
+		assertThat(pool.getConnectionCount(), is(1));
+	}
+
+	/** Tests that a transport that may not be reused is closed when released. */
+	@Test
+	public void testUnreusableTransportClosed() throws IOException {
+		final HTTPTransport transport = pool.lease(KEY);
+		transport.setKeepAliveMax(0);
+		pool.release(transport);
+		assertThat(transport.isOpen(), is(false));
+		assertThat(pool.getConnectionCount(), is(0));
+	}
+
+	/** Tests that leases beyond the per-host limit wait for a transport of that host, without affecting other hosts. */
+	@Test
+	public void testMaxConnectionsPerHost() throws IOException {
+		pool.setMaxConnectionsPerHost(1);
+		final HTTPTransport transport = pool.lease(KEY);
+		final CompletableFuture<HTTPTransport> waitingLease = pool.leaseAsync(KEY, DIRECT_EXECUTOR);
+		assertThat(waitingLease.isDone(), is(false));
+		final CompletableFuture<HTTPTransport> otherLease = pool.leaseAsync(OTHER_KEY, DIRECT_EXECUTOR);
+		assertThat(otherLease.isDone(), is(true));
+		pool.release(transport);
+		assertThat(waitingLease.join(), is(sameInstance(transport)));
+		assertThat(openedTransports, hasSize(2));
+	}
+
+	/** Tests that a lease waiting beyond the total limit is fulfilled by evicting an idle transport of another host once one is released. */
+	@Test
+	public void testMaxConnections() throws IOException {
+		pool.setMaxConnections(1);
+		final HTTPTransport transport = pool.lease(KEY);
+		final CompletableFuture<HTTPTransport> waitingLease = pool.leaseAsync(OTHER_KEY, DIRECT_EXECUTOR);
+		assertThat(waitingLease.isDone(), is(false));
+		pool.release(transport);
+		assertThat(waitingLease.join().getHost(), is(OTHER_KEY.getHost()));
+		assertThat(transport.isOpen(), is(false));
+		assertThat(pool.getConnectionCount(), is(1));
+	}
+
+	/** Tests that waiting leases are fulfilled in the order requested, and that a cancelled lease is skipped. */
+	@Test
+	public void testWaitersFulfilledInOrder() throws IOException {
+		pool.setMaxConnectionsPerHost(1);
+		final HTTPTransport transport = pool.lease(KEY);
+		final CompletableFuture<HTTPTransport> cancelledLease = pool.leaseAsync(KEY, DIRECT_EXECUTOR);
+		final CompletableFuture<HTTPTransport> firstLease = pool.leaseAsync(KEY, DIRECT_EXECUTOR);
+		final CompletableFuture<HTTPTransport> secondLease = pool.leaseAsync(KEY, DIRECT_EXECUTOR);
+		cancelledLease.cancel(false);
+		pool.release(transport);
+		assertThat(firstLease.join(), is(sameInstance(transport)));
+		assertThat(secondLease.isDone(), is(false));
+		pool.release(transport);
+		assertThat(secondLease.join(), is(sameInstance(transport)));
+	}
+
+	/** Tests that a blocking lease waiting for the per-host limit proceeds once a transport is released. */
+	@Test
+	public void testBlockingLeaseWaits() throws Exception {
+		pool.setMaxConnectionsPerHost(1);
+		final HTTPTransport transport = pool.lease(KEY);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			final CountDownLatch leasing = new CountDownLatch(1);
+			final Future<HTTPTransport> waitingLease = executor.submit(() -> {
+				leasing.countDown();
+				return pool.lease(KEY);
+			});
+			assertThat(leasing.await(5, TimeUnit.SECONDS), is(true));
+			pool.release(transport);
+			assertThat(waitingLease.get(5, TimeUnit.SECONDS), is(sameInstance(transport)));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/** Tests that the work of fulfilling a waiting lease is handed to its executor only after the pool lock has been released. */
+	@Test
+	public void testHandOffOutsideLock() throws IOException {
+		pool.setMaxConnectionsPerHost(1);
+		final HTTPTransport transport = pool.lease(KEY);
+		final List<Boolean> poolAvailable = new CopyOnWriteArrayList<Boolean>();
+		final Executor checkingExecutor = task -> {
+			try { //another thread can only query the pool if the lock is not held by this thread
+				poolAvailable.add(CompletableFuture.supplyAsync(pool::getConnectionCount).get(5, TimeUnit.SECONDS) >= 0);
+			} catch(final InterruptedException | ExecutionException | TimeoutException exception) {
+				poolAvailable.add(false);
+			}
+			task.run();
+		};
+		final CompletableFuture<HTTPTransport> waitingLease = pool.leaseAsync(KEY, checkingExecutor);
+		pool.release(transport);
+		assertThat(waitingLease.join(), is(sameInstance(transport)));
+		assertThat(poolAvailable, contains(true));
+	}
+
+	/** Tests that closing the pool fails waiting leases and closes idle transports. */
+	@Test
+	public void testCloseFailsWaiters() throws IOException {
+		pool.setMaxConnectionsPerHost(1);
+		final HTTPTransport transport = pool.lease(KEY);
+		final CompletableFuture<HTTPTransport> waitingLease = pool.leaseAsync(KEY, DIRECT_EXECUTOR);
+		final HTTPTransport otherTransport = pool.lease(OTHER_KEY);
+		pool.release(otherTransport);
+		pool.close();
+		assertThat(waitingLease.isCompletedExceptionally(), is(true));
+		assertThat(otherTransport.isOpen(), is(false));
+		pool.release(transport);
+		assertThat(transport.isOpen(), is(false));
+		assertThrows(IOException.class, () -> pool.lease(KEY));
+	}
+
+	/** Tests that idle transports exceeding the maximum idle time are reaped. */
+	@Test
+	public void testExpiredTransportsReaped() throws IOException {
+		final HTTPTransport transport = pool.lease(KEY);
+		pool.release(transport);
+		assertThat(pool.closeExpiredConnections(), is(0));
+		pool.setMaxIdleTime(0);
+		assertThat(pool.closeExpiredConnections(), is(1));
+		assertThat(transport.isOpen(), is(false));
+		assertThat(pool.getConnectionCount(), is(0));
+	}
+
+	/** Tests that idle transports closed by the server are reaped. */
+	@Test
+	public void testClosedTransportsReaped() throws IOException {
+		final HTTPTransport transport = pool.lease(KEY);
+		pool.release(transport);
+		transport.close();
+		assertThat(pool.closeExpiredConnections(), is(1));
+		assertThat(pool.getIdleConnectionCount(), is(0));
+		assertThat(pool.getConnectionCount(), is(0));
+	}
+
+	/**
+	 * A transport that is not connected to anything, but can be marked stale or closed.
+	 * @author Garret Wilson
+	 */
+	private static class TestTransport extends HTTPTransport {
+
+		/** Whether the transport is open. */
+		private volatile boolean open = true;
+
+		/** Whether the transport should not be reused. */
+		volatile boolean stale = false;
+
+		/**
+		 * Host constructor.
+		 * @param host The host to which the transport is connected.
+		 */
+		public TestTransport(final Host host) {
+			super(host, false);
+		}
+
+		@Override
+		public InetAddress getInetAddress() {
+			return InetAddress.getLoopbackAddress();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new ByteArrayOutputStream();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public boolean isStale() {
+			return stale || super.isStale();
+		}
+
+		@Override
+		public void close() {
+			open = false;
+		}
+	}
+
+}
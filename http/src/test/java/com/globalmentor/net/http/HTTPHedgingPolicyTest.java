@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.util.concurrent.TimeUnit.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.globalmentor.net.Host;
+
+/**
+ * Tests for {@link HTTPHedgingPolicy}.
+ * @author Garret Wilson
+ */
+public class HTTPHedgingPolicyTest {
+
+	/** Tests that no delay is given until enough latencies have been observed, and that the delay is then estimated again only every few latencies. */
+	@Test
+	public void testDelayEstimatedPeriodically() {
+		final HTTPHedgingPolicy hedgingPolicy = new HTTPHedgingPolicy(HTTPHedgingPolicy.DEFAULT_PERCENTILE, 0, HTTPHedgingPolicy.DEFAULT_HEDGE_RATIO,
+				HTTPHedgingPolicy.DEFAULT_MAX_HEDGES);
+		final Host host = new Host("example.com", 80);
+		for(int i = 0; i < 19; ++i) {
+			hedgingPolicy.recordLatency(host, MILLISECONDS.toNanos(1));
+		}
+		assertThat(hedgingPolicy.getDelayNanos(host), is(-1L));
+		hedgingPolicy.recordLatency(host, MILLISECONDS.toNanos(1));
+		assertThat(hedgingPolicy.getDelayNanos(host), is(MILLISECONDS.toNanos(1)));
+		for(int i = 0; i < 15; ++i) {
+			hedgingPolicy.recordLatency(host, SECONDS.toNanos(1));
+		}
+		assertThat("The last estimate is reused.", hedgingPolicy.getDelayNanos(host), is(MILLISECONDS.toNanos(1)));
+		hedgingPolicy.recordLatency(host, SECONDS.toNanos(1));
+		assertThat(hedgingPolicy.getDelayNanos(host), is(SECONDS.toNanos(1)));
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of coalescing identical concurrent requests made by {@link HTTPResource}, using a loopback server that holds its responses until released.
+ * @author Garret Wilson
+ */
+public class HTTPResourceCoalescingTest {
+
+	/** The number of concurrent callers. */
+	private static final int CALLER_COUNT = 8;
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The number of requests received by the server. */
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	/** Counted down by the server when it receives a request. */
+	private final CountDownLatch requestLatch = new CountDownLatch(1);
+
+	/** Released to let the server answer. */
+	private final CountDownLatch answerLatch = new CountDownLatch(1);
+
+	/** The status line with which the server answers. */
+	private volatile String statusLine = "HTTP/1.1 200 OK";
+
+	/** The executor for making requests. */
+	private ExecutorService executorService;
+
+	/** Starts a loopback server that answers requests on persistent connections once released. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+		executorService = Executors.newCachedThreadPool();
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException, InterruptedException {
+		while(LoopbackServer.readRequest(inputStream) != null) {
+			requestCount.incrementAndGet();
+			requestLatch.countDown();
+			answerLatch.await();
+			LoopbackServer.writeResponse(outputStream, statusLine, "ok");
+		}
+	}
+
+	/**
+	 * Starts callers each retrieving the content of a separate resource instance for the same URI, then lets the server answer once all the callers are waiting
+	 * for the request in progress. The first caller is started alone, so that the request is in progress once the server receives it.
+	 * @return The futures of the callers.
+	 */
+	private List<Future<byte[]>> getConcurrently() throws InterruptedException {
+		final HTTPClient client = new HTTPClient();
+		final URI uri = server.getURI("/resource");
+		final List<Future<byte[]>> futures = new ArrayList<Future<byte[]>>();
+		futures.add(executorService.submit(() -> new HTTPResource(uri, client).get()));
+		assertThat(requestLatch.await(5, TimeUnit.SECONDS), is(true));
+		assertThat(HTTPResource.inFlightMap.size(), is(1));
+		final CompletableFuture<Object> flight = HTTPResource.inFlightMap.values().iterator().next();
+		for(int i = 1; i < CALLER_COUNT; ++i) {
+			futures.add(executorService.submit(() -> new HTTPResource(uri, client).get()));
+		}
+		final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while(flight.getNumberOfDependents() < CALLER_COUNT - 1) { //each caller blocked waiting for the request in progress is a dependent
+			assertThat("Callers did not join the request in progress.", System.nanoTime() - deadlineNanos, is(lessThan(0L)));
+			Thread.yield();
+		}
+		answerLatch.countDown();
+		return futures;
+	}
+
+	/** Tests that identical concurrent retrievals are sent as a single request, and that each caller receives its own copy of the content. */
+	@Test
+	public void testConcurrentGetsCoalesced() throws InterruptedException, ExecutionException {
+		final Set<byte[]> contents = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+		for(final Future<byte[]> future : getConcurrently()) {
+			final byte[] content = future.get();
+			assertThat(new String(content, UTF_8), is("ok"));
+			contents.add(content);
+		}
+		assertThat(requestCount.get(), is(1));
+		assertThat(contents.size(), is(CALLER_COUNT));
+	}
+
+	/** Tests that each caller of coalesced retrievals receives the exception of the single request. */
+	@Test
+	public void testConcurrentGetsShareException() throws InterruptedException {
+		statusLine = "HTTP/1.1 404 Not Found";
+		for(final Future<byte[]> future : getConcurrently()) {
+			final ExecutionException executionException = assertThrows(ExecutionException.class, future::get);
+			assertThat(executionException.getCause(), is(instanceOf(HTTPNotFoundException.class)));
+		}
+		assertThat(requestCount.get(), is(1));
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 1996-2008 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.junit.jupiter.api.*;
+
+/**
+ * Tests of the streams returned by {@link HTTPResource#getInputStream()} and {@link HTTPResource#getOutputStream()}, which finish the exchange with the server
+ * when closed.
+ * @author Garret Wilson
+ */
+public class HTTPResourceStreamTest {
+
+	/** The size of the content of the resource. */
+	private static final int CONTENT_SIZE = 64 * 1024;
+
+	/** The loopback server. */
+	private LoopbackServer server;
+
+	/** The status line with which the server answers <code>PUT</code> requests. */
+	private volatile String putStatusLine = "HTTP/1.1 204 No Content";
+
+	/** The bodies of the <code>PUT</code> requests received by the server. */
+	private final BlockingQueue<byte[]> putBodies = new LinkedBlockingQueue<byte[]>();
+
+	/** Starts a loopback server that answers requests on persistent connections. */
+	@BeforeEach
+	public void startServer() throws IOException {
+		server = new LoopbackServer(this::serve);
+	}
+
+	/** Stops the loopback server. */
+	@AfterEach
+	public void stopServer() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Answers requests on a connection until the client closes it, answering <code>GET</code> with the content of the resource and recording the body of each
+	 * <code>PUT</code>.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 */
+	private void serve(final InputStream inputStream, final OutputStream outputStream) throws IOException {
+		LoopbackServer.Request request;
+		while((request = LoopbackServer.readRequest(inputStream)) != null) {
+			if(request.getMethod().equals("PUT")) {
+				putBodies.add(LoopbackServer.readBody(inputStream, request));
+				LoopbackServer.writeResponse(outputStream, putStatusLine, "");
+			} else {
+				final char[] content = new char[CONTENT_SIZE];
+				Arrays.fill(content, 'x');
+				LoopbackServer.writeResponse(outputStream, "HTTP/1.1 200 OK", new String(content));
+			}
+		}
+	}
+
+	/** @return A resource on the server that is not cached. */
+	private HTTPResource createResource(final HTTPClient client) {
+		final HTTPResource resource = new HTTPResource(server.getURI("/resource"), client);
+		resource.setCached(false);
+		return resource;
+	}
+
+	/** Tests that closing the output stream finishes the request body and reads the response, and that closing it again has no effect. */
+	@Test
+	public void testOutputStreamCloseReadsResponse() throws IOException, InterruptedException {
+		final HTTPResource resource = createResource(new HTTPClient());
+		final OutputStream outputStream = resource.getOutputStream();
+		outputStream.write("hello".getBytes(UTF_8));
+		outputStream.close();
+		assertThat(new String(putBodies.poll(5, TimeUnit.SECONDS), UTF_8), is("hello"));
+		outputStream.close();
+		assertThat(putBodies.isEmpty(), is(true));
+		assertThat(resource.get().length, is(CONTENT_SIZE)); //the connection was left ready for another exchange
+	}
+
+	/** Tests that closing the output stream reports an error status of the response. */
+	@Test
+	public void testOutputStreamCloseThrowsErrorStatus() throws IOException {
+		putStatusLine = "HTTP/1.1 409 Conflict";
+		final OutputStream outputStream = createResource(new HTTPClient()).getOutputStream();
+		outputStream.write("hello".getBytes(UTF_8));
+		assertThrows(HTTPConflictException.class, outputStream::close);
+	}
+
+	/** Tests that closing the input stream before the body has been read drains the rest of the body, so that the connection can be reused. */
+	@Test
+	public void testInputStreamCloseDrainsBody() throws IOException {
+		final HTTPClient client = new HTTPClient();
+		final HTTPResource resource = createResource(client);
+		try (final InputStream inputStream = resource.getInputStream()) {
+			assertThat(inputStream.read(), is((int)'x'));
+		}
+		assertThat(resource.get().length, is(CONTENT_SIZE));
+		assertThat(server.getAcceptCount(), is(1));
+	}
+
+}
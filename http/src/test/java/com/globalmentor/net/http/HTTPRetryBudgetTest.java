@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link HTTPRetryBudget}.
+ * @author Garret Wilson
+ */
+public class HTTPRetryBudgetTest {
+
+	/** Tests that the initial burst of retries is allowed, and that afterwards retries are only earned by requests. */
+	@Test
+	public void testRetriesLimitedByRequests() {
+		final HTTPRetryBudget retryBudget = new HTTPRetryBudget(0.25, 2);
+		assertThat(retryBudget.tryAcquireRetry(), is(true));
+		assertThat(retryBudget.tryAcquireRetry(), is(true));
+		assertThat(retryBudget.tryAcquireRetry(), is(false));
+		for(int i = 0; i < 3; ++i) {
+			retryBudget.recordRequest();
+		}
+		assertThat(retryBudget.tryAcquireRetry(), is(false));
+		retryBudget.recordRequest();
+		assertThat(retryBudget.tryAcquireRetry(), is(true));
+		assertThat(retryBudget.tryAcquireRetry(), is(false));
+	}
+
+	/** Tests that requests cannot accumulate more retries than the maximum. */
+	@Test
+	public void testCapacity() {
+		final HTTPRetryBudget retryBudget = new HTTPRetryBudget(1, 3);
+		for(int i = 0; i < 100; ++i) {
+			retryBudget.recordRequest();
+		}
+		assertThat(retryBudget.getAvailableRetries(), is(3));
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright © 2026 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.*;
+import java.net.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link HTTPRetryPolicy}.
+ * @author Garret Wilson
+ */
+public class HTTPRetryPolicyTest {
+
+	/** Tests that backoff delays are jittered within an exponentially increasing ceiling that is capped by the maximum backoff. */
+	@Test
+	public void testBackoffDelay() {
+		final HTTPRetryPolicy retryPolicy = HTTPRetryPolicy.DEFAULT.withBackoff(100, 1000);
+		for(int i = 0; i < 1000; ++i) {
+			assertThat(retryPolicy.getBackoffDelay(1), is(lessThanOrEqualTo(100L)));
+			assertThat(retryPolicy.getBackoffDelay(3), is(lessThanOrEqualTo(400L)));
+			final long delay = retryPolicy.getBackoffDelay(100);
+			assertThat(delay, is(greaterThanOrEqualTo(0L)));
+			assertThat(delay, is(lessThanOrEqualTo(1000L)));
+		}
+	}
+
+	/** Tests that only idempotent requests are replayed after connection failures, and that timeouts are never replayed. */
+	@Test
+	public void testIsRetryable() {
+		final HTTPRetryPolicy retryPolicy = HTTPRetryPolicy.DEFAULT;
+		final URI uri = URI.create("http://example.com/resource");
+		final HTTPRequest get = new DefaultHTTPRequest("GET", uri);
+		final HTTPRequest put = new DefaultHTTPRequest("PUT", uri);
+		final HTTPRequest propfind = new DefaultHTTPRequest("PROPFIND", uri);
+		final HTTPRequest post = new DefaultHTTPRequest("POST", uri);
+		assertThat(retryPolicy.isRetryable(get, new SocketException("Connection reset")), is(true));
+		assertThat(retryPolicy.isRetryable(put, new EOFException()), is(true));
+		assertThat(retryPolicy.isRetryable(propfind, new IOException("Broken pipe")), is(true));
+		assertThat(retryPolicy.isRetryable(post, new SocketException("Connection reset")), is(false));
+		assertThat(retryPolicy.isRetryable(get, new SocketTimeoutException()), is(false));
+		assertThat(retryPolicy.isRetryable(get, new ConnectException()), is(false));
+		assertThat(retryPolicy.isRetryable(get, new HTTP2Exception(HTTP2.INTERNAL_ERROR, "failed")), is(false));
+		assertThat(retryPolicy.isRetryable(post, new HTTP2Exception(HTTP2.REFUSED_STREAM, "refused", true)), is(true));
+	}
+
+}
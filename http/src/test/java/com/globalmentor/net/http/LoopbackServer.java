@@ -0,0 +1,344 @@
+/*
+ * Copyright © 1996-2008 GlobalMentor, Inc. <https://www.globalmentor.com/>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.globalmentor.net.http;
+
+import static java.nio.charset.StandardCharsets.*;
+import static java.util.Objects.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.globalmentor.net.Host;
+
+/**
+ * A server for tests, listening on the loopback interface or on a given channel, that serves each accepted connection on a thread of its own until closed.
+ * Connections still open when the server is closed are closed as well, so that no handler is left blocked on I/O.
+ * @author Garret Wilson
+ */
+class LoopbackServer implements Closeable {
+
+	/**
+	 * The strategy for serving a connection. The connection is closed when the handler returns; an {@link IOException} or {@link InterruptedException} thrown
+	 * by the handler indicates that the client went away or the server was closed, and is ignored.
+	 * @author Garret Wilson
+	 */
+	@FunctionalInterface
+	public interface Handler {
+
+		/**
+		 * Serves a connection.
+		 * @param inputStream The stream for reading from the client.
+		 * @param outputStream The stream for writing to the client.
+		 * @throws IOException if there is an error communicating with the client.
+		 * @throws InterruptedException if the handler is interrupted because the server was closed.
+		 */
+		void serve(InputStream inputStream, OutputStream outputStream) throws IOException, InterruptedException;
+	}
+
+	/** The loopback server socket, or <code>null</code> if the server listens on a channel. */
+	private final ServerSocket serverSocket;
+
+	/** The server channel, or <code>null</code> if the server listens on a server socket. */
+	private final ServerSocketChannel serverChannel;
+
+	/** The executor for accepting and serving connections. */
+	private final ExecutorService executorService = Executors.newCachedThreadPool();
+
+	/** The connections currently open. */
+	private final Set<Closeable> connections = ConcurrentHashMap.newKeySet();
+
+	/** The number of connections accepted by the server. */
+	private final AtomicInteger acceptCount = new AtomicInteger();
+
+	/** @return The number of connections accepted by the server. */
+	public int getAcceptCount() {
+		return acceptCount.get();
+	}
+
+	/**
+	 * Starts a server listening on an ephemeral port of the loopback interface.
+	 * @param handler The strategy for serving each connection.
+	 * @throws IOException if the server socket could not be opened.
+	 */
+	public LoopbackServer(final Handler handler) throws IOException {
+		this(new ServerSocket(0, 50, InetAddress.getLoopbackAddress()), handler);
+	}
+
+	/**
+	 * Starts a server accepting connections on the given server socket, which may for example be secure.
+	 * @param serverSocket The bound server socket.
+	 * @param handler The strategy for serving each connection.
+	 */
+	public LoopbackServer(final ServerSocket serverSocket, final Handler handler) {
+		this.serverSocket = requireNonNull(serverSocket);
+		this.serverChannel = null;
+		requireNonNull(handler);
+		executorService.execute(() -> {
+			try {
+				while(true) {
+					final Socket socket = serverSocket.accept();
+					acceptCount.incrementAndGet();
+					serve(socket, socket.getInputStream(), socket.getOutputStream(), handler);
+				}
+			} catch(final IOException ioException) { //the server socket was closed
+			}
+		});
+	}
+
+	/**
+	 * Starts a server accepting connections on the given server channel, which may for example be bound to a Unix domain socket.
+	 * @param serverChannel The bound server channel.
+	 * @param handler The strategy for serving each connection.
+	 */
+	public LoopbackServer(final ServerSocketChannel serverChannel, final Handler handler) {
+		this.serverSocket = null;
+		this.serverChannel = requireNonNull(serverChannel);
+		requireNonNull(handler);
+		executorService.execute(() -> {
+			try {
+				while(true) {
+					final SocketChannel channel = serverChannel.accept();
+					acceptCount.incrementAndGet();
+					serve(channel, Channels.newInputStream(channel), Channels.newOutputStream(channel), handler);
+				}
+			} catch(final IOException ioException) { //the server channel was closed
+			}
+		});
+	}
+
+	/**
+	 * Serves a connection on a separate thread, closing the connection once the handler returns.
+	 * @param connection The accepted connection.
+	 * @param inputStream The stream for reading from the client.
+	 * @param outputStream The stream for writing to the client.
+	 * @param handler The strategy for serving the connection.
+	 */
+	private void serve(final Closeable connection, final InputStream inputStream, final OutputStream outputStream, final Handler handler) {
+		connections.add(connection);
+		execute(() -> {
+			try (final Closeable closingConnection = connection) {
+				handler.serve(inputStream, outputStream);
+			} catch(final IOException | InterruptedException exception) { //the client went away or the server was closed
+			} finally {
+				connections.remove(connection);
+			}
+		});
+	}
+
+	/**
+	 * Runs a task on a thread of the server, such as relaying data on behalf of a handler. The thread is interrupted when the server is closed.
+	 * @param task The task to run.
+	 */
+	public void execute(final Runnable task) {
+		executorService.execute(task);
+	}
+
+	/** @return The port of the loopback server socket. */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/** @return The host of the loopback server socket, identified by the address of the loopback interface. */
+	public Host getHost() {
+		return new Host(InetAddress.getLoopbackAddress().getHostAddress(), getPort());
+	}
+
+	/**
+	 * Determines the URI of a resource on the server.
+	 * @param path The absolute path of the resource.
+	 * @return The <code>http</code> URI of the resource on the loopback server socket.
+	 */
+	public URI getURI(final String path) {
+		return URI.create("http://" + getHost() + path);
+	}
+
+	/** Stops accepting connections, closes the open connections, and interrupts the handlers. */
+	@Override
+	public void close() throws IOException {
+		if(serverSocket != null) {
+			serverSocket.close();
+		} else {
+			serverChannel.close();
+		}
+		for(final Closeable connection : connections) {
+			connection.close();
+		}
+		executorService.shutdownNow();
+	}
+
+	/**
+	 * Reads a line from an input stream without buffering, so that no data following the line is consumed.
+	 * @param inputStream The input stream from which to read.
+	 * @return The line read, without the line ending, or <code>null</code> if the end of the stream was reached.
+	 * @throws IOException if there is an error reading from the stream.
+	 */
+	public static String readLine(final InputStream inputStream) throws IOException {
+		final StringBuilder stringBuilder = new StringBuilder();
+		int b;
+		while((b = inputStream.read()) != '\n') {
+			if(b < 0) {
+				return null;
+			}
+			if(b != '\r') {
+				stringBuilder.append((char)b);
+			}
+		}
+		return stringBuilder.toString();
+	}
+
+	/**
+	 * Reads the header of a request, without reading any body.
+	 * @param inputStream The input stream from which to read.
+	 * @return The request header, or <code>null</code> if the client closed the connection before sending another request.
+	 * @throws IOException if there is an error reading from the stream.
+	 */
+	public static Request readRequest(final InputStream inputStream) throws IOException {
+		final String requestLine = readLine(inputStream);
+		if(requestLine == null) {
+			return null;
+		}
+		final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		String line;
+		while((line = readLine(inputStream)) != null && !line.isEmpty()) {
+			final int colonIndex = line.indexOf(':');
+			headers.put(line.substring(0, colonIndex).trim(), line.substring(colonIndex + 1).trim());
+		}
+		return new Request(requestLine, headers);
+	}
+
+	/**
+	 * Reads the body of a request as indicated by its <code>Content-Length</code> header, or in chunks if the request uses the chunked transfer coding.
+	 * @param inputStream The input stream from which to read.
+	 * @param request The request header.
+	 * @return The request body, which will be empty if the request has no content length.
+	 * @throws EOFException if the client closed the connection before sending the entire body.
+	 * @throws IOException if there is an error reading from the stream.
+	 */
+	public static byte[] readBody(final InputStream inputStream, final Request request) throws IOException {
+		final DataInputStream dataInputStream = new DataInputStream(inputStream);
+		if(!"chunked".equalsIgnoreCase(request.getHeader("Transfer-Encoding"))) {
+			final byte[] body = new byte[(int)request.getContentLength()];
+			dataInputStream.readFully(body);
+			return body;
+		}
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		int chunkSize;
+		do {
+			final String chunkSizeLine = readLine(inputStream);
+			if(chunkSizeLine == null) {
+				throw new EOFException("Missing chunk.");
+			}
+			chunkSize = Integer.parseInt(chunkSizeLine.trim(), 16);
+			final byte[] chunk = new byte[chunkSize];
+			dataInputStream.readFully(chunk);
+			body.write(chunk);
+			readLine(inputStream); //the line ending after the chunk
+		} while(chunkSize > 0);
+		return body.toByteArray();
+	}
+
+	/**
+	 * Determines whether the value of an authorization header uses the given authentication scheme, which is compared case-insensitively.
+	 * @param authorization The value of an authorization header, or <code>null</code> if the request had no such header.
+	 * @param scheme The authentication scheme, such as <code>Basic</code>.
+	 * @return <code>true</code> if the authorization is present and uses the given scheme.
+	 */
+	public static boolean hasScheme(final String authorization, final String scheme) {
+		return authorization != null && authorization.regionMatches(true, 0, scheme + " ", 0, scheme.length() + 1);
+	}
+
+	/**
+	 * Writes a response with the given status line and content to the client.
+	 * @param outputStream The stream for writing to the client.
+	 * @param statusLine The status line, such as <code>HTTP/1.1 200 OK</code>.
+	 * @param content The content of the response body.
+	 * @param headers Any additional header lines, without line endings.
+	 * @throws IOException if there is an error writing to the stream.
+	 */
+	public static void writeResponse(final OutputStream outputStream, final String statusLine, final String content, final String... headers)
+			throws IOException {
+		final byte[] body = content.getBytes(UTF_8);
+		final StringBuilder header = new StringBuilder(statusLine).append("\r\n");
+		for(final String headerLine : headers) {
+			header.append(headerLine).append("\r\n");
+		}
+		header.append("Content-Length: ").append(body.length).append("\r\n\r\n");
+		outputStream.write(header.toString().getBytes(ISO_8859_1));
+		outputStream.write(body);
+		outputStream.flush();
+	}
+
+	/**
+	 * The header of a request received by the server.
+	 * @author Garret Wilson
+	 */
+	public static class Request {
+
+		/** The request line. */
+		private final String requestLine;
+
+		/** @return The request line. */
+		public String getRequestLine() {
+			return requestLine;
+		}
+
+		/** The header values, keyed by case-insensitive header name. */
+		private final Map<String, String> headers;
+
+		/**
+		 * Constructor.
+		 * @param requestLine The request line.
+		 * @param headers The header values, keyed by case-insensitive header name.
+		 */
+		Request(final String requestLine, final Map<String, String> headers) {
+			this.requestLine = requireNonNull(requestLine);
+			this.headers = requireNonNull(headers);
+		}
+
+		/** @return The method of the request. */
+		public String getMethod() {
+			return requestLine.substring(0, requestLine.indexOf(' '));
+		}
+
+		/** @return The request target, such as the path of the requested resource. */
+		public String getTarget() {
+			final int methodEnd = requestLine.indexOf(' ');
+			return requestLine.substring(methodEnd + 1, requestLine.indexOf(' ', methodEnd + 1));
+		}
+
+		/**
+		 * Retrieves the value of a header.
+		 * @param name The case-insensitive name of the header.
+		 * @return The value of the header, or <code>null</code> if the request has no such header.
+		 */
+		public String getHeader(final String name) {
+			return headers.get(name);
+		}
+
+		/** @return The content length of the request body, or zero if the request has no <code>Content-Length</code> header. */
+		public long getContentLength() {
+			final String contentLength = getHeader("Content-Length");
+			return contentLength != null ? Long.parseLong(contentLength) : 0;
+		}
+
+	}
+
+}
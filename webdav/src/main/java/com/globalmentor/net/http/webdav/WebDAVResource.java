@@ -410,10 +410,12 @@ public Map<WebDAVPropertyName, WebDAVProperty> propFind() throws IOException {
 	 * cached properties are updated if caching is enabled. The URI of each resource is canonicized to be an absolute URI. Returned property values may be
 	 * <code>null</code>. Some servers (e.g. Subversion with Apache mod_dav) will return resources other than those requested, for example returning properties
 	 * for <code>http://www.example.com/collection/</code> if <code>http://www.example.com/collection</code> was requested but no resource exists at that
-	 * location.
+	 * location. Identical concurrent requests for properties not available in the cache are coalesced into a single request; each caller receives its own copy
+	 * of the properties.
 	 * @param depth The requested depth.
 	 * @return A list of all properties of all requested resources, each representing the URI of the resource paired by a map of its properties.
 	 * @throws IOException if there was an error invoking the method.
+	 * @see #coalesce(String, Object, com.globalmentor.io.function.IOSupplier, java.util.function.UnaryOperator)
 	 */
 	public List<NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>> propFind(final Depth depth) throws IOException {
 		final HTTPClient httpClient = getClient(); //get the client we are using
@@ -428,6 +430,45 @@ public List<NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>> propFin
 				return cachedPropFindList; //return the manufactured property list from our cached properyy list
 			}
 		}
+		return coalesce("propFind", depth, () -> propFindUncoalesced(depth), WebDAVResource::copyPropertyMaps);
+	}
+
+	/**
+	 * Makes a deep copy of the properties of resources, so that a caller may modify the copy without affecting others. The list, the pairs, and the property
+	 * maps are copied, as are the document fragments of any {@link WebDAVDocumentFragmentPropertyValue} values; literal values are immutable and are shared.
+	 * @param propertyMaps The properties of resources, each representing the URI of the resource paired by a map of its properties.
+	 * @return A copy of the given properties.
+	 */
+	protected static List<NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>> copyPropertyMaps(
+			final List<NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>> propertyMaps) {
+		final List<NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>> propertyMapsCopy = new ArrayList<NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>>(propertyMaps.size());
+		for(final NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>> propertyMap : propertyMaps) {
+			final Map<WebDAVPropertyName, WebDAVProperty> propertiesCopy = new HashMap<WebDAVPropertyName, WebDAVProperty>(propertyMap.getValue().size());
+			for(final Map.Entry<WebDAVPropertyName, WebDAVProperty> propertyEntry : propertyMap.getValue().entrySet()) {
+				WebDAVProperty property = propertyEntry.getValue();
+				if(property != null && property.getValue() instanceof WebDAVDocumentFragmentPropertyValue) { //DOM nodes are mutable
+					final DocumentFragment documentFragment = ((WebDAVDocumentFragmentPropertyValue)property.getValue()).getDocumentFragment();
+					final DocumentFragment documentFragmentCopy = (DocumentFragment)documentFragment.cloneNode(true);
+					property = new WebDAVProperty(property.getName(), new WebDAVDocumentFragmentPropertyValue(documentFragmentCopy));
+				}
+				propertiesCopy.put(propertyEntry.getKey(), property);
+			}
+			propertyMapsCopy.add(new NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>(propertyMap.getName(), propertiesCopy));
+		}
+		return propertyMapsCopy;
+	}
+
+	/**
+	 * Retrieves properties using the {@value WebDAV#PROPFIND_METHOD} method, without using cached properties and without coalescing the request with others.
+	 * Cached properties are updated if caching is enabled.
+	 * @param depth The requested depth.
+	 * @return A list of all properties of all requested resources, each representing the URI of the resource paired by a map of its properties.
+	 * @throws IOException if there was an error invoking the method.
+	 * @see #propFind(Depth)
+	 */
+	protected List<NameValuePair<URI, Map<WebDAVPropertyName, WebDAVProperty>>> propFindUncoalesced(final Depth depth) throws IOException {
+		final HTTPClient httpClient = getClient(); //get the client we are using
+		final URI referenceURI = getURI(); //get the reference URI of this resource
 		try {
 			final WebDAVRequest request = new DefaultWebDAVRequest(PROPFIND_METHOD, referenceURI); //create a PROPFIND request
 			request.setDepth(depth); //set the requested depth